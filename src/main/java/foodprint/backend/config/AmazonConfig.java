@@ -1,32 +1,71 @@
 package foodprint.backend.config;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConditionalOnProperty(name = "foodprint.files.store", havingValue = "s3", matchIfMissing = true)
 public class AmazonConfig {
 
+    public static final String REGION = "ap-southeast-1";
+
     @Value("${AWS_ACCESS_KEY_ID}")
     private String awsAccessKey;
-    
+
     @Value("${AWS_SECRET_KEY}")
     private String awsSecretKey;
 
+    // Only set to point the client at an S3-compatible stand-in
+    @Value("${foodprint.s3.endpoint:}")
+    private String endpoint;
+
+    // Enough for every upload thread of a few large transfers at once
+    @Value("${foodprint.s3.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${foodprint.s3.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${foodprint.s3.connection-timeout-ms:5000}")
+    private int connectionTimeoutMillis;
+
+    @Value("${foodprint.s3.socket-timeout-ms:30000}")
+    private int socketTimeoutMillis;
+
     @Bean
     public AmazonS3 s3() {
         AWSCredentials awsCredentials = new BasicAWSCredentials(awsAccessKey, awsSecretKey);
 
-        return AmazonS3ClientBuilder.standard()
-                .withRegion("ap-southeast-1")
-                .withCredentials(new AWSStaticCredentialsProvider(awsCredentials))
-                .build();
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withConnectionTimeout(connectionTimeoutMillis)
+                .withSocketTimeout(socketTimeoutMillis)
+                // Pooled connections are dropped after a minute so that DNS changes on the S3 side are picked up
+                .withConnectionTTL(60_000)
+                .withTcpKeepAlive(true)
+                .withThrottledRetries(true)
+                .withRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(maxRetries));
 
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withClientConfiguration(clientConfiguration)
+                .withCredentials(new AWSStaticCredentialsProvider(awsCredentials));
+        if (endpoint.isEmpty()) {
+            builder.withRegion(REGION);
+        } else {
+            builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, REGION))
+                    .withPathStyleAccessEnabled(true);
+        }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package foodprint.backend.config;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reservations and line items used to take their IDs from IDENTITY columns and now
+ * take them from pooled sequences. A sequence created by the schema update starts
+ * at 1, so on a database that already has rows it is moved past the highest
+ * existing ID before anything is inserted.
+ */
+@Component
+public class IdSequenceAligner {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    // Taking the EntityManagerFactory makes sure the schema update has created the sequences first
+    public IdSequenceAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void align() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        align(product, "reservation", "reservation_id", "reservation_seq");
+        align(product, "line_item", "line_item_id", "line_item_seq");
+    }
+
+    private void align(String product, String table, String idColumn, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table, Long.class);
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        // The pooled optimizer hands out the block below the value it reads, so leave a whole block of room
+        long restartWith = maxId + ALLOCATION_SIZE + 1;
+        if ("H2".equals(product)) {
+            Long current = jdbcTemplate.queryForObject(
+                "SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?", Long.class, sequence.toUpperCase());
+            if (current != null && current < maxId) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restartWith);
+                log.info("Moved sequence {} past existing {} IDs to {}", sequence, table, restartWith);
+            }
+        } else {
+            // Databases without sequences, such as MySQL, keep them in a single row table
+            int updated = jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val <= ?", restartWith, maxId);
+            if (updated > 0) {
+                log.info("Moved sequence {} past existing {} IDs to {}", sequence, table, restartWith);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -24,6 +25,7 @@ import foodprint.backend.exceptions.InsufficientPermissionsException;
 import foodprint.backend.exceptions.MailException;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.exceptions.RegistrationException;
+import foodprint.backend.exceptions.ServiceUnavailableException;
 import foodprint.backend.exceptions.VaccinationValidationException;
 
 import javax.servlet.http.HttpServletResponse;
@@ -101,6 +103,11 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
         response.sendError(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public void handleServiceUnavailable(ServiceUnavailableException ex, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+    }
+
     @ExceptionHandler(StripeException.class)
      public void handleStripeError(StripeException ex, HttpServletResponse response) throws IOException{
         response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value() ,ex.getMessage());
@@ -121,6 +128,14 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
         response.sendError(HttpStatus.NOT_FOUND.value(), ex.getMessage());
     }
 
+    /**
+     * Handle an update to a restaurant, food or discount that another request changed first
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public void handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.CONFLICT.value(), "Changed by another request, please try again");
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public void handleConstraintViolationException(ConstraintViolationException ex, HttpServletResponse response) throws IOException {
         loggr.error("Constraint violation exception", ex);
@@ -94,10 +94,13 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             // Our public endpoints
             .antMatchers(HttpMethod.GET,
                     "/api/v1/restaurant/*/food",
+                    "/api/v1/restaurant/*/nextOpening",
                     "/api/v1/restaurant/*",
                     "/api/v1/restaurant",
                     "/api/v1/restaurant/categories/**",
-                    "/api/v1/reservation/slots/*")
+                    "/api/v1/reservation/slots",
+                    "/api/v1/reservation/slots/*",
+                    "/api/v1/files/**")
             .permitAll()
 
             .antMatchers("/api/v1/auth/login/**",
@@ -115,6 +118,12 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                     "/favicon.ico")
             .permitAll()
 
+            .antMatchers(HttpMethod.GET, "/actuator/health")
+            .permitAll()
+
+            .antMatchers("/actuator/**")
+            .hasAuthority("FP_ADMIN")
+
             // Our private endpoints
             .anyRequest().authenticated().and();
 
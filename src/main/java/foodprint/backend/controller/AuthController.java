@@ -37,6 +37,8 @@ import jakarta.validation.Valid;
 @RequestMapping("/api/v1/auth")
 public class AuthController {
 
+    private static final ModelMapper MAPPER = new ModelMapper();
+
     private JwtTokenUtil jwtTokenUtil;
 
     private AuthenticationService authService;
@@ -126,8 +128,7 @@ public class AuthController {
     @ResponseStatus(code = HttpStatus.OK)
     public ResponseEntity<CurrentUserDetailsDTO> currentUserDetails() {
         User currentUser = AuthHelper.getCurrentUser();
-        ModelMapper mapper = new ModelMapper();
-        CurrentUserDetailsDTO currentUserDetails = mapper.map(currentUser, CurrentUserDetailsDTO.class);
+        CurrentUserDetailsDTO currentUserDetails = MAPPER.map(currentUser, CurrentUserDetailsDTO.class);
         currentUserDetails.setUserRoles(currentUser.getRoles().split(","));
         return new ResponseEntity<>(currentUserDetails, HttpStatus.OK);
     }
@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.RestController;
 import foodprint.backend.config.AuthHelper;
 import foodprint.backend.dto.ChargeDTO;
 import foodprint.backend.dto.ChargeRequest;
+import foodprint.backend.exceptions.BadRequestException;
 import foodprint.backend.model.User;
 import foodprint.backend.service.StripeService;
 
@@ -34,8 +35,15 @@ public class ChargeController {
     @PostMapping("/")
     public ResponseEntity<ChargeDTO> charge(@RequestBody ChargeRequest chargeRequest) throws StripeException {
         User user = AuthHelper.getCurrentUser();
+        reservationService.checkPayable(chargeRequest.getReservationId(), user.getId());
         Charge charge = paymentsService.charge(chargeRequest);
-        reservationService.setPaid(chargeRequest.getReservationId(), user.getId());
+        try {
+            reservationService.setPaid(chargeRequest.getReservationId(), user.getId());
+        } catch (BadRequestException e) {
+            // The hold ran out while the card was being charged, and the slot may already be someone else's
+            paymentsService.refund(charge);
+            throw e;
+        }
         ChargeDTO chargeDTO = new ChargeDTO(charge.getId(), charge.getStatus(), charge.getBalanceTransaction());
         return new ResponseEntity<>(chargeDTO, HttpStatus.CREATED);
     }
@@ -0,0 +1,177 @@
+package foodprint.backend.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UrlPathHelper;
+
+import foodprint.backend.exceptions.NotFoundException;
+import foodprint.backend.exceptions.ServiceUnavailableException;
+import foodprint.backend.service.LocalFileStore;
+import io.swagger.v3.oas.annotations.Operation;
+
+/**
+ * Serves the files of the local file store. The bytes go from the file channel
+ * straight to the response with transferTo, rather than through a buffer of
+ * ours, and a bounded number of files are sent at once. Only image types are
+ * served, and browsers are told not to guess another type from the content.
+ */
+@RestController
+@RequestMapping(FileController.FILES_PATH)
+@ConditionalOnProperty(name = "foodprint.files.store", havingValue = "local")
+public class FileController {
+
+    static final String FILES_PATH = "/api/v1/files";
+
+    // Stored files are never changed in place, every upload gets a new path
+    private static final CacheControl FILE_CACHE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic();
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    // Only pictures are stored, and anything else could run as a page of this origin if served by its type
+    private static final List<MediaType> SERVED_TYPES = List.of(MediaType.IMAGE_PNG, MediaType.IMAGE_JPEG,
+        MediaType.IMAGE_GIF, MediaType.valueOf("image/bmp"));
+
+    private final LocalFileStore fileStore;
+
+    private final Semaphore transfers;
+
+    @Autowired
+    public FileController(LocalFileStore fileStore,
+            @Value("${foodprint.files.local.max-concurrency:64}") int maxConcurrency) {
+        this.fileStore = fileStore;
+        this.transfers = new Semaphore(maxConcurrency);
+    }
+
+    @GetMapping("/**")
+    @Operation(summary = "Gets a stored file, or the single byte range of it asked for")
+    public void getFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relativePath = URL_PATH_HELPER.getPathWithinApplication(request).substring(FILES_PATH.length());
+        Optional<Path> file = fileStore.find(relativePath.startsWith("/") ? relativePath.substring(1) : relativePath);
+        Optional<MediaType> contentType = file.flatMap(found -> MediaTypeFactory.getMediaType(found.getFileName().toString()))
+            .filter(SERVED_TYPES::contains);
+        if (file.isEmpty() || contentType.isEmpty()) {
+            throw new NotFoundException("File not found");
+        }
+        if (!transfers.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many files are being served, please try again later");
+        }
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            send(file.get(), contentType.get(), channel, request, response);
+        } finally {
+            transfers.release();
+        }
+    }
+
+    private void send(Path file, MediaType contentType, FileChannel channel, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        long length = channel.size();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String eTag = String.format("\"%x-%x\"", lastModified, length);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, FILE_CACHE.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        Optional<HttpRange> range = range(request, eTag, lastModified);
+        if (range.isPresent()) {
+            try {
+                start = range.get().getRangeStart(length);
+                end = range.get().getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length));
+        }
+
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        while (position <= end) {
+            long sent = channel.transferTo(position, end + 1 - position, out);
+            if (sent <= 0) {
+                // The file was cut short since its length was read
+                break;
+            }
+            position += sent;
+        }
+    }
+
+    /**
+     * Gets the byte range asked for, if there is a single one that still applies.
+     * Several ranges would need a multipart response, so the whole file is sent
+     * for them instead, as it is for a Range header that does not parse.
+     */
+    private static Optional<HttpRange> range(HttpServletRequest request, String eTag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, eTag, lastModified)) {
+            return Optional.empty();
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        return ranges.size() == 1 ? Optional.of(ranges.get(0)) : Optional.empty();
+    }
+
+    /**
+     * Checks that the file has not changed since the version If-Range names, by
+     * entity tag or by date
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            // HTTP dates have no milliseconds
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
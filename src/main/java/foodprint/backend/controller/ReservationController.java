@@ -1,19 +1,26 @@
 package foodprint.backend.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
 
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -27,9 +34,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import foodprint.backend.config.AuthHelper;
 import foodprint.backend.dto.CreateReservationDTO;
+import foodprint.backend.dto.CursorPageDTO;
 import foodprint.backend.dto.LineItemDTO;
 import foodprint.backend.dto.ReservationDTO;
-import foodprint.backend.dto.NamedLineItemDTO;
+import foodprint.backend.dto.RestaurantAvailabilityDTO;
+import foodprint.backend.dto.ReservationMapper;
 import foodprint.backend.exceptions.BadRequestException;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.model.Food;
@@ -37,6 +46,8 @@ import foodprint.backend.model.LineItem;
 import foodprint.backend.model.Reservation;
 import foodprint.backend.model.Restaurant;
 import foodprint.backend.model.User;
+import foodprint.backend.service.JsonArrayWriter;
+import foodprint.backend.service.ReservationCursor;
 import foodprint.backend.service.ReservationService;
 import foodprint.backend.service.RestaurantService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -45,14 +56,21 @@ import io.swagger.v3.oas.annotations.Operation;
 @RequestMapping("/api/v1/reservation")
 public class ReservationController {
 
+    private static final int MAX_AVAILABILITY_RESTAURANTS = 50;
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final ModelMapper MAPPER = new ModelMapper();
+
     private ReservationService reservationService;
 
     private RestaurantService restaurantService;
 
+    private JsonArrayWriter jsonArrayWriter;
+
     @Autowired
-    ReservationController(ReservationService reservationService, RestaurantService restaurantService) {
+    ReservationController(ReservationService reservationService, RestaurantService restaurantService, JsonArrayWriter jsonArrayWriter) {
         this.reservationService = reservationService;
         this.restaurantService = restaurantService;
+        this.jsonArrayWriter = jsonArrayWriter;
     }
 
     // GET: Get reservation by id (DTO)
@@ -114,6 +132,45 @@ public class ReservationController {
         return new ResponseEntity<>(reservationDTOs, HttpStatus.OK);
     }
 
+    // GET: Get a page of reservations by user, continuing from a cursor
+    @GetMapping({ "/all/page" })
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets a page of the reservation(s) of a user, latest first")
+    public ResponseEntity<CursorPageDTO<ReservationDTO>> getAllReservationByUserPaged(
+        @RequestParam(name="cursor", required=false) String cursor,
+        @RequestParam(name="size", defaultValue="10") int size
+    ) {
+        User user = AuthHelper.getCurrentUser();
+        Slice<Reservation> reservations = reservationService.getAllReservationByUser(user, cursor, pageSize(size));
+        return new ResponseEntity<>(convertToCursorPage(reservations), HttpStatus.OK);
+    }
+
+    // GET: Get a page of upcoming reservations by user, continuing from a cursor
+    @GetMapping({ "/upcoming/page" })
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets a page of the upcoming reservation(s) of a user, soonest first")
+    public ResponseEntity<CursorPageDTO<ReservationDTO>> getUserUpcomingReservationsPaged(
+        @RequestParam(name="cursor", required=false) String cursor,
+        @RequestParam(name="size", defaultValue="10") int size
+    ) {
+        User user = AuthHelper.getCurrentUser();
+        Slice<Reservation> reservations = reservationService.getUserUpcomingReservations(user, cursor, pageSize(size));
+        return new ResponseEntity<>(convertToCursorPage(reservations), HttpStatus.OK);
+    }
+
+    // GET: Get a page of past reservations by user, continuing from a cursor
+    @GetMapping({ "/past/page" })
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets a page of the past reservation(s) of a user, latest first")
+    public ResponseEntity<CursorPageDTO<ReservationDTO>> getUserPastReservationsPaged(
+        @RequestParam(name="cursor", required=false) String cursor,
+        @RequestParam(name="size", defaultValue="10") int size
+    ) {
+        User user = AuthHelper.getCurrentUser();
+        Slice<Reservation> reservations = reservationService.getUserPastReservations(user, cursor, pageSize(size));
+        return new ResponseEntity<>(convertToCursorPage(reservations), HttpStatus.OK);
+    }
+
     // GET: lineItems by reservation id
     @GetMapping({ "/order/{reservationId}" })
     @ResponseStatus(code = HttpStatus.OK)
@@ -142,7 +199,7 @@ public class ReservationController {
         @RequestParam(name="before", required=true) String beforeStr,
         @RequestParam(name="p", defaultValue="0") int page
     ) {
-        Restaurant restaurant = restaurantService.get(restaurantId);
+        Restaurant restaurant = restaurantService.getCached(restaurantId);
         LocalDateTime after = LocalDate.parse(afterStr).atStartOfDay();
         LocalDateTime before = LocalDate.parse(beforeStr).atStartOfDay();
         if (after.isAfter(before)) {
@@ -155,13 +212,37 @@ public class ReservationController {
         return new ResponseEntity<>(reservationDTOs,HttpStatus.OK);
     }
 
+    // GET: Reservations for restaurant between two dates, continuing from a cursor
+    @GetMapping("/restaurant/{restaurantId}/page")
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets a page of reservations for a restaurant between two dates, soonest first")
+    public ResponseEntity<CursorPageDTO<ReservationDTO>> getRestaurantReservationsPaged(
+        @PathVariable("restaurantId") Long restaurantId,
+        @RequestParam(name="after", required=true) String afterStr,
+        @RequestParam(name="before", required=true) String beforeStr,
+        @RequestParam(name="cursor", required=false) String cursor,
+        @RequestParam(name="size", defaultValue="10") int size
+    ) {
+        Restaurant restaurant = restaurantService.getCached(restaurantId);
+        LocalDateTime after = LocalDate.parse(afterStr).atStartOfDay();
+        LocalDateTime before = LocalDate.parse(beforeStr).atStartOfDay();
+        if (after.isAfter(before)) {
+            throw new BadRequestException("Start date should be before end date");
+        }
+        User requestor = AuthHelper.getCurrentUser();
+        Restaurant requestorRestaurant = requestor.getRestaurant();
+        Slice<Reservation> reservations = reservationService.getRestaurantUpcomingReservations(restaurant, requestorRestaurant, after, before, cursor, pageSize(size));
+        return new ResponseEntity<>(convertToCursorPage(reservations), HttpStatus.OK);
+    }
+
     // GET: Get all reservations
     @GetMapping({ "/admin/all" })
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Gets all reservation slots")
-    public ResponseEntity<List<Reservation>> getAllReservation() {
-        List<Reservation> reservationList = reservationService.getAllReservationSlots();
-        return new ResponseEntity<>(reservationList, HttpStatus.OK);
+    public void getAllReservation(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        reservationService.streamAllReservationSlots(reservations -> jsonArrayWriter.write(out, reservations, Function.identity()));
     }
 
     // POST: Create a new reservation (DTO)
@@ -202,10 +283,12 @@ public class ReservationController {
     @GetMapping({ "/admin/all/{restaurantId}" })
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Gets all reservation slots by restaurant")
-    public ResponseEntity<List<Reservation>> getAllReservationByRestaurant(@PathVariable("restaurantId") Long id) {
-        Restaurant restaurant = restaurantService.get(id);
-        List<Reservation> reservationList = reservationService.getAllReservationByRestaurant(restaurant);
-        return new ResponseEntity<>(reservationList, HttpStatus.OK);
+    public void getAllReservationByRestaurant(@PathVariable("restaurantId") Long id, HttpServletResponse response) throws IOException {
+        Restaurant restaurant = restaurantService.getCached(id);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        reservationService.streamAllReservationByRestaurant(restaurant,
+            reservations -> jsonArrayWriter.write(out, reservations, Function.identity()));
     }
 
     // Get all available reservation slots by date (should return a list of date
@@ -217,30 +300,62 @@ public class ReservationController {
         return new ResponseEntity<>(reservationService.getUpcomingSlots(id), HttpStatus.OK);
     }
 
+    // Get available reservation slots of many restaurants at once, e.g. for a search results page
+    @GetMapping({ "/slots" })
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets available reservation slots of many restaurants between two dates")
+    public ResponseEntity<List<RestaurantAvailabilityDTO>> getUpcomingSlots(
+        @RequestParam(name="restaurantIds", required=true) List<Long> restaurantIds,
+        @RequestParam(name="start", required=true) String startStr,
+        @RequestParam(name="end", required=true) String endStr
+    ) {
+        if (restaurantIds.size() > MAX_AVAILABILITY_RESTAURANTS) {
+            throw new BadRequestException("At most " + MAX_AVAILABILITY_RESTAURANTS + " restaurants can be requested at once");
+        }
+        LocalDate start = LocalDate.parse(startStr);
+        LocalDate end = LocalDate.parse(endStr);
+        if (start.isAfter(end)) {
+            throw new BadRequestException("Start date should be before end date");
+        }
 
-    private ReservationDTO convertToDTO(Reservation reservation) {
-        ModelMapper mapper = new ModelMapper();
-        
-        ReservationDTO dto = mapper.map(reservation, ReservationDTO.class);
-        dto.setImageUrl(reservation.getRestaurant().getPicture().getUrl());
-        
+        Map<Long, List<LocalDateTime>> slots = reservationService.getUpcomingSlots(restaurantIds, start, end);
+        List<RestaurantAvailabilityDTO> result = new ArrayList<>();
+        for (Long restaurantId : new LinkedHashSet<>(restaurantIds)) {
+            List<LocalDateTime> restaurantSlots = slots.get(restaurantId);
+            if (restaurantSlots != null) {
+                result.add(new RestaurantAvailabilityDTO(restaurantId, restaurantSlots));
+            }
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
 
-        List<NamedLineItemDTO> lineItemDtos = new ArrayList<>();
-        for (LineItem lineItem : reservation.getLineItems()) {
-            NamedLineItemDTO lineItemDto = mapper.map(lineItem, NamedLineItemDTO.class);
-            lineItemDto.setPicture(lineItem.getFood().getPicture());
-            lineItemDtos.add(lineItemDto);
+
+    private int pageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size should be between 1 and " + MAX_PAGE_SIZE);
         }
+        return size;
+    }
 
-        dto.setLineItems(lineItemDtos);
-        
-        return dto;
+    private CursorPageDTO<ReservationDTO> convertToCursorPage(Slice<Reservation> reservations) {
+        List<ReservationDTO> reservationDTOs = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            reservationDTOs.add(this.convertToDTO(reservation));
+        }
+        String nextCursor = null;
+        if (reservations.hasNext()) {
+            List<Reservation> content = reservations.getContent();
+            nextCursor = ReservationCursor.of(content.get(content.size() - 1)).encode();
+        }
+        return new CursorPageDTO<>(reservationDTOs, nextCursor);
     }
 
-    private Reservation convertToEntity(CreateReservationDTO dto) {
-        ModelMapper mapper = new ModelMapper();
+    private ReservationDTO convertToDTO(Reservation reservation) {
+        return ReservationMapper.toDTO(reservation);
+    }
 
-        Reservation reservation = mapper.map(dto, Reservation.class);
+    private Reservation convertToEntity(CreateReservationDTO dto) {
+        Reservation reservation = MAPPER.map(dto, Reservation.class);
         Restaurant restaurant = restaurantService.get(dto.getRestaurantId());
         Long restaurantId = restaurant.getRestaurantId();
 
@@ -1,19 +1,26 @@
 package foodprint.backend.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -29,14 +36,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import foodprint.backend.dto.DemandDriftDTO;
 import foodprint.backend.dto.DiscountDTO;
 import foodprint.backend.dto.EditFoodDTO;
 import foodprint.backend.dto.FoodDTO;
 import foodprint.backend.dto.IngredientCalculationDTO;
 import foodprint.backend.dto.IngredientDTO;
+import foodprint.backend.dto.NearbyRestaurantDTO;
 import foodprint.backend.dto.RestaurantDTO;
+import foodprint.backend.dto.RestaurantFacetsDTO;
+import foodprint.backend.dto.RestaurantMapper;
+import foodprint.backend.dto.SuggestionDTO;
 import foodprint.backend.dto.UpdatePictureDTO;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.exceptions.AlreadyExistsException;
@@ -46,6 +60,11 @@ import foodprint.backend.model.Food;
 import foodprint.backend.model.Ingredient;
 import foodprint.backend.model.Picture;
 import foodprint.backend.model.Restaurant;
+import foodprint.backend.service.FacetIndex;
+import foodprint.backend.service.GeoIndex;
+import foodprint.backend.service.JsonArrayWriter;
+import foodprint.backend.service.MenuCache;
+import foodprint.backend.service.PrefixTrie;
 import foodprint.backend.service.RestaurantService;
 import io.swagger.v3.oas.annotations.Operation;
 
@@ -55,11 +74,25 @@ import io.swagger.v3.oas.annotations.Operation;
 public class RestaurantController {
     
     private RestaurantService service;
+    private JsonArrayWriter jsonArrayWriter;
     private static final String RESTAURANT_NOT_FOUND = "restaurant does not exist";
+    private static final String SORT_BY_RELEVANCE = "relevance";
+    private static final int MAX_SUGGESTIONS = PrefixTrie.MAX_SUGGESTIONS;
+    private static final int MAX_NEARBY = 100;
+    private static final int MAX_FACET_PAGE_SIZE = 100;
+    // Discounts should show up within a minute, menus and categories change far less often. A new category
+    // shows up within ten minutes, and revalidating the categories is cheap as their tag is kept in memory
+    private static final CacheControl RESTAURANT_CACHE = CacheControl.maxAge(1, TimeUnit.MINUTES).cachePublic();
+    private static final CacheControl FOOD_CACHE = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
+    private static final CacheControl CATEGORIES_CACHE = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic()
+        .staleWhileRevalidate(5, TimeUnit.MINUTES);
+    // Shared so that its type maps are only built once, the hot conversions use the hand-written mappers
+    private static final ModelMapper MAPPER = new ModelMapper();
 
     @Autowired
-    RestaurantController(RestaurantService service) {
+    RestaurantController(RestaurantService service, JsonArrayWriter jsonArrayWriter) {
         this.service = service;
+        this.jsonArrayWriter = jsonArrayWriter;
     }
 
     // GET: Get the restaurant
@@ -67,20 +100,68 @@ public class RestaurantController {
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Gets a single restaurant from ID")
     public ResponseEntity<RestaurantDTO> restaurantGet(@PathVariable("restaurantId") Long id) {
-        Restaurant restaurant = service.get(id);
+        Restaurant restaurant = service.getCached(id);
         RestaurantDTO restaurantDto = restaurantConvertToDTO(restaurant);
-        return new ResponseEntity<>(restaurantDto, HttpStatus.OK);
+        // Answered with 304 and no body when the tag matches If-None-Match
+        return ResponseEntity.ok()
+            .eTag(service.getRestaurantTag(restaurant))
+            .cacheControl(RESTAURANT_CACHE)
+            .body(restaurantDto);
+    }
+
+    // GET: Get when the restaurant next opens
+    @GetMapping({"/{restaurantId}/nextOpening"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets the earliest time from now that a restaurant is open, or no content if it never opens")
+    public ResponseEntity<LocalDateTime> restaurantNextOpening(@PathVariable("restaurantId") Long id) {
+        LocalDateTime nextOpening = service.getNextOpening(service.getCached(id), LocalDateTime.now());
+        if (nextOpening == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return new ResponseEntity<>(nextOpening, HttpStatus.OK);
     }
 
     // GET (ALL): Get all the restaurants
     @GetMapping
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Gets all restaurants")
-    public ResponseEntity<List<RestaurantDTO>> restaurantGetAll() {
-        List<Restaurant> restaurants = service.getAllRestaurants();
-        List<RestaurantDTO> restaurantDtos = restaurants.stream().map(this::restaurantConvertToDTO).collect(Collectors.toList());
+    public void restaurantGetAll(@RequestParam(name="openNow", defaultValue="false") boolean openNow,
+            HttpServletResponse response) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        if (openNow) {
+            service.streamOpenRestaurants(now, restaurants -> jsonArrayWriter.write(out, restaurants, this::restaurantConvertToDTO));
+        } else {
+            service.streamAllRestaurants(restaurants -> jsonArrayWriter.write(out, restaurants, this::restaurantConvertToDTO));
+        }
+    }
 
-        return new ResponseEntity<>(restaurantDtos, HttpStatus.OK);
+    @GetMapping({"/facets"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Filter restaurants by categories, price ranges, open now, discount and availability this week, with the count of every facet value")
+    public ResponseEntity<RestaurantFacetsDTO> restaurantFacets(
+        @RequestParam(name = "category", required = false) List<String> categories,
+        @RequestParam(name = "priceRange", required = false) List<Integer> priceRanges,
+        @RequestParam(name = "openNow", defaultValue = "false") boolean openNow,
+        @RequestParam(name = "discounted", defaultValue = "false") boolean discounted,
+        @RequestParam(name = "available", defaultValue = "false") boolean available,
+        @RequestParam(name = "p", defaultValue = "1") int pageNum,
+        @RequestParam(name = "size", defaultValue = "16") int size
+    ) {
+        if (pageNum < 1) {
+            throw new BadRequestException("p should be at least 1");
+        }
+        if (size < 1 || size > MAX_FACET_PAGE_SIZE) {
+            throw new BadRequestException("size should be between 1 and " + MAX_FACET_PAGE_SIZE);
+        }
+        Pageable page = PageRequest.of(pageNum - 1, size);
+        FacetIndex.Result result = service.filter(new FacetIndex.Filter(categories, priceRanges, openNow, discounted, available), page);
+        List<RestaurantDTO> restaurants = service.getRestaurantsInOrder(result.getRestaurantIds()).stream()
+            .map(this::restaurantConvertToDTO).collect(Collectors.toList());
+        return new ResponseEntity<>(new RestaurantFacetsDTO(new PageImpl<>(restaurants, page, result.getTotal()),
+            result.getCategoryCounts(), result.getPriceRangeCounts(), result.getOpenNowCount(), result.getDiscountedCount(),
+            result.getAvailableCount()), HttpStatus.OK);
     }
 
     // GET (ALL): Get all the restaurants
@@ -126,26 +207,74 @@ public class RestaurantController {
 
 
     @GetMapping({"/search"})
-    @Operation(summary = "Search for an existing restaurant")
+    @Operation(summary = "Search restaurants by name, categories, location and description, ranked by relevance unless sortBy is given")
 	public Page<RestaurantDTO> restaurantSearch(
         @RequestParam("q") String query, 
         @RequestParam(name = "p", defaultValue = "1") int pageNum,
-        @RequestParam(name = "sortBy", defaultValue = "restaurantName") String sortField,
+        @RequestParam(name = "sortBy", defaultValue = SORT_BY_RELEVANCE) String sortField,
         @RequestParam(name = "sortDesc", defaultValue ="false") boolean sortDesc
     ) {
         Direction direction = (sortDesc) ? Sort.Direction.DESC : Sort.Direction.ASC;
-        Sort sorting = Sort.by(direction, sortField);
+        Sort sorting = SORT_BY_RELEVANCE.equals(sortField) ? Sort.unsorted() : Sort.by(direction, sortField);
 		Pageable page = PageRequest.of(pageNum - 1, 16, sorting); // Pagination
 		Page<Restaurant> searchResult = service.search(page, query);
         return searchResult.map(this::restaurantConvertToDTO);
     } 
 
+    @GetMapping({"/autocomplete"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Suggest restaurants, dishes and categories for a partly typed search, most popular first")
+    public ResponseEntity<List<SuggestionDTO>> autocomplete(
+        @RequestParam("q") String prefix,
+        @RequestParam(name = "limit", defaultValue = "8") int limit
+    ) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestException("limit should be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return new ResponseEntity<>(service.suggest(prefix, limit), HttpStatus.OK);
+    }
+
+    @GetMapping({"/nearby"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Get the restaurants nearest to a point, nearest first, optionally filtered by category and price range")
+    public ResponseEntity<List<NearbyRestaurantDTO>> nearby(
+        @RequestParam("lat") double latitude,
+        @RequestParam("lng") double longitude,
+        @RequestParam(name = "radiusKm", defaultValue = "5") double radiusKm,
+        @RequestParam(name = "limit", defaultValue = "20") int limit,
+        @RequestParam(name = "category", required = false) String category,
+        @RequestParam(name = "minPrice", required = false) Integer minPrice,
+        @RequestParam(name = "maxPrice", required = false) Integer maxPrice
+    ) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new BadRequestException("lat should be between -90 and 90 and lng between -180 and 180");
+        }
+        if (!(radiusKm > 0 && radiusKm <= GeoIndex.MAX_RADIUS_KM)) {
+            throw new BadRequestException("radiusKm should be more than 0 and at most " + GeoIndex.MAX_RADIUS_KM);
+        }
+        if (limit < 1 || limit > MAX_NEARBY) {
+            throw new BadRequestException("limit should be between 1 and " + MAX_NEARBY);
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new BadRequestException("minPrice should not be more than maxPrice");
+        }
+        Map<Restaurant, Double> nearby = service.getNearbyRestaurants(latitude, longitude, radiusKm, limit, category, minPrice, maxPrice);
+        List<NearbyRestaurantDTO> results = new ArrayList<>();
+        for (Map.Entry<Restaurant, Double> entry : nearby.entrySet()) {
+            results.add(new NearbyRestaurantDTO(restaurantConvertToDTO(entry.getKey()), entry.getValue()));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
     @GetMapping({"/categories"})
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Get a list of categories available")
     public ResponseEntity<List<String>> getRestaurantCategories() {
         List<String> restaurantCategories = service.getCategories();
-        return new ResponseEntity<>(restaurantCategories, HttpStatus.OK);
+        return ResponseEntity.ok()
+            .eTag(service.getCategoriesTag())
+            .cacheControl(CATEGORIES_CACHE)
+            .body(restaurantCategories);
     }
 
     @GetMapping({"/categories/{category}"})
@@ -167,7 +296,7 @@ public class RestaurantController {
     @ResponseStatus(code = HttpStatus.CREATED)
     @Operation(summary = "Creates a new food instance within a restaurant")
     public ResponseEntity<Food> addRestaurantFood(@PathVariable("restaurantId") Long restaurantId, @RequestBody @Valid FoodDTO food) {
-        Restaurant restaurant = service.get(restaurantId);
+        Restaurant restaurant = service.getCached(restaurantId);
         if(restaurant == null)
             throw new NotFoundException(RESTAURANT_NOT_FOUND);
 
@@ -179,10 +308,23 @@ public class RestaurantController {
     @GetMapping({"/{restaurantId}/food"})
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Gets all food of a restaurant")
-    public ResponseEntity<List<Food>> getAllRestaurantFood(@PathVariable("restaurantId") Long restaurantId) {
-        Restaurant restaurant = service.get(restaurantId);
-        List<Food> allFood = restaurant.getAllFood();
-        return new ResponseEntity<>(allFood, HttpStatus.OK);
+    public void getAllRestaurantFood(@PathVariable("restaurantId") Long restaurantId, WebRequest request,
+            HttpServletResponse response) throws IOException {
+        MenuCache.Menu menu = service.getMenu(restaurantId);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, FOOD_CACHE.getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (request.checkNotModified(menu.getETag())) {
+            return;
+        }
+        byte[] body = menu.getJson();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (menu.getGzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = menu.getGzipped();
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
     }
 
     @GetMapping({"/{restaurantId}/food/{foodId}"})
@@ -251,8 +393,7 @@ public class RestaurantController {
         @PathVariable("restaurantId") Long restaurantId,
         @RequestBody DiscountDTO updatedDiscount
     ) { 
-        ModelMapper mapper = new ModelMapper();
-        Discount discount = mapper.map(updatedDiscount, Discount.class);
+        Discount discount = MAPPER.map(updatedDiscount, Discount.class);
         return new ResponseEntity<>(service.updateDiscount(restaurantId, discount), HttpStatus.OK);
     }
 
@@ -319,7 +460,7 @@ public class RestaurantController {
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Calculate ingredients needed between start and end date (inclusive)")
     public ResponseEntity<List<IngredientCalculationDTO>> calculateIngredientsBetween (@PathVariable Long restaurantId, @RequestParam("start") String startDate, @RequestParam("end") String endDate) {
-        Restaurant restaurant = service.get(restaurantId);
+        Restaurant restaurant = service.getCached(restaurantId);
         if(restaurant == null) {
             throw new NotFoundException(RESTAURANT_NOT_FOUND);
         }
@@ -347,7 +488,7 @@ public class RestaurantController {
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Calculate food needed between")
     public ResponseEntity<Map<String, Integer>> calculateFoodBetween(@PathVariable Long restaurantId, @RequestParam("start") String startDate, @RequestParam("end") String endDate) {
-        Restaurant restaurant = service.get(restaurantId);
+        Restaurant restaurant = service.getCached(restaurantId);
         if(restaurant == null)
             throw new NotFoundException(RESTAURANT_NOT_FOUND);
         
@@ -361,18 +502,41 @@ public class RestaurantController {
         Map<String, Integer> result = service.calculateFoodNeededBetween(restaurant, start, end);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
+
+    @PostMapping({"/{restaurantId}/demand/verify"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Checks the daily food and ingredient demand of a restaurant against its reservations, optionally repairing it")
+    public ResponseEntity<DemandDriftDTO> verifyDemand(@PathVariable Long restaurantId, @RequestParam(value = "repair", defaultValue = "false") boolean repair) {
+        Restaurant restaurant = service.getCached(restaurantId);
+        if(restaurant == null)
+            throw new NotFoundException(RESTAURANT_NOT_FOUND);
+
+        return new ResponseEntity<>(service.verifyDemand(restaurantId, repair), HttpStatus.OK);
+    }
    
 
     @PostMapping(path = "/{restaurantId}/uploadPicture",
                 consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
                 produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(code = HttpStatus.CREATED)
+    @Operation(summary = "Uploads a restaurant's picture, in the background if async is set")
     public ResponseEntity<Picture> savePicture(@PathVariable("restaurantId") Long restaurantId, @RequestParam("title") String title,
                                             @RequestParam("description") String description,
-                                            @RequestParam("file") MultipartFile file) {                                
+                                            @RequestParam("file") MultipartFile file,
+                                            @RequestParam(name = "async", defaultValue = "false") boolean async) {
+        if (async) {
+            return accepted(service.acceptPicture(restaurantId, title, description, file));
+        }
         return new ResponseEntity<>(service.savePicture(restaurantId, title, description, file), HttpStatus.CREATED);
     }
 
+    @GetMapping({"/picture/{pictureId}"})
+    @ResponseStatus(code = HttpStatus.OK)
+    @Operation(summary = "Gets a picture, whose status shows whether its upload is PENDING, READY or FAILED")
+    public ResponseEntity<Picture> getPictureStatus(@PathVariable("pictureId") Long pictureId) {
+        return new ResponseEntity<>(service.getPicture(pictureId), HttpStatus.OK);
+    }
+
     @DeleteMapping({"/{restaurantId}/picture"})
     @ResponseStatus(code = HttpStatus.OK)
     @Operation(summary = "Deletes a restaurant's picture")
@@ -399,9 +563,14 @@ public class RestaurantController {
                 consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
                 produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(code = HttpStatus.CREATED)
+    @Operation(summary = "Uploads a food's picture, in the background if async is set")
     public ResponseEntity<Picture> savePictureForFood(@PathVariable("restaurantId") Long restaurantId, @PathVariable("foodId") Long foodId, @RequestParam("title") String title,
                                             @RequestParam("description") String description,
-                                            @RequestParam("file") MultipartFile file) {                                
+                                            @RequestParam("file") MultipartFile file,
+                                            @RequestParam(name = "async", defaultValue = "false") boolean async) {
+        if (async) {
+            return accepted(service.acceptFoodPicture(restaurantId, foodId, title, description, file));
+        }
         return new ResponseEntity<>(service.saveFoodPicture(restaurantId, foodId, title, description, file), HttpStatus.CREATED);
     }
 
@@ -427,14 +596,24 @@ public class RestaurantController {
         return new ResponseEntity<>(savedPicture, HttpStatus.OK);
     }
 
-    private Restaurant restaurantConvertToEntity(RestaurantDTO restaurantDTO) {
-        ModelMapper mapper = new ModelMapper();
-        return mapper.map(restaurantDTO, Restaurant.class);
+    /**
+     * Answers an upload left running in the background with 202 and where to poll its status
+     */
+    private ResponseEntity<Picture> accepted(Picture picture) {
+        return ResponseEntity.accepted()
+            .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/restaurant/picture/{pictureId}")
+                .buildAndExpand(picture.getId())
+                .toUri())
+            .body(picture);
+    }
+
+        private Restaurant restaurantConvertToEntity(RestaurantDTO restaurantDTO) {
+        return MAPPER.map(restaurantDTO, Restaurant.class);
     }
 
     private RestaurantDTO restaurantConvertToDTO(Restaurant restaurant) {
-        ModelMapper mapper = new ModelMapper();
-        return mapper.map(restaurant, RestaurantDTO.class);
+        return RestaurantMapper.toDTO(restaurant);
     }
 
 }
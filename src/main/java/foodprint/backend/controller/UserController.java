@@ -6,7 +6,6 @@ import java.util.Set;
 
 import javax.validation.Valid;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -36,6 +35,7 @@ import foodprint.backend.dto.ManagerRequestDTO;
 import foodprint.backend.dto.RequestResetPwdDTO;
 import foodprint.backend.dto.ResetPwdDTO;
 import foodprint.backend.dto.UpdateUserDTO;
+import foodprint.backend.dto.UserMapper;
 import foodprint.backend.dto.FavouriteRestaurantDTO;
 import foodprint.backend.exceptions.AlreadyExistsException;
 import foodprint.backend.exceptions.BadRequestException;
@@ -166,20 +166,11 @@ public class UserController {
 
     // Conversion from DTO to actual entity
     private User convertToEntity(UpdateUserDTO dto) {
-        User user = new User();
-        user.setEmail(dto.getEmail());
-        user.setFirstName(dto.getFirstName());
-        user.setLastName(dto.getLastName());
-        user.setPassword(dto.getNewPassword());
-        return user;
+        return UserMapper.toEntity(dto);
     }
 
     private UpdateUserDTO convertToDto(User user) {
-        UpdateUserDTO dto = new UpdateUserDTO();
-        dto.setEmail(user.getEmail());
-        dto.setFirstName(user.getFirstName());
-        dto.setLastName(user.getLastName());
-        return dto;
+        return UserMapper.toUpdateDTO(user);
     }
 
     /*
@@ -272,8 +263,7 @@ public class UserController {
     }
 
     private User convertToEntity(AdminUserDTO userDTO) {
-        ModelMapper mapper = new ModelMapper();
-        return mapper.map(userDTO, User.class);
+        return UserMapper.toEntity(userDTO);
     }
 
 }
@@ -0,0 +1,40 @@
+package foodprint.backend.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+
+    @Schema(defaultValue = "MjAyMS0xMi0yNVQxNzozMHw0Mg")
+    private String nextCursor;
+
+    public CursorPageDTO() {}
+
+    public CursorPageDTO(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return this.content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean getHasNext() {
+        return this.nextCursor != null;
+    }
+}
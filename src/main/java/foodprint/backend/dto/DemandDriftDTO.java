@@ -0,0 +1,59 @@
+package foodprint.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class DemandDriftDTO {
+
+    @Schema(defaultValue = "1")
+    private Long restaurantId;
+
+    @Schema(defaultValue = "120")
+    private Integer rowsChecked = 0;
+
+    @Schema(defaultValue = "false")
+    private Boolean repaired = false;
+
+    private List<DemandDriftEntryDTO> drift = new ArrayList<>();
+
+    public DemandDriftDTO() {}
+
+    public DemandDriftDTO(Long restaurantId, Boolean repaired) {
+        this.restaurantId = restaurantId;
+        this.repaired = repaired;
+    }
+
+    public Long getRestaurantId() {
+        return this.restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public Integer getRowsChecked() {
+        return this.rowsChecked;
+    }
+
+    public void setRowsChecked(Integer rowsChecked) {
+        this.rowsChecked = rowsChecked;
+    }
+
+    public Boolean getRepaired() {
+        return this.repaired;
+    }
+
+    public void setRepaired(Boolean repaired) {
+        this.repaired = repaired;
+    }
+
+    public List<DemandDriftEntryDTO> getDrift() {
+        return this.drift;
+    }
+
+    public void setDrift(List<DemandDriftEntryDTO> drift) {
+        this.drift = drift;
+    }
+}
@@ -0,0 +1,73 @@
+package foodprint.backend.dto;
+
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class DemandDriftEntryDTO {
+
+    @Schema(defaultValue = "INGREDIENT")
+    private String kind;
+
+    @Schema(defaultValue = "2021-12-25")
+    private LocalDate date;
+
+    @Schema(defaultValue = "1")
+    private Long itemId;
+
+    @Schema(defaultValue = "12")
+    private Long expected;
+
+    @Schema(defaultValue = "10")
+    private Long actual;
+
+    public DemandDriftEntryDTO() {}
+
+    public DemandDriftEntryDTO(String kind, LocalDate date, Long itemId, Long expected, Long actual) {
+        this.kind = kind;
+        this.date = date;
+        this.itemId = itemId;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public String getKind() {
+        return this.kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public LocalDate getDate() {
+        return this.date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public Long getItemId() {
+        return this.itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public Long getExpected() {
+        return this.expected;
+    }
+
+    public void setExpected(Long expected) {
+        this.expected = expected;
+    }
+
+    public Long getActual() {
+        return this.actual;
+    }
+
+    public void setActual(Long actual) {
+        this.actual = actual;
+    }
+}
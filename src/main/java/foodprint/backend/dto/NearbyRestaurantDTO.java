@@ -0,0 +1,34 @@
+package foodprint.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class NearbyRestaurantDTO {
+
+    private RestaurantDTO restaurant;
+
+    @Schema(defaultValue = "1.2", description = "Distance from the searched point in kilometres")
+    private Double distanceKm;
+
+    public NearbyRestaurantDTO() {}
+
+    public NearbyRestaurantDTO(RestaurantDTO restaurant, Double distanceKm) {
+        this.restaurant = restaurant;
+        this.distanceKm = distanceKm;
+    }
+
+    public RestaurantDTO getRestaurant() {
+        return this.restaurant;
+    }
+
+    public void setRestaurant(RestaurantDTO restaurant) {
+        this.restaurant = restaurant;
+    }
+
+    public Double getDistanceKm() {
+        return this.distanceKm;
+    }
+
+    public void setDistanceKm(Double distanceKm) {
+        this.distanceKm = distanceKm;
+    }
+}
@@ -1,5 +1,8 @@
 package foodprint.backend.dto;
 
+import java.util.Map;
+
+import foodprint.backend.model.Picture.PictureSize;
 
 public class PictureDTO {
 
@@ -9,6 +12,9 @@ public class PictureDTO {
 
     private String url;
 
+    // Every size, falling back to the uploaded image for sizes not stored
+    private Map<PictureSize, String> urls;
+
     public PictureDTO(String title, String description, String url) {
         this.title = title;
         this.description = description;
@@ -43,6 +49,14 @@ public class PictureDTO {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    public Map<PictureSize, String> getUrls() {
+        return this.urls;
+    }
+
+    public void setUrls(Map<PictureSize, String> urls) {
+        this.urls = urls;
+    }
     
 
 }
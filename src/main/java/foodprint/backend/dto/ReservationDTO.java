@@ -1,8 +1,10 @@
 package foodprint.backend.dto;
 
+import foodprint.backend.model.Picture.PictureSize;
 import foodprint.backend.model.Reservation.ReservationStatus;
 
 import java.util.List;
+import java.util.Map;
 import java.time.LocalDateTime;
 import io.swagger.v3.oas.annotations.media.Schema;
 
@@ -20,6 +22,9 @@ public class ReservationDTO {
     @Schema(defaultValue = "")
     private String imageUrl;
 
+    // The restaurant picture in every size, so a card can load the thumbnail
+    private Map<PictureSize, String> imageUrls;
+
     @Schema(defaultValue = "2021-12-25T17:21:29.142Z")
     private LocalDateTime date;
 
@@ -82,6 +87,14 @@ public class ReservationDTO {
         this.imageUrl = imageUrl;
     }
 
+    public Map<PictureSize, String> getImageUrls() {
+        return this.imageUrls;
+    }
+
+    public void setImageUrls(Map<PictureSize, String> imageUrls) {
+        this.imageUrls = imageUrls;
+    }
+
     public LocalDateTime getDate() {
         return this.date;
     }
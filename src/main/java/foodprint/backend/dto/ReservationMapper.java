@@ -0,0 +1,77 @@
+package foodprint.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import foodprint.backend.model.Food;
+import foodprint.backend.model.LineItem;
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.User;
+
+/**
+ * Maps reservations and their line items to their DTOs field by field, without
+ * building ModelMapper's reflective type maps on every call.
+ */
+public final class ReservationMapper {
+
+    private ReservationMapper() {}
+
+    /**
+     * Converts a reservation to its DTO, along with the name and picture of every food ordered
+     * @param reservation
+     * @return
+     */
+    public static ReservationDTO toDTO(Reservation reservation) {
+        ReservationDTO dto = new ReservationDTO();
+        dto.setReservationId(reservation.getReservationId());
+        dto.setDate(reservation.getDate());
+        dto.setPax(reservation.getPax());
+        dto.setIsVaccinated(reservation.getIsVaccinated());
+        dto.setStatus(reservation.getStatus());
+
+        Restaurant restaurant = reservation.getRestaurant();
+        if (restaurant != null) {
+            dto.setRestaurantId(restaurant.getRestaurantId());
+            dto.setRestaurantName(restaurant.getRestaurantName());
+            Picture picture = restaurant.getPicture();
+            dto.setImageUrl(picture == null ? null : picture.getUrl());
+            dto.setImageUrls(picture == null ? null : picture.getUrls());
+        }
+        User user = reservation.getUser();
+        if (user != null) {
+            dto.setUserFirstName(user.getFirstName());
+            dto.setUserLastName(user.getLastName());
+        }
+
+        List<NamedLineItemDTO> lineItemDtos = new ArrayList<>();
+        if (reservation.getLineItems() != null) {
+            for (LineItem lineItem : reservation.getLineItems()) {
+                lineItemDtos.add(toDTO(lineItem));
+            }
+            if (restaurant != null) {
+                dto.setPrice(reservation.getPrice());
+            }
+        }
+        dto.setLineItems(lineItemDtos);
+        return dto;
+    }
+
+    /**
+     * Converts a line item to its DTO
+     * @param lineItem
+     * @return
+     */
+    public static NamedLineItemDTO toDTO(LineItem lineItem) {
+        NamedLineItemDTO dto = new NamedLineItemDTO();
+        dto.setQuantity(lineItem.getQuantity());
+        Food food = lineItem.getFood();
+        if (food != null) {
+            dto.setFoodId(food.getFoodId());
+            dto.setFoodName(food.getFoodName());
+            dto.setPicture(food.getPicture());
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,49 @@
+package foodprint.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class RestaurantAvailabilityDTO {
+
+    @Schema(defaultValue = "1")
+    private Long restaurantId;
+
+    @Schema(defaultValue = "2021-12-25T17:30:00")
+    private LocalDateTime nextAvailableSlot;
+
+    private List<LocalDateTime> availableSlots;
+
+    public RestaurantAvailabilityDTO() {}
+
+    public RestaurantAvailabilityDTO(Long restaurantId, List<LocalDateTime> availableSlots) {
+        this.restaurantId = restaurantId;
+        this.availableSlots = availableSlots;
+        this.nextAvailableSlot = availableSlots.isEmpty() ? null : availableSlots.get(0);
+    }
+
+    public Long getRestaurantId() {
+        return this.restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public LocalDateTime getNextAvailableSlot() {
+        return this.nextAvailableSlot;
+    }
+
+    public void setNextAvailableSlot(LocalDateTime nextAvailableSlot) {
+        this.nextAvailableSlot = nextAvailableSlot;
+    }
+
+    public List<LocalDateTime> getAvailableSlots() {
+        return this.availableSlots;
+    }
+
+    public void setAvailableSlots(List<LocalDateTime> availableSlots) {
+        this.availableSlots = availableSlots;
+    }
+}
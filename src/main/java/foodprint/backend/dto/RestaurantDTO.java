@@ -3,6 +3,8 @@ package foodprint.backend.dto;
 import java.util.List;
 import java.util.Objects;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
@@ -31,6 +33,16 @@ public class RestaurantDTO {
     @Schema(defaultValue="3")
     private Integer restaurantPriceRange;
 
+    @Schema(defaultValue="1.3496")
+    @DecimalMin("-90.0")
+    @DecimalMax("90.0")
+    private Double restaurantLatitude;
+
+    @Schema(defaultValue="103.8736")
+    @DecimalMin("-180.0")
+    @DecimalMax("180.0")
+    private Double restaurantLongitude;
+
     @Schema(defaultValue="15")
     @Min(0)
     @Max(999)
@@ -147,6 +159,22 @@ public class RestaurantDTO {
         this.restaurantPriceRange = restaurantPriceRange;
     }
 
+    public Double getRestaurantLatitude() {
+        return this.restaurantLatitude;
+    }
+
+    public void setRestaurantLatitude(Double restaurantLatitude) {
+        this.restaurantLatitude = restaurantLatitude;
+    }
+
+    public Double getRestaurantLongitude() {
+        return this.restaurantLongitude;
+    }
+
+    public void setRestaurantLongitude(Double restaurantLongitude) {
+        this.restaurantLongitude = restaurantLongitude;
+    }
+
     public Integer getRestaurantTableCapacity() {
         return this.restaurantTableCapacity;
     }
@@ -0,0 +1,87 @@
+package foodprint.backend.dto;
+
+import java.util.Map;
+
+import org.springframework.data.domain.Page;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class RestaurantFacetsDTO {
+
+    private Page<RestaurantDTO> restaurants;
+
+    @Schema(description = "Restaurants that would match with each category picked as well")
+    private Map<String, Integer> categoryCounts;
+
+    @Schema(description = "Restaurants that would match with each price range picked as well")
+    private Map<Integer, Integer> priceRangeCounts;
+
+    @Schema(defaultValue = "12")
+    private Integer openNowCount;
+
+    @Schema(defaultValue = "3")
+    private Integer discountedCount;
+
+    @Schema(defaultValue = "9", description = "Restaurants with a free slot in the first week that can be booked")
+    private Integer availableCount;
+
+    public RestaurantFacetsDTO() {}
+
+    public RestaurantFacetsDTO(Page<RestaurantDTO> restaurants, Map<String, Integer> categoryCounts,
+            Map<Integer, Integer> priceRangeCounts, Integer openNowCount, Integer discountedCount, Integer availableCount) {
+        this.restaurants = restaurants;
+        this.categoryCounts = categoryCounts;
+        this.priceRangeCounts = priceRangeCounts;
+        this.openNowCount = openNowCount;
+        this.discountedCount = discountedCount;
+        this.availableCount = availableCount;
+    }
+
+    public Page<RestaurantDTO> getRestaurants() {
+        return this.restaurants;
+    }
+
+    public void setRestaurants(Page<RestaurantDTO> restaurants) {
+        this.restaurants = restaurants;
+    }
+
+    public Map<String, Integer> getCategoryCounts() {
+        return this.categoryCounts;
+    }
+
+    public void setCategoryCounts(Map<String, Integer> categoryCounts) {
+        this.categoryCounts = categoryCounts;
+    }
+
+    public Map<Integer, Integer> getPriceRangeCounts() {
+        return this.priceRangeCounts;
+    }
+
+    public void setPriceRangeCounts(Map<Integer, Integer> priceRangeCounts) {
+        this.priceRangeCounts = priceRangeCounts;
+    }
+
+    public Integer getOpenNowCount() {
+        return this.openNowCount;
+    }
+
+    public void setOpenNowCount(Integer openNowCount) {
+        this.openNowCount = openNowCount;
+    }
+
+    public Integer getDiscountedCount() {
+        return this.discountedCount;
+    }
+
+    public void setDiscountedCount(Integer discountedCount) {
+        this.discountedCount = discountedCount;
+    }
+
+    public Integer getAvailableCount() {
+        return this.availableCount;
+    }
+
+    public void setAvailableCount(Integer availableCount) {
+        this.availableCount = availableCount;
+    }
+}
@@ -0,0 +1,75 @@
+package foodprint.backend.dto;
+
+import java.util.ArrayList;
+
+import foodprint.backend.model.Discount;
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Maps restaurants to their DTOs field by field, producing the same DTOs as a
+ * default ModelMapper without building its reflective type maps on every call.
+ */
+public final class RestaurantMapper {
+
+    private RestaurantMapper() {}
+
+    /**
+     * Converts a restaurant to its DTO
+     * @param restaurant
+     * @return
+     */
+    public static RestaurantDTO toDTO(Restaurant restaurant) {
+        if (restaurant == null) {
+            return null;
+        }
+        RestaurantDTO dto = new RestaurantDTO();
+        dto.setRestaurantId(restaurant.getRestaurantId());
+        dto.setRestaurantName(restaurant.getRestaurantName());
+        dto.setRestaurantLocation(restaurant.getRestaurantLocation());
+        dto.setRestaurantDesc(restaurant.getRestaurantDesc());
+        dto.setRestaurantPriceRange(restaurant.getRestaurantPriceRange());
+        dto.setRestaurantLatitude(restaurant.getRestaurantLatitude());
+        dto.setRestaurantLongitude(restaurant.getRestaurantLongitude());
+        dto.setRestaurantTableCapacity(restaurant.getRestaurantTableCapacity());
+        dto.setRestaurantWeekdayOpeningHour(restaurant.getRestaurantWeekdayOpeningHour());
+        dto.setRestaurantWeekdayOpeningMinutes(restaurant.getRestaurantWeekdayOpeningMinutes());
+        dto.setRestaurantWeekdayClosingHour(restaurant.getRestaurantWeekdayClosingHour());
+        dto.setRestaurantWeekdayClosingMinutes(restaurant.getRestaurantWeekdayClosingMinutes());
+        dto.setRestaurantWeekendOpeningHour(restaurant.getRestaurantWeekendOpeningHour());
+        dto.setRestaurantWeekendOpeningMinutes(restaurant.getRestaurantWeekendOpeningMinutes());
+        dto.setRestaurantWeekendClosingHour(restaurant.getRestaurantWeekendClosingHour());
+        dto.setRestaurantWeekendClosingMinutes(restaurant.getRestaurantWeekendClosingMinutes());
+        dto.setRestaurantCategory(restaurant.getRestaurantCategory() == null ? null : new ArrayList<>(restaurant.getRestaurantCategory()));
+        dto.setPicture(toDTO(restaurant.getPicture()));
+        dto.setDiscount(toDTO(restaurant.getDiscount()));
+        return dto;
+    }
+
+    /**
+     * Converts a picture to its DTO
+     * @param picture
+     * @return
+     */
+    public static PictureDTO toDTO(Picture picture) {
+        if (picture == null) {
+            return null;
+        }
+        PictureDTO dto = new PictureDTO(picture.getTitle(), picture.getDescription(), picture.getUrl());
+        dto.setUrls(picture.getUrls());
+        return dto;
+    }
+
+    /**
+     * Converts a discount to its DTO
+     * @param discount
+     * @return
+     */
+    public static DiscountDTO toDTO(Discount discount) {
+        if (discount == null) {
+            return null;
+        }
+        Long restaurantId = discount.getRestaurant() == null ? null : discount.getRestaurant().getRestaurantId();
+        return new DiscountDTO(restaurantId, discount.getDiscountDescription(), discount.getDiscountPercentage());
+    }
+}
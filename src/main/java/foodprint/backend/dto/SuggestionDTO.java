@@ -0,0 +1,51 @@
+package foodprint.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+public class SuggestionDTO {
+
+    public static final String RESTAURANT = "RESTAURANT";
+    public static final String FOOD = "FOOD";
+    public static final String CATEGORY = "CATEGORY";
+
+    @Schema(defaultValue = RESTAURANT)
+    private String type;
+
+    @Schema(defaultValue = "1", description = "Restaurant or food ID, empty for categories")
+    private Long id;
+
+    @Schema(defaultValue = "Sushi Tei")
+    private String text;
+
+    public SuggestionDTO() {}
+
+    public SuggestionDTO(String type, Long id, String text) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return this.text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
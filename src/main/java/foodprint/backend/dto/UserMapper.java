@@ -0,0 +1,55 @@
+package foodprint.backend.dto;
+
+import foodprint.backend.model.User;
+
+/**
+ * Maps users to and from the DTOs used to change them, field by field
+ */
+public final class UserMapper {
+
+    private UserMapper() {}
+
+    /**
+     * Converts an admin's changes to a user into a user holding only those changes
+     * @param dto
+     * @return
+     */
+    public static User toEntity(AdminUserDTO dto) {
+        User user = new User();
+        user.setFirstName(dto.getFirstName());
+        user.setLastName(dto.getLastName());
+        user.setEmail(dto.getEmail());
+        user.setPassword(dto.getPassword());
+        user.setRoles(dto.getRoles());
+        user.setLastLogin(dto.getLastLogin());
+        user.setRegisteredOn(dto.getRegisteredOn());
+        return user;
+    }
+
+    /**
+     * Converts a user's changes to themselves into a user holding only those changes
+     * @param dto
+     * @return
+     */
+    public static User toEntity(UpdateUserDTO dto) {
+        User user = new User();
+        user.setEmail(dto.getEmail());
+        user.setFirstName(dto.getFirstName());
+        user.setLastName(dto.getLastName());
+        user.setPassword(dto.getNewPassword());
+        return user;
+    }
+
+    /**
+     * Converts a user to the DTO they can change, leaving out the passwords
+     * @param user
+     * @return
+     */
+    public static UpdateUserDTO toUpdateDTO(User user) {
+        UpdateUserDTO dto = new UpdateUserDTO();
+        dto.setEmail(user.getEmail());
+        dto.setFirstName(user.getFirstName());
+        dto.setLastName(user.getLastName());
+        return dto;
+    }
+}
@@ -0,0 +1,19 @@
+package foodprint.backend.exceptions;
+
+public class ServiceUnavailableException extends RuntimeException{
+    public ServiceUnavailableException() {
+        super();
+    }
+
+    public ServiceUnavailableException(String msg) {
+        super(msg);
+    }
+
+    public ServiceUnavailableException(Throwable cause) {
+        super(cause);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,30 @@
+package foodprint.backend.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface DailyFoodDemandRepo extends JpaRepository<DailyFoodDemand, Long> {
+
+    List<DailyFoodDemand> findByRestaurantId(Long restaurantId);
+
+    List<DailyFoodDemand> findByRestaurantIdAndFoodId(Long restaurantId, Long foodId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DailyFoodDemand d SET d.quantity = d.quantity + :delta"
+        + " WHERE d.restaurantId = :restaurantId AND d.demandDate = :demandDate AND d.foodId = :foodId")
+    int add(@Param("restaurantId") Long restaurantId, @Param("demandDate") LocalDate demandDate,
+        @Param("foodId") Long foodId, @Param("delta") Long delta);
+
+    @Query("SELECT d.foodId AS itemId, SUM(d.quantity) AS quantity FROM DailyFoodDemand d"
+        + " WHERE d.restaurantId = :restaurantId AND d.demandDate BETWEEN :from AND :to GROUP BY d.foodId")
+    List<DemandTotal> sumBetween(@Param("restaurantId") Long restaurantId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
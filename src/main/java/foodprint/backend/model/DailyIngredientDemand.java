@@ -0,0 +1,87 @@
+package foodprint.backend.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+/*
+Total quantity of an ingredient needed by the reservations of a restaurant on one day,
+kept up to date as reservations change so that demand over a range of days is a
+sum over a handful of rows
+*/
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "restaurantId", "demandDate", "ingredientId" }))
+@EnableTransactionManagement
+public class DailyIngredientDemand implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "dailyIngredientDemandId")
+    private Long dailyIngredientDemandId;
+
+    @Column(name = "restaurantId", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "demandDate", nullable = false)
+    private LocalDate demandDate;
+
+    @Column(name = "ingredientId", nullable = false)
+    private Long ingredientId;
+
+    @Column(name = "quantity", nullable = false)
+    private Long quantity;
+
+    public DailyIngredientDemand() {}
+
+    public DailyIngredientDemand(Long restaurantId, LocalDate demandDate, Long ingredientId, Long quantity) {
+        this.restaurantId = restaurantId;
+        this.demandDate = demandDate;
+        this.ingredientId = ingredientId;
+        this.quantity = quantity;
+    }
+
+    public Long getDailyIngredientDemandId() {
+        return this.dailyIngredientDemandId;
+    }
+
+    public Long getRestaurantId() {
+        return this.restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public LocalDate getDemandDate() {
+        return this.demandDate;
+    }
+
+    public void setDemandDate(LocalDate demandDate) {
+        this.demandDate = demandDate;
+    }
+
+    public Long getIngredientId() {
+        return this.ingredientId;
+    }
+
+    public void setIngredientId(Long ingredientId) {
+        this.ingredientId = ingredientId;
+    }
+
+    public Long getQuantity() {
+        return this.quantity;
+    }
+
+    public void setQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+}
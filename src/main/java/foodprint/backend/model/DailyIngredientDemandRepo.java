@@ -0,0 +1,28 @@
+package foodprint.backend.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface DailyIngredientDemandRepo extends JpaRepository<DailyIngredientDemand, Long> {
+
+    List<DailyIngredientDemand> findByRestaurantId(Long restaurantId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DailyIngredientDemand d SET d.quantity = d.quantity + :delta"
+        + " WHERE d.restaurantId = :restaurantId AND d.demandDate = :demandDate AND d.ingredientId = :ingredientId")
+    int add(@Param("restaurantId") Long restaurantId, @Param("demandDate") LocalDate demandDate,
+        @Param("ingredientId") Long ingredientId, @Param("delta") Long delta);
+
+    @Query("SELECT d.ingredientId AS itemId, SUM(d.quantity) AS quantity FROM DailyIngredientDemand d"
+        + " WHERE d.restaurantId = :restaurantId AND d.demandDate BETWEEN :from AND :to GROUP BY d.ingredientId")
+    List<DemandTotal> sumBetween(@Param("restaurantId") Long restaurantId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,11 @@
+package foodprint.backend.model;
+
+/*
+Projection of the total quantity of a food or ingredient over a range of days
+*/
+public interface DemandTotal {
+
+    Long getItemId();
+
+    Long getQuantity();
+}
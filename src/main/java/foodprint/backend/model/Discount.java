@@ -9,10 +9,13 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
+import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.validator.constraints.Length;
 
 import org.springframework.transaction.annotation.EnableTransactionManagement;
@@ -31,6 +34,11 @@ public class Discount implements Serializable {
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private Long discountId;
 
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long version;
+
     @OneToOne
     @JoinColumn(name = "restaurantId")
     @Schema(defaultValue="1")
@@ -57,6 +65,10 @@ public class Discount implements Serializable {
         return this.discountId;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
     public Restaurant getRestaurant() {
         return this.restaurant;
     }
@@ -0,0 +1,11 @@
+package foodprint.backend.model;
+
+/*
+Projection of the ID and version of an entity
+*/
+public interface EntityVersion {
+
+    Long getId();
+
+    Long getVersion();
+}
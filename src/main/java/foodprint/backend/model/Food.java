@@ -8,6 +8,7 @@ import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -16,17 +17,21 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import foodprint.backend.service.FoodIndexListener;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Entity
 @Table
+@EntityListeners(FoodIndexListener.class)
 @EnableTransactionManagement
 public class Food implements Serializable {
 
@@ -36,6 +41,11 @@ public class Food implements Serializable {
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private Long foodId;
 
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long version;
+
     @Column(name = "foodName")
     @Schema(defaultValue="Sashimi")
     @NotEmpty(message = "Food name should not be empty")
@@ -70,6 +80,11 @@ public class Food implements Serializable {
     @OneToOne(optional = true)
     private Picture picture;
 
+    // Uploading in the background, and swapped in for the picture once READY
+    @JsonIgnore
+    @OneToOne(optional = true)
+    private Picture pendingPicture;
+
     public Food() {}
 
     public Food(String foodName, Double foodPrice, Double foodDiscount) {
@@ -149,6 +164,10 @@ public class Food implements Serializable {
         this.foodId = foodId;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
     public Picture getPicture() {
         return this.picture;
     }
@@ -156,6 +175,14 @@ public class Food implements Serializable {
     public void setPicture(Picture picture) {
         this.picture = picture;
     }
+
+    public Picture getPendingPicture() {
+        return this.pendingPicture;
+    }
+
+    public void setPendingPicture(Picture pendingPicture) {
+        this.pendingPicture = pendingPicture;
+    }
     
 
 }
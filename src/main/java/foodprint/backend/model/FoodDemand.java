@@ -0,0 +1,15 @@
+package foodprint.backend.model;
+
+import java.time.LocalDateTime;
+
+/*
+Projection of the total quantity of a food ordered in the reservations at a given date
+*/
+public interface FoodDemand {
+
+    LocalDateTime getDate();
+
+    Long getFoodId();
+
+    Long getQuantity();
+}
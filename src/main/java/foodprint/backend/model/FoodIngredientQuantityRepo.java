@@ -1,9 +1,13 @@
 package foodprint.backend.model;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface FoodIngredientQuantityRepo extends JpaRepository<FoodIngredientQuantity, FoodIngredientQuantityKey>{
-    
+
+    List<FoodIngredientQuantity> findByIdFoodIdIn(Collection<Long> foodIds);
 }
@@ -1,11 +1,20 @@
 package foodprint.backend.model;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 @Repository
 public interface FoodRepo extends JpaRepository<Food, Long> {
@@ -22,4 +31,25 @@ public interface FoodRepo extends JpaRepository<Food, Long> {
 
     Optional<Food> findByFoodIdAndRestaurantRestaurantId(Long foodId, Long restaurantId);
 
+    Optional<Food> findByPendingPicturePictureId(Long pictureId);
+
+    @Query("SELECT f.foodId AS foodId, f.foodName AS foodName, f.foodDesc AS foodDesc FROM Food f")
+    List<FoodText> findAllText();
+
+    Page<Food> findByFoodIdIn(Collection<Long> foodIds, Pageable page);
+
+    @Query("SELECT f.foodId AS id, f.version AS version FROM Food f WHERE f.restaurant.restaurantId = :restaurantId ORDER BY f.foodId")
+    List<EntityVersion> findVersionsByRestaurantId(@Param("restaurantId") Long restaurantId);
+
+    @Query("SELECT p.pictureId AS id, p.version AS version FROM Food f JOIN f.picture p"
+        + " WHERE f.restaurant.restaurantId = :restaurantId ORDER BY p.pictureId")
+    List<EntityVersion> findPictureVersionsByRestaurantId(@Param("restaurantId") Long restaurantId);
+
+    @Query("SELECT DISTINCT i.ingredientId AS id, i.version AS version FROM FoodIngredientQuantity q JOIN q.ingredient i"
+        + " WHERE q.food.restaurant.restaurantId = :restaurantId ORDER BY i.ingredientId")
+    List<EntityVersion> findIngredientVersionsByRestaurantId(@Param("restaurantId") Long restaurantId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    Stream<Food> streamByRestaurantRestaurantId(Long restaurantId);
+
 }
@@ -0,0 +1,13 @@
+package foodprint.backend.model;
+
+/*
+Projection of the searchable text of a food
+*/
+public interface FoodText {
+
+    Long getFoodId();
+
+    String getFoodName();
+
+    String getFoodDesc();
+}
@@ -12,11 +12,13 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.validator.constraints.Length;
 
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -32,6 +34,11 @@ public class Ingredient implements Serializable {
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private Long ingredientId;
 
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long version;
+
     @Column(name = "ingredientName")
     @Schema(defaultValue = "Salmon")
     @NotEmpty(message = "Ingredient name should not be empty")
@@ -76,6 +83,10 @@ public class Ingredient implements Serializable {
         return this.ingredientId;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
     public String getIngredientName() {
         return this.ingredientName;
     }
@@ -0,0 +1,15 @@
+package foodprint.backend.model;
+
+import java.time.LocalDateTime;
+
+/*
+Projection of the total quantity of an ingredient needed for the reservations at a given date
+*/
+public interface IngredientDemand {
+
+    LocalDateTime getDate();
+
+    Long getIngredientId();
+
+    Long getQuantity();
+}
@@ -1,5 +1,7 @@
 package foodprint.backend.model;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,5 +13,7 @@ public interface IngredientRepo extends JpaRepository<Ingredient, Long> {
     Ingredient findByIngredientId(Long ingredientId);
 
     Page<Ingredient> findByRestaurantRestaurantId(Pageable page, Long restaurantId);
+
+    List<Ingredient> findByRestaurantRestaurantId(Long restaurantId);
     
 }
@@ -9,16 +9,20 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import foodprint.backend.config.IdSequenceAligner;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Entity
 public class LineItem implements Serializable {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence rather than IDENTITY so that Hibernate can batch inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lineItemSeq")
+    @SequenceGenerator(name = "lineItemSeq", sequenceName = "lineItemSeq", allocationSize = IdSequenceAligner.ALLOCATION_SIZE)
     @Column(name = "lineItemId")
     @Schema(defaultValue="1")
     private Long lineItemId;
@@ -1,6 +1,8 @@
 package foodprint.backend.model;
 
 import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.persistence.Column;
@@ -8,13 +10,22 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import io.swagger.v3.oas.annotations.media.Schema;
+
 @Entity
-@Table
+@Table(indexes = {
+    // Finds a stored picture with the same content as an upload
+    @Index(name = "idxPictureContentHash", columnList = "contentHash")
+})
 @EnableTransactionManagement
 public class Picture implements Serializable {
     @Id
@@ -22,6 +33,11 @@ public class Picture implements Serializable {
     @Column(name = "pictureId" )
     private Long pictureId;
 
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long version;
+
     @Column(name = "title" )
     @NotEmpty(message = "Picture title should not be empty")
     private String title;
@@ -39,6 +55,46 @@ public class Picture implements Serializable {
     @Column(name = "url")
     private String url;
 
+    // Hex SHA-256 of the uploaded bytes. Pictures with the same content share their stored image,
+    // which is kept until the last of them is deleted. Null for pictures stored before hashing
+    @Column(name = "contentHash", length = 64)
+    @JsonIgnore
+    private String contentHash;
+
+    // Pictures stored before uploads could be asynchronous are all READY
+    public enum PictureStatus {
+        READY, PENDING, FAILED
+    }
+    @Column(name = "status")
+    @ColumnDefault("0")
+    @Schema(defaultValue = "READY")
+    private PictureStatus status = PictureStatus.READY;
+
+    // Resized copies of the image, by the longest edge in pixels they are scaled down to
+    public enum PictureSize {
+        THUMB(160), CARD(480), FULL(1600);
+
+        private final int maxEdge;
+
+        PictureSize(int maxEdge) {
+            this.maxEdge = maxEdge;
+        }
+
+        public int getMaxEdge() {
+            return maxEdge;
+        }
+    }
+
+    // Null until the sizes are stored, and for pictures stored before there were any
+    @Column(name = "thumbUrl")
+    private String thumbUrl;
+
+    @Column(name = "cardUrl")
+    private String cardUrl;
+
+    @Column(name = "fullUrl")
+    private String fullUrl;
+
     public Picture(String title, String description, String imagePath, String imageFileName, String url) {
         this.title = title;
         this.description = description;
@@ -63,6 +119,10 @@ public class Picture implements Serializable {
         this.pictureId = id;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
     public String getTitle() {
         return this.title;
     }
@@ -128,6 +188,95 @@ public class Picture implements Serializable {
         this.url = url;
     }
 
+    public String getThumbUrl() {
+        return thumbUrl;
+    }
+
+    public void setThumbUrl(String thumbUrl) {
+        this.thumbUrl = thumbUrl;
+    }
+
+    public String getCardUrl() {
+        return cardUrl;
+    }
+
+    public void setCardUrl(String cardUrl) {
+        this.cardUrl = cardUrl;
+    }
+
+    public String getFullUrl() {
+        return fullUrl;
+    }
+
+    public void setFullUrl(String fullUrl) {
+        this.fullUrl = fullUrl;
+    }
+
+    /**
+     * Gets the URL of a size of this picture, or of the uploaded image if that size
+     * has not been stored
+     * @param size
+     * @return
+     */
+    public String getUrl(PictureSize size) {
+        String sizeUrl = getStoredUrl(size);
+        return sizeUrl == null ? url : sizeUrl;
+    }
+
+    /**
+     * Gets the URL of a size of this picture
+     * @param size
+     * @return null if that size has not been stored
+     */
+    public String getStoredUrl(PictureSize size) {
+        switch (size) {
+            case THUMB:
+                return thumbUrl;
+            case CARD:
+                return cardUrl;
+            default:
+                return fullUrl;
+        }
+    }
+
+    /**
+     * Gets the URL of every size of this picture
+     * @return
+     */
+    public Map<PictureSize, String> getUrls() {
+        Map<PictureSize, String> urls = new EnumMap<>(PictureSize.class);
+        for (PictureSize size : PictureSize.values()) {
+            urls.put(size, getUrl(size));
+        }
+        return urls;
+    }
+
+    /**
+     * Sets the URLs of the sizes that were stored
+     * @param urls
+     */
+    public void setUrls(Map<PictureSize, String> urls) {
+        this.thumbUrl = urls.get(PictureSize.THUMB);
+        this.cardUrl = urls.get(PictureSize.CARD);
+        this.fullUrl = urls.get(PictureSize.FULL);
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public PictureStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PictureStatus status) {
+        this.status = status;
+    }
+
 
     @Override
     public boolean equals(Object o) {
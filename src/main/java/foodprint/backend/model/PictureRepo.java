@@ -1,11 +1,40 @@
 package foodprint.backend.model;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import foodprint.backend.model.Picture.PictureStatus;
 
 @Repository
 public interface PictureRepo extends JpaRepository<Picture, Long> {
     
     Picture findByTitle(String title);
 
+    List<Picture> findByStatus(PictureStatus status);
+
+    Optional<Picture> findFirstByContentHashAndStatus(String contentHash, PictureStatus status);
+
+    // Pictures sharing a stored image have the same image path, so this counts the references to it
+    long countByImagePath(String imagePath);
+
+    // Bumps the version as well, so entity tags that cover the picture change with its status
+    @Transactional
+    @Modifying
+    @Query("UPDATE Picture p SET p.status = :status, p.version = p.version + 1 WHERE p.pictureId = :pictureId")
+    int updateStatus(@Param("pictureId") Long pictureId, @Param("status") PictureStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Picture p SET p.status = :status, p.thumbUrl = :thumbUrl, p.cardUrl = :cardUrl, p.fullUrl = :fullUrl, "
+        + "p.version = p.version + 1 WHERE p.pictureId = :pictureId")
+    int updateStatusAndSizes(@Param("pictureId") Long pictureId, @Param("status") PictureStatus status,
+        @Param("thumbUrl") String thumbUrl, @Param("cardUrl") String cardUrl, @Param("fullUrl") String fullUrl);
+
 }
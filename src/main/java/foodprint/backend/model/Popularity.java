@@ -0,0 +1,11 @@
+package foodprint.backend.model;
+
+/*
+Projection of how often a restaurant or food has been booked
+*/
+public interface Popularity {
+
+    Long getItemId();
+
+    Long getScore();
+}
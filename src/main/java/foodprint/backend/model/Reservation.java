@@ -10,9 +10,11 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -20,17 +22,24 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import foodprint.backend.config.IdSequenceAligner;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Entity
-@Table
+@Table(indexes = {
+    // Keyset pagination walks reservations of a user or restaurant in (date, reservationId) order
+    @Index(name = "idxReservationUserDate", columnList = "userId, date, reservationId"),
+    @Index(name = "idxReservationRestaurantDate", columnList = "restaurantId, date, reservationId")
+})
 @EnableTransactionManagement
 
 public class Reservation implements Serializable {
     
     // Properties
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence rather than IDENTITY so that Hibernate can batch inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservationSeq")
+    @SequenceGenerator(name = "reservationSeq", sequenceName = "reservationSeq", allocationSize = IdSequenceAligner.ALLOCATION_SIZE)
     @Column(name = "reservationId")
     @Schema(defaultValue="1")
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
@@ -0,0 +1,14 @@
+package foodprint.backend.model;
+
+import java.time.LocalDateTime;
+
+/*
+Projection of how many reservations a restaurant holds at a given date, used for
+availability checks so that no Reservation entities need to be loaded
+*/
+public interface ReservationCount {
+
+    LocalDateTime getDate();
+
+    Long getReservations();
+}
@@ -0,0 +1,13 @@
+package foodprint.backend.model;
+
+import java.time.LocalDateTime;
+
+/*
+Projection of an unpaid reservation that is holding a slot until it is paid for
+*/
+public interface ReservationHold {
+
+    Long getReservationId();
+
+    LocalDateTime getReservedOn();
+}
@@ -1,13 +1,29 @@
 package foodprint.backend.model;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import foodprint.backend.model.Reservation.ReservationStatus;
 
 @Repository
 public interface ReservationRepo extends JpaRepository<Reservation, Long> {
@@ -15,6 +31,13 @@ public interface ReservationRepo extends JpaRepository<Reservation, Long> {
     List<Reservation> findByDate(LocalDateTime dateOfReservation);
     
     List<Reservation> findByRestaurant(Restaurant restaurant);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    Stream<Reservation> streamByRestaurant(Restaurant restaurant);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT r FROM Reservation r")
+    Stream<Reservation> streamAll();
     
     List<Reservation> findByRestaurantAndDateBetween(Restaurant restaurant, LocalDateTime after, LocalDateTime before);
 
@@ -28,5 +51,75 @@ public interface ReservationRepo extends JpaRepository<Reservation, Long> {
 
     Optional<Reservation> findByReservationIdAndUserId(Long id, Long userId);
 
+    @Query("SELECT r.date AS date, COUNT(r) AS reservations FROM Reservation r WHERE r.restaurant.restaurantId = :restaurantId"
+        + " AND r.date >= :after AND r.date < :before AND r.status <> :excludedStatus GROUP BY r.date")
+    List<ReservationCount> countHeldByDateBetween(@Param("restaurantId") Long restaurantId, @Param("after") LocalDateTime after,
+        @Param("before") LocalDateTime before, @Param("excludedStatus") ReservationStatus excludedStatus);
+
+    @Query("SELECT r.restaurant.restaurantId AS restaurantId, r.date AS date, COUNT(r) AS reservations FROM Reservation r"
+        + " WHERE r.restaurant.restaurantId IN :restaurantIds AND r.date >= :after AND r.date < :before"
+        + " AND r.status <> :excludedStatus GROUP BY r.restaurant.restaurantId, r.date")
+    List<RestaurantReservationCount> countHeldByRestaurantsAndDateBetween(@Param("restaurantIds") Collection<Long> restaurantIds,
+        @Param("after") LocalDateTime after, @Param("before") LocalDateTime before, @Param("excludedStatus") ReservationStatus excludedStatus);
+
+    @Query("SELECT COUNT(r) FROM Reservation r WHERE r.restaurant.restaurantId = :restaurantId"
+        + " AND r.date >= :after AND r.date < :before AND r.status <> :excludedStatus")
+    long countHeldBetween(@Param("restaurantId") Long restaurantId, @Param("after") LocalDateTime after,
+        @Param("before") LocalDateTime before, @Param("excludedStatus") ReservationStatus excludedStatus);
+
+    Slice<Reservation> findByUserOrderByDateDescReservationIdDesc(User user, Pageable page);
+
+    @Query("SELECT r FROM Reservation r WHERE r.user = :user"
+        + " AND (r.date < :date OR (r.date = :date AND r.reservationId < :reservationId))"
+        + " ORDER BY r.date DESC, r.reservationId DESC")
+    Slice<Reservation> findByUserBeforeKey(@Param("user") User user, @Param("date") LocalDateTime date,
+        @Param("reservationId") Long reservationId, Pageable page);
+
+    @Query("SELECT r FROM Reservation r WHERE r.user = :user"
+        + " AND (r.date > :date OR (r.date = :date AND r.reservationId > :reservationId))"
+        + " ORDER BY r.date ASC, r.reservationId ASC")
+    Slice<Reservation> findByUserAfterKey(@Param("user") User user, @Param("date") LocalDateTime date,
+        @Param("reservationId") Long reservationId, Pageable page);
+
+    @Query("SELECT r FROM Reservation r WHERE r.restaurant = :restaurant AND r.date <= :before"
+        + " AND (r.date > :date OR (r.date = :date AND r.reservationId > :reservationId))"
+        + " ORDER BY r.date ASC, r.reservationId ASC")
+    Slice<Reservation> findByRestaurantAfterKey(@Param("restaurant") Restaurant restaurant, @Param("date") LocalDateTime date,
+        @Param("reservationId") Long reservationId, @Param("before") LocalDateTime before, Pageable page);
+
+    @Query("SELECT r.date AS date, f.foodId AS foodId, SUM(li.quantity) AS quantity FROM Reservation r JOIN r.lineItems li JOIN li.food f"
+        + " WHERE r.restaurant.restaurantId = :restaurantId AND r.status <> :excludedStatus GROUP BY r.date, f.foodId")
+    List<FoodDemand> sumFoodDemandByDate(@Param("restaurantId") Long restaurantId, @Param("excludedStatus") ReservationStatus excludedStatus);
+
+    @Query("SELECT r.date AS date, fiq.ingredient.ingredientId AS ingredientId, SUM(fiq.quantity * li.quantity) AS quantity"
+        + " FROM Reservation r JOIN r.lineItems li JOIN li.food f JOIN f.foodIngredientQuantity fiq"
+        + " WHERE r.restaurant.restaurantId = :restaurantId AND r.status <> :excludedStatus GROUP BY r.date, fiq.ingredient.ingredientId")
+    List<IngredientDemand> sumIngredientDemandByDate(@Param("restaurantId") Long restaurantId, @Param("excludedStatus") ReservationStatus excludedStatus);
+
+    @Query("SELECT r.restaurant.restaurantId AS itemId, COUNT(r) AS score FROM Reservation r"
+        + " WHERE r.status <> :excludedStatus GROUP BY r.restaurant.restaurantId")
+    List<Popularity> countByRestaurant(@Param("excludedStatus") ReservationStatus excludedStatus);
+
+    @Query("SELECT li.food.foodId AS itemId, SUM(li.quantity) AS score FROM Reservation r JOIN r.lineItems li"
+        + " WHERE r.status <> :excludedStatus GROUP BY li.food.foodId")
+    List<Popularity> sumQuantityByFood(@Param("excludedStatus") ReservationStatus excludedStatus);
+
+    List<ReservationHold> findHoldsByStatusAndDateAfter(ReservationStatus status, LocalDateTime date);
+
+    @Query("SELECT r.status FROM Reservation r WHERE r.reservationId = :reservationId")
+    Optional<ReservationStatus> findStatusById(@Param("reservationId") Long reservationId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Reservation> findByReservationIdInAndStatus(Collection<Long> reservationIds, ReservationStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :status WHERE r.reservationId IN :reservationIds")
+    int updateStatus(@Param("reservationIds") Collection<Long> reservationIds, @Param("status") ReservationStatus status);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :status WHERE r.reservationId = :reservationId AND r.status = :expectedStatus")
+    int updateStatusIfCurrent(@Param("reservationId") Long reservationId, @Param("expectedStatus") ReservationStatus expectedStatus,
+        @Param("status") ReservationStatus status);
 }
@@ -0,0 +1,75 @@
+package foodprint.backend.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+/*
+Number of reservations claimed for a single restaurant slot. The unique key on
+(restaurantId, slotStart) together with conditional updates on claimed is what
+prevents overbooking when several nodes take bookings at the same time.
+*/
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "restaurantId", "slotStart" }))
+@EnableTransactionManagement
+public class ReservationSlot implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "reservationSlotId")
+    private Long reservationSlotId;
+
+    @Column(name = "restaurantId", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "slotStart", nullable = false)
+    private LocalDateTime slotStart;
+
+    @Column(name = "claimed", nullable = false)
+    private Integer claimed;
+
+    public ReservationSlot() {}
+
+    public ReservationSlot(Long restaurantId, LocalDateTime slotStart, Integer claimed) {
+        this.restaurantId = restaurantId;
+        this.slotStart = slotStart;
+        this.claimed = claimed;
+    }
+
+    public Long getReservationSlotId() {
+        return this.reservationSlotId;
+    }
+
+    public Long getRestaurantId() {
+        return this.restaurantId;
+    }
+
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+
+    public LocalDateTime getSlotStart() {
+        return this.slotStart;
+    }
+
+    public void setSlotStart(LocalDateTime slotStart) {
+        this.slotStart = slotStart;
+    }
+
+    public Integer getClaimed() {
+        return this.claimed;
+    }
+
+    public void setClaimed(Integer claimed) {
+        this.claimed = claimed;
+    }
+}
@@ -0,0 +1,31 @@
+package foodprint.backend.model;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ReservationSlotRepo extends JpaRepository<ReservationSlot, Long> {
+
+    Optional<ReservationSlot> findByRestaurantIdAndSlotStart(Long restaurantId, LocalDateTime slotStart);
+
+    boolean existsByRestaurantIdAndSlotStart(Long restaurantId, LocalDateTime slotStart);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReservationSlot s SET s.claimed = s.claimed + 1"
+        + " WHERE s.restaurantId = :restaurantId AND s.slotStart = :slotStart AND s.claimed < :capacity")
+    int claim(@Param("restaurantId") Long restaurantId, @Param("slotStart") LocalDateTime slotStart, @Param("capacity") Integer capacity);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ReservationSlot s SET s.claimed = s.claimed - 1"
+        + " WHERE s.restaurantId = :restaurantId AND s.slotStart = :slotStart AND s.claimed > 0")
+    int release(@Param("restaurantId") Long restaurantId, @Param("slotStart") LocalDateTime slotStart);
+}
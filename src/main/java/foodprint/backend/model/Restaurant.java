@@ -10,6 +10,7 @@ import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -17,6 +18,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
@@ -25,19 +29,22 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import foodprint.backend.service.RestaurantIndexListener;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Entity
 @Table
+@EntityListeners(RestaurantIndexListener.class)
 @EnableTransactionManagement
 @JsonIgnoreProperties("food")
 
-public class Restaurant implements Serializable {
+public class Restaurant implements Serializable, RestaurantHours {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "restaurantId")
@@ -45,6 +52,11 @@ public class Restaurant implements Serializable {
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private Long restaurantId;
 
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long version;
+
     @Column(name = "restaurantName")
     @Schema(defaultValue="Sushi Tei")
     @NotEmpty(message = "Restaurant name should not be empty")
@@ -68,6 +80,18 @@ public class Restaurant implements Serializable {
     @Max(5)
     private Integer restaurantPriceRange;
 
+    @Column(name = "latitude")
+    @Schema(defaultValue = "1.3496")
+    @DecimalMin("-90.0")
+    @DecimalMax("90.0")
+    private Double restaurantLatitude;
+
+    @Column(name = "longitude")
+    @Schema(defaultValue = "103.8736")
+    @DecimalMin("-180.0")
+    @DecimalMax("180.0")
+    private Double restaurantLongitude;
+
     @Column(name = "restaurantTableCapacity")
     @Schema(defaultValue="15")
     @Min(0)
@@ -125,6 +149,11 @@ public class Restaurant implements Serializable {
     @OneToOne(optional = true, cascade = CascadeType.ALL)/* (mappedBy = "restaurant") */
     private Picture picture;
 
+    // Uploading in the background, and swapped in for the picture once READY
+    @JsonIgnore
+    @OneToOne(optional = true)
+    private Picture pendingPicture;
+
     @ElementCollection
     @CollectionTable(name = "categories", joinColumns = @JoinColumn(name = "restaurantId"))
     @Column(name = "restaurantCategory")
@@ -207,6 +236,14 @@ public class Restaurant implements Serializable {
         this.restaurantId = restaurantId;
     }
 
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getRestaurantName() {
         return this.restaurantName;
     }
@@ -239,6 +276,22 @@ public class Restaurant implements Serializable {
         this.restaurantPriceRange = restaurantPriceRange;
     }
 
+    public Double getRestaurantLatitude() {
+        return this.restaurantLatitude;
+    }
+
+    public void setRestaurantLatitude(Double restaurantLatitude) {
+        this.restaurantLatitude = restaurantLatitude;
+    }
+
+    public Double getRestaurantLongitude() {
+        return this.restaurantLongitude;
+    }
+
+    public void setRestaurantLongitude(Double restaurantLongitude) {
+        this.restaurantLongitude = restaurantLongitude;
+    }
+
     public Integer getRestaurantTableCapacity() {
         return this.restaurantTableCapacity;
     }
@@ -367,6 +420,14 @@ public class Restaurant implements Serializable {
         this.picture = picture;
     }
 
+    public Picture getPendingPicture() {
+        return this.pendingPicture;
+    }
+
+    public void setPendingPicture(Picture pendingPicture) {
+        this.pendingPicture = pendingPicture;
+    }
+
     public Restaurant restaurantId(Long restaurantId) {
         setRestaurantId(restaurantId);
         return this;
@@ -0,0 +1,11 @@
+package foodprint.backend.model;
+
+/*
+Projection of one category of a restaurant
+*/
+public interface RestaurantCategory {
+
+    Long getRestaurantId();
+
+    String getCategory();
+}
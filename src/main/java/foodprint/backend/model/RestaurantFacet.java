@@ -0,0 +1,13 @@
+package foodprint.backend.model;
+
+/*
+Projection of the price range, opening hours and discount of a restaurant, for filtering listings
+*/
+public interface RestaurantFacet extends RestaurantHours {
+
+    Long getRestaurantId();
+
+    Integer getRestaurantPriceRange();
+
+    Long getDiscountId();
+}
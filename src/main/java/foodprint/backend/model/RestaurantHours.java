@@ -0,0 +1,23 @@
+package foodprint.backend.model;
+
+/*
+Opening hours of a restaurant, implemented by the restaurant itself and by projections that need its hours
+*/
+public interface RestaurantHours {
+
+    Integer getRestaurantWeekdayOpeningHour();
+
+    Integer getRestaurantWeekdayOpeningMinutes();
+
+    Integer getRestaurantWeekdayClosingHour();
+
+    Integer getRestaurantWeekdayClosingMinutes();
+
+    Integer getRestaurantWeekendOpeningHour();
+
+    Integer getRestaurantWeekendOpeningMinutes();
+
+    Integer getRestaurantWeekendClosingHour();
+
+    Integer getRestaurantWeekendClosingMinutes();
+}
@@ -0,0 +1,15 @@
+package foodprint.backend.model;
+
+/*
+Projection of where a restaurant is and how expensive it is
+*/
+public interface RestaurantPlace {
+
+    Long getRestaurantId();
+
+    Double getRestaurantLatitude();
+
+    Double getRestaurantLongitude();
+
+    Integer getRestaurantPriceRange();
+}
@@ -1,10 +1,19 @@
 package foodprint.backend.model;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 @Repository
 public interface RestaurantRepo extends JpaRepository<Restaurant, Long> {
@@ -13,10 +22,41 @@ public interface RestaurantRepo extends JpaRepository<Restaurant, Long> {
 
     Restaurant findByRestaurantId(Long restaurantId);
 
+    Optional<Restaurant> findByPendingPicturePictureId(Long pictureId);
+
     List<Restaurant> findByRestaurantNameContains(String restaurantName);
 
     List<Restaurant> findByRestaurantNameContainsIgnoreCase(String name);
 
     Page<Restaurant> findByRestaurantNameContainsIgnoreCase(Pageable page, String name);
 
+    @Query("SELECT r.restaurantId AS restaurantId, c AS category FROM Restaurant r JOIN r.restaurantCategory c")
+    List<RestaurantCategory> findAllCategories();
+
+    @Query("SELECT r.restaurantId AS restaurantId, r.restaurantName AS restaurantName, r.restaurantDesc AS restaurantDesc,"
+        + " r.restaurantLocation AS restaurantLocation FROM Restaurant r")
+    List<RestaurantText> findAllText();
+
+    @Query("SELECT r.restaurantId AS restaurantId, r.restaurantLatitude AS restaurantLatitude, r.restaurantLongitude AS restaurantLongitude,"
+        + " r.restaurantPriceRange AS restaurantPriceRange FROM Restaurant r"
+        + " WHERE r.restaurantLatitude IS NOT NULL AND r.restaurantLongitude IS NOT NULL")
+    List<RestaurantPlace> findAllPlaces();
+
+    @Query("SELECT r.restaurantId AS restaurantId, r.restaurantPriceRange AS restaurantPriceRange,"
+        + " r.restaurantWeekdayOpeningHour AS restaurantWeekdayOpeningHour, r.restaurantWeekdayOpeningMinutes AS restaurantWeekdayOpeningMinutes,"
+        + " r.restaurantWeekdayClosingHour AS restaurantWeekdayClosingHour, r.restaurantWeekdayClosingMinutes AS restaurantWeekdayClosingMinutes,"
+        + " r.restaurantWeekendOpeningHour AS restaurantWeekendOpeningHour, r.restaurantWeekendOpeningMinutes AS restaurantWeekendOpeningMinutes,"
+        + " r.restaurantWeekendClosingHour AS restaurantWeekendClosingHour, r.restaurantWeekendClosingMinutes AS restaurantWeekendClosingMinutes,"
+        + " d.discountId AS discountId FROM Restaurant r LEFT JOIN r.discount d ORDER BY r.restaurantId")
+    List<RestaurantFacet> findAllFacets();
+
+    Page<Restaurant> findByRestaurantIdIn(Collection<Long> restaurantIds, Pageable page);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT r FROM Restaurant r")
+    Stream<Restaurant> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    Stream<Restaurant> streamByRestaurantIdInOrderByRestaurantId(Collection<Long> restaurantIds);
+
 }
\ No newline at end of file
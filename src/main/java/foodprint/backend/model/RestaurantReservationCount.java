@@ -0,0 +1,10 @@
+package foodprint.backend.model;
+
+/*
+Projection of how many reservations are held at a given date, for queries that
+span several restaurants at once
+*/
+public interface RestaurantReservationCount extends ReservationCount {
+
+    Long getRestaurantId();
+}
@@ -0,0 +1,15 @@
+package foodprint.backend.model;
+
+/*
+Projection of the searchable text of a restaurant, apart from its categories
+*/
+public interface RestaurantText {
+
+    Long getRestaurantId();
+
+    String getRestaurantName();
+
+    String getRestaurantDesc();
+
+    String getRestaurantLocation();
+}
@@ -0,0 +1,126 @@
+package foodprint.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.ReservationSlot;
+import foodprint.backend.model.ReservationSlotRepo;
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Claims and releases restaurant capacity one slot at a time.
+ *
+ * Correctness comes from the database: every claim is a conditional update on the
+ * slot's ReservationSlot row that only succeeds while claimed is below capacity, so
+ * concurrent bookings on any number of nodes can never overbook a slot. Within this
+ * node, claims on the same slot are additionally serialised on one of a fixed set of
+ * lock stripes so they queue here instead of on the database row lock, while claims
+ * for other restaurants and slots almost always land on a different stripe.
+ */
+@Component
+public class BookingEngine {
+
+    private static final int STRIPES = 256;
+
+    private final ReservationSlotRepo reservationSlotRepo;
+
+    private final ReservationRepo reservationRepo;
+
+    private final Lock[] stripes = new Lock[STRIPES];
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public BookingEngine(ReservationSlotRepo reservationSlotRepo, ReservationRepo reservationRepo) {
+        this.reservationSlotRepo = reservationSlotRepo;
+        this.reservationRepo = reservationRepo;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the start of the slot that a given time falls into
+     * @param dateTime
+     * @return
+     */
+    public static LocalDateTime slotStartOf(LocalDateTime dateTime) {
+        return SlotOccupancyIndex.slotStart(dateTime.toLocalDate(), SlotOccupancyIndex.slotOfDay(dateTime));
+    }
+
+    /**
+     * Atomically claims one unit of capacity in the slot that a given time falls into
+     * @param restaurant
+     * @param dateTime
+     * @return true if the slot had capacity left and has been claimed
+     */
+    public boolean claim(Restaurant restaurant, LocalDateTime dateTime) {
+        Long restaurantId = restaurant.getRestaurantId();
+        LocalDateTime slotStart = slotStartOf(dateTime);
+        Integer capacity = restaurant.getRestaurantTableCapacity();
+
+        Lock lock = stripeFor(restaurantId, slotStart);
+        lock.lock();
+        try {
+            if (reservationSlotRepo.claim(restaurantId, slotStart, capacity) == 1) {
+                return true;
+            }
+            if (reservationSlotRepo.existsByRestaurantIdAndSlotStart(restaurantId, slotStart)) {
+                // Slot is being tracked and is already full
+                return false;
+            }
+            createSlot(restaurantId, slotStart);
+            return reservationSlotRepo.claim(restaurantId, slotStart, capacity) == 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases one unit of capacity in the slot that a given time falls into
+     * @param restaurantId
+     * @param dateTime
+     */
+    public void release(Long restaurantId, LocalDateTime dateTime) {
+        LocalDateTime slotStart = slotStartOf(dateTime);
+        Lock lock = stripeFor(restaurantId, slotStart);
+        lock.lock();
+        try {
+            if (reservationSlotRepo.release(restaurantId, slotStart) == 0) {
+                log.warn("Released slot {} of restaurant {} that had nothing claimed", slotStart, restaurantId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts tracking a slot, seeding it with the reservations that already exist for it
+     */
+    private void createSlot(Long restaurantId, LocalDateTime slotStart) {
+        long existing = reservationRepo.countHeldBetween(restaurantId, slotStart,
+            slotStart.plusMinutes(SlotOccupancyIndex.SLOT_MINUTES), ReservationStatus.CANCELLED);
+        try {
+            reservationSlotRepo.saveAndFlush(new ReservationSlot(restaurantId, slotStart, (int) existing));
+        } catch (DataIntegrityViolationException e) {
+            // Another node started tracking the slot first, its row is just as good
+            log.debug("Slot {} of restaurant {} already created elsewhere", slotStart, restaurantId);
+        }
+    }
+
+    private Lock stripeFor(Long restaurantId, LocalDateTime slotStart) {
+        int hash = Objects.hash(restaurantId, slotStart);
+        hash ^= (hash >>> 16);
+        return stripes[Math.floorMod(hash, STRIPES)];
+    }
+}
@@ -0,0 +1,162 @@
+package foodprint.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Food;
+import foodprint.backend.model.FoodRepo;
+import foodprint.backend.model.FoodText;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.model.RestaurantText;
+
+/**
+ * Full-text search over restaurants and their dishes.
+ *
+ * Restaurants are indexed on their name, categories, location and description,
+ * and foods on their name and description, with matches in the name counting the
+ * most. Both indexes are loaded with projection queries the first time either is
+ * searched, then kept up to date as restaurants and foods are saved and deleted.
+ */
+@Component
+public class CatalogSearch {
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float LOCATION_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private final RestaurantRepo restaurantRepo;
+
+    private final FoodRepo foodRepo;
+
+    private final TextIndex restaurants = new TextIndex();
+
+    private final TextIndex foods = new TextIndex();
+
+    private volatile boolean loaded;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public CatalogSearch(RestaurantRepo restaurantRepo, FoodRepo foodRepo) {
+        this.restaurantRepo = restaurantRepo;
+        this.foodRepo = foodRepo;
+    }
+
+    /**
+     * Gets one page of the restaurants matching a query, best match first
+     * @param query
+     * @param offset
+     * @param limit
+     * @return
+     */
+    public TextIndex.Hits searchRestaurants(String query, int offset, int limit) {
+        ensureLoaded();
+        return restaurants.search(query, offset, limit);
+    }
+
+    /**
+     * Gets one page of the foods matching a query, best match first
+     * @param query
+     * @param offset
+     * @param limit
+     * @return
+     */
+    public TextIndex.Hits searchFoods(String query, int offset, int limit) {
+        ensureLoaded();
+        return foods.search(query, offset, limit);
+    }
+
+    /**
+     * Indexes a restaurant that was created or updated
+     * @param restaurant
+     */
+    public synchronized void putRestaurant(Restaurant restaurant) {
+        if (loaded && restaurant.getRestaurantId() != null) {
+            restaurants.put(restaurant.getRestaurantId(), restaurantDocument(restaurant.getRestaurantName(),
+                restaurant.getRestaurantDesc(), restaurant.getRestaurantLocation(), restaurant.getRestaurantCategory()));
+        }
+    }
+
+    /**
+     * Drops a deleted restaurant from the index
+     * @param restaurantId
+     */
+    public synchronized void removeRestaurant(Long restaurantId) {
+        if (loaded && restaurantId != null) {
+            restaurants.remove(restaurantId);
+        }
+    }
+
+    /**
+     * Indexes a food that was created or updated
+     * @param food
+     */
+    public synchronized void putFood(Food food) {
+        if (loaded && food.getFoodId() != null) {
+            foods.put(food.getFoodId(), foodDocument(food.getFoodName(), food.getFoodDesc()));
+        }
+    }
+
+    /**
+     * Drops a deleted food from the index
+     * @param foodId
+     */
+    public synchronized void removeFood(Long foodId) {
+        if (loaded && foodId != null) {
+            foods.remove(foodId);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            Map<Long, List<String>> categories = new HashMap<>();
+            for (RestaurantCategory row : restaurantRepo.findAllCategories()) {
+                categories.computeIfAbsent(row.getRestaurantId(), key -> new ArrayList<>()).add(row.getCategory());
+            }
+            for (RestaurantText row : restaurantRepo.findAllText()) {
+                restaurants.put(row.getRestaurantId(), restaurantDocument(row.getRestaurantName(), row.getRestaurantDesc(),
+                    row.getRestaurantLocation(), categories.get(row.getRestaurantId())));
+            }
+            for (FoodText row : foodRepo.findAllText()) {
+                foods.put(row.getFoodId(), foodDocument(row.getFoodName(), row.getFoodDesc()));
+            }
+            loaded = true;
+            log.info("Indexed {} restaurants and {} foods for search", restaurants.size(), foods.size());
+        }
+    }
+
+    private static TextIndex.Document restaurantDocument(String name, String description, String location, List<String> categories) {
+        TextIndex.Document document = new TextIndex.Document()
+            .add(name, NAME_WEIGHT)
+            .add(location, LOCATION_WEIGHT)
+            .add(description, DESCRIPTION_WEIGHT);
+        if (categories != null) {
+            for (String category : categories) {
+                document.add(category, CATEGORY_WEIGHT);
+            }
+        }
+        return document;
+    }
+
+    private static TextIndex.Document foodDocument(String name, String description) {
+        return new TextIndex.Document()
+            .add(name, NAME_WEIGHT)
+            .add(description, DESCRIPTION_WEIGHT);
+    }
+}
@@ -0,0 +1,211 @@
+package foodprint.backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantRepo;
+
+/**
+ * Inverted index from restaurant category to the IDs of the restaurants in it.
+ *
+ * The index is loaded from the database the first time it is read, with a single
+ * query over the categories table, and kept up to date as restaurants are saved
+ * and deleted. Reads never lock: every change publishes a new immutable view
+ * holding the sorted category names and the sorted restaurant IDs of each one.
+ * Each view is numbered, so that clients can be told whether the categories
+ * changed without asking the database.
+ */
+@Component
+public class CategoryIndex {
+
+    private final RestaurantRepo restaurantRepo;
+
+    // Only touched while holding the lock on this index
+    private final Map<Long, Set<String>> categoriesByRestaurant = new HashMap<>();
+    private final Map<String, TreeSet<Long>> restaurantsByCategory = new HashMap<>();
+    private long generation;
+
+    // Numbers start again on restart, so they are told apart by when this index was made
+    private final long epoch = System.currentTimeMillis();
+
+    private volatile View view;
+
+    @Autowired
+    public CategoryIndex(RestaurantRepo restaurantRepo) {
+        this.restaurantRepo = restaurantRepo;
+    }
+
+    /**
+     * Gets every category that at least one restaurant belongs to, sorted by name
+     * @return
+     */
+    public List<String> getCategories() {
+        return Collections.unmodifiableList(Arrays.asList(view().categories));
+    }
+
+    /**
+     * Gets the entity tag of the categories, which changes whenever a restaurant
+     * joins or leaves a category
+     * @return
+     */
+    public String getTag() {
+        return new VersionVector("categories").add(epoch).add(view().generation).toETag();
+    }
+
+    /**
+     * Gets the IDs of the restaurants in a category, in ascending order
+     * @param category
+     * @return
+     */
+    public List<Long> getRestaurantIds(String category) {
+        long[] ids = view().restaurantIds.get(category);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the categories of a restaurant that was created or updated
+     * @param restaurant
+     */
+    public synchronized void put(Restaurant restaurant) {
+        if (view == null || restaurant.getRestaurantId() == null) {
+            // Not loaded yet, the change is read from the database on first use
+            return;
+        }
+        Collection<String> categories = restaurant.getRestaurantCategory() == null
+            ? Collections.emptyList() : restaurant.getRestaurantCategory();
+        Set<String> changed = unlink(restaurant.getRestaurantId());
+        changed.addAll(link(restaurant.getRestaurantId(), categories));
+        publish(changed);
+    }
+
+    /**
+     * Drops a deleted restaurant from the index
+     * @param restaurantId
+     */
+    public synchronized void remove(Long restaurantId) {
+        if (view == null || restaurantId == null) {
+            return;
+        }
+        publish(unlink(restaurantId));
+    }
+
+    private View view() {
+        View current = view;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (view == null) {
+                load();
+            }
+            return view;
+        }
+    }
+
+    private void load() {
+        categoriesByRestaurant.clear();
+        restaurantsByCategory.clear();
+        for (RestaurantCategory row : restaurantRepo.findAllCategories()) {
+            link(row.getRestaurantId(), Collections.singletonList(row.getCategory()));
+        }
+        Map<String, long[]> restaurantIds = new HashMap<>();
+        for (Map.Entry<String, TreeSet<Long>> entry : restaurantsByCategory.entrySet()) {
+            restaurantIds.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        view = new View(restaurantIds, ++generation);
+    }
+
+    private Set<String> link(Long restaurantId, Collection<String> categories) {
+        Set<String> linked = new LinkedHashSet<>();
+        for (String category : categories) {
+            if (category == null) {
+                continue;
+            }
+            if (restaurantsByCategory.computeIfAbsent(category, key -> new TreeSet<>()).add(restaurantId)) {
+                linked.add(category);
+            }
+            categoriesByRestaurant.computeIfAbsent(restaurantId, key -> new LinkedHashSet<>()).add(category);
+        }
+        return linked;
+    }
+
+    private Set<String> unlink(Long restaurantId) {
+        Set<String> categories = categoriesByRestaurant.remove(restaurantId);
+        if (categories == null) {
+            return new LinkedHashSet<>();
+        }
+        for (String category : categories) {
+            TreeSet<Long> restaurantIds = restaurantsByCategory.get(category);
+            restaurantIds.remove(restaurantId);
+            if (restaurantIds.isEmpty()) {
+                restaurantsByCategory.remove(category);
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * Publishes a new view with the ID arrays of the changed categories rebuilt and
+     * the rest shared with the previous view
+     */
+    private void publish(Set<String> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<String, long[]> restaurantIds = new HashMap<>(view.restaurantIds);
+        for (String category : changed) {
+            TreeSet<Long> ids = restaurantsByCategory.get(category);
+            if (ids == null) {
+                restaurantIds.remove(category);
+            } else {
+                restaurantIds.put(category, toArray(ids));
+            }
+        }
+        view = new View(restaurantIds, ++generation);
+    }
+
+    private static long[] toArray(Collection<Long> ids) {
+        long[] array = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            array[i++] = id;
+        }
+        return array;
+    }
+
+    private static final class View {
+
+        private final String[] categories;
+
+        private final Map<String, long[]> restaurantIds;
+
+        private final long generation;
+
+        View(Map<String, long[]> restaurantIds, long generation) {
+            this.restaurantIds = restaurantIds;
+            this.generation = generation;
+            this.categories = restaurantIds.keySet().toArray(new String[0]);
+            Arrays.sort(this.categories);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package foodprint.backend.service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.dto.DemandDriftDTO;
+import foodprint.backend.dto.DemandDriftEntryDTO;
+import foodprint.backend.model.DailyFoodDemand;
+import foodprint.backend.model.DailyFoodDemandRepo;
+import foodprint.backend.model.DailyIngredientDemand;
+import foodprint.backend.model.DailyIngredientDemandRepo;
+import foodprint.backend.model.DemandTotal;
+import foodprint.backend.model.FoodDemand;
+import foodprint.backend.model.FoodIngredientQuantity;
+import foodprint.backend.model.FoodIngredientQuantityRepo;
+import foodprint.backend.model.IngredientDemand;
+import foodprint.backend.model.LineItem;
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+
+/**
+ * Keeps the daily food and ingredient demand of every restaurant up to date.
+ *
+ * Whenever a reservation is created, changed, cancelled or deleted, the difference
+ * between what it needed before and what it needs now is added to the rows of the
+ * days involved. Demand over a range of days is then a sum over those rows instead
+ * of a walk over every reservation. Editing a recipe moves the ingredient rows of
+ * the days its food is needed by the difference between the two recipes. Anything
+ * else that changes demand behind their back is found by
+ * {@link #verify(Long, boolean)}, which recomputes them from the reservations.
+ */
+@Component
+public class DemandLedger {
+
+    public static final String FOOD = "FOOD";
+    public static final String INGREDIENT = "INGREDIENT";
+
+    private final DailyFoodDemandRepo dailyFoodDemandRepo;
+
+    private final DailyIngredientDemandRepo dailyIngredientDemandRepo;
+
+    private final ReservationRepo reservationRepo;
+
+    private final FoodIngredientQuantityRepo foodIngredientQuantityRepo;
+
+    private final RestaurantRepo restaurantRepo;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public DemandLedger(DailyFoodDemandRepo dailyFoodDemandRepo, DailyIngredientDemandRepo dailyIngredientDemandRepo,
+            ReservationRepo reservationRepo, FoodIngredientQuantityRepo foodIngredientQuantityRepo, RestaurantRepo restaurantRepo) {
+        this.dailyFoodDemandRepo = dailyFoodDemandRepo;
+        this.dailyIngredientDemandRepo = dailyIngredientDemandRepo;
+        this.reservationRepo = reservationRepo;
+        this.foodIngredientQuantityRepo = foodIngredientQuantityRepo;
+        this.restaurantRepo = restaurantRepo;
+    }
+
+    /**
+     * What a reservation needs at one point in time, taken before and after it changes
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot NONE = new Snapshot(null, Collections.emptyMap(), Collections.emptyMap());
+
+        private final LocalDate date;
+
+        private final Map<Long, Long> foods;
+
+        private final Map<Long, Long> ingredients;
+
+        private Snapshot(LocalDate date, Map<Long, Long> foods, Map<Long, Long> ingredients) {
+            this.date = date;
+            this.foods = foods;
+            this.ingredients = ingredients;
+        }
+
+        public LocalDate getDate() {
+            return this.date;
+        }
+
+        public Map<Long, Long> getFoods() {
+            return this.foods;
+        }
+
+        public Map<Long, Long> getIngredients() {
+            return this.ingredients;
+        }
+    }
+
+    /**
+     * Takes down the food and ingredients a reservation needs right now, cancelled
+     * reservations need nothing
+     * @param reservation
+     * @return
+     */
+    public Snapshot snapshot(Reservation reservation) {
+        if (reservation == null || reservation.getDate() == null || reservation.getStatus() == ReservationStatus.CANCELLED
+                || reservation.getLineItems() == null || reservation.getLineItems().isEmpty()) {
+            return Snapshot.NONE;
+        }
+        Map<Long, Long> foods = new HashMap<>();
+        for (LineItem lineItem : reservation.getLineItems()) {
+            foods.merge(lineItem.getFood().getFoodId(), lineItem.getQuantity().longValue(), Long::sum);
+        }
+        Map<Long, Long> ingredients = new HashMap<>();
+        for (FoodIngredientQuantity recipe : foodIngredientQuantityRepo.findByIdFoodIdIn(foods.keySet())) {
+            long needed = recipe.getQuantity().longValue() * foods.get(recipe.getFood().getFoodId());
+            ingredients.merge(recipe.getIngredient().getIngredientId(), needed, Long::sum);
+        }
+        return new Snapshot(reservation.getDate().toLocalDate(), foods, ingredients);
+    }
+
+    /**
+     * Records that a reservation went from needing one snapshot to another
+     * @param restaurantId
+     * @param before {@link Snapshot#NONE} for a new reservation
+     * @param after {@link Snapshot#NONE} for a cancelled or deleted reservation
+     */
+    public void apply(Long restaurantId, Snapshot before, Snapshot after) {
+        if (restaurantId == null) {
+            return;
+        }
+        applyDelta(restaurantId, before.date, before.foods, after.date, after.foods, this::addFood);
+        applyDelta(restaurantId, before.date, before.ingredients, after.date, after.ingredients, this::addIngredient);
+    }
+
+    /**
+     * Records that the recipe of a food changed. Every day the food is needed, each
+     * ingredient moves by the change in its quantity times the food needed that day.
+     * @param restaurantId
+     * @param foodId
+     * @param before quantity of each ingredient in one of the food, keyed by ingredient ID
+     * @param after
+     */
+    public void applyRecipeChange(Long restaurantId, Long foodId, Map<Long, Long> before, Map<Long, Long> after) {
+        Map<Long, Long> change = new HashMap<>();
+        before.forEach((ingredientId, quantity) -> change.merge(ingredientId, -quantity, Long::sum));
+        after.forEach((ingredientId, quantity) -> change.merge(ingredientId, quantity, Long::sum));
+        change.values().removeIf(delta -> delta == 0);
+        if (restaurantId == null || change.isEmpty()) {
+            return;
+        }
+        for (DailyFoodDemand row : dailyFoodDemandRepo.findByRestaurantIdAndFoodId(restaurantId, foodId)) {
+            if (row.getQuantity() == 0) {
+                continue;
+            }
+            change.forEach((ingredientId, delta) ->
+                addIngredient(restaurantId, row.getDemandDate(), ingredientId, delta * row.getQuantity()));
+        }
+    }
+
+    /**
+     * Gets the total quantity of each food needed between two dates (inclusive)
+     * @param restaurantId
+     * @param from
+     * @param to
+     * @return quantities keyed by food ID
+     */
+    public Map<Long, Long> getFoodDemandBetween(Long restaurantId, LocalDate from, LocalDate to) {
+        return totals(dailyFoodDemandRepo.sumBetween(restaurantId, from, to));
+    }
+
+    /**
+     * Gets the total quantity of each ingredient needed between two dates (inclusive)
+     * @param restaurantId
+     * @param from
+     * @param to
+     * @return quantities keyed by ingredient ID
+     */
+    public Map<Long, Long> getIngredientDemandBetween(Long restaurantId, LocalDate from, LocalDate to) {
+        return totals(dailyIngredientDemandRepo.sumBetween(restaurantId, from, to));
+    }
+
+    /**
+     * Recomputes the daily demand of a restaurant from its reservations and reports
+     * every row that does not match
+     * @param restaurantId
+     * @param repair whether to correct the rows that drifted
+     * @return
+     */
+    public DemandDriftDTO verify(Long restaurantId, boolean repair) {
+        DemandDriftDTO report = new DemandDriftDTO(restaurantId, repair);
+
+        Map<LocalDate, Map<Long, Long>> expectedFoods = new HashMap<>();
+        for (FoodDemand demand : reservationRepo.sumFoodDemandByDate(restaurantId, ReservationStatus.CANCELLED)) {
+            add(expectedFoods, demand.getDate().toLocalDate(), demand.getFoodId(), demand.getQuantity());
+        }
+        Map<LocalDate, Map<Long, Long>> actualFoods = new HashMap<>();
+        for (DailyFoodDemand row : dailyFoodDemandRepo.findByRestaurantId(restaurantId)) {
+            add(actualFoods, row.getDemandDate(), row.getFoodId(), row.getQuantity());
+        }
+        reconcile(FOOD, restaurantId, expectedFoods, actualFoods, repair ? this::addFood : null, report);
+
+        Map<LocalDate, Map<Long, Long>> expectedIngredients = new HashMap<>();
+        for (IngredientDemand demand : reservationRepo.sumIngredientDemandByDate(restaurantId, ReservationStatus.CANCELLED)) {
+            add(expectedIngredients, demand.getDate().toLocalDate(), demand.getIngredientId(), demand.getQuantity());
+        }
+        Map<LocalDate, Map<Long, Long>> actualIngredients = new HashMap<>();
+        for (DailyIngredientDemand row : dailyIngredientDemandRepo.findByRestaurantId(restaurantId)) {
+            add(actualIngredients, row.getDemandDate(), row.getIngredientId(), row.getQuantity());
+        }
+        reconcile(INGREDIENT, restaurantId, expectedIngredients, actualIngredients, repair ? this::addIngredient : null, report);
+
+        if (!report.getDrift().isEmpty()) {
+            log.warn("Daily demand of restaurant {} drifted in {} of {} rows{}", restaurantId, report.getDrift().size(),
+                report.getRowsChecked(), repair ? ", repaired" : "");
+        }
+        return report;
+    }
+
+    /**
+     * Fills the demand tables from existing reservations the first time the application
+     * starts with them
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (dailyFoodDemandRepo.count() > 0 || dailyIngredientDemandRepo.count() > 0 || reservationRepo.count() == 0) {
+            return;
+        }
+        List<Restaurant> restaurants = restaurantRepo.findAll();
+        for (Restaurant restaurant : restaurants) {
+            verify(restaurant.getRestaurantId(), true);
+        }
+        log.info("Built daily demand of {} restaurants from existing reservations", restaurants.size());
+    }
+
+    private interface DemandWriter {
+        void add(Long restaurantId, LocalDate date, Long itemId, Long delta);
+    }
+
+    private void applyDelta(Long restaurantId, LocalDate beforeDate, Map<Long, Long> before,
+            LocalDate afterDate, Map<Long, Long> after, DemandWriter writer) {
+        Map<LocalDate, Map<Long, Long>> deltas = new HashMap<>();
+        if (beforeDate != null) {
+            before.forEach((itemId, quantity) -> add(deltas, beforeDate, itemId, -quantity));
+        }
+        if (afterDate != null) {
+            after.forEach((itemId, quantity) -> add(deltas, afterDate, itemId, quantity));
+        }
+        deltas.forEach((date, items) -> items.forEach((itemId, delta) -> {
+            if (delta != 0) {
+                writer.add(restaurantId, date, itemId, delta);
+            }
+        }));
+    }
+
+    private void reconcile(String kind, Long restaurantId, Map<LocalDate, Map<Long, Long>> expected,
+            Map<LocalDate, Map<Long, Long>> actual, DemandWriter repairer, DemandDriftDTO report) {
+        Set<LocalDate> dates = new HashSet<>(expected.keySet());
+        dates.addAll(actual.keySet());
+        for (LocalDate date : dates) {
+            Map<Long, Long> expectedItems = expected.getOrDefault(date, Collections.emptyMap());
+            Map<Long, Long> actualItems = actual.getOrDefault(date, Collections.emptyMap());
+            Set<Long> itemIds = new HashSet<>(expectedItems.keySet());
+            itemIds.addAll(actualItems.keySet());
+            for (Long itemId : itemIds) {
+                long expectedQuantity = expectedItems.getOrDefault(itemId, 0L);
+                long actualQuantity = actualItems.getOrDefault(itemId, 0L);
+                report.setRowsChecked(report.getRowsChecked() + 1);
+                if (expectedQuantity == actualQuantity) {
+                    continue;
+                }
+                report.getDrift().add(new DemandDriftEntryDTO(kind, date, itemId, expectedQuantity, actualQuantity));
+                if (repairer != null) {
+                    // Expected and actual are read apart, so a booking landing between the two reads is
+                    // counted twice here, repairs are meant for a quiet restaurant
+                    repairer.add(restaurantId, date, itemId, expectedQuantity - actualQuantity);
+                }
+            }
+        }
+    }
+
+    private void addFood(Long restaurantId, LocalDate date, Long foodId, Long delta) {
+        if (dailyFoodDemandRepo.add(restaurantId, date, foodId, delta) > 0) {
+            return;
+        }
+        try {
+            dailyFoodDemandRepo.saveAndFlush(new DailyFoodDemand(restaurantId, date, foodId, delta));
+        } catch (DataIntegrityViolationException e) {
+            // Another booking created the row first
+            dailyFoodDemandRepo.add(restaurantId, date, foodId, delta);
+        }
+    }
+
+    private void addIngredient(Long restaurantId, LocalDate date, Long ingredientId, Long delta) {
+        if (dailyIngredientDemandRepo.add(restaurantId, date, ingredientId, delta) > 0) {
+            return;
+        }
+        try {
+            dailyIngredientDemandRepo.saveAndFlush(new DailyIngredientDemand(restaurantId, date, ingredientId, delta));
+        } catch (DataIntegrityViolationException e) {
+            // Another booking created the row first
+            dailyIngredientDemandRepo.add(restaurantId, date, ingredientId, delta);
+        }
+    }
+
+    private static void add(Map<LocalDate, Map<Long, Long>> quantities, LocalDate date, Long itemId, Long quantity) {
+        quantities.computeIfAbsent(date, key -> new HashMap<>()).merge(itemId, quantity, Long::sum);
+    }
+
+    private static Map<Long, Long> totals(List<DemandTotal> rows) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (DemandTotal row : rows) {
+            if (row.getQuantity() != null && row.getQuantity() != 0) {
+                totals.put(row.getItemId(), row.getQuantity());
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,497 @@
+package foodprint.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantFacet;
+import foodprint.backend.model.RestaurantRepo;
+
+/**
+ * Bitsets of restaurant ordinals for filtering listings by category, price range,
+ * open now, discount and availability, and for counting the restaurants behind
+ * every facet value.
+ *
+ * Each restaurant gets an ordinal when it is first indexed. Ordinals are handed out
+ * in ascending ID order and never reused, so a deleted restaurant only leaves an
+ * unset bit behind and walking a bitset lists restaurants in ID order. Values of a
+ * facet are ORed together and facets are ANDed, and the count of a value is the
+ * popcount of its bitset ANDed with the filters of every other facet.
+ *
+ * Category, price range and discount are kept up to date as restaurants change.
+ * Open now is worked out from the opening schedules once per minute. Availability
+ * is worked out from the reservations in the background once per refresh interval,
+ * asking for a bounded batch of restaurants at a time, and queries use the last answer.
+ */
+@Component
+public class FacetIndex {
+
+    // Reservations open a week ahead, so this week is the first bookable one
+    private static final int AVAILABILITY_DAYS = 7;
+
+    // Restaurants asked for in one availability query, as many as the availability endpoint allows
+    private static final int AVAILABILITY_BATCH_SIZE = 50;
+
+    private final RestaurantRepo restaurantRepo;
+
+    // Looked up lazily since reservations depend on restaurants, which depend on this index
+    private final ObjectProvider<ReservationService> reservationService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Only touched while holding the lock
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private long[] restaurantIds = new long[64];
+    private OpeningSchedule[] schedules = new OpeningSchedule[64];
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> categories = new HashMap<>();
+    private final Map<Integer, BitSet> priceRanges = new HashMap<>();
+    private final BitSet discounted = new BitSet();
+
+    // Bumped on every change so that open now is worked out again
+    private long generation;
+
+    private volatile boolean loaded;
+
+    private volatile Snapshot open;
+
+    // Nothing is available until the first refresh
+    private volatile BitSet available = new BitSet();
+
+    @Autowired
+    public FacetIndex(RestaurantRepo restaurantRepo, ObjectProvider<ReservationService> reservationService) {
+        this.restaurantRepo = restaurantRepo;
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * Facet values to filter by. Restaurants must match any of the given values of
+     * a facet and every facet that is set.
+     */
+    public static final class Filter {
+
+        private final Collection<String> categories;
+
+        private final Collection<Integer> priceRanges;
+
+        private final boolean openNow;
+
+        private final boolean discounted;
+
+        private final boolean available;
+
+        /**
+         * @param categories any category if empty
+         * @param priceRanges any price range if empty
+         * @param openNow
+         * @param discounted
+         * @param available
+         */
+        public Filter(Collection<String> categories, Collection<Integer> priceRanges, boolean openNow, boolean discounted,
+                boolean available) {
+            this.categories = categories == null ? Collections.emptyList() : categories;
+            this.priceRanges = priceRanges == null ? Collections.emptyList() : priceRanges;
+            this.openNow = openNow;
+            this.discounted = discounted;
+            this.available = available;
+        }
+    }
+
+    /**
+     * A page of matching restaurant IDs with the count of every facet value
+     */
+    public static final class Result {
+
+        private final List<Long> restaurantIds;
+
+        private final int total;
+
+        private final Map<String, Integer> categoryCounts;
+
+        private final Map<Integer, Integer> priceRangeCounts;
+
+        private final int openNowCount;
+
+        private final int discountedCount;
+
+        private final int availableCount;
+
+        Result(List<Long> restaurantIds, int total, Map<String, Integer> categoryCounts, Map<Integer, Integer> priceRangeCounts,
+                int openNowCount, int discountedCount, int availableCount) {
+            this.restaurantIds = restaurantIds;
+            this.total = total;
+            this.categoryCounts = categoryCounts;
+            this.priceRangeCounts = priceRangeCounts;
+            this.openNowCount = openNowCount;
+            this.discountedCount = discountedCount;
+            this.availableCount = availableCount;
+        }
+
+        /**
+         * Gets the IDs of the restaurants on the page, in ascending order
+         * @return
+         */
+        public List<Long> getRestaurantIds() {
+            return this.restaurantIds;
+        }
+
+        public int getTotal() {
+            return this.total;
+        }
+
+        public Map<String, Integer> getCategoryCounts() {
+            return this.categoryCounts;
+        }
+
+        public Map<Integer, Integer> getPriceRangeCounts() {
+            return this.priceRangeCounts;
+        }
+
+        public int getOpenNowCount() {
+            return this.openNowCount;
+        }
+
+        public int getDiscountedCount() {
+            return this.discountedCount;
+        }
+
+        public int getAvailableCount() {
+            return this.availableCount;
+        }
+    }
+
+    /**
+     * Finds the restaurants matching a filter, counting for every facet value how
+     * many restaurants would match if it were picked as well
+     * @param filter
+     * @param now the time that open now is worked out for
+     * @param offset
+     * @param limit
+     * @return
+     */
+    public Result query(Filter filter, LocalDateTime now, int offset, int limit) {
+        ensureLoaded();
+        BitSet availableBits = available;
+        lock.readLock().lock();
+        try {
+            BitSet categoryBits = union(categories, filter.categories);
+            BitSet priceBits = union(priceRanges, filter.priceRanges);
+            BitSet openBits = openAt(now);
+
+            BitSet[] facets = {
+                categoryBits,
+                priceBits,
+                filter.openNow ? openBits : null,
+                filter.discounted ? discounted : null,
+                filter.available ? availableBits : null
+            };
+
+            BitSet matches = matchingAllBut(facets, -1);
+            Map<String, Integer> categoryCounts = counts(categories, matchingAllBut(facets, 0));
+            Map<Integer, Integer> priceRangeCounts = counts(priceRanges, matchingAllBut(facets, 1));
+            int openNowCount = intersectionCount(matchingAllBut(facets, 2), openBits);
+            int discountedCount = intersectionCount(matchingAllBut(facets, 3), discounted);
+            int availableCount = intersectionCount(matchingAllBut(facets, 4), availableBits);
+
+            List<Long> page = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+            int skipped = 0;
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0 && page.size() < limit; ordinal = matches.nextSetBit(ordinal + 1)) {
+                if (skipped++ >= offset) {
+                    page.add(restaurantIds[ordinal]);
+                }
+            }
+            return new Result(page, matches.cardinality(), categoryCounts, priceRangeCounts, openNowCount, discountedCount,
+                availableCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the IDs of the restaurants open at a given time, in ascending order
+     * @param now
+     * @return
+     */
+    public List<Long> getOpenRestaurantIds(LocalDateTime now) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            BitSet openBits = openAt(now);
+            List<Long> ids = new ArrayList<>(openBits.cardinality());
+            for (int ordinal = openBits.nextSetBit(0); ordinal >= 0; ordinal = openBits.nextSetBit(ordinal + 1)) {
+                ids.add(restaurantIds[ordinal]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a restaurant that was created or updated
+     * @param restaurant
+     */
+    public void put(Restaurant restaurant) {
+        if (!loaded || restaurant.getRestaurantId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalOf(restaurant.getRestaurantId());
+            unlink(ordinal);
+            link(ordinal, restaurant.getRestaurantPriceRange(), OpeningSchedule.of(restaurant), restaurant.getDiscount() != null);
+            if (restaurant.getRestaurantCategory() != null) {
+                for (String category : restaurant.getRestaurantCategory()) {
+                    linkCategory(ordinal, category);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks whether a restaurant has a discount, after its discount was created or deleted
+     * @param restaurantId
+     * @param hasDiscount
+     */
+    public void setDiscounted(Long restaurantId, boolean hasDiscount) {
+        if (!loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(restaurantId);
+            if (ordinal != null) {
+                discounted.set(ordinal, hasDiscount);
+                generation++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a deleted restaurant from the index
+     * @param restaurantId
+     */
+    public void remove(Long restaurantId) {
+        if (!loaded || restaurantId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(restaurantId);
+            if (ordinal != null) {
+                unlink(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            for (RestaurantFacet row : restaurantRepo.findAllFacets()) {
+                link(ordinalOf(row.getRestaurantId()), row.getRestaurantPriceRange(), OpeningSchedule.of(row), row.getDiscountId() != null);
+            }
+            for (RestaurantCategory row : restaurantRepo.findAllCategories()) {
+                Integer ordinal = ordinals.get(row.getRestaurantId());
+                if (ordinal != null) {
+                    linkCategory(ordinal, row.getCategory());
+                }
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int ordinalOf(Long restaurantId) {
+        Integer ordinal = ordinals.get(restaurantId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        int next = ordinals.size();
+        if (next == restaurantIds.length) {
+            restaurantIds = Arrays.copyOf(restaurantIds, next * 2);
+            schedules = Arrays.copyOf(schedules, next * 2);
+        }
+        restaurantIds[next] = restaurantId;
+        ordinals.put(restaurantId, next);
+        return next;
+    }
+
+    private void link(int ordinal, Integer priceRange, OpeningSchedule schedule, boolean hasDiscount) {
+        live.set(ordinal);
+        schedules[ordinal] = schedule;
+        if (priceRange != null) {
+            priceRanges.computeIfAbsent(priceRange, key -> new BitSet()).set(ordinal);
+        }
+        discounted.set(ordinal, hasDiscount);
+        generation++;
+    }
+
+    private void linkCategory(int ordinal, String category) {
+        if (category != null) {
+            categories.computeIfAbsent(category, key -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void unlink(int ordinal) {
+        live.clear(ordinal);
+        schedules[ordinal] = null;
+        discounted.clear(ordinal);
+        clearFrom(categories, ordinal);
+        clearFrom(priceRanges, ordinal);
+        generation++;
+    }
+
+    private static <K> void clearFrom(Map<K, BitSet> facet, int ordinal) {
+        facet.values().removeIf(bits -> {
+            bits.clear(ordinal);
+            return bits.isEmpty();
+        });
+    }
+
+    /**
+     * Works out which restaurants are open at a given minute, reusing the last
+     * answer while the minute and the index stay the same. Must hold the lock.
+     */
+    private BitSet openAt(LocalDateTime now) {
+        LocalDateTime minute = now.truncatedTo(ChronoUnit.MINUTES);
+        long stamp = minute.toEpochSecond(ZoneOffset.UTC);
+        Snapshot current = open;
+        if (current != null && current.stamp == stamp && current.generation == generation) {
+            return current.bits;
+        }
+        BitSet bits = new BitSet();
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            if (schedules[ordinal].isOpen(minute)) {
+                bits.set(ordinal);
+            }
+        }
+        open = new Snapshot(stamp, generation, bits);
+        return bits;
+    }
+
+    /**
+     * Works out which restaurants have a free slot in the first bookable week
+     */
+    @Scheduled(fixedDelayString = "PT${foodprint.facets.availability-refresh-seconds:60}S")
+    public void refreshAvailability() {
+        ensureLoaded();
+        List<Long> ids;
+        lock.readLock().lock();
+        try {
+            ids = new ArrayList<>(live.cardinality());
+            for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                ids.add(restaurantIds[ordinal]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LocalDate firstBookable = LocalDate.now().plusDays(7);
+        Map<Long, List<LocalDateTime>> slots = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += AVAILABILITY_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + AVAILABILITY_BATCH_SIZE));
+            slots.putAll(reservationService.getObject().getUpcomingSlots(batch, firstBookable,
+                firstBookable.plusDays(AVAILABILITY_DAYS - 1L)));
+        }
+
+        BitSet bits = new BitSet();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, List<LocalDateTime>> entry : slots.entrySet()) {
+                Integer ordinal = ordinals.get(entry.getKey());
+                if (ordinal != null && !entry.getValue().isEmpty()) {
+                    bits.set(ordinal);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Restaurants added since are left out until the next refresh
+        available = bits;
+    }
+
+    private BitSet matchingAllBut(BitSet[] facets, int skipped) {
+        BitSet bits = (BitSet) live.clone();
+        for (int i = 0; i < facets.length; i++) {
+            if (i != skipped && facets[i] != null) {
+                bits.and(facets[i]);
+            }
+        }
+        return bits;
+    }
+
+    private static <K> BitSet union(Map<K, BitSet> facet, Collection<K> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        BitSet bits = new BitSet();
+        for (K value : values) {
+            BitSet valueBits = facet.get(value);
+            if (valueBits != null) {
+                bits.or(valueBits);
+            }
+        }
+        return bits;
+    }
+
+    private static <K extends Comparable<K>> Map<K, Integer> counts(Map<K, BitSet> facet, BitSet matching) {
+        Map<K, Integer> counts = new TreeMap<>();
+        for (Map.Entry<K, BitSet> entry : facet.entrySet()) {
+            counts.put(entry.getKey(), intersectionCount(matching, entry.getValue()));
+        }
+        return counts;
+    }
+
+    private static int intersectionCount(BitSet matching, BitSet bits) {
+        BitSet both = (BitSet) matching.clone();
+        both.and(bits);
+        return both.cardinality();
+    }
+
+    private static final class Snapshot {
+
+        private final long stamp;
+
+        private final long generation;
+
+        private final BitSet bits;
+
+        Snapshot(long stamp, long generation, BitSet bits) {
+            this.stamp = stamp;
+            this.generation = generation;
+            this.bits = bits;
+        }
+    }
+}
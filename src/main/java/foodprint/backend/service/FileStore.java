@@ -4,51 +4,41 @@ import java.io.InputStream;
 import java.util.Map;
 import java.util.Optional;
 
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-
-@Service
-public class FileStore {
-
-    private final AmazonS3 amazonS3;
-
-    @Autowired
-    public FileStore(AmazonS3 amazonS3) {
-        this.amazonS3 = amazonS3;
-    }
+/**
+ * Stores uploaded files, each under a path and a file name, and tells where they
+ * are served from. foodprint.files.store picks the implementation: s3, the
+ * default, or local.
+ */
+public interface FileStore {
 
     /**
-     * Uploads a file to with the given path and filename to S3
+     * Uploads a file with the given path and filename
      * @param path
      * @param fileName
-     * @param optionalMetaData
+     * @param optionalMetaData user metadata stored with the file, where the store keeps any
      * @param inputStream
+     * @param contentType
+     * @param contentLength exact number of bytes the stream holds
      */
-    public void upload(String path,
-                       String fileName,
-                       Optional<Map<String, String>> optionalMetaData,
-                       InputStream inputStream) {
-        ObjectMetadata objectMetadata = new ObjectMetadata();
-        optionalMetaData.ifPresent(map -> {
-            if (!map.isEmpty()) {
-                map.forEach(objectMetadata::addUserMetadata);
-            }
-        });
-        try {
-            var objRequest = new PutObjectRequest(path, fileName, inputStream, objectMetadata)
-                                            .withCannedAcl(CannedAccessControlList.PublicRead);
-            amazonS3.putObject(objRequest);
-        } catch (AmazonServiceException e) {
-            throw new IllegalStateException("Failed to upload the file", e);
-        }
-        
-    }
+    void upload(String path,
+                String fileName,
+                Optional<Map<String, String>> optionalMetaData,
+                InputStream inputStream,
+                String contentType,
+                long contentLength);
 
+    /**
+     * Deletes a file with the given path and filename, if it exists
+     * @param path
+     * @param fileName
+     */
+    void delete(String path, String fileName);
 
-}
\ No newline at end of file
+    /**
+     * Gets the URL a file with the given path and filename is served from
+     * @param path
+     * @param fileName
+     * @return
+     */
+    String urlOf(String path, String fileName);
+}
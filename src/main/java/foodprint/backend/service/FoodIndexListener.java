@@ -0,0 +1,47 @@
+package foodprint.backend.service;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Food;
+
+/**
+ * Keeps the in-memory food indexes in step with every food written through JPA,
+ * including foods deleted along with their restaurant. Like the restaurant indexes,
+ * they only change once the write commits.
+ */
+@Component
+public class FoodIndexListener {
+
+    // Looked up lazily since listeners are created while the entity manager is still being built
+    private final ObjectProvider<CatalogSearch> catalogSearch;
+
+    private final ObjectProvider<Typeahead> typeahead;
+
+    public FoodIndexListener(ObjectProvider<CatalogSearch> catalogSearch, ObjectProvider<Typeahead> typeahead) {
+        this.catalogSearch = catalogSearch;
+        this.typeahead = typeahead;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Food food) {
+        RestaurantIndexListener.afterCommit(() -> {
+            catalogSearch.getObject().putFood(food);
+            typeahead.getObject().putFood(food);
+        });
+    }
+
+    @PostRemove
+    public void removed(Food food) {
+        Long foodId = food.getFoodId();
+        RestaurantIndexListener.afterCommit(() -> {
+            catalogSearch.getObject().removeFood(foodId);
+            typeahead.getObject().removeFood(foodId);
+        });
+    }
+}
@@ -0,0 +1,274 @@
+package foodprint.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantPlace;
+import foodprint.backend.model.RestaurantRepo;
+
+/**
+ * Uniform grid over latitude and longitude for finding the restaurants nearest to
+ * a point.
+ *
+ * Each cell spans {@link #CELL_DEGREES} degrees, roughly a kilometre near the
+ * equator. A search visits rings of cells around the point, nearest first, and
+ * stops once the next ring cannot hold anything closer than the results it
+ * already has or lies beyond the radius. Category and price filters are applied
+ * to the restaurants in the visited cells, so nothing else is looked at.
+ */
+@Component
+public class GeoIndex {
+
+    public static final double MAX_RADIUS_KM = 50;
+
+    private static final double CELL_DEGREES = 0.01;
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final RestaurantRepo restaurantRepo;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, List<Place>> cells = new HashMap<>();
+
+    private final Map<Long, Place> places = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public GeoIndex(RestaurantRepo restaurantRepo) {
+        this.restaurantRepo = restaurantRepo;
+    }
+
+    /**
+     * A restaurant found near a point
+     */
+    public static final class Nearby {
+
+        private final Long restaurantId;
+
+        private final double distanceKm;
+
+        Nearby(Long restaurantId, double distanceKm) {
+            this.restaurantId = restaurantId;
+            this.distanceKm = distanceKm;
+        }
+
+        public Long getRestaurantId() {
+            return this.restaurantId;
+        }
+
+        public double getDistanceKm() {
+            return this.distanceKm;
+        }
+    }
+
+    /**
+     * Finds the restaurants nearest to a point, nearest first
+     * @param latitude
+     * @param longitude
+     * @param radiusKm at most {@link #MAX_RADIUS_KM}
+     * @param limit
+     * @param category only restaurants in this category, or any if null
+     * @param minPrice lowest price range, or any if null
+     * @param maxPrice highest price range, or any if null
+     * @return
+     */
+    public List<Nearby> nearest(double latitude, double longitude, double radiusKm, int limit,
+            String category, Integer minPrice, Integer maxPrice) {
+        ensureLoaded();
+        double radius = Math.min(radiusKm, MAX_RADIUS_KM);
+        // The narrowest a cell can be anywhere within the radius, since cells narrow towards the poles
+        double furthestLatitude = Math.min(89, Math.abs(latitude) + radius / KM_PER_DEGREE);
+        double cellKm = CELL_DEGREES * KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(furthestLatitude)));
+        int maxRing = (int) Math.ceil(radius / cellKm) + 1;
+
+        Comparator<Nearby> nearestFirst = Comparator.comparingDouble(Nearby::getDistanceKm).thenComparing(Nearby::getRestaurantId);
+        PriorityQueue<Nearby> best = new PriorityQueue<>(Math.max(1, limit), nearestFirst.reversed());
+        long centreLat = cellOf(latitude);
+        long centreLon = cellOf(longitude);
+
+        lock.readLock().lock();
+        try {
+            for (int ring = 0; ring <= maxRing; ring++) {
+                // Everything in this ring is at least (ring - 1) cells away from the point
+                if (best.size() >= limit && ring >= 2 && (ring - 1) * cellKm > best.peek().getDistanceKm()) {
+                    break;
+                }
+                for (long lat = centreLat - ring; lat <= centreLat + ring; lat++) {
+                    boolean edgeRow = lat == centreLat - ring || lat == centreLat + ring;
+                    long step = edgeRow ? 1 : 2L * ring;
+                    for (long lon = centreLon - ring; lon <= centreLon + ring; lon += Math.max(1, step)) {
+                        for (Place place : cells.getOrDefault(key(lat, lon), Collections.emptyList())) {
+                            if (!place.matches(category, minPrice, maxPrice)) {
+                                continue;
+                            }
+                            double distance = distanceKm(latitude, longitude, place.latitude, place.longitude);
+                            if (distance > radius) {
+                                continue;
+                            }
+                            best.add(new Nearby(place.restaurantId, distance));
+                            if (best.size() > limit) {
+                                best.poll();
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Nearby> result = new ArrayList<>(best);
+        result.sort(nearestFirst);
+        return result;
+    }
+
+    /**
+     * Indexes a restaurant that was created or updated, or drops it if it no longer
+     * has a position
+     * @param restaurant
+     */
+    public void put(Restaurant restaurant) {
+        if (!loaded || restaurant.getRestaurantId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            unlink(restaurant.getRestaurantId());
+            if (restaurant.getRestaurantLatitude() != null && restaurant.getRestaurantLongitude() != null) {
+                link(new Place(restaurant.getRestaurantId(), restaurant.getRestaurantLatitude(), restaurant.getRestaurantLongitude(),
+                    restaurant.getRestaurantPriceRange(), restaurant.getRestaurantCategory()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a deleted restaurant from the index
+     * @param restaurantId
+     */
+    public void remove(Long restaurantId) {
+        if (!loaded || restaurantId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            unlink(restaurantId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the great-circle distance between two points
+     * @param fromLatitude
+     * @param fromLongitude
+     * @param toLatitude
+     * @param toLongitude
+     * @return
+     */
+    public static double distanceKm(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double latitudeDelta = Math.toRadians(toLatitude - fromLatitude);
+        double longitudeDelta = Math.toRadians(toLongitude - fromLongitude);
+        double a = Math.pow(Math.sin(latitudeDelta / 2), 2)
+            + Math.cos(Math.toRadians(fromLatitude)) * Math.cos(Math.toRadians(toLatitude)) * Math.pow(Math.sin(longitudeDelta / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            Map<Long, List<String>> categories = new HashMap<>();
+            for (RestaurantCategory row : restaurantRepo.findAllCategories()) {
+                categories.computeIfAbsent(row.getRestaurantId(), key -> new ArrayList<>()).add(row.getCategory());
+            }
+            for (RestaurantPlace row : restaurantRepo.findAllPlaces()) {
+                link(new Place(row.getRestaurantId(), row.getRestaurantLatitude(), row.getRestaurantLongitude(),
+                    row.getRestaurantPriceRange(), categories.get(row.getRestaurantId())));
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(Place place) {
+        places.put(place.restaurantId, place);
+        cells.computeIfAbsent(key(cellOf(place.latitude), cellOf(place.longitude)), key -> new ArrayList<>()).add(place);
+    }
+
+    private void unlink(Long restaurantId) {
+        Place previous = places.remove(restaurantId);
+        if (previous == null) {
+            return;
+        }
+        long key = key(cellOf(previous.latitude), cellOf(previous.longitude));
+        List<Place> cell = cells.get(key);
+        cell.remove(previous);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private static long cellOf(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(long latitudeCell, long longitudeCell) {
+        return (latitudeCell << 32) ^ (longitudeCell & 0xffffffffL);
+    }
+
+    private static final class Place {
+
+        private final Long restaurantId;
+
+        private final double latitude;
+
+        private final double longitude;
+
+        private final Integer priceRange;
+
+        private final Set<String> categories;
+
+        Place(Long restaurantId, double latitude, double longitude, Integer priceRange, Collection<String> categories) {
+            this.restaurantId = restaurantId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.priceRange = priceRange;
+            this.categories = categories == null ? Collections.emptySet() : new HashSet<>(categories);
+        }
+
+        boolean matches(String category, Integer minPrice, Integer maxPrice) {
+            if (category != null && !categories.contains(category)) {
+                return false;
+            }
+            if (minPrice != null && (priceRange == null || priceRange < minPrice)) {
+                return false;
+            }
+            return maxPrice == null || (priceRange != null && priceRange <= maxPrice);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package foodprint.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.model.ReservationHold;
+import foodprint.backend.model.ReservationRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Cancels unpaid reservations once their hold on a slot runs out.
+ *
+ * Holds are kept in a hierarchical timing wheel with one second ticks: level 0 has
+ * a bucket per second for the next 64 seconds, and every level above covers 64
+ * buckets of the level below it. Scheduling and cancelling a hold is constant
+ * time, and each tick only looks at the bucket that is due, cascading buckets of
+ * the upper levels down as their time comes round. Holds that expire in the same
+ * tick are cancelled together in a batched update.
+ */
+@Component
+public class HoldExpiryWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private static final int EXPIRY_BATCH_SIZE = 500;
+    private static final long RETRY_DELAY_SECONDS = 30;
+
+    private final ReservationRepo reservationRepo;
+
+    private final BookingEngine bookingEngine;
+
+    private final SlotOccupancyIndex slotOccupancyIndex;
+
+    private final DemandLedger demandLedger;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration holdDuration;
+
+    private final Duration paymentWindow;
+
+    private final List<List<List<Hold>>> wheels = new ArrayList<>();
+
+    // Deadline in epoch seconds of every hold that has not been paid, cancelled or expired yet
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private long currentTick;
+
+    private final Counter expiredCounter;
+
+    private final Timer expiryLag;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public HoldExpiryWheel(ReservationRepo reservationRepo, BookingEngine bookingEngine, SlotOccupancyIndex slotOccupancyIndex,
+            DemandLedger demandLedger, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${foodprint.reservation.hold-minutes:15}") long holdMinutes,
+            @Value("${foodprint.reservation.payment-minutes:5}") long paymentMinutes) {
+        this.reservationRepo = reservationRepo;
+        this.bookingEngine = bookingEngine;
+        this.slotOccupancyIndex = slotOccupancyIndex;
+        this.demandLedger = demandLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.holdDuration = Duration.ofMinutes(holdMinutes);
+        this.paymentWindow = Duration.ofMinutes(paymentMinutes);
+        this.currentTick = Instant.now().getEpochSecond();
+        for (int level = 0; level < LEVELS; level++) {
+            List<List<Hold>> wheel = new ArrayList<>(WHEEL_SIZE);
+            for (int bucket = 0; bucket < WHEEL_SIZE; bucket++) {
+                wheel.add(new ArrayList<>());
+            }
+            wheels.add(wheel);
+        }
+
+        Gauge.builder("foodprint.reservation.holds.pending", pending, Map::size)
+            .description("Unpaid reservations waiting for their hold to expire")
+            .register(meterRegistry);
+        this.expiredCounter = Counter.builder("foodprint.reservation.holds.expired")
+            .description("Unpaid reservations cancelled because their hold expired")
+            .register(meterRegistry);
+        this.expiryLag = Timer.builder("foodprint.reservation.holds.expiry.lag")
+            .description("Time between a hold expiring and its reservation being cancelled")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Schedules every unpaid reservation for a date still to come, including ones whose
+     * hold already ran out while the application was down. Unpaid reservations for past
+     * dates are history rather than holds on a slot, so they are left as they are.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ReservationHold> holds = reservationRepo.findHoldsByStatusAndDateAfter(ReservationStatus.UNPAID, LocalDateTime.now());
+        for (ReservationHold hold : holds) {
+            schedule(hold.getReservationId(), hold.getReservedOn());
+        }
+        log.info("Scheduled expiry of {} unpaid reservations", holds.size());
+    }
+
+    /**
+     * Starts the hold of an unpaid reservation
+     * @param reservationId
+     * @param reservedOn
+     */
+    public synchronized void schedule(Long reservationId, LocalDateTime reservedOn) {
+        LocalDateTime start = reservedOn == null ? LocalDateTime.now() : reservedOn;
+        long deadline = start.plus(holdDuration).atZone(ZoneId.systemDefault()).toEpochSecond();
+        pending.put(reservationId, deadline);
+        place(new Hold(reservationId, deadline), currentTick + 1);
+    }
+
+    /**
+     * Keeps the hold of a reservation for at least the payment window from now, so that
+     * it does not run out while the reservation is being charged
+     * @param reservationId
+     */
+    public synchronized void extendForPayment(Long reservationId) {
+        long deadline = Instant.now().plus(paymentWindow).getEpochSecond();
+        Long current = pending.get(reservationId);
+        if (current == null || current < deadline) {
+            // The entry left in its old bucket no longer matches the deadline, so it is skipped
+            pending.put(reservationId, deadline);
+            place(new Hold(reservationId, deadline), currentTick + 1);
+        }
+    }
+
+    /**
+     * Stops the hold of a reservation that was paid for, cancelled or deleted
+     * @param reservationId
+     */
+    public void cancel(Long reservationId) {
+        // The entry left in its bucket is skipped once it comes round
+        pending.remove(reservationId);
+    }
+
+    /**
+     * Gets the number of holds that have not expired yet
+     * @return
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void tick() {
+        advanceTo(Instant.now());
+    }
+
+    /**
+     * Moves the wheel forward to a given time, cancelling every reservation whose hold
+     * expired on the way
+     * @param now
+     */
+    public void advanceTo(Instant now) {
+        List<Hold> due = new ArrayList<>();
+        synchronized (this) {
+            long target = now.getEpochSecond();
+            while (currentTick < target) {
+                currentTick++;
+                cascade(currentTick);
+                List<Hold> bucket = wheels.get(0).get((int) (currentTick & WHEEL_MASK));
+                for (Hold hold : bucket) {
+                    if (pending.remove(hold.reservationId, hold.deadline)) {
+                        due.add(hold);
+                    }
+                }
+                bucket.clear();
+            }
+        }
+        for (int from = 0; from < due.size(); from += EXPIRY_BATCH_SIZE) {
+            expire(due.subList(from, Math.min(due.size(), from + EXPIRY_BATCH_SIZE)));
+        }
+    }
+
+    /**
+     * Moves the holds of every upper level bucket that starts at this tick down the wheel
+     */
+    private void cascade(long tick) {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * WHEEL_BITS;
+            if ((tick & ((1L << shift) - 1)) != 0) {
+                continue;
+            }
+            List<Hold> bucket = wheels.get(level).get((int) ((tick >> shift) & WHEEL_MASK));
+            List<Hold> holds = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Hold hold : holds) {
+                if (hold.isPending()) {
+                    place(hold, tick);
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts a hold in the lowest level bucket that can tell its deadline apart, never
+     * earlier than a given tick
+     */
+    private void place(Hold hold, long earliest) {
+        long at = Math.max(hold.deadline, earliest);
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = level * WHEEL_BITS;
+            if ((at >> shift) - (currentTick >> shift) < WHEEL_SIZE) {
+                wheels.get(level).get((int) ((at >> shift) & WHEEL_MASK)).add(hold);
+                return;
+            }
+        }
+        // Further out than the wheel reaches, so park it in the furthest bucket and place it again from there
+        int shift = (LEVELS - 1) * WHEEL_BITS;
+        wheels.get(LEVELS - 1).get((int) (((currentTick >> shift) + WHEEL_SIZE - 1) & WHEEL_MASK)).add(hold);
+    }
+
+    private void expire(List<Hold> holds) {
+        List<Long> reservationIds = new ArrayList<>(holds.size());
+        for (Hold hold : holds) {
+            reservationIds.add(hold.reservationId);
+        }
+
+        List<Reservation> cancelled;
+        Map<Long, DemandLedger.Snapshot> cancelledDemand = new HashMap<>();
+        try {
+            cancelled = transactionTemplate.execute(status -> {
+                // A payment only marks a reservation paid with a conditional update of the same row, so
+                // whichever of the two takes the row lock second sees the status the other left
+                List<Reservation> unpaid = reservationRepo.findByReservationIdInAndStatus(reservationIds, ReservationStatus.UNPAID);
+                if (unpaid.isEmpty()) {
+                    return Collections.<Reservation>emptyList();
+                }
+                List<Long> unpaidIds = new ArrayList<>(unpaid.size());
+                for (Reservation reservation : unpaid) {
+                    unpaidIds.add(reservation.getReservationId());
+                }
+                reservationRepo.updateStatus(unpaidIds, ReservationStatus.CANCELLED);
+                for (Reservation reservation : unpaid) {
+                    cancelledDemand.put(reservation.getReservationId(), demandLedger.snapshot(reservation));
+                    if (reservation.getRestaurant() != null) {
+                        bookingEngine.release(reservation.getRestaurant().getRestaurantId(), reservation.getDate());
+                    }
+                }
+                return unpaid;
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not expire {} reservation holds, retrying in {}s", holds.size(), RETRY_DELAY_SECONDS, e);
+            synchronized (this) {
+                for (Hold hold : holds) {
+                    pending.putIfAbsent(hold.reservationId, hold.deadline);
+                    place(hold, currentTick + RETRY_DELAY_SECONDS);
+                }
+            }
+            return;
+        }
+
+        for (Reservation reservation : cancelled) {
+            if (reservation.getRestaurant() != null) {
+                slotOccupancyIndex.decrement(reservation.getRestaurant().getRestaurantId(), reservation.getDate());
+                demandLedger.apply(reservation.getRestaurant().getRestaurantId(), cancelledDemand.get(reservation.getReservationId()), DemandLedger.Snapshot.NONE);
+            }
+        }
+        Instant now = Instant.now();
+        for (Hold hold : holds) {
+            expiryLag.record(Duration.between(Instant.ofEpochSecond(hold.deadline), now));
+        }
+        expiredCounter.increment(cancelled.size());
+        if (!cancelled.isEmpty()) {
+            log.info("Cancelled {} unpaid reservations whose hold expired", cancelled.size());
+        }
+    }
+
+    private class Hold {
+
+        private final Long reservationId;
+
+        private final Long deadline;
+
+        Hold(Long reservationId, Long deadline) {
+            this.reservationId = reservationId;
+            this.deadline = deadline;
+        }
+
+        boolean isPending() {
+            return deadline.equals(pending.get(reservationId));
+        }
+    }
+}
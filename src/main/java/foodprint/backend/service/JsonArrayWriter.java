@@ -0,0 +1,82 @@
+package foodprint.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes rows streamed from the database as a JSON array, one row at a time, so
+ * that a response never holds the whole result set in memory.
+ *
+ * Rows are written with the same object mapper as any other response, so the JSON
+ * is the same as serializing a list. Every {@link #BATCH_SIZE} rows the output is
+ * flushed and the persistence context is cleared, since it would otherwise keep a
+ * reference to every entity read so far. Must be called within the transaction
+ * that the rows are streamed in.
+ */
+@Component
+public class JsonArrayWriter {
+
+    public static final int BATCH_SIZE = 100;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter rowWriter;
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    public JsonArrayWriter(ObjectMapper objectMapper, EntityManager entityManager) {
+        this.objectMapper = objectMapper;
+        // Flushed once per batch rather than after every row
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Writes rows as a JSON array, closing the stream of rows but not the output
+     * @param <T>
+     * @param out
+     * @param rows
+     * @param view what to write for each row, or null to leave the row out
+     * @return the number of rows written
+     */
+    public <T> long write(OutputStream out, Stream<T> rows, Function<? super T, ?> view) {
+        long written = 0;
+        long read = 0;
+        try (Stream<T> closing = rows;
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            Iterator<T> iterator = closing.iterator();
+            while (iterator.hasNext()) {
+                Object value = view.apply(iterator.next());
+                if (value != null) {
+                    rowWriter.writeValue(generator, value);
+                    written++;
+                }
+                if (++read % BATCH_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,145 @@
+package foodprint.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Stores files in a directory on local disk, for deployments without S3. Files are
+ * served by the FileController.
+ *
+ * Uploads are copied into a temporary file next to their target through NIO
+ * channels and then moved into place, so a file being served is never half
+ * written. Paths are kept inside the root directory, and file names inside their path.
+ */
+@Service
+@ConditionalOnProperty(name = "foodprint.files.store", havingValue = "local")
+public class LocalFileStore implements FileStore {
+
+    // Bytes moved from the upload stream per transfer
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    private final Path root;
+
+    private final String baseUrl;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public LocalFileStore(@Value("${foodprint.files.local.root:${user.home}/foodprint-files}") String root,
+            @Value("${foodprint.files.local.base-url:/api/v1/files}") String baseUrl) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void upload(String path,
+                       String fileName,
+                       Optional<Map<String, String>> optionalMetaData,
+                       InputStream inputStream,
+                       String contentType,
+                       long contentLength) {
+        // User metadata has nowhere to go on disk, and the content type is guessed from the file name when served
+        Path target = resolve(path, fileName)
+            .orElseThrow(() -> new IllegalStateException("File path is outside its directory in the file store"));
+        Path partial = null;
+        try {
+            Files.createDirectories(target.getParent());
+            partial = Files.createTempFile(target.getParent(), ".upload-", null);
+            long written = 0;
+            try (FileChannel out = FileChannel.open(partial, StandardOpenOption.WRITE);
+                    ReadableByteChannel in = Channels.newChannel(inputStream)) {
+                long transferred;
+                while ((transferred = out.transferFrom(in, written, TRANSFER_CHUNK)) > 0) {
+                    written += transferred;
+                }
+            }
+            if (written != contentLength) {
+                throw new IllegalStateException(
+                    String.format("Upload of %d bytes ended after %d bytes", contentLength, written));
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to upload the file", e);
+        } finally {
+            deleteQuietly(partial);
+        }
+    }
+
+    @Override
+    public void delete(String path, String fileName) {
+        Path file = resolve(path, fileName)
+            .orElseThrow(() -> new IllegalStateException("File path is outside its directory in the file store"));
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to delete the file", e);
+        }
+    }
+
+    @Override
+    public String urlOf(String path, String fileName) {
+        return baseUrl + "/" + UriUtils.encodePath(path + "/" + fileName, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds a stored file by its path under the root directory
+     * @param relativePath
+     * @return nothing if there is no such file, or the path leads outside the root directory
+     */
+    public Optional<Path> find(String relativePath) {
+        return resolve(relativePath).filter(Files::isRegularFile);
+    }
+
+    private Optional<Path> resolve(String relativePath) {
+        return within(root, relativePath);
+    }
+
+    /**
+     * Resolves a file under its path, which must itself be under the root directory,
+     * so that a file name cannot reach the files of another path
+     */
+    private Optional<Path> resolve(String path, String fileName) {
+        return resolve(path).flatMap(directory -> within(directory, fileName));
+    }
+
+    private static Optional<Path> within(Path directory, String relativePath) {
+        Path file = directory.resolve(relativePath).normalize();
+        return file.startsWith(directory) && !file.equals(directory) ? Optional.of(file) : Optional.empty();
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete partial upload {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package foodprint.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import foodprint.backend.model.FoodRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps the menu of each restaurant serialized to JSON, so that reading a menu
+ * writes bytes that are already there instead of loading and serializing every
+ * food with its ingredients and picture.
+ *
+ * A menu is dropped as soon as its food, food pictures or ingredients change, and
+ * then rebuilt in the background so that the next read usually finds it ready. A
+ * read that gets there first builds it itself. Each menu also keeps a gzipped copy
+ * for clients that accept it, and the entity tag of the versions it was built from.
+ * At most a fixed number of menus are kept, dropping the least recently read first.
+ */
+@Component
+public class MenuCache {
+
+    private final FoodRepo foodRepo;
+
+    private final JsonArrayWriter jsonArrayWriter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxSize;
+
+    private final boolean gzip;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "menu-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Least recently read first, only touched while holding the lock on this component
+    private final Map<Long, Menu> menus = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Restaurants waiting for a rebuild, so that a burst of changes only rebuilds once
+    private final Set<Long> queued = new HashSet<>();
+
+    // Bumped on every invalidation so that a build racing with one is not cached
+    private long invalidations;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public MenuCache(FoodRepo foodRepo, JsonArrayWriter jsonArrayWriter, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${foodprint.menu-cache.max-size:500}") int maxSize,
+            @Value("${foodprint.menu-cache.gzip:true}") boolean gzip) {
+        this.foodRepo = foodRepo;
+        this.jsonArrayWriter = jsonArrayWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxSize = maxSize;
+        this.gzip = gzip;
+
+        Gauge.builder("foodprint.menu.cache.bytes", this, MenuCache::bytes)
+            .description("Bytes of serialized menus currently cached")
+            .register(meterRegistry);
+        this.hits = Counter.builder("foodprint.menu.cache.requests")
+            .tag("result", "hit")
+            .description("Menu reads answered from the cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("foodprint.menu.cache.requests")
+            .tag("result", "miss")
+            .description("Menu reads that had to build the menu")
+            .register(meterRegistry);
+    }
+
+    /**
+     * The serialized menu of a restaurant
+     */
+    public static final class Menu {
+
+        private final byte[] json;
+
+        private final byte[] gzipped;
+
+        private final String eTag;
+
+        Menu(byte[] json, byte[] gzipped, String eTag) {
+            this.json = json;
+            this.gzipped = gzipped;
+            this.eTag = eTag;
+        }
+
+        /**
+         * Gets the menu as a JSON array of foods, which must not be modified
+         * @return
+         */
+        public byte[] getJson() {
+            return this.json;
+        }
+
+        /**
+         * Gets the gzipped JSON, which must not be modified
+         * @return null if gzipping is turned off
+         */
+        public byte[] getGzipped() {
+            return this.gzipped;
+        }
+
+        public String getETag() {
+            return this.eTag;
+        }
+
+        int size() {
+            return json.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+
+    /**
+     * Gets the menu of a restaurant, building it if it is not cached
+     * @param restaurantId
+     * @return
+     */
+    public Menu get(Long restaurantId) {
+        long seen;
+        synchronized (this) {
+            Menu menu = menus.get(restaurantId);
+            if (menu != null) {
+                hits.increment();
+                return menu;
+            }
+            misses.increment();
+            seen = invalidations;
+        }
+        Menu menu = build(restaurantId);
+        cache(restaurantId, menu, seen);
+        return menu;
+    }
+
+    /**
+     * Drops the menu of a restaurant whose food changed and rebuilds it in the
+     * background. Must be called once the change is committed.
+     * @param restaurantId
+     */
+    public void invalidate(Long restaurantId) {
+        synchronized (this) {
+            invalidations++;
+            menus.remove(restaurantId);
+            if (!queued.add(restaurantId)) {
+                return;
+            }
+        }
+        rebuilder.execute(() -> rebuild(restaurantId));
+    }
+
+    /**
+     * Drops the menu of a deleted restaurant
+     * @param restaurantId
+     */
+    public synchronized void remove(Long restaurantId) {
+        invalidations++;
+        menus.remove(restaurantId);
+    }
+
+    /**
+     * Gets the number of bytes of all cached menus
+     * @return
+     */
+    public synchronized long bytes() {
+        long bytes = 0;
+        for (Menu menu : menus.values()) {
+            bytes += menu.size();
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void rebuild(Long restaurantId) {
+        long seen;
+        synchronized (this) {
+            queued.remove(restaurantId);
+            seen = invalidations;
+        }
+        try {
+            cache(restaurantId, build(restaurantId), seen);
+        } catch (RuntimeException e) {
+            // The next read builds it instead
+            log.warn("Could not rebuild the menu of restaurant {}", restaurantId, e);
+        }
+    }
+
+    private synchronized void cache(Long restaurantId, Menu menu, long seen) {
+        if (seen != invalidations) {
+            return;
+        }
+        menus.put(restaurantId, menu);
+        Iterator<Menu> leastRecentlyRead = menus.values().iterator();
+        while (menus.size() > maxSize && leastRecentlyRead.hasNext()) {
+            leastRecentlyRead.next();
+            leastRecentlyRead.remove();
+        }
+    }
+
+    private Menu build(Long restaurantId) {
+        return transactionTemplate.execute(status -> {
+            // A change committed while this runs invalidates the menu once it is built, so the tag and body may disagree only briefly
+            String eTag = new VersionVector("food").add(restaurantId)
+                .addAll(foodRepo.findVersionsByRestaurantId(restaurantId))
+                .addAll(foodRepo.findPictureVersionsByRestaurantId(restaurantId))
+                .addAll(foodRepo.findIngredientVersionsByRestaurantId(restaurantId))
+                .toETag();
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            jsonArrayWriter.write(json, foodRepo.streamByRestaurantRestaurantId(restaurantId), Function.identity());
+            byte[] bytes = json.toByteArray();
+            return new Menu(bytes, gzip ? gzip(bytes) : null, eTag);
+        });
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,159 @@
+package foodprint.backend.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import foodprint.backend.model.RestaurantHours;
+
+/**
+ * Immutable opening hours of a restaurant, compiled once from its hour and minute
+ * fields into minutes of the day and the range of bookable slot ordinals for
+ * weekdays and weekends. Opening and closing are treated as [opening, closing),
+ * so a day where closing is not after opening counts as closed.
+ */
+public final class OpeningSchedule {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int[] source;
+
+    private final int weekdayOpening;
+    private final int weekdayClosing;
+    private final int weekendOpening;
+    private final int weekendClosing;
+
+    private final int weekdayFirstSlot;
+    private final int weekdayEndSlot;
+    private final int weekendFirstSlot;
+    private final int weekendEndSlot;
+
+    private OpeningSchedule(int[] source) {
+        this.source = source;
+        this.weekdayOpening = minuteOfDay(source[0], source[1]);
+        this.weekdayClosing = minuteOfDay(source[2], source[3]);
+        this.weekendOpening = minuteOfDay(source[4], source[5]);
+        this.weekendClosing = minuteOfDay(source[6], source[7]);
+
+        // First slot starts at the next half hour on or after opening, slots run as long as there is time left
+        this.weekdayFirstSlot = ceilDiv(weekdayOpening, SlotOccupancyIndex.SLOT_MINUTES);
+        this.weekdayEndSlot = Math.max(weekdayFirstSlot, Math.min(SlotOccupancyIndex.SLOTS_PER_DAY, ceilDiv(weekdayClosing, SlotOccupancyIndex.SLOT_MINUTES)));
+        this.weekendFirstSlot = ceilDiv(weekendOpening, SlotOccupancyIndex.SLOT_MINUTES);
+        this.weekendEndSlot = Math.max(weekendFirstSlot, Math.min(SlotOccupancyIndex.SLOTS_PER_DAY, ceilDiv(weekendClosing, SlotOccupancyIndex.SLOT_MINUTES)));
+    }
+
+    /**
+     * Compiles the opening hours of a restaurant, missing fields count as 0
+     * @param restaurant
+     * @return
+     */
+    public static OpeningSchedule of(RestaurantHours restaurant) {
+        return new OpeningSchedule(sourceOf(restaurant));
+    }
+
+    /**
+     * Checks whether this schedule was compiled from the restaurant's current hours
+     * @param restaurant
+     * @return
+     */
+    public boolean matches(RestaurantHours restaurant) {
+        return source[0] == valueOf(restaurant.getRestaurantWeekdayOpeningHour())
+            && source[1] == valueOf(restaurant.getRestaurantWeekdayOpeningMinutes())
+            && source[2] == valueOf(restaurant.getRestaurantWeekdayClosingHour())
+            && source[3] == valueOf(restaurant.getRestaurantWeekdayClosingMinutes())
+            && source[4] == valueOf(restaurant.getRestaurantWeekendOpeningHour())
+            && source[5] == valueOf(restaurant.getRestaurantWeekendOpeningMinutes())
+            && source[6] == valueOf(restaurant.getRestaurantWeekendClosingHour())
+            && source[7] == valueOf(restaurant.getRestaurantWeekendClosingMinutes());
+    }
+
+    /**
+     * Gets the ordinal of the first bookable slot on a given date
+     * @param date
+     * @return
+     */
+    public int firstSlot(LocalDate date) {
+        return isWeekend(date) ? weekendFirstSlot : weekdayFirstSlot;
+    }
+
+    /**
+     * Gets the ordinal just after the last bookable slot on a given date
+     * @param date
+     * @return
+     */
+    public int endSlot(LocalDate date) {
+        return isWeekend(date) ? weekendEndSlot : weekdayEndSlot;
+    }
+
+    /**
+     * Checks whether the restaurant is open at a given time
+     * @param dateTime
+     * @return
+     */
+    public boolean isOpen(LocalDateTime dateTime) {
+        int minute = dateTime.getHour() * 60 + dateTime.getMinute();
+        return minute >= opening(dateTime.toLocalDate()) && minute < closing(dateTime.toLocalDate());
+    }
+
+    /**
+     * Gets the earliest time at or after a given time that the restaurant is open
+     * @param dateTime
+     * @return the given time if the restaurant is already open, null if it never opens
+     */
+    public LocalDateTime nextOpening(LocalDateTime dateTime) {
+        if (isOpen(dateTime)) {
+            return dateTime;
+        }
+        LocalDate date = dateTime.toLocalDate();
+        int minute = dateTime.getHour() * 60 + dateTime.getMinute();
+        if (minute < opening(date) && opening(date) < closing(date)) {
+            return date.atStartOfDay().plusMinutes(opening(date));
+        }
+        // Every weekday and weekend pattern repeats within a week
+        for (int days = 1; days <= 7; days++) {
+            LocalDate next = date.plusDays(days);
+            if (opening(next) < closing(next)) {
+                return next.atStartOfDay().plusMinutes(opening(next));
+            }
+        }
+        return null;
+    }
+
+    private int opening(LocalDate date) {
+        return isWeekend(date) ? weekendOpening : weekdayOpening;
+    }
+
+    private int closing(LocalDate date) {
+        return isWeekend(date) ? weekendClosing : weekdayClosing;
+    }
+
+    private static boolean isWeekend(LocalDate date) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+    }
+
+    private static int[] sourceOf(RestaurantHours restaurant) {
+        return new int[] {
+            valueOf(restaurant.getRestaurantWeekdayOpeningHour()),
+            valueOf(restaurant.getRestaurantWeekdayOpeningMinutes()),
+            valueOf(restaurant.getRestaurantWeekdayClosingHour()),
+            valueOf(restaurant.getRestaurantWeekdayClosingMinutes()),
+            valueOf(restaurant.getRestaurantWeekendOpeningHour()),
+            valueOf(restaurant.getRestaurantWeekendOpeningMinutes()),
+            valueOf(restaurant.getRestaurantWeekendClosingHour()),
+            valueOf(restaurant.getRestaurantWeekendClosingMinutes())
+        };
+    }
+
+    private static int valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static int minuteOfDay(int hour, int minutes) {
+        return Math.min(MINUTES_PER_DAY, hour * 60 + minutes);
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
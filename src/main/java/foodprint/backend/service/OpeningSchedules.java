@@ -0,0 +1,66 @@
+package foodprint.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Keeps the compiled opening schedule of every restaurant. A schedule is only
+ * compiled again when the restaurant's hours change, whether through
+ * RestaurantService.update on this node or an update seen from the database.
+ */
+@Component
+public class OpeningSchedules {
+
+    private final Map<Long, OpeningSchedule> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the opening schedule of a restaurant
+     * @param restaurant
+     * @return
+     */
+    public OpeningSchedule get(Restaurant restaurant) {
+        Long restaurantId = restaurant.getRestaurantId();
+        if (restaurantId == null) {
+            return OpeningSchedule.of(restaurant);
+        }
+        OpeningSchedule schedule = schedules.get(restaurantId);
+        if (schedule == null || !schedule.matches(restaurant)) {
+            schedule = OpeningSchedule.of(restaurant);
+            schedules.put(restaurantId, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Checks whether a restaurant is open at a given time
+     * @param restaurant
+     * @param dateTime
+     * @return
+     */
+    public boolean isOpen(Restaurant restaurant, LocalDateTime dateTime) {
+        return get(restaurant).isOpen(dateTime);
+    }
+
+    /**
+     * Compiles the schedule of a restaurant again after its hours were changed
+     * @param restaurant
+     */
+    public void refresh(Restaurant restaurant) {
+        if (restaurant.getRestaurantId() != null) {
+            schedules.put(restaurant.getRestaurantId(), OpeningSchedule.of(restaurant));
+        }
+    }
+
+    /**
+     * Drops the schedule of a deleted restaurant
+     * @param restaurantId
+     */
+    public void evict(Long restaurantId) {
+        schedules.remove(restaurantId);
+    }
+}
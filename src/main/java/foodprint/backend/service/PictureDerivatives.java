@@ -0,0 +1,317 @@
+package foodprint.backend.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.exceptions.ServiceUnavailableException;
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Scales an uploaded image down to every picture size and stores the results next
+ * to it, so that views showing small pictures need not load the full image.
+ *
+ * Decoded images take far more memory than their files, so decoding runs on a
+ * small pool with a bounded queue, and images with more pixels than allowed are
+ * not decoded at all. Images that cannot be decoded get no sizes, and their
+ * pictures fall back to the uploaded image.
+ */
+@Component
+public class PictureDerivatives {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private static final String[] FORMATS = { "jpg", "png" };
+
+    private final FileStore fileStore;
+
+    private final long maxPixels;
+
+    private final ThreadPoolExecutor decoders;
+
+    private final Timer renderTime;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public PictureDerivatives(FileStore fileStore, MeterRegistry meterRegistry,
+            @Value("${foodprint.picture-derivatives.threads:2}") int threads,
+            @Value("${foodprint.picture-derivatives.queue:16}") int queueCapacity,
+            @Value("${foodprint.picture-derivatives.max-pixels:50000000}") long maxPixels) {
+        this.fileStore = fileStore;
+        this.maxPixels = maxPixels;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.decoders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "picture-derivatives-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.renderTime = Timer.builder("foodprint.picture.derivatives.render")
+            .description("Time to decode an image and encode every picture size of it")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Renders every size of an image and stores them under its image path
+     * @param imagePath
+     * @param fileName file name of the uploaded image
+     * @param source
+     * @return the URL of every size stored, which is none if the image could not be decoded
+     */
+    public Map<PictureSize, String> store(String imagePath, String fileName, InputStream source) {
+        return storeRendered(imagePath, fileName, render(source));
+    }
+
+    /**
+     * Stores sizes of an image rendered already under its image path
+     * @param imagePath
+     * @param fileName file name of the uploaded image
+     * @param renditions
+     * @return the URL of every size stored
+     */
+    public Map<PictureSize, String> storeRendered(String imagePath, String fileName, Map<PictureSize, Rendition> renditions) {
+        Map<PictureSize, String> urls = new EnumMap<>(PictureSize.class);
+        for (Map.Entry<PictureSize, Rendition> entry : renditions.entrySet()) {
+            Rendition rendition = entry.getValue();
+            String key = keyOf(entry.getKey(), fileName, rendition.getFormat());
+            String path = PictureService.bucketPath(imagePath);
+            fileStore.upload(path, key, Optional.empty(),
+                new ByteArrayInputStream(rendition.getBytes()), rendition.getContentType(), rendition.getBytes().length);
+            urls.put(entry.getKey(), fileStore.urlOf(path, key));
+        }
+        return urls;
+    }
+
+    /**
+     * Deletes every size stored for a picture
+     * @param picture
+     */
+    public void delete(Picture picture) {
+        Map<PictureSize, String> urls = new EnumMap<>(PictureSize.class);
+        for (PictureSize size : PictureSize.values()) {
+            String url = picture.getStoredUrl(size);
+            if (url != null) {
+                urls.put(size, url);
+            } else if (picture.getStatus() == PictureStatus.PENDING) {
+                // Its upload may have stored the sizes since the picture was read, in either format
+                for (String format : FORMATS) {
+                    fileStore.delete(PictureService.bucketPath(picture.getImagePath()), keyOf(size, picture.getImageFileName(), format));
+                }
+            }
+        }
+        delete(picture.getImagePath(), picture.getImageFileName(), urls);
+    }
+
+    /**
+     * Deletes the sizes stored under an image path
+     * @param imagePath
+     * @param fileName file name of the uploaded image
+     * @param urls URL of every size stored
+     */
+    public void delete(String imagePath, String fileName, Map<PictureSize, String> urls) {
+        for (Map.Entry<PictureSize, String> entry : urls.entrySet()) {
+            // Sizes are stored as JPEG or PNG, whichever the URL ends with
+            String url = entry.getValue();
+            String format = url.substring(url.lastIndexOf('.') + 1);
+            fileStore.delete(PictureService.bucketPath(imagePath), keyOf(entry.getKey(), fileName, format));
+        }
+    }
+
+    /**
+     * Decodes an image on the decoding pool and encodes every picture size of it,
+     * none of them larger than the image itself
+     * @param source
+     * @return nothing if the image could not be decoded
+     */
+    public Map<PictureSize, Rendition> render(InputStream source) {
+        Future<Map<PictureSize, Rendition>> rendered;
+        try {
+            rendered = decoders.submit(() -> renderTime.recordCallable(() -> renderNow(source)));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many pictures are being processed, please try again later");
+        }
+        try {
+            return rendered.get();
+        } catch (InterruptedException e) {
+            rendered.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Processing of the picture was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to process the picture", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decoders.shutdownNow();
+    }
+
+    private static String keyOf(PictureSize size, String fileName, String format) {
+        String baseName = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        return String.format("%s/%s.%s", size.name().toLowerCase(), baseName, format);
+    }
+
+    private Map<PictureSize, Rendition> renderNow(InputStream source) throws IOException {
+        Map<PictureSize, Rendition> renditions = new EnumMap<>(PictureSize.class);
+        BufferedImage image = decode(source);
+        if (image == null) {
+            return renditions;
+        }
+        boolean alpha = image.getColorModel().hasAlpha();
+        PictureSize[] sizes = PictureSize.values();
+        // Largest first, so that each size is scaled from the one before rather than from the full image
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            image = scale(image, sizes[i].getMaxEdge(), alpha);
+            renditions.put(sizes[i], alpha ? encodePng(image) : encodeJpeg(image));
+        }
+        return renditions;
+    }
+
+    private BufferedImage decode(InputStream source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                log.warn("Picture is not in a format that can be decoded, so no sizes are made");
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Picture of {}x{} pixels is too large to decode, so no sizes are made", width, height);
+                    return null;
+                }
+                // Skips pixels while decoding very large images, keeping at least twice the largest size
+                int subsampling = Math.max(1, Math.max(width, height) / (2 * PictureSize.FULL.getMaxEdge()));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales an image down until its longest edge fits, halving it at most each
+     * step, as bilinear scaling by more than half at once skips pixels
+     */
+    private static BufferedImage scale(BufferedImage image, int maxEdge, boolean alpha) {
+        BufferedImage scaled = image;
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        while (longest > maxEdge) {
+            int next = Math.max(maxEdge, longest / 2);
+            int width = Math.max(1, (int) Math.round((double) scaled.getWidth() * next / longest));
+            int height = Math.max(1, (int) Math.round((double) scaled.getHeight() * next / longest));
+            scaled = draw(scaled, width, height, alpha);
+            longest = next;
+        }
+        if (scaled == image && image.getType() != (alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB)) {
+            // Images small enough already are still redrawn, so that every size is encoded the same way
+            scaled = draw(image, image.getWidth(), image.getHeight(), alpha);
+        }
+        return scaled;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage drawn = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = drawn.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return drawn;
+    }
+
+    private static Rendition encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new Rendition(bytes.toByteArray(), "image/jpeg", "jpg");
+    }
+
+    private static Rendition encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return new Rendition(bytes.toByteArray(), "image/png", "png");
+    }
+
+    /**
+     * One encoded size of an image
+     */
+    public static final class Rendition {
+
+        private final byte[] bytes;
+
+        private final String contentType;
+
+        private final String format;
+
+        Rendition(byte[] bytes, String contentType, String format) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+            this.format = format;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+    }
+}
@@ -6,12 +6,22 @@ import static org.apache.http.entity.ContentType.IMAGE_JPEG;
 import static org.apache.http.entity.ContentType.IMAGE_PNG;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
@@ -20,17 +30,43 @@ import org.springframework.web.multipart.MultipartFile;
 import foodprint.backend.exceptions.DeleteFailedException;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.model.Picture;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
 import foodprint.backend.model.PictureRepo;
+import foodprint.backend.service.PictureDerivatives.Rendition;
 
 @Service
 public class PictureService  {
+    private static final String BUCKET = "foodprint-amazon-storage";
+    private static final int CONTENT_LOCKS = 64;
+
+    // Extensions a stored image may have by its type, the first being the one given when its name has none of them
+    private static final Map<String, List<String>> IMAGE_EXTENSIONS = Map.of(
+        IMAGE_PNG.getMimeType(), List.of("png"),
+        IMAGE_BMP.getMimeType(), List.of("bmp"),
+        IMAGE_GIF.getMimeType(), List.of("gif"),
+        IMAGE_JPEG.getMimeType(), List.of("jpg", "jpeg"));
+
     private final FileStore fileStore;
     private final PictureRepo repository;
+    private final PictureUploader pictureUploader;
+    private final PictureDerivatives pictureDerivatives;
+
+    // Striped by content hash, so that sharing a stored image and deleting its last reference never overlap
+    private final Object[] contentLocks = new Object[CONTENT_LOCKS];
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     @Autowired
-    public PictureService(FileStore fileStore, PictureRepo repository) {
+    public PictureService(FileStore fileStore, PictureRepo repository, PictureUploader pictureUploader,
+            PictureDerivatives pictureDerivatives) {
         this.fileStore = fileStore;
         this.repository = repository;
+        this.pictureUploader = pictureUploader;
+        this.pictureDerivatives = pictureDerivatives;
+        for (int i = 0; i < contentLocks.length; i++) {
+            contentLocks[i] = new Object();
+        }
     }
 
     @PreAuthorize("hasAnyAuthority('FP_USER')")
@@ -41,43 +77,132 @@ public class PictureService  {
 
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public Picture savePicture(String title, String description, MultipartFile file) {
+        validate(file);
 
-        // Check if the file is empty
-        if (file.isEmpty()) {
-            throw new IllegalStateException("Cannot upload empty file");
+        // Sizes are made first, so a busy decoding pool turns the upload away before anything is stored,
+        // and the file is hashed as they are made rather than read once more for it
+        MessageDigest digest = contentDigest();
+        Map<PictureSize, Rendition> renditions;
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            renditions = pictureDerivatives.render(inputStream);
+            // Decoding can stop short of the end of the file, which is still part of its hash
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to upload file", e);
         }
 
-        //Check if the file is an image
-        if (!Arrays.asList(IMAGE_PNG.getMimeType(),
-                IMAGE_BMP.getMimeType(),
-                IMAGE_GIF.getMimeType(),
-                IMAGE_JPEG.getMimeType()).contains(file.getContentType())) {
-            throw new IllegalStateException("File uploaded is not an image");
+        // The same bytes uploaded before are not stored again
+        String contentHash = hexOf(digest);
+        Optional<Picture> shared = share(title, description, contentHash);
+        if (shared.isPresent()) {
+            return shared.get();
         }
 
-        // Get file metadata
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("Content-Type", file.getContentType());
-        metadata.put("Content-Length", String.valueOf(file.getSize()));
-        
-        // Upload image to Amazon S3
         UUID uuid = UUID.randomUUID();
-        String path = String.format("foodprint-amazon-storage/%s", uuid);
-        String fileName = String.format("%s", file.getOriginalFilename());
-        try {
-            fileStore.upload(path, fileName, Optional.of(metadata), file.getInputStream());
+        String fileName = fileNameOf(file);
+        Map<PictureSize, String> sizes = pictureDerivatives.storeRendered(uuid.toString(), fileName, renditions);
+
+        // Upload image to Amazon S3, streamed with its type and length rather than buffered
+        try (InputStream inputStream = file.getInputStream()) {
+            fileStore.upload(bucketPath(uuid.toString()), fileName, Optional.empty(), inputStream, file.getContentType(),
+                file.getSize());
         } catch (IOException e) {
             throw new IllegalStateException("Failed to upload file", e);
         }
-        path = String.format("%s", uuid);
-        String url = String.format("%s%s/%s", "https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/", path, fileName.replace(" ", "+"));
         
         // Save picture in database
-        Picture picture = new Picture(title, description, path, fileName, url);
+        Picture picture = new Picture(title, description, uuid.toString(), fileName, urlOf(uuid.toString(), fileName));
+        picture.setUrls(sizes);
+        picture.setContentHash(contentHash);
         repository.saveAndFlush(picture);
         return picture;
     }
 
+    /**
+     * Saves a picture as PENDING and uploads it in the background, after writing the
+     * file to local disk. The picture is marked READY once uploaded, or FAILED if
+     * every attempt fails. A picture whose bytes were uploaded before is saved READY
+     * straight away instead, sharing the stored image.
+     * @param title
+     * @param description
+     * @param file
+     * @param attach run with the saved picture before any upload starts, READY if it shares a stored image
+     * @param onFinished run with the id of a PENDING picture once it is marked READY or FAILED
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
+    public Picture acceptPicture(String title, String description, MultipartFile file, Consumer<Picture> attach,
+            Consumer<Long> onFinished) {
+        validate(file);
+
+        UUID uuid = UUID.randomUUID();
+        String fileName = fileNameOf(file);
+        // Hashed as it is written to local disk, and the same bytes uploaded before are not uploaded again
+        MessageDigest digest = contentDigest();
+        Path spooled = pictureUploader.accept(uuid.toString(), file, digest);
+        String contentHash = hexOf(digest);
+        Optional<Picture> shared;
+        try {
+            shared = share(title, description, contentHash);
+        } catch (RuntimeException e) {
+            pictureUploader.abandon(spooled);
+            throw e;
+        }
+        if (shared.isPresent()) {
+            pictureUploader.abandon(spooled);
+            // Attaching invalidates what caches the picture, so there is nothing left for onFinished
+            try {
+                attach.accept(shared.get());
+            } catch (RuntimeException e) {
+                repository.delete(shared.get());
+                throw e;
+            }
+            return shared.get();
+        }
+
+        Picture picture = new Picture(title, description, uuid.toString(), fileName, urlOf(uuid.toString(), fileName));
+        picture.setStatus(PictureStatus.PENDING);
+        picture.setContentHash(contentHash);
+        try {
+            repository.saveAndFlush(picture);
+            // Attached first, so that the upload finds whatever waits for it
+            attach.accept(picture);
+        } catch (RuntimeException e) {
+            pictureUploader.abandon(spooled);
+            throw e;
+        }
+        Long pictureId = picture.getId();
+        pictureUploader.start(pictureId, spooled, bucketPath(uuid.toString()), fileName, file.getContentType(),
+            () -> onFinished.accept(pictureId));
+        return picture;
+    }
+
+    /**
+     * Starts the uploads of pictures left PENDING by the last shutdown again, and
+     * marks the ones whose spooled file is gone as FAILED
+     * @param onFinished run with the id of each picture once it is marked READY or FAILED
+     */
+    public void resumeUploads(Consumer<Long> onFinished) {
+        List<Picture> pending = repository.findByStatus(PictureStatus.PENDING);
+        for (Picture picture : pending) {
+            Long pictureId = picture.getId();
+            Optional<Path> spooled = pictureUploader.spooled(picture.getImagePath());
+            if (spooled.isEmpty()) {
+                repository.updateStatus(pictureId, PictureStatus.FAILED);
+                onFinished.accept(pictureId);
+                continue;
+            }
+            pictureUploader.reclaim();
+            String contentType = URLConnection.guessContentTypeFromName(picture.getImageFileName());
+            pictureUploader.start(pictureId, spooled.get(), bucketPath(picture.getImagePath()),
+                picture.getImageFileName(), contentType == null ? "application/octet-stream" : contentType,
+                () -> onFinished.accept(pictureId));
+        }
+        if (!pending.isEmpty()) {
+            log.info("Resumed uploads of {} pending pictures", pending.size());
+        }
+    }
+
     @PreAuthorize("hasAnyAuthority('FP_USER')")
     public String getPictureById(Long id) {
         Optional<Picture> picture = repository.findById(id);
@@ -85,13 +210,12 @@ public class PictureService  {
             throw new NotFoundException("Picture not found.");
         }
         
-        return String.format("%s%s/%s", "https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/", picture.get().getImagePath(), picture.get().getImageFileName().replace(" ", "+"));
+        return urlOf(picture.get().getImagePath(), picture.get().getImageFileName());
     }
 
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public void deletePicture(Long id) {
-        Picture picture = get(id);
-        repository.delete(picture);
+        delete(get(id));
         try {
             this.get(id);
             throw new DeleteFailedException("Picture could not be deleted");
@@ -99,6 +223,16 @@ public class PictureService  {
         }
     }
 
+    /**
+     * Deletes a picture its restaurant or food has let go of, like deletePicture.
+     * Not secured, as it is run once a background upload swaps in a new picture,
+     * where no user is signed in, so it must not be reachable from a controller.
+     * @param id
+     */
+    public void discardPicture(Long id) {
+        repository.findById(id).ifPresent(this::delete);
+    }
+
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public Picture updatedPicture(Long pictureId, Picture newPicture) {
         Picture oldPicture = get(pictureId);
@@ -106,4 +240,119 @@ public class PictureService  {
         oldPicture.setTitle(newPicture.getTitle());
         return repository.saveAndFlush(oldPicture);
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves a picture sharing the stored image of a READY picture with the same
+     * content, if there is one
+     * @param title
+     * @param description
+     * @param contentHash
+     * @return
+     */
+    private Optional<Picture> share(String title, String description, String contentHash) {
+        // Held until the new picture is saved, so the stored image cannot lose its last reference meanwhile
+        synchronized (lockOf(contentHash)) {
+            Optional<Picture> stored = repository.findFirstByContentHashAndStatus(contentHash, PictureStatus.READY);
+            if (stored.isEmpty()) {
+                return Optional.empty();
+            }
+            Picture picture = new Picture(title, description, stored.get().getImagePath(), stored.get().getImageFileName(),
+                stored.get().getUrl());
+            picture.setThumbUrl(stored.get().getThumbUrl());
+            picture.setCardUrl(stored.get().getCardUrl());
+            picture.setFullUrl(stored.get().getFullUrl());
+            picture.setContentHash(contentHash);
+            repository.saveAndFlush(picture);
+            return Optional.of(picture);
+        }
+    }
+
+    /**
+     * Deletes a picture, and its stored image once no other picture shares it
+     */
+    private void delete(Picture picture) {
+        if (picture.getStatus() == PictureStatus.PENDING && pictureUploader.cancel(picture.getId())) {
+            // Nothing shares a picture still uploading, and its upload deletes whatever it stored
+            repository.delete(picture);
+        } else if (picture.getContentHash() == null) {
+            repository.delete(picture);
+        } else {
+            synchronized (lockOf(picture.getContentHash())) {
+                repository.delete(picture);
+                if (repository.countByImagePath(picture.getImagePath()) == 0) {
+                    deleteStored(picture);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the stored image of a picture and every size of it. A failure leaves
+     * the files behind rather than failing the delete, as no picture refers to them
+     */
+    private void deleteStored(Picture picture) {
+        try {
+            fileStore.delete(bucketPath(picture.getImagePath()), picture.getImageFileName());
+            pictureDerivatives.delete(picture);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete the stored image of picture {}", picture.getId(), e);
+        }
+    }
+
+    private Object lockOf(String contentHash) {
+        return contentLocks[Math.floorMod(contentHash.hashCode(), contentLocks.length)];
+    }
+
+    /**
+     * Gets a digest to hash the bytes of a file with while they are read for something else
+     */
+    private static MessageDigest contentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hexOf(MessageDigest digest) {
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void validate(MultipartFile file) {
+        // Check if the file is empty
+        if (file.isEmpty()) {
+            throw new IllegalStateException("Cannot upload empty file");
+        }
+
+        //Check if the file is an image
+        if (file.getContentType() == null || !IMAGE_EXTENSIONS.containsKey(file.getContentType())) {
+            throw new IllegalStateException("File uploaded is not an image");
+        }
+    }
+
+    /**
+     * Gets the name a validated image is stored under. Only the last segment of the
+     * name the client sent is kept, so it cannot lead out of the picture's path, and
+     * its extension is made to match the image type, so it is served as that type.
+     * @param file
+     * @return
+     */
+    static String fileNameOf(MultipartFile file) {
+        String name = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        int dot = name.lastIndexOf('.');
+        String baseName = (dot < 0 ? name : name.substring(0, dot)).replaceAll("^\\.+", "");
+        String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+        List<String> allowed = IMAGE_EXTENSIONS.get(file.getContentType());
+        return String.format("%s.%s", baseName.isBlank() ? "picture" : baseName,
+            allowed.contains(extension) ? extension : allowed.get(0));
+    }
+
+    static String bucketPath(String imagePath) {
+        return String.format("%s/%s", BUCKET, imagePath);
+    }
+
+    private String urlOf(String imagePath, String fileName) {
+        return fileStore.urlOf(bucketPath(imagePath), fileName);
+    }
+}
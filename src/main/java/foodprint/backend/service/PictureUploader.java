@@ -0,0 +1,357 @@
+package foodprint.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import foodprint.backend.exceptions.ServiceUnavailableException;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
+import foodprint.backend.model.PictureRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Uploads pictures to the file store in the background, so that a request only has
+ * to write the file to local disk.
+ *
+ * Every picture size is made and stored along with the image. A bounded number
+ * of uploads can be waiting at once and any more are turned away until some
+ * finish. A failed upload is tried again after a backoff that doubles each time,
+ * and once it succeeds or runs out of attempts its picture is marked READY or
+ * FAILED and the spooled file is deleted. Spooled files are named after
+ * the picture's image path, so uploads cut short by a shutdown can be resumed.
+ *
+ * An upload whose picture is deleted meanwhile deletes whatever it stored instead
+ * of marking the picture, whether it was cancelled or finds the picture gone.
+ */
+@Component
+public class PictureUploader {
+
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final FileStore fileStore;
+
+    private final PictureDerivatives pictureDerivatives;
+
+    private final PictureRepo pictureRepo;
+
+    private final Path spoolDirectory;
+
+    private final int capacity;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMillis;
+
+    private final ScheduledThreadPoolExecutor uploaders;
+
+    // Uploads accepted and not finished yet, whether uploading or waiting
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    // Uploads started and not finished yet, by picture
+    private final ConcurrentMap<Long, Upload> running = new ConcurrentHashMap<>();
+
+    private final Timer readyLatency;
+
+    private final Timer failedLatency;
+
+    private final Counter retries;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public PictureUploader(FileStore fileStore, PictureDerivatives pictureDerivatives, PictureRepo pictureRepo,
+            MeterRegistry meterRegistry,
+            @Value("${foodprint.picture-upload.spool-dir:${java.io.tmpdir}/foodprint-uploads}") String spoolDirectory,
+            @Value("${foodprint.picture-upload.threads:4}") int threads,
+            @Value("${foodprint.picture-upload.capacity:100}") int capacity,
+            @Value("${foodprint.picture-upload.max-attempts:5}") int maxAttempts,
+            @Value("${foodprint.picture-upload.initial-backoff-ms:1000}") long initialBackoffMillis) {
+        this.fileStore = fileStore;
+        this.pictureDerivatives = pictureDerivatives;
+        this.pictureRepo = pictureRepo;
+        this.spoolDirectory = Paths.get(spoolDirectory);
+        this.capacity = capacity;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        try {
+            Files.createDirectories(this.spoolDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploaders = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "picture-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("foodprint.picture.upload.queue", outstanding, AtomicInteger::get)
+            .description("Picture uploads accepted and not finished yet")
+            .register(meterRegistry);
+        this.readyLatency = Timer.builder("foodprint.picture.upload.latency")
+            .tag("result", "ready")
+            .description("Time from starting a picture upload to it being uploaded")
+            .register(meterRegistry);
+        this.failedLatency = Timer.builder("foodprint.picture.upload.latency")
+            .tag("result", "failed")
+            .description("Time from starting a picture upload to giving up on it")
+            .register(meterRegistry);
+        this.retries = Counter.builder("foodprint.picture.upload.retries")
+            .description("Picture uploads tried again after failing")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Takes a place in the upload queue and writes a file to local disk. The place is
+     * held until the upload is started and finishes, or is abandoned.
+     * @param name name of the spooled file, which must be the picture's image path
+     * @param file
+     * @param digest updated with the bytes of the file as they are written
+     * @return the spooled file
+     */
+    public Path accept(String name, MultipartFile file, MessageDigest digest) {
+        if (outstanding.incrementAndGet() > capacity) {
+            outstanding.decrementAndGet();
+            throw new ServiceUnavailableException("Too many pictures are being uploaded, please try again later");
+        }
+        Path spooled = spoolDirectory.resolve(name);
+        // Hashed as it is written, so the file is not read again just for its hash
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            abandon(spooled);
+            throw new IllegalStateException("Failed to upload file", e);
+        }
+        return spooled;
+    }
+
+    /**
+     * Gets the spooled file of a picture's image path, if there is one
+     * @param name
+     * @return
+     */
+    public Optional<Path> spooled(String name) {
+        Path spooled = spoolDirectory.resolve(name);
+        return Files.isRegularFile(spooled) ? Optional.of(spooled) : Optional.empty();
+    }
+
+    /**
+     * Takes a place in the upload queue for a file spooled before a restart, even if
+     * the queue is full
+     */
+    public void reclaim() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Releases the place of a file that will not be uploaded after all and deletes it
+     * @param spooled
+     */
+    public void abandon(Path spooled) {
+        deleteQuietly(spooled);
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Starts uploading a spooled file in the background
+     * @param pictureId picture to mark READY or FAILED once done
+     * @param spooled
+     * @param path
+     * @param fileName
+     * @param contentType
+     * @param onFinished run after the picture is marked and the spooled file deleted
+     */
+    public void start(Long pictureId, Path spooled, String path, String fileName, String contentType, Runnable onFinished) {
+        Upload upload = new Upload(pictureId, spooled, path, fileName, contentType, onFinished);
+        running.put(pictureId, upload);
+        uploaders.execute(() -> attempt(upload));
+    }
+
+    /**
+     * Cancels the upload of a picture being deleted. The upload stops at its next
+     * step and deletes whatever it stored rather than marking the picture.
+     * @param pictureId
+     * @return false if there is no such upload, or it has marked the picture already
+     */
+    public boolean cancel(Long pictureId) {
+        Upload upload = running.get(pictureId);
+        if (upload == null) {
+            return false;
+        }
+        synchronized (upload) {
+            if (upload.finished) {
+                return false;
+            }
+            upload.cancelled = true;
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of uploads accepted and not finished yet
+     * @return
+     */
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Pictures left PENDING keep their spooled files and are resumed on the next start
+        uploaders.shutdownNow();
+    }
+
+    private void attempt(Upload upload) {
+        if (upload.cancelled) {
+            finish(upload, PictureStatus.FAILED, failedLatency);
+            return;
+        }
+        try {
+            // The spooled file is named after the image path the sizes are stored under
+            try (InputStream inputStream = Files.newInputStream(upload.spooled)) {
+                upload.sizes = pictureDerivatives.store(imagePathOf(upload), upload.fileName, inputStream);
+            }
+            try (InputStream inputStream = Files.newInputStream(upload.spooled)) {
+                fileStore.upload(upload.path, upload.fileName, Optional.empty(), inputStream, upload.contentType,
+                    Files.size(upload.spooled));
+            }
+        } catch (IOException | RuntimeException e) {
+            if (upload.attempts < maxAttempts && !upload.cancelled) {
+                long delay = backoff(upload.attempts);
+                upload.attempts++;
+                retries.increment();
+                log.warn("Upload of picture {} failed, trying again in {} ms", upload.pictureId, delay, e);
+                uploaders.schedule(() -> attempt(upload), delay, TimeUnit.MILLISECONDS);
+            } else {
+                log.error("Upload of picture {} failed {} times, giving up", upload.pictureId, upload.attempts, e);
+                finish(upload, PictureStatus.FAILED, failedLatency);
+            }
+            return;
+        }
+        finish(upload, PictureStatus.READY, readyLatency);
+    }
+
+    private void finish(Upload upload, PictureStatus status, Timer latency) {
+        boolean deleted = false;
+        synchronized (upload) {
+            // Cancelling from here on fails, so whoever deletes the picture deletes what it refers to
+            upload.finished = true;
+            if (upload.cancelled) {
+                deleted = true;
+            } else {
+                Map<PictureSize, String> sizes = status == PictureStatus.READY ? upload.sizes : Map.of();
+                try {
+                    deleted = pictureRepo.updateStatusAndSizes(upload.pictureId, status, sizes.get(PictureSize.THUMB),
+                        sizes.get(PictureSize.CARD), sizes.get(PictureSize.FULL)) == 0;
+                } catch (RuntimeException e) {
+                    log.error("Could not mark picture {} as {}", upload.pictureId, status, e);
+                }
+            }
+        }
+        running.remove(upload.pictureId);
+        if (deleted) {
+            deleteStored(upload);
+        } else {
+            latency.record(System.nanoTime() - upload.startedAt, TimeUnit.NANOSECONDS);
+        }
+        abandon(upload.spooled);
+        // Run last, so that it sees the upload fully finished
+        upload.onFinished.run();
+    }
+
+    /**
+     * Deletes the image and sizes an upload stored for a picture deleted meanwhile.
+     * A failure leaves the files behind, as no picture refers to them
+     */
+    private void deleteStored(Upload upload) {
+        log.info("Picture {} was deleted while uploading, deleting what was stored for it", upload.pictureId);
+        try {
+            fileStore.delete(upload.path, upload.fileName);
+            pictureDerivatives.delete(imagePathOf(upload), upload.fileName, upload.sizes);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete the stored image of picture {}", upload.pictureId, e);
+        }
+    }
+
+    private static String imagePathOf(Upload upload) {
+        return upload.spooled.getFileName().toString();
+    }
+
+    private long backoff(int attempts) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, initialBackoffMillis << Math.min(attempts - 1, 20));
+        // Jitter keeps uploads that failed together from all trying again together
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void deleteQuietly(Path spooled) {
+        try {
+            Files.deleteIfExists(spooled);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled picture {}", spooled, e);
+        }
+    }
+
+    private static final class Upload {
+
+        private final Long pictureId;
+
+        private final Path spooled;
+
+        private final String path;
+
+        private final String fileName;
+
+        private final String contentType;
+
+        private final Runnable onFinished;
+
+        private final long startedAt = System.nanoTime();
+
+        // Only touched by the one thread running the upload at a time
+        private int attempts = 1;
+
+        // Sizes stored by the last attempt, only touched by the thread running the upload
+        private Map<PictureSize, String> sizes = Map.of();
+
+        // Both only changed while holding the upload
+        private volatile boolean cancelled;
+
+        private boolean finished;
+
+        Upload(Long pictureId, Path spooled, String path, String fileName, String contentType, Runnable onFinished) {
+            this.pictureId = pictureId;
+            this.spooled = spooled;
+            this.path = path;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.onFinished = onFinished;
+        }
+    }
+}
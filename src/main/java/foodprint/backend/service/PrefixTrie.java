@@ -0,0 +1,245 @@
+package foodprint.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over normalized text that answers "best k completions of this
+ * prefix" by walking the prefix alone.
+ *
+ * Every node caches the best {@link #MAX_SUGGESTIONS} entries of its whole subtree,
+ * so a lookup costs the length of the prefix no matter how many entries share it.
+ * An entry is inserted under every word of its text, so "Sushi Tei" is found by
+ * both "sus" and "te". Inserting offers the entry to the caches along its paths;
+ * removing rebuilds only the caches that held it, from their children's caches.
+ */
+public class PrefixTrie {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingLong(Entry::getScore).reversed()
+        .thenComparingInt(entry -> entry.getText().length())
+        .thenComparing(Entry::getText)
+        .thenComparing(Entry::getKey);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Node root = new Node();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Something that can be suggested, identified by a key unique within the trie
+     */
+    public static final class Entry {
+
+        private final String key;
+
+        private final String text;
+
+        private final long score;
+
+        public Entry(String key, String text, long score) {
+            this.key = key;
+            this.text = text;
+            this.score = score;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public String getText() {
+            return this.text;
+        }
+
+        public long getScore() {
+            return this.score;
+        }
+    }
+
+    /**
+     * Folds text the same way for entries and prefixes: lower case, no accents and
+     * single spaces between words
+     * @param text
+     * @return
+     */
+    public static String normalize(String text) {
+        return String.join(" ", TextIndex.tokenize(text));
+    }
+
+    /**
+     * Adds an entry, replacing any previous entry with the same key
+     * @param entry
+     */
+    public void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            unlink(entry.getKey());
+            String normalized = normalize(entry.getText());
+            if (normalized.isEmpty()) {
+                return;
+            }
+            entries.put(entry.getKey(), entry);
+            for (String suffix : wordSuffixes(normalized)) {
+                List<Node> path = path(suffix, true);
+                path.get(path.size() - 1).terminal.add(entry);
+                for (Node node : path) {
+                    node.offer(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entry with a given key
+     * @param key
+     */
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            unlink(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the best entries whose text has a word starting with a given prefix
+     * @param prefix
+     * @param limit at most {@link #MAX_SUGGESTIONS}
+     * @return
+     */
+    public List<Entry> complete(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < normalized.length() && node != null; i++) {
+                node = node.children.get(normalized.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(node.top.subList(0, Math.min(limit, node.top.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of entries in the trie
+     * @return
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unlink(String key) {
+        Entry previous = entries.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (String suffix : wordSuffixes(normalize(previous.getText()))) {
+            List<Node> path = path(suffix, false);
+            if (path.size() != suffix.length() + 1) {
+                continue;
+            }
+            path.get(path.size() - 1).terminal.remove(previous);
+            // Deepest first, so that every node rebuilds from caches that are already up to date
+            for (int depth = path.size() - 1; depth >= 0; depth--) {
+                Node node = path.get(depth);
+                if (node.top.contains(previous)) {
+                    node.rebuild();
+                }
+                if (depth > 0 && node.terminal.isEmpty() && node.children.isEmpty()) {
+                    path.get(depth - 1).children.remove(suffix.charAt(depth - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the nodes from the root down to the node of a given text, stopping early
+     * if a node is missing and should not be created
+     */
+    private List<Node> path(String text, boolean create) {
+        List<Node> path = new ArrayList<>(text.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < text.length(); i++) {
+            Node child = node.children.get(text.charAt(i));
+            if (child == null) {
+                if (!create) {
+                    return path;
+                }
+                child = new Node();
+                node.children.put(text.charAt(i), child);
+            }
+            node = child;
+            path.add(node);
+        }
+        return path;
+    }
+
+    private static List<String> wordSuffixes(String normalized) {
+        List<String> suffixes = new ArrayList<>();
+        suffixes.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            suffixes.add(normalized.substring(i + 1));
+        }
+        return suffixes;
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+
+        private final List<Entry> terminal = new ArrayList<>(1);
+
+        // Best entries of this subtree, best first
+        private List<Entry> top = new ArrayList<>(0);
+
+        void offer(Entry entry) {
+            if (top.contains(entry)) {
+                return;
+            }
+            if (top.size() >= MAX_SUGGESTIONS && BEST_FIRST.compare(entry, top.get(top.size() - 1)) >= 0) {
+                return;
+            }
+            int at = Collections.binarySearch(top, entry, BEST_FIRST);
+            top.add(at < 0 ? -at - 1 : at, entry);
+            if (top.size() > MAX_SUGGESTIONS) {
+                top.remove(top.size() - 1);
+            }
+        }
+
+        void rebuild() {
+            top = new ArrayList<>(0);
+            for (Entry entry : terminal) {
+                offer(entry);
+            }
+            for (Node child : children.values()) {
+                for (Entry entry : child.top) {
+                    offer(entry);
+                }
+            }
+        }
+    }
+}
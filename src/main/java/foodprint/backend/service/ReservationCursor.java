@@ -0,0 +1,68 @@
+package foodprint.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import foodprint.backend.exceptions.BadRequestException;
+import foodprint.backend.model.Reservation;
+
+/**
+ * Position of a reservation in (date, reservationId) order, handed to clients as an
+ * opaque string so that the next page can continue right after it
+ */
+public final class ReservationCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime date;
+
+    private final Long reservationId;
+
+    public ReservationCursor(LocalDateTime date, Long reservationId) {
+        this.date = date;
+        this.reservationId = reservationId;
+    }
+
+    /**
+     * Gets the cursor positioned at a given reservation
+     * @param reservation
+     * @return
+     */
+    public static ReservationCursor of(Reservation reservation) {
+        return new ReservationCursor(reservation.getDate(), reservation.getReservationId());
+    }
+
+    /**
+     * Reads a cursor previously handed out by {@link #encode()}
+     * @param cursor
+     * @return
+     */
+    public static ReservationCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new ReservationCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                Long.valueOf(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = date + SEPARATOR + reservationId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getDate() {
+        return this.date;
+    }
+
+    public Long getReservationId() {
+        return this.reservationId;
+    }
+}
@@ -2,15 +2,23 @@ package foodprint.backend.service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import foodprint.backend.dto.CreateReservationDTO;
 import foodprint.backend.dto.LineItemDTO;
@@ -19,12 +27,13 @@ import foodprint.backend.model.LineItem;
 import foodprint.backend.model.Restaurant;
 import foodprint.backend.model.Reservation;
 import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.RestaurantReservationCount;
 import foodprint.backend.model.User;
 import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.exceptions.BadRequestException;
 import foodprint.backend.exceptions.InvalidException;
 import foodprint.backend.exceptions.NotFoundException;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -32,13 +41,25 @@ import java.time.temporal.ChronoUnit;
 @Service
 public class ReservationService {
 
+    private static final String HOLD_EXPIRED_MESSAGE = "Reservation has been cancelled or its hold has expired";
+
     private ReservationRepo reservationRepo;
     private RestaurantService restaurantService;
+    private SlotOccupancyIndex slotOccupancyIndex;
+    private BookingEngine bookingEngine;
+    private OpeningSchedules openingSchedules;
+    private HoldExpiryWheel holdExpiryWheel;
+    private DemandLedger demandLedger;
 
     @Autowired
-    ReservationService(ReservationRepo reservationRepo, RestaurantService restaurantService) {
+    ReservationService(ReservationRepo reservationRepo, RestaurantService restaurantService, SlotOccupancyIndex slotOccupancyIndex, BookingEngine bookingEngine, OpeningSchedules openingSchedules, HoldExpiryWheel holdExpiryWheel, DemandLedger demandLedger) {
         this.reservationRepo = reservationRepo;
         this.restaurantService = restaurantService;
+        this.slotOccupancyIndex = slotOccupancyIndex;
+        this.bookingEngine = bookingEngine;
+        this.openingSchedules = openingSchedules;
+        this.holdExpiryWheel = holdExpiryWheel;
+        this.demandLedger = demandLedger;
     }
 
     /**
@@ -51,8 +72,8 @@ public class ReservationService {
     public boolean slotAvailable(Restaurant restaurant, LocalDateTime date) {
         // assumes that duration of slot is 1 hour
         LocalDateTime endTime = date.plusHours(1);
-        List<Reservation> reservations = reservationRepo.findByRestaurantAndDateBetween(restaurant, date, endTime);
-        return reservations.size() < restaurant.getRestaurantTableCapacity();
+        long reservations = reservationRepo.countHeldBetween(restaurant.getRestaurantId(), date, endTime, ReservationStatus.CANCELLED);
+        return reservations < restaurant.getRestaurantTableCapacity();
     }
 
 
@@ -114,6 +135,73 @@ public class ReservationService {
         return reservationRepo.findByRestaurantAndDateBetween(pageReq, restaurant, after, before);
     }
 
+    /**
+     * Gets one page of a user's reservations, latest first
+     * @param user
+     * @param cursor position to continue after, null for the first page
+     * @param size
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_USER')")
+    public Slice<Reservation> getAllReservationByUser(User user, String cursor, int size) {
+        Pageable pageReq = PageRequest.of(0, size);
+        if (cursor == null) {
+            return reservationRepo.findByUserOrderByDateDescReservationIdDesc(user, pageReq);
+        }
+        ReservationCursor position = ReservationCursor.decode(cursor);
+        return reservationRepo.findByUserBeforeKey(user, position.getDate(), position.getReservationId(), pageReq);
+    }
+
+    /**
+     * Gets one page of a user's upcoming reservations, soonest first
+     * @param user
+     * @param cursor position to continue after, null for the first page
+     * @param size
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_USER')")
+    public Slice<Reservation> getUserUpcomingReservations(User user, String cursor, int size) {
+        // Starting after (now, max ID) skips everything up to and including now
+        ReservationCursor position = cursor == null
+            ? new ReservationCursor(LocalDateTime.now(), Long.MAX_VALUE)
+            : ReservationCursor.decode(cursor);
+        return reservationRepo.findByUserAfterKey(user, position.getDate(), position.getReservationId(), PageRequest.of(0, size));
+    }
+
+    /**
+     * Gets one page of a user's past reservations, latest first
+     * @param user
+     * @param cursor position to continue after, null for the first page
+     * @param size
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_USER')")
+    public Slice<Reservation> getUserPastReservations(User user, String cursor, int size) {
+        ReservationCursor position = cursor == null
+            ? new ReservationCursor(LocalDateTime.now(), Long.MAX_VALUE)
+            : ReservationCursor.decode(cursor);
+        return reservationRepo.findByUserBeforeKey(user, position.getDate(), position.getReservationId(), PageRequest.of(0, size));
+    }
+
+    /**
+     * Gets one page of a restaurant's reservations between two dates, soonest first
+     * @param restaurant
+     * @param requestorRestaurant
+     * @param after
+     * @param before
+     * @param cursor position to continue after, null for the first page
+     * @param size
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN') or (hasAnyAuthority('FP_MANAGER') and #restaurant.restaurantId == #requestorRestaurant.restaurantId)")
+    public Slice<Reservation> getRestaurantUpcomingReservations(Restaurant restaurant, Restaurant requestorRestaurant, LocalDateTime after, LocalDateTime before, String cursor, int size) {
+        // Starting after (after, 0) keeps reservations made exactly at the start date
+        ReservationCursor position = cursor == null
+            ? new ReservationCursor(after, 0L)
+            : ReservationCursor.decode(cursor);
+        return reservationRepo.findByRestaurantAfterKey(restaurant, position.getDate(), position.getReservationId(), before, PageRequest.of(0, size));
+    }
+
     @PreAuthorize("hasAnyAuthority('FP_ADMIN')")
     public List<Reservation> getAllReservationSlots() {
         return reservationRepo.findAll();
@@ -124,17 +212,40 @@ public class ReservationService {
         return reservationRepo.findByRestaurant(restaurant);
     }
 
+    /**
+     * Streams every reservation to an action, within a read-only transaction that
+     * stays open until the action returns
+     * @param action
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN')")
+    @Transactional(readOnly = true)
+    public void streamAllReservationSlots(Consumer<Stream<Reservation>> action) {
+        action.accept(reservationRepo.streamAll());
+    }
+
+    /**
+     * Streams the reservations of a restaurant to an action, within a read-only
+     * transaction that stays open until the action returns
+     * @param restaurant
+     * @param action
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
+    @Transactional(readOnly = true)
+    public void streamAllReservationByRestaurant(Restaurant restaurant, Consumer<Stream<Reservation>> action) {
+        action.accept(reservationRepo.streamByRestaurant(restaurant));
+    }
+
     @PreAuthorize("hasAnyAuthority('FP_USER')")
     public Reservation create(User currentUser, CreateReservationDTO req) {
 
-        Restaurant restaurant = restaurantService.get(req.getRestaurantId());
+        Restaurant restaurant = restaurantService.getCached(req.getRestaurantId());
         LocalDateTime dateOfReservation = req.getDate();
-        LocalDateTime startTime = dateOfReservation.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime startTime = SlotOccupancyIndex.slotStart(dateOfReservation.toLocalDate(), SlotOccupancyIndex.slotOfDay(dateOfReservation));
         List<LocalDateTime> upcomingSlots = getUpcomingSlots(restaurant.getRestaurantId());
 
+        String slotNotAvailableMsg = String.format("Slot not available for %s on %d %s %d at %d:%dHr", restaurant.getRestaurantName(), dateOfReservation.getDayOfMonth(), dateOfReservation.getMonth(), dateOfReservation.getYear(), dateOfReservation.getHour(), dateOfReservation.getMinute());
         if (!upcomingSlots.contains(startTime)) {
-            String msg = String.format("Slot not available for %s on %d %s %d at %d:%dHr", restaurant.getRestaurantName(), dateOfReservation.getDayOfMonth(), dateOfReservation.getMonth(), dateOfReservation.getYear(), dateOfReservation.getHour(), dateOfReservation.getMinute());
-            throw new NotFoundException(msg);
+            throw new NotFoundException(slotNotAvailableMsg);
         }
 
         Reservation reservation = new Reservation();
@@ -146,39 +257,49 @@ public class ReservationService {
                     .status(ReservationStatus.UNPAID)
                     .restaurant(restaurant);
 
-        HashMap<Food, Integer> lineItemsHashMap = new HashMap<>();
-
         // Prevent multiple line item entries of the same food
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (LineItemDTO lineItemDTO : req.getLineItems()) {
-            Food food = restaurantService.getFood(req.getRestaurantId(), lineItemDTO.getFoodId());
-            if (lineItemsHashMap.containsKey(food)) {
-                lineItemsHashMap.put(food, lineItemDTO.getQuantity() + lineItemsHashMap.get(food));
-            } else {
-                lineItemsHashMap.put(food, lineItemDTO.getQuantity());
-            }
+            quantities.merge(lineItemDTO.getFoodId(), lineItemDTO.getQuantity(), Integer::sum);
         }
 
-        // Just to save
+        // Resolve every food in one query, the line items are then inserted in one batch with the reservation
+        Map<Long, Food> foods = restaurantService.getFoods(req.getRestaurantId(), quantities.keySet());
         List<LineItem> savedLineItems = new ArrayList<>();
-        for (Map.Entry<Food, Integer> entry : lineItemsHashMap.entrySet()) {
-            LineItem savedLineItem = new LineItem(entry.getKey(), reservation, entry.getValue());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            LineItem savedLineItem = new LineItem(foods.get(entry.getKey()), reservation, entry.getValue());
             savedLineItems.add(savedLineItem);
         }
 
         reservation.lineItems(savedLineItems);
-        return reservationRepo.saveAndFlush(reservation);
+
+        // The index check above is only a hint, this is what actually takes the capacity
+        if (!bookingEngine.claim(restaurant, startTime)) {
+            throw new NotFoundException(slotNotAvailableMsg);
+        }
+
+        Reservation savedReservation;
+        try {
+            savedReservation = reservationRepo.saveAndFlush(reservation);
+        } catch (RuntimeException e) {
+            bookingEngine.release(restaurant.getRestaurantId(), startTime);
+            throw e;
+        }
+        slotOccupancyIndex.increment(restaurant.getRestaurantId(), savedReservation.getDate());
+        holdExpiryWheel.schedule(savedReservation.getReservationId(), savedReservation.getReservedOn());
+        demandLedger.apply(restaurant.getRestaurantId(), DemandLedger.Snapshot.NONE, demandLedger.snapshot(savedReservation));
+        return savedReservation;
     }
     
     @PreAuthorize("hasAnyAuthority('FP_USER', 'FP_ADMIN')")
     public Reservation update(Long id, Reservation reservation) {
 
         Reservation currentReservation = reservationRepo.getById(id);
+        LocalDateTime previouslyHeld = heldSlot(currentReservation);
+        DemandLedger.Snapshot previousDemand = demandLedger.snapshot(currentReservation);
 
         if (reservation.getDate() != null) {
-            LocalDateTime startTime = reservation.getDate().truncatedTo(ChronoUnit.HOURS);
-            if (!this.slotAvailable(reservation.getRestaurant(), startTime)) {
-                throw new NotFoundException("Slot not found");
-            }
+            // Whether the new slot has room is left to the claim below
             currentReservation.setDate(reservation.getDate());
         }
 
@@ -208,7 +329,32 @@ public class ReservationService {
             List<LineItem> currentLineItems = currentReservation.getLineItems();
             currentLineItems.clear();
         }
-        return reservationRepo.saveAndFlush(currentReservation);
+        // Claim the new slot before saving so that a full slot leaves the reservation untouched
+        Long restaurantId = restaurantIdOf(currentReservation);
+        LocalDateTime nowHeld = heldSlot(currentReservation);
+        boolean slotChanged = !sameSlot(previouslyHeld, nowHeld);
+        if (slotChanged && nowHeld != null && !bookingEngine.claim(currentReservation.getRestaurant(), nowHeld)) {
+            throw new NotFoundException("Slot not found");
+        }
+
+        Reservation savedReservation;
+        try {
+            savedReservation = reservationRepo.saveAndFlush(currentReservation);
+        } catch (RuntimeException e) {
+            if (slotChanged && nowHeld != null) {
+                bookingEngine.release(restaurantId, nowHeld);
+            }
+            throw e;
+        }
+        if (slotChanged && previouslyHeld != null) {
+            bookingEngine.release(restaurantId, previouslyHeld);
+        }
+        slotOccupancyIndex.move(restaurantId, previouslyHeld, nowHeld);
+        demandLedger.apply(restaurantId, previousDemand, demandLedger.snapshot(savedReservation));
+        if (savedReservation.getStatus() != ReservationStatus.UNPAID) {
+            holdExpiryWheel.cancel(savedReservation.getReservationId());
+        }
+        return savedReservation;
 
     }
 
@@ -217,73 +363,164 @@ public class ReservationService {
         if (reservationId == null) {
             throw new InvalidException("reservationId cannot be null");
         }
+        Optional<Reservation> reservation = reservationRepo.findById(reservationId);
+        // Take down what it needed while its line items can still be read
+        DemandLedger.Snapshot deletedDemand = demandLedger.snapshot(reservation.orElse(null));
         reservationRepo.deleteById(reservationId);
+        holdExpiryWheel.cancel(reservationId);
+        reservation.ifPresent(deleted -> {
+            LocalDateTime held = heldSlot(deleted);
+            if (held != null) {
+                bookingEngine.release(restaurantIdOf(deleted), held);
+                slotOccupancyIndex.decrement(restaurantIdOf(deleted), held);
+            }
+            demandLedger.apply(restaurantIdOf(deleted), deletedDemand, DemandLedger.Snapshot.NONE);
+        });
     }
 
     public List<LocalDateTime> getUpcomingSlots(Long restaurantId) {
-        List<LocalDateTime> availableSlots = new ArrayList<>();
-        Restaurant restaurant = restaurantService.get(restaurantId);
+        Restaurant restaurant = restaurantService.getCached(restaurantId);
 
         LocalDate currentDate = LocalDate.now().plusDays(7);
         LocalDate endDate = LocalDate.now().plusDays(30);
 
-        List<Reservation> reservations = reservationRepo.findByRestaurantAndDateBetween(
-            restaurant, 
-            currentDate.atStartOfDay(), 
-            endDate.atStartOfDay()
-        );
-
-        while (currentDate.isBefore(endDate)) {
-            LocalDateTime startTime;
-            LocalDateTime endTime;
-
-            Integer openingHour = restaurant.getRestaurantWeekdayOpeningHour();
-            Integer openingMinutes = restaurant.getRestaurantWeekdayOpeningMinutes();
-            Integer closingHour = restaurant.getRestaurantWeekdayClosingHour();
-            Integer closingMinutes = restaurant.getRestaurantWeekdayClosingMinutes();
-            
-            if (currentDate.getDayOfWeek() == DayOfWeek.SATURDAY || currentDate.getDayOfWeek() == DayOfWeek.SUNDAY) {
-                openingHour = restaurant.getRestaurantWeekendOpeningHour();
-                openingMinutes = restaurant.getRestaurantWeekendOpeningMinutes();
-                closingHour = restaurant.getRestaurantWeekendClosingHour();
-                closingMinutes = restaurant.getRestaurantWeekendClosingMinutes();
-            }
+        int[][] occupancy = slotOccupancyIndex.getCounts(restaurantId, currentDate, endDate);
+        return availableSlots(restaurant, currentDate, endDate, occupancy);
+    }
+
+    /**
+     * Gets the available slots of many restaurants between two dates (inclusive), limited to the
+     * dates that can currently be booked. Restaurants and reservation counts are each loaded in
+     * a single query, and the slots of each restaurant are then worked out in parallel.
+     * @param restaurantIds
+     * @param startDate
+     * @param endDate
+     * @return available slots keyed by restaurant ID, restaurants that do not exist are left out
+     */
+    public Map<Long, List<LocalDateTime>> getUpcomingSlots(Collection<Long> restaurantIds, LocalDate startDate, LocalDate endDate) {
+        LocalDate firstBookable = LocalDate.now().plusDays(7);
+        LocalDate lastBookable = LocalDate.now().plusDays(30);
+        LocalDate from = startDate.isBefore(firstBookable) ? firstBookable : startDate;
+        LocalDate to = endDate.plusDays(1).isAfter(lastBookable) ? lastBookable : endDate.plusDays(1);
+        int days = (int) Math.max(0, ChronoUnit.DAYS.between(from, to));
+
+        List<Restaurant> restaurants = restaurantService.getRestaurants(restaurantIds);
+        Map<Long, int[][]> occupancies = new HashMap<>();
+        for (Restaurant restaurant : restaurants) {
+            occupancies.put(restaurant.getRestaurantId(), new int[days][SlotOccupancyIndex.SLOTS_PER_DAY]);
+        }
 
-            if (openingMinutes == 0) {
-                startTime = currentDate.atTime(openingHour, 0);
-            } else if (openingMinutes <= 30) {
-                startTime = currentDate.atTime(openingHour, 30);
-            } else {
-                startTime = currentDate.atTime(openingHour + 1, 0);
+        if (days > 0 && !restaurants.isEmpty()) {
+            List<RestaurantReservationCount> heldCounts = reservationRepo.countHeldByRestaurantsAndDateBetween(
+                occupancies.keySet(), from.atStartOfDay(), to.atStartOfDay(), ReservationStatus.CANCELLED);
+            for (RestaurantReservationCount heldCount : heldCounts) {
+                int day = (int) (heldCount.getDate().toLocalDate().toEpochDay() - from.toEpochDay());
+                int slot = SlotOccupancyIndex.slotOfDay(heldCount.getDate());
+                occupancies.get(heldCount.getRestaurantId())[day][slot] += heldCount.getReservations().intValue();
             }
+        }
+
+        return restaurants.parallelStream().collect(Collectors.toMap(
+            Restaurant::getRestaurantId,
+            restaurant -> availableSlots(restaurant, from, to, occupancies.get(restaurant.getRestaurantId()))
+        ));
+    }
 
-            endTime = currentDate.atTime(closingHour, closingMinutes);
-
-            // As long as there is time left, then insert slot
-            while (!startTime.equals(endTime) && startTime.isBefore(endTime)) {
-                final LocalDateTime startDateTime = startTime;
-                long currentReservations = reservations.stream().filter(res -> 
-                    res.getDate().equals(startDateTime)
-                ).count();
-                long capacity = restaurant.getRestaurantTableCapacity();
-                if (currentReservations < capacity) {
-                    availableSlots.add(startTime);
+    /**
+     * Works out which slots of a restaurant still have capacity between two dates
+     * @param restaurant
+     * @param currentDate first date, inclusive
+     * @param endDate last date, exclusive
+     * @param occupancy reservations held per day offset from currentDate and slot
+     * @return
+     */
+    private List<LocalDateTime> availableSlots(Restaurant restaurant, LocalDate currentDate, LocalDate endDate, int[][] occupancy) {
+        List<LocalDateTime> availableSlots = new ArrayList<>();
+        long capacity = restaurant.getRestaurantTableCapacity();
+        OpeningSchedule schedule = openingSchedules.get(restaurant);
+
+        for (int day = 0; currentDate.isBefore(endDate); day++) {
+            int[] dayOccupancy = occupancy[day];
+            int endSlot = schedule.endSlot(currentDate);
+            for (int slot = schedule.firstSlot(currentDate); slot < endSlot; slot++) {
+                if (dayOccupancy[slot] < capacity) {
+                    availableSlots.add(SlotOccupancyIndex.slotStart(currentDate, slot));
                 }
-                startTime = startTime.plusMinutes(30);
             }
-
             currentDate = currentDate.plusDays(1);
         }
 
         return availableSlots;
     }
 
+    /**
+     * Checks that a reservation of a user is still holding its slot and can be paid for,
+     * and keeps the slot held while it is being charged
+     * @param reservationId
+     * @param userId
+     */
+    @PreAuthorize("hasAnyAuthority('FP_USER')")
+    public void checkPayable(Long reservationId, Long userId) {
+        Reservation reservation = getReservationByIdAndUser(reservationId, userId);
+        if (reservation.getStatus() == ReservationStatus.CANCELLED) {
+            throw new BadRequestException(HOLD_EXPIRED_MESSAGE);
+        }
+        if (reservation.getStatus() == ReservationStatus.UNPAID) {
+            holdExpiryWheel.extendForPayment(reservationId);
+        }
+    }
+
+    /**
+     * Marks a reservation of a user paid, as long as it is still holding its slot
+     * @param reservationId
+     * @param userId
+     */
     @PreAuthorize("hasAnyAuthority('FP_USER')")
     public void setPaid(Long reservationId, Long userId) {
         Reservation reservation = getReservationByIdAndUser(reservationId, userId);
-        reservation.setStatus(ReservationStatus.PAID);
-        reservationRepo.saveAndFlush(reservation);
+        if (reservation.getStatus() != ReservationStatus.PAID && !markPaid(reservationId)) {
+            // The slot has been given up, so marking it paid could overbook the restaurant
+            throw new BadRequestException(HOLD_EXPIRED_MESSAGE);
+        }
+        holdExpiryWheel.cancel(reservationId);
     }
 
+    /**
+     * Moves a reservation from unpaid to paid. The update takes the same row lock as the
+     * expiry of holds, so of a payment and an expiry landing together only one changes it.
+     * @param reservationId
+     * @return whether the reservation is now paid
+     */
+    private boolean markPaid(Long reservationId) {
+        if (reservationRepo.updateStatusIfCurrent(reservationId, ReservationStatus.UNPAID, ReservationStatus.PAID) == 1) {
+            return true;
+        }
+        // Either another payment of it got there first, or its hold expired
+        return reservationRepo.findStatusById(reservationId).orElse(null) == ReservationStatus.PAID;
+    }
+
+    /**
+     * Gets the time of the slot a reservation is holding, or null if it does not hold one
+     * @param reservation
+     * @return
+     */
+    private LocalDateTime heldSlot(Reservation reservation) {
+        if (reservation.getStatus() == ReservationStatus.CANCELLED) {
+            return null;
+        }
+        return reservation.getDate();
+    }
+
+    private boolean sameSlot(LocalDateTime first, LocalDateTime second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        return BookingEngine.slotStartOf(first).equals(BookingEngine.slotStartOf(second));
+    }
+
+    private Long restaurantIdOf(Reservation reservation) {
+        Restaurant restaurant = reservation.getRestaurant();
+        return restaurant == null ? null : restaurant.getRestaurantId();
+    }
 
 }
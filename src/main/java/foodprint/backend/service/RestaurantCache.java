@@ -0,0 +1,186 @@
+package foodprint.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read-through cache of restaurants by ID for the many places that only need to
+ * read a restaurant, such as checking that it exists or looking up its opening hours.
+ *
+ * Holds at most a fixed number of restaurants, dropping the least recently used
+ * first, and reloads any restaurant older than the time to live. Cached restaurants
+ * are copies shared between requests, so they must not be modified and only carry
+ * their eagerly loaded fields: everything but the food, reservations, ingredients
+ * and managers.
+ * Entries are dropped whenever a restaurant, its discount or its picture changes,
+ * once the change has committed.
+ */
+@Component
+public class RestaurantCache {
+
+    private final RestaurantRepo restaurantRepo;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    // Least recently used first, only touched while holding the lock on this component
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped on every invalidation so that a load racing with one is not cached. Invalidations come after
+    // the commit, so a load that could have read the row from before it is always caught.
+    private long invalidations;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter sizeEvictions;
+
+    private final Counter expiredEvictions;
+
+    @Autowired
+    public RestaurantCache(RestaurantRepo restaurantRepo, MeterRegistry meterRegistry,
+            @Value("${foodprint.restaurant-cache.max-size:1000}") int maxSize,
+            @Value("${foodprint.restaurant-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.restaurantRepo = restaurantRepo;
+        this.maxSize = maxSize;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+
+        Gauge.builder("foodprint.restaurant.cache.size", this, RestaurantCache::size)
+            .description("Restaurants currently cached")
+            .register(meterRegistry);
+        this.hits = Counter.builder("foodprint.restaurant.cache.requests")
+            .tag("result", "hit")
+            .description("Restaurant lookups answered from the cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("foodprint.restaurant.cache.requests")
+            .tag("result", "miss")
+            .description("Restaurant lookups that went to the database")
+            .register(meterRegistry);
+        this.sizeEvictions = Counter.builder("foodprint.restaurant.cache.evictions")
+            .tag("cause", "size")
+            .description("Restaurants dropped from the cache to stay within its size")
+            .register(meterRegistry);
+        this.expiredEvictions = Counter.builder("foodprint.restaurant.cache.evictions")
+            .tag("cause", "expired")
+            .description("Restaurants dropped from the cache because they were older than its time to live")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Gets a restaurant, loading it from the database if it is not cached
+     * @param restaurantId
+     * @return the restaurant, or empty if it does not exist
+     */
+    public Optional<Restaurant> get(Long restaurantId) {
+        long seen;
+        synchronized (this) {
+            Entry entry = entries.get(restaurantId);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return Optional.of(entry.restaurant);
+                }
+                entries.remove(restaurantId);
+                expiredEvictions.increment();
+            }
+            misses.increment();
+            seen = invalidations;
+        }
+
+        // Loaded outside the lock so that a slow query does not hold up other restaurants
+        Optional<Restaurant> loaded = restaurantRepo.findById(restaurantId);
+        if (loaded.isEmpty()) {
+            return loaded;
+        }
+        Restaurant restaurant = readModel(loaded.get());
+        synchronized (this) {
+            if (seen == invalidations) {
+                entries.put(restaurantId, new Entry(restaurant, System.nanoTime()));
+                evictOverflow();
+            }
+        }
+        return Optional.of(restaurant);
+    }
+
+    /**
+     * Drops a restaurant that was changed or deleted
+     * @param restaurantId
+     */
+    public synchronized void invalidate(Long restaurantId) {
+        invalidations++;
+        entries.remove(restaurantId);
+    }
+
+    /**
+     * Drops every cached restaurant
+     */
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of restaurants currently cached
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (entries.size() > maxSize && leastRecentlyUsed.hasNext()) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            sizeEvictions.increment();
+        }
+    }
+
+    /**
+     * Copies the eagerly loaded fields of a restaurant, so that the cached copy is never
+     * the instance a persistence context is tracking and changing
+     */
+    private static Restaurant readModel(Restaurant restaurant) {
+        Restaurant copy = new Restaurant(restaurant.getRestaurantId(), restaurant.getRestaurantName(), restaurant.getRestaurantDesc(),
+            restaurant.getRestaurantLocation(), restaurant.getRestaurantPriceRange(), restaurant.getRestaurantTableCapacity(),
+            restaurant.getRestaurantWeekdayOpeningHour(), restaurant.getRestaurantWeekdayOpeningMinutes(),
+            restaurant.getRestaurantWeekdayClosingHour(), restaurant.getRestaurantWeekdayClosingMinutes(),
+            restaurant.getRestaurantWeekendOpeningHour(), restaurant.getRestaurantWeekendOpeningMinutes(),
+            restaurant.getRestaurantWeekendClosingHour(), restaurant.getRestaurantWeekendClosingMinutes(),
+            null, null, restaurant.getDiscount(), null, null, restaurant.getPicture());
+        copy.setVersion(restaurant.getVersion());
+        copy.setRestaurantLatitude(restaurant.getRestaurantLatitude());
+        copy.setRestaurantLongitude(restaurant.getRestaurantLongitude());
+        copy.setRestaurantCategory(restaurant.getRestaurantCategory() == null
+            ? new ArrayList<>() : new ArrayList<>(restaurant.getRestaurantCategory()));
+        return copy;
+    }
+
+    private static final class Entry {
+
+        private final Restaurant restaurant;
+
+        private final long loadedAt;
+
+        Entry(Restaurant restaurant, long loadedAt) {
+            this.restaurant = restaurant;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package foodprint.backend.service;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Keeps the in-memory restaurant indexes and cache in step with every restaurant
+ * written through JPA, including writes that do not go through RestaurantService.
+ *
+ * Entity events fire when the write is flushed, before it is committed, so the
+ * changes are only applied once the transaction commits. Until then readers keep
+ * seeing what is committed, and a rollback leaves the indexes untouched.
+ */
+@Component
+public class RestaurantIndexListener {
+
+    // Looked up lazily since listeners are created while the entity manager is still being built
+    private final ObjectProvider<CategoryIndex> categoryIndex;
+
+    private final ObjectProvider<CatalogSearch> catalogSearch;
+
+    private final ObjectProvider<Typeahead> typeahead;
+
+    private final ObjectProvider<GeoIndex> geoIndex;
+
+    private final ObjectProvider<RestaurantCache> restaurantCache;
+
+    private final ObjectProvider<FacetIndex> facetIndex;
+
+    public RestaurantIndexListener(ObjectProvider<CategoryIndex> categoryIndex, ObjectProvider<CatalogSearch> catalogSearch,
+            ObjectProvider<Typeahead> typeahead, ObjectProvider<GeoIndex> geoIndex, ObjectProvider<RestaurantCache> restaurantCache,
+            ObjectProvider<FacetIndex> facetIndex) {
+        this.categoryIndex = categoryIndex;
+        this.catalogSearch = catalogSearch;
+        this.typeahead = typeahead;
+        this.geoIndex = geoIndex;
+        this.restaurantCache = restaurantCache;
+        this.facetIndex = facetIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Restaurant restaurant) {
+        afterCommit(() -> {
+            categoryIndex.getObject().put(restaurant);
+            catalogSearch.getObject().putRestaurant(restaurant);
+            typeahead.getObject().putRestaurant(restaurant);
+            geoIndex.getObject().put(restaurant);
+            facetIndex.getObject().put(restaurant);
+            restaurantCache.getObject().invalidate(restaurant.getRestaurantId());
+        });
+    }
+
+    @PostRemove
+    public void removed(Restaurant restaurant) {
+        Long restaurantId = restaurant.getRestaurantId();
+        afterCommit(() -> {
+            categoryIndex.getObject().remove(restaurantId);
+            catalogSearch.getObject().removeRestaurant(restaurantId);
+            typeahead.getObject().removeRestaurant(restaurantId);
+            geoIndex.getObject().remove(restaurantId);
+            facetIndex.getObject().remove(restaurantId);
+            restaurantCache.getObject().invalidate(restaurantId);
+        });
+    }
+
+    /**
+     * Runs a change to the in-memory state once the current transaction commits, or
+     * straight away when there is no transaction, as the write is then already committed
+     * @param change
+     */
+    static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
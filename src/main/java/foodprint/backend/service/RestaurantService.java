@@ -3,12 +3,17 @@ package foodprint.backend.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -17,16 +22,22 @@ import javax.validation.ValidatorFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import foodprint.backend.dto.DemandDriftDTO;
 import foodprint.backend.dto.EditFoodDTO;
 import foodprint.backend.dto.FoodDTO;
 import foodprint.backend.dto.FoodIngredientQuantityDTO;
+import foodprint.backend.dto.SuggestionDTO;
 import foodprint.backend.dto.UpdatePictureDTO;
 import foodprint.backend.exceptions.AlreadyExistsException;
 import foodprint.backend.exceptions.BadRequestException;
@@ -41,9 +52,8 @@ import foodprint.backend.model.FoodIngredientQuantityRepo;
 import foodprint.backend.model.FoodRepo;
 import foodprint.backend.model.Ingredient;
 import foodprint.backend.model.IngredientRepo;
-import foodprint.backend.model.LineItem;
 import foodprint.backend.model.Picture;
-import foodprint.backend.model.Reservation;
+import foodprint.backend.model.Picture.PictureStatus;
 import foodprint.backend.model.ReservationRepo;
 import foodprint.backend.model.Restaurant;
 import foodprint.backend.model.RestaurantRepo;
@@ -55,6 +65,9 @@ public class RestaurantService {
     private static final String RESTAURANT_DOES_NOT_EXIST_MESSAGE = "Restaurant does not exist";
     private static final String DISCOUNT_NOT_FOUND_MESSAGE = "Discount not found";
 
+    // Searches sorted by a column are sorted and paged by the database among this many of the best matches
+    private static final int MAX_SORTED_SEARCH_MATCHES = 500;
+
     private RestaurantRepo repo;
 
     private FoodRepo foodRepo;
@@ -69,11 +82,37 @@ public class RestaurantService {
 
     private FoodIngredientQuantityRepo foodIngredientQuantityRepo;
 
+    private OpeningSchedules openingSchedules;
+
+    private DemandLedger demandLedger;
+
+    private CategoryIndex categoryIndex;
+
+    private CatalogSearch catalogSearch;
+
+    private RestaurantIndexListener restaurantIndexListener;
+
+    private Typeahead typeahead;
+
+    private GeoIndex geoIndex;
+
+    private RestaurantCache restaurantCache;
+
+    private MenuCache menuCache;
+
+    private FacetIndex facetIndex;
+
+    private SlotOccupancyIndex slotOccupancyIndex;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     public RestaurantService(RestaurantRepo repo, FoodRepo foodRepo, DiscountRepo discountRepo,
             IngredientRepo ingredientRepo, PictureService pictureService, ReservationRepo reservationRepo,
-            FoodIngredientQuantityRepo foodIngredientQuantityRepo) {
+            FoodIngredientQuantityRepo foodIngredientQuantityRepo, OpeningSchedules openingSchedules,
+            DemandLedger demandLedger, CategoryIndex categoryIndex, CatalogSearch catalogSearch,
+            RestaurantIndexListener restaurantIndexListener, Typeahead typeahead, GeoIndex geoIndex,
+            RestaurantCache restaurantCache, MenuCache menuCache, FacetIndex facetIndex,
+            SlotOccupancyIndex slotOccupancyIndex) {
         this.repo = repo;
         this.foodRepo = foodRepo;
         this.discountRepo = discountRepo;
@@ -81,6 +120,17 @@ public class RestaurantService {
         this.pictureService = pictureService;
         this.reservationRepo = reservationRepo;
         this.foodIngredientQuantityRepo = foodIngredientQuantityRepo;
+        this.openingSchedules = openingSchedules;
+        this.demandLedger = demandLedger;
+        this.categoryIndex = categoryIndex;
+        this.catalogSearch = catalogSearch;
+        this.restaurantIndexListener = restaurantIndexListener;
+        this.typeahead = typeahead;
+        this.geoIndex = geoIndex;
+        this.restaurantCache = restaurantCache;
+        this.menuCache = menuCache;
+        this.facetIndex = facetIndex;
+        this.slotOccupancyIndex = slotOccupancyIndex;
     }
 
     public List<Restaurant> getAllRestaurants() {
@@ -92,6 +142,63 @@ public class RestaurantService {
         return repo.findAll(pageReq);
     }
 
+    /**
+     * Streams every restaurant to an action, within a read-only transaction that
+     * stays open until the action returns
+     * 
+     * @param action
+     */
+    @Transactional(readOnly = true)
+    public void streamAllRestaurants(Consumer<Stream<Restaurant>> action) {
+        action.accept(repo.streamAll());
+    }
+
+    /**
+     * Streams the restaurants open at a given time to an action, in ascending ID
+     * order, within a read-only transaction that stays open until the action returns
+     * 
+     * @param dateTime
+     * @param action
+     */
+    @Transactional(readOnly = true)
+    public void streamOpenRestaurants(LocalDateTime dateTime, Consumer<Stream<Restaurant>> action) {
+        List<Long> restaurantIds = facetIndex.getOpenRestaurantIds(dateTime);
+        action.accept(restaurantIds.isEmpty() ? Stream.empty() : repo.streamByRestaurantIdInOrderByRestaurantId(restaurantIds));
+    }
+
+    /**
+     * Filters restaurants by facets and counts the restaurants behind every facet
+     * value. Matching restaurants are paged in ascending ID order.
+     * 
+     * @param filter
+     * @param page
+     * @return
+     */
+    public FacetIndex.Result filter(FacetIndex.Filter filter, Pageable page) {
+        return facetIndex.query(filter, LocalDateTime.now(), (int) page.getOffset(), page.getPageSize());
+    }
+
+    /**
+     * Gets the restaurants with the given IDs in the order of the IDs, skipping IDs that do not exist
+     * 
+     * @param ids
+     * @return
+     */
+    public List<Restaurant> getRestaurantsInOrder(List<Long> ids) {
+        return ids.isEmpty() ? new ArrayList<>() : inRankOrder(repo.findAllById(ids), ids, Restaurant::getRestaurantId);
+    }
+
+    /**
+     * Gets the earliest time at or after a given time that a restaurant is open
+     * 
+     * @param restaurant
+     * @param dateTime
+     * @return null if the restaurant never opens
+     */
+    public LocalDateTime getNextOpening(Restaurant restaurant, LocalDateTime dateTime) {
+        return openingSchedules.get(restaurant).nextOpening(dateTime);
+    }
+
     /**
      * Gets a restaurant of a given ID
      * 
@@ -103,6 +210,64 @@ public class RestaurantService {
         return restaurant.orElseThrow(() -> new NotFoundException("Restaurant not found"));
     }
 
+    /**
+     * Gets a restaurant of a given ID from the restaurant cache. The restaurant is
+     * shared and must not be modified, and its food, reservations, ingredients and
+     * managers are not loaded. Use {@link #get(Long)} to change a restaurant.
+     * 
+     * @param id
+     * @return
+     */
+    public Restaurant getCached(Long id) {
+        Optional<Restaurant> restaurant = restaurantCache.get(id);
+        return restaurant.orElseThrow(() -> new NotFoundException("Restaurant not found"));
+    }
+
+    /**
+     * Gets the entity tag of a restaurant, which changes whenever the restaurant,
+     * its discount or its picture does
+     * 
+     * @param restaurant
+     * @return
+     */
+    public String getRestaurantTag(Restaurant restaurant) {
+        VersionVector vector = new VersionVector("restaurant").add(restaurant.getRestaurantId(), restaurant.getVersion());
+        Discount discount = restaurant.getDiscount();
+        if (discount == null) {
+            vector.addMissing();
+        } else {
+            vector.add(discount.getDiscountId(), discount.getVersion());
+        }
+        Picture picture = restaurant.getPicture();
+        if (picture == null) {
+            vector.addMissing();
+        } else {
+            vector.add(picture.getId(), picture.getVersion());
+        }
+        return vector.toETag();
+    }
+
+    /**
+     * Gets the serialized menu of a restaurant, with its entity tag
+     * 
+     * @param restaurantId
+     * @return
+     */
+    public MenuCache.Menu getMenu(Long restaurantId) {
+        getCached(restaurantId);
+        return menuCache.get(restaurantId);
+    }
+
+    /**
+     * Gets all restaurants with the given IDs in a single query, skipping IDs that do not exist
+     * 
+     * @param ids
+     * @return
+     */
+    public List<Restaurant> getRestaurants(Collection<Long> ids) {
+        return repo.findAllById(ids);
+    }
+
     /**
      * Updates only changed fields of a given food
      * 
@@ -114,6 +279,7 @@ public class RestaurantService {
     public Restaurant update(Long id, Restaurant updatedRestaurant) {
 
         Restaurant currentRestaurant = this.get(id);
+        OpeningSchedule previousSchedule = openingSchedules.get(currentRestaurant);
 
         if (updatedRestaurant.getRestaurantDesc() != null) {
             currentRestaurant.setRestaurantDesc(updatedRestaurant.getRestaurantDesc());
@@ -129,6 +295,13 @@ public class RestaurantService {
             currentRestaurant.setRestaurantPriceRange(updatedRestaurant.getRestaurantPriceRange());
         }
 
+        if (updatedRestaurant.getRestaurantLatitude() != null) {
+            currentRestaurant.setRestaurantLatitude(updatedRestaurant.getRestaurantLatitude());
+        }
+        if (updatedRestaurant.getRestaurantLongitude() != null) {
+            currentRestaurant.setRestaurantLongitude(updatedRestaurant.getRestaurantLongitude());
+        }
+
         if (updatedRestaurant.getRestaurantTableCapacity() != null) {
             currentRestaurant.setRestaurantTableCapacity(updatedRestaurant.getRestaurantTableCapacity());
         }
@@ -171,7 +344,13 @@ public class RestaurantService {
         for (ConstraintViolation<Restaurant> violation : violations) {
             log.error(violation.getMessage());
         }
-        return repo.saveAndFlush(currentRestaurant);
+        Restaurant savedRestaurant = repo.saveAndFlush(currentRestaurant);
+        if (!previousSchedule.matches(savedRestaurant)) {
+            openingSchedules.refresh(savedRestaurant);
+        }
+        // A change to the categories alone does not raise an entity update event
+        restaurantIndexListener.saved(savedRestaurant);
+        return savedRestaurant;
     }
 
     /**
@@ -194,6 +373,10 @@ public class RestaurantService {
     public void delete(Long id) {
         Restaurant restaurant = this.get(id);
         repo.delete(restaurant);
+        openingSchedules.evict(id);
+        slotOccupancyIndex.evict(id);
+        restaurantCache.invalidate(id);
+        menuCache.remove(id);
         try {
             this.get(id);
             throw new DeleteFailedException("Restaurant could not be deleted");
@@ -202,33 +385,90 @@ public class RestaurantService {
     }
 
     /**
-     * Searches for a restaurant, given the name and paging information
+     * Searches restaurants by name, categories, location and description. Results
+     * are ranked by relevance unless the page asks for a sort, in which case only
+     * the best matches are sorted.
      * 
      * @param page
      * @param query
      * @return
      */
     public Page<Restaurant> search(Pageable page, String query) {
-        return repo.findByRestaurantNameContainsIgnoreCase(page, query);
+        if (query == null || query.isBlank()) {
+            return repo.findAll(page);
+        }
+        if (page.getSort().isSorted()) {
+            // Ordered by a column, so let the database sort and page the best matches, keeping the IN list bounded
+            List<Long> restaurantIds = catalogSearch.searchRestaurants(query, 0, MAX_SORTED_SEARCH_MATCHES).getIds();
+            return restaurantIds.isEmpty() ? Page.empty(page) : repo.findByRestaurantIdIn(restaurantIds, page);
+        }
+        TextIndex.Hits hits = catalogSearch.searchRestaurants(query, (int) page.getOffset(), page.getPageSize());
+        List<Restaurant> restaurants = inRankOrder(repo.findAllById(hits.getIds()), hits.getIds(), Restaurant::getRestaurantId);
+        return new PageImpl<>(restaurants, page, hits.getTotal());
     }
 
     /**
-     * Gets all available categories
+     * Suggests restaurants, dishes and categories for a partly typed search
      * 
+     * @param prefix
+     * @param limit
      * @return
      */
-    public List<String> getCategories() {
-        List<String> restaurantCategories = new ArrayList<>();
-        List<Restaurant> allRestaurants = repo.findAll();
-        for (Restaurant restaurant : allRestaurants) {
-            for (String category : restaurant.getRestaurantCategory()) {
-                if (!restaurantCategories.contains(category)) {
-                    restaurantCategories.add(category);
-                }
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return typeahead.suggest(prefix, limit);
+    }
+
+    /**
+     * Gets the restaurants nearest to a point, nearest first, with their distance in
+     * kilometres
+     * 
+     * @param latitude
+     * @param longitude
+     * @param radiusKm
+     * @param limit
+     * @param category only restaurants in this category, or any if null
+     * @param minPrice lowest price range, or any if null
+     * @param maxPrice highest price range, or any if null
+     * @return
+     */
+    public Map<Restaurant, Double> getNearbyRestaurants(double latitude, double longitude, double radiusKm, int limit,
+            String category, Integer minPrice, Integer maxPrice) {
+        List<GeoIndex.Nearby> nearby = geoIndex.nearest(latitude, longitude, radiusKm, limit, category, minPrice, maxPrice);
+        List<Long> restaurantIds = new ArrayList<>();
+        for (GeoIndex.Nearby place : nearby) {
+            restaurantIds.add(place.getRestaurantId());
+        }
+        Map<Long, Restaurant> restaurants = new HashMap<>();
+        for (Restaurant restaurant : repo.findAllById(restaurantIds)) {
+            restaurants.put(restaurant.getRestaurantId(), restaurant);
+        }
+        Map<Restaurant, Double> result = new LinkedHashMap<>();
+        for (GeoIndex.Nearby place : nearby) {
+            Restaurant restaurant = restaurants.get(place.getRestaurantId());
+            if (restaurant != null) {
+                result.put(restaurant, place.getDistanceKm());
             }
         }
+        return result;
+    }
 
-        return restaurantCategories;
+    /**
+     * Gets all available categories
+     * 
+     * @return
+     */
+    public List<String> getCategories() {
+        return categoryIndex.getCategories();
+    }
+
+    /**
+     * Gets the entity tag of the categories, which changes whenever a restaurant
+     * joins or leaves a category
+     * 
+     * @return
+     */
+    public String getCategoriesTag() {
+        return categoryIndex.getTag();
     }
 
     /**
@@ -238,16 +478,11 @@ public class RestaurantService {
      * @return
      */
     public List<Restaurant> getRestaurantsRelatedToCategory(String restaurantCategory) {
-        List<Restaurant> restaurantsRelatedToCategory = new ArrayList<>();
-        List<Restaurant> allRestaurants = repo.findAll();
-        for (Restaurant restaurant : allRestaurants) {
-            for (String category : restaurant.getRestaurantCategory()) {
-                if (category.equals(restaurantCategory)) {
-                    restaurantsRelatedToCategory.add(restaurant);
-                }
-            }
+        List<Long> restaurantIds = categoryIndex.getRestaurantIds(restaurantCategory);
+        if (restaurantIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        return restaurantsRelatedToCategory;
+        return repo.findAllById(restaurantIds);
     }
 
     /*
@@ -298,12 +533,14 @@ public class RestaurantService {
         newFood.setFoodIngredientQuantity(foodIngredientQuantity);
 
         newFood.setRestaurant(restaurant);
-        return foodRepo.saveAndFlush(newFood);
+        Food savedFood = foodRepo.saveAndFlush(newFood);
+        menuCache.invalidate(restaurantId);
+        return savedFood;
     }
 
     /**
      * Gets a food of the restaurant
-     * 
+     *
      * @param restaurantId
      * @param foodId
      * @return
@@ -320,6 +557,30 @@ public class RestaurantService {
         return food;
     }
 
+    /**
+     * Gets many foods of the restaurant in a single query
+     * 
+     * @param restaurantId
+     * @param foodIds
+     * @return foods keyed by their ID
+     */
+    public Map<Long, Food> getFoods(Long restaurantId, Collection<Long> foodIds) {
+        Map<Long, Food> foods = new HashMap<>();
+        for (Food food : foodRepo.findAllById(foodIds)) {
+            if (food.getRestaurant() == null) {
+                throw new NotFoundException("Food's restaurant not found");
+            }
+            if (food.getRestaurant().getRestaurantId().longValue() != restaurantId) {
+                throw new NotFoundException("Food found but in incorrect restaurant");
+            }
+            foods.put(food.getFoodId(), food);
+        }
+        if (foods.size() < new HashSet<>(foodIds).size()) {
+            throw new NotFoundException("Food not found");
+        }
+        return foods;
+    }
+
     /**
      * Deletes the food of a given restaurant id
      * 
@@ -330,6 +591,7 @@ public class RestaurantService {
     public void deleteFood(Long restaurantId, Long foodId) {
         Food food = this.getFood(restaurantId, foodId);
         foodRepo.delete(food);
+        menuCache.invalidate(restaurantId);
         try {
             this.getFood(restaurantId, foodId);
             throw new DeleteFailedException("Food could not be deleted");
@@ -366,6 +628,7 @@ public class RestaurantService {
         }
 
         if (foodDTO.getFoodIngredientQuantity() != null) {
+            Map<Long, Long> previousRecipe = recipeOf(foodId);
 
             Set<FoodIngredientQuantityDTO> foodIngredientQuantityDTOs = foodDTO.getFoodIngredientQuantity();
             Set<FoodIngredientQuantity> foodIngredientQuantities = new HashSet<>();
@@ -382,19 +645,66 @@ public class RestaurantService {
                 foodIngredientQuantities.add(fiq);
             }
             originalFood.setFoodIngredientQuantity(foodIngredientQuantities);
+            Food savedFood = foodRepo.saveAndFlush(originalFood);
+            menuCache.invalidate(restaurantId);
+            // Ingredient demand of existing reservations was worked out with the old recipe
+            demandLedger.applyRecipeChange(restaurantId, foodId, previousRecipe, recipeOf(foodId));
+            return savedFood;
+        }
+        Food savedFood = foodRepo.saveAndFlush(originalFood);
+        menuCache.invalidate(restaurantId);
+        return savedFood;
+    }
+
+    /**
+     * Gets the quantity of each ingredient in one of a food as stored, which is what
+     * the demand of reservations is worked out from
+     */
+    private Map<Long, Long> recipeOf(Long foodId) {
+        Map<Long, Long> recipe = new HashMap<>();
+        for (FoodIngredientQuantity fiq : foodIngredientQuantityRepo.findByIdFoodIdIn(Set.of(foodId))) {
+            recipe.merge(fiq.getIngredient().getIngredientId(), fiq.getQuantity().longValue(), Long::sum);
         }
-        return foodRepo.saveAndFlush(originalFood);
+        return recipe;
     }
 
     /**
-     * Searches for a given food
+     * Searches foods by name and description. Results are ranked by relevance
+     * unless the page asks for a sort, in which case only the best matches are sorted.
      * 
      * @param page
      * @param query
      * @return
      */
     public Page<Food> searchFood(Pageable page, String query) {
-        return foodRepo.findByFoodNameContains(page, query);
+        if (query == null || query.isBlank()) {
+            return foodRepo.findAll(page);
+        }
+        if (page.getSort().isSorted()) {
+            List<Long> foodIds = catalogSearch.searchFoods(query, 0, MAX_SORTED_SEARCH_MATCHES).getIds();
+            return foodIds.isEmpty() ? Page.empty(page) : foodRepo.findByFoodIdIn(foodIds, page);
+        }
+        TextIndex.Hits hits = catalogSearch.searchFoods(query, (int) page.getOffset(), page.getPageSize());
+        List<Food> foods = inRankOrder(foodRepo.findAllById(hits.getIds()), hits.getIds(), Food::getFoodId);
+        return new PageImpl<>(foods, page, hits.getTotal());
+    }
+
+    /**
+     * Puts entities loaded by ID back in the order of the search ranking
+     */
+    private static <T> List<T> inRankOrder(List<T> entities, List<Long> rankedIds, Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T entity : entities) {
+            byId.put(idOf.apply(entity), entity);
+        }
+        List<T> ordered = new ArrayList<>(rankedIds.size());
+        for (Long id : rankedIds) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
     }
 
     /**
@@ -410,17 +720,13 @@ public class RestaurantService {
             LocalDate endDate) {
 
         HashMap<String, Integer> map = new HashMap<>();
-        LocalDateTime start = startDate.minusDays(1).atTime(0, 0);
-        LocalDateTime end = endDate.plusDays(1).atTime(0, 0);
-        List<Reservation> reservations = reservationRepo.findByRestaurantAndDateBetween(restaurant, start, end);
-
-        for (Reservation reservation : reservations) {
-            List<LineItem> lineItems = reservation.getLineItems();
-            for (LineItem lineItem : lineItems) {
-                String foodName = lineItem.getFood().getFoodName();
-                Integer currentAmt = map.getOrDefault(foodName, 0);
-                map.put(lineItem.getFood().getFoodName(), currentAmt + lineItem.getQuantity());
-            }
+        Map<Long, Long> quantities = demandLedger.getFoodDemandBetween(restaurant.getRestaurantId(), startDate.minusDays(1), endDate);
+        if (quantities.isEmpty()) {
+            return map;
+        }
+
+        for (Food food : foodRepo.findAllById(quantities.keySet())) {
+            map.merge(food.getFoodName(), quantities.get(food.getFoodId()).intValue(), Integer::sum);
         }
 
         return map;
@@ -450,6 +756,8 @@ public class RestaurantService {
                 .discountPercentage(discount.getDiscountPercentage());
         var savedDiscount = discountRepo.saveAndFlush(newDiscount);
         restaurant.setDiscount(savedDiscount);
+        restaurantCache.invalidate(restaurantId);
+        facetIndex.setDiscounted(restaurantId, true);
         return savedDiscount;
     }
 
@@ -472,6 +780,8 @@ public class RestaurantService {
         Long disId = dis.getDiscountId();
         res.setDiscount(null);
         discountRepo.delete(dis);
+        restaurantCache.invalidate(restaurantId);
+        facetIndex.setDiscounted(restaurantId, false);
 
         try {
             this.getDiscount(disId);
@@ -504,6 +814,7 @@ public class RestaurantService {
         }
 
         originalDiscount = discountRepo.saveAndFlush(originalDiscount);
+        restaurantCache.invalidate(restaurantId);
         return originalDiscount;
     }
 
@@ -531,11 +842,8 @@ public class RestaurantService {
      */
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public List<Ingredient> getAllRestaurantIngredients(Long restaurantId) {
-        Restaurant restaurant = get(restaurantId);
-        if (restaurant == null) {
-            throw new NotFoundException(RESTAURANT_DOES_NOT_EXIST_MESSAGE);
-        }
-        return restaurant.getIngredients();
+        getCached(restaurantId);
+        return ingredientRepo.findByRestaurantRestaurantId(restaurantId);
     }
 
     /**
@@ -547,10 +855,7 @@ public class RestaurantService {
      */
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public Page<Ingredient> getRestaurantIngredients(Long restaurantId, Integer pageNumber) {
-        Restaurant restaurant = get(restaurantId);
-        if (restaurant == null) {
-            throw new NotFoundException(RESTAURANT_DOES_NOT_EXIST_MESSAGE);
-        }
+        getCached(restaurantId);
         Pageable pageReq = PageRequest.of(pageNumber, 8);
         return ingredientRepo.findByRestaurantRestaurantId(pageReq, restaurantId);
     }
@@ -586,6 +891,7 @@ public class RestaurantService {
         }
 
         originalIngredient = ingredientRepo.saveAndFlush(originalIngredient);
+        menuCache.invalidate(restaurantId);
         return originalIngredient;
     }
 
@@ -628,6 +934,7 @@ public class RestaurantService {
         }
 
         ingredientRepo.delete(originalIngredient);
+        menuCache.invalidate(restaurantId);
 
         Optional<Ingredient> optIngredient = ingredientRepo.findById(ingredientId);
         if (optIngredient.isPresent()) {
@@ -649,30 +956,30 @@ public class RestaurantService {
             LocalDate endDate) {
 
         HashMap<Ingredient, Integer> map = new HashMap<>();
-        LocalDateTime start = startDate.minusDays(1).atTime(0, 0);
-        LocalDateTime end = endDate.plusDays(1).atTime(0, 0);
-        List<Reservation> reservations = reservationRepo.findByRestaurantAndDateBetween(restaurant, start, end);
-
-        for (Reservation reservation : reservations) {
-            List<LineItem> lineItems = reservation.getLineItems();
-
-            for (LineItem lineItem : lineItems) {
-                Food food = lineItem.getFood();
-
-                Set<FoodIngredientQuantity> foodIngreQuantity = food.getFoodIngredientQuantity();
-
-                for (FoodIngredientQuantity entry : foodIngreQuantity) {
-                    Ingredient currIngredient = entry.getIngredient();
-                    Integer currQty = map.getOrDefault(currIngredient, 0);
-                    map.put(currIngredient, currQty + entry.getQuantity() * lineItem.getQuantity());
-                }
+        Map<Long, Long> quantities = demandLedger.getIngredientDemandBetween(restaurant.getRestaurantId(), startDate.minusDays(1), endDate);
+        if (quantities.isEmpty()) {
+            return map;
+        }
 
-            }
+        for (Ingredient ingredient : ingredientRepo.findAllById(quantities.keySet())) {
+            map.put(ingredient, quantities.get(ingredient.getIngredientId()).intValue());
         }
 
         return map;
     }
 
+    /**
+     * Checks the daily demand kept for a restaurant against its reservations
+     * 
+     * @param restaurantId
+     * @param repair whether to correct the rows that drifted
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN')")
+    public DemandDriftDTO verifyDemand(Long restaurantId, boolean repair) {
+        return demandLedger.verify(restaurantId, repair);
+    }
+
     /**
      * Sets picture of a given restaurant. If a picture currently exists, delete the
      * old picture and set the new one.
@@ -686,13 +993,46 @@ public class RestaurantService {
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public Picture savePicture(Long restaurantId, String title, String description, MultipartFile file) {
         Picture picture = pictureService.savePicture(title, description, file);
+        attachRestaurantPicture(restaurantId, picture);
+        return picture;
+    }
+
+    /**
+     * Sets the picture of a given restaurant like savePicture, but returns once the
+     * file is on local disk and uploads it in the background. The picture stays
+     * PENDING until then, and the restaurant keeps its old picture until it is READY.
+     * 
+     * @param restaurantId
+     * @param title
+     * @param description
+     * @param file
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
+    public Picture acceptPicture(Long restaurantId, String title, String description, MultipartFile file) {
+        // Checked before the file is spooled, so an unknown restaurant costs no disk
+        get(restaurantId);
+        return pictureService.acceptPicture(title, description, file,
+            picture -> attachRestaurantPicture(restaurantId, picture), this::pictureUploaded);
+    }
+
+    private void attachRestaurantPicture(Long restaurantId, Picture picture) {
         Restaurant restaurant = get(restaurantId);
+        if (picture.getStatus() == PictureStatus.PENDING) {
+            Picture replaced = restaurant.getPendingPicture();
+            restaurant.setPendingPicture(picture);
+            repo.saveAndFlush(restaurant);
+            if (replaced != null) {
+                pictureService.deletePicture(replaced.getId());
+            }
+            return;
+        }
         if (restaurant.getPicture() != null) {
             deleteRestaurantPicture(restaurantId);
         }
         restaurant.setPicture(picture);
         repo.saveAndFlush(restaurant);
-        return picture;
+        restaurantCache.invalidate(restaurantId);
     }
 
     /**
@@ -710,13 +1050,98 @@ public class RestaurantService {
     public Picture saveFoodPicture(Long restaurantId, Long foodId, String title, String description,
             MultipartFile file) {
         Picture picture = pictureService.savePicture(title, description, file);
+        attachFoodPicture(restaurantId, foodId, picture);
+        return picture;
+    }
+
+    /**
+     * Sets the picture of a given food like saveFoodPicture, but uploads it in the
+     * background. The picture stays PENDING until then, and the food keeps its old
+     * picture until it is READY.
+     * 
+     * @param restaurantId
+     * @param foodId
+     * @param title
+     * @param description
+     * @param file
+     * @return
+     */
+    @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
+    public Picture acceptFoodPicture(Long restaurantId, Long foodId, String title, String description,
+            MultipartFile file) {
+        getFood(restaurantId, foodId);
+        return pictureService.acceptPicture(title, description, file,
+            picture -> attachFoodPicture(restaurantId, foodId, picture), this::pictureUploaded);
+    }
+
+    private void attachFoodPicture(Long restaurantId, Long foodId, Picture picture) {
         Food food = getFood(restaurantId, foodId);
+        if (picture.getStatus() == PictureStatus.PENDING) {
+            Picture replaced = food.getPendingPicture();
+            food.setPendingPicture(picture);
+            foodRepo.saveAndFlush(food);
+            if (replaced != null) {
+                pictureService.deletePicture(replaced.getId());
+            }
+            return;
+        }
         if (food.getPicture() != null) {
             deleteFoodPicture(restaurantId, foodId);
         }
         food.setPicture(picture);
         foodRepo.saveAndFlush(food);
-        return picture;
+        menuCache.invalidate(restaurantId);
+    }
+
+    /**
+     * Starts the uploads of pictures left PENDING by the last shutdown again, so
+     * they are still swapped in once READY
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePictureUploads() {
+        pictureService.resumeUploads(this::pictureUploaded);
+    }
+
+    /**
+     * Swaps a picture uploaded in the background in for the picture of the
+     * restaurant or food waiting for it, and deletes the old one. Runs on the
+     * uploading thread, with no user signed in. A picture that FAILED is dropped,
+     * and its restaurant or food keeps the picture it had.
+     * @param pictureId
+     */
+    private void pictureUploaded(Long pictureId) {
+        repo.findByPendingPicturePictureId(pictureId).ifPresent(this::swapRestaurantPicture);
+        foodRepo.findByPendingPicturePictureId(pictureId).ifPresent(this::swapFoodPicture);
+    }
+
+    private void swapRestaurantPicture(Restaurant restaurant) {
+        Picture previous = restaurant.getPicture();
+        Picture uploaded = restaurant.getPendingPicture();
+        boolean ready = uploaded.getStatus() == PictureStatus.READY;
+        restaurant.setPendingPicture(null);
+        if (ready) {
+            restaurant.setPicture(uploaded);
+        }
+        repo.saveAndFlush(restaurant);
+        restaurantCache.invalidate(restaurant.getRestaurantId());
+        if (ready && previous != null) {
+            pictureService.discardPicture(previous.getId());
+        }
+    }
+
+    private void swapFoodPicture(Food food) {
+        Picture previous = food.getPicture();
+        Picture uploaded = food.getPendingPicture();
+        boolean ready = uploaded.getStatus() == PictureStatus.READY;
+        food.setPendingPicture(null);
+        if (ready) {
+            food.setPicture(uploaded);
+        }
+        foodRepo.saveAndFlush(food);
+        menuCache.invalidate(food.getRestaurant().getRestaurantId());
+        if (ready && previous != null) {
+            pictureService.discardPicture(previous.getId());
+        }
     }
 
     public String getFoodPicture(Long restaurantId, Long foodId) {
@@ -729,7 +1154,7 @@ public class RestaurantService {
     }
 
     public String getRestaurantPicture(Long restaurantId) {
-        Restaurant restaurant = get(restaurantId);
+        Restaurant restaurant = getCached(restaurantId);
         Picture picture = restaurant.getPicture();
         if (picture == null) {
             throw new NotFoundException(PICTURE_NOT_FOUND_MESSAGE);
@@ -737,6 +1162,15 @@ public class RestaurantService {
         return pictureService.getPictureById(picture.getId());
     }
 
+    /**
+     * Gets a picture by its id, to poll the status of a background upload
+     * @param pictureId
+     * @return
+     */
+    public Picture getPicture(Long pictureId) {
+        return pictureService.get(pictureId);
+    }
+
     @PreAuthorize("hasAnyAuthority('FP_ADMIN', 'FP_MANAGER')")
     public void deleteRestaurantPicture(Long restaurantId) {
         Restaurant restaurant = get(restaurantId);
@@ -746,6 +1180,7 @@ public class RestaurantService {
         }
         restaurant.setPicture(null);
         repo.saveAndFlush(restaurant);
+        restaurantCache.invalidate(restaurantId);
         Long picId = picture.getId();
         pictureService.deletePicture(picId);
         try {
@@ -764,6 +1199,7 @@ public class RestaurantService {
         }
         food.setPicture(null);
         foodRepo.saveAndFlush(food);
+        menuCache.invalidate(restaurantId);
         Long picId = picture.getId();
         pictureService.deletePicture(picId);
         try {
@@ -792,7 +1228,9 @@ public class RestaurantService {
 
             restaurant.setPicture(currentPicture);
             repo.saveAndFlush(restaurant);
-            return pictureService.updatedPicture(currentPicture.getId(), currentPicture);
+            Picture savedPicture = pictureService.updatedPicture(currentPicture.getId(), currentPicture);
+            restaurantCache.invalidate(restaurantId);
+            return savedPicture;
         } else {
             throw new NotFoundException(PICTURE_NOT_FOUND_MESSAGE);
         }
@@ -816,7 +1254,9 @@ public class RestaurantService {
             }
             food.setPicture(currentPicture);
             foodRepo.saveAndFlush(food);
-            return pictureService.updatedPicture(currentPicture.getId(), currentPicture);
+            Picture savedPicture = pictureService.updatedPicture(currentPicture.getId(), currentPicture);
+            menuCache.invalidate(restaurantId);
+            return savedPicture;
         } else {
             throw new NotFoundException(PICTURE_NOT_FOUND_MESSAGE);
         }
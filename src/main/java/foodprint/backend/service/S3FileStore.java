@@ -0,0 +1,156 @@
+package foodprint.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Stores files in S3 without holding them in memory, where they are public and
+ * served by S3 itself. Every upload states its length, so the client streams it
+ * rather than buffering it to find out. Files of at least the multipart threshold
+ * are first spooled to a temporary file and sent as a multipart upload, with its
+ * parts sent in parallel by the transfer manager.
+ */
+@Service
+@ConditionalOnProperty(name = "foodprint.files.store", havingValue = "s3", matchIfMissing = true)
+public class S3FileStore implements FileStore {
+
+    private final AmazonS3 amazonS3;
+
+    private final TransferManager transferManager;
+
+    private final long multipartThreshold;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public S3FileStore(AmazonS3 amazonS3,
+            @Value("${foodprint.s3.multipart-threshold:16777216}") long multipartThreshold,
+            @Value("${foodprint.s3.part-size:8388608}") long partSize,
+            @Value("${foodprint.s3.upload-threads:8}") int uploadThreads) {
+        this.amazonS3 = amazonS3;
+        this.multipartThreshold = multipartThreshold;
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService uploaders = Executors.newFixedThreadPool(uploadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.transferManager = TransferManagerBuilder.standard()
+            .withS3Client(amazonS3)
+            .withMultipartUploadThreshold(multipartThreshold)
+            .withMinimumUploadPartSize(partSize)
+            .withExecutorFactory(() -> uploaders)
+            .build();
+    }
+
+    @Override
+    public void upload(String path,
+                       String fileName,
+                       Optional<Map<String, String>> optionalMetaData,
+                       InputStream inputStream,
+                       String contentType,
+                       long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        optionalMetaData.ifPresent(map -> {
+            if (!map.isEmpty()) {
+                map.forEach(objectMetadata::addUserMetadata);
+            }
+        });
+        objectMetadata.setContentType(contentType);
+        objectMetadata.setContentLength(contentLength);
+        try {
+            if (contentLength >= multipartThreshold) {
+                uploadInParts(path, fileName, objectMetadata, inputStream);
+            } else {
+                var objRequest = new PutObjectRequest(path, fileName, inputStream, objectMetadata)
+                                                .withCannedAcl(CannedAccessControlList.PublicRead);
+                amazonS3.putObject(objRequest);
+            }
+        } catch (AmazonClientException e) {
+            throw new IllegalStateException("Failed to upload the file", e);
+        }
+    }
+
+    @Override
+    public void delete(String path, String fileName) {
+        try {
+            amazonS3.deleteObject(path, fileName);
+        } catch (AmazonClientException e) {
+            throw new IllegalStateException("Failed to delete the file", e);
+        }
+    }
+
+    @Override
+    public String urlOf(String path, String fileName) {
+        // The first part of the path is the bucket, and the client builds the URL for the endpoint it was set up with
+        int slash = path.indexOf('/');
+        String bucket = slash < 0 ? path : path.substring(0, slash);
+        String prefix = slash < 0 ? "" : path.substring(slash + 1) + "/";
+        return amazonS3.getUrl(bucket, prefix + fileName).toString();
+    }
+
+    /**
+     * Sends a multipart upload. Parts of a stream can only be read one after another,
+     * so the stream is spooled to a temporary file whose parts can be read at once.
+     */
+    private void uploadInParts(String path, String fileName, ObjectMetadata objectMetadata, InputStream inputStream) {
+        Path spooled = null;
+        try {
+            spooled = Files.createTempFile("foodprint-upload-", null);
+            Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+            var objRequest = new PutObjectRequest(path, fileName, spooled.toFile())
+                                            .withMetadata(objectMetadata)
+                                            .withCannedAcl(CannedAccessControlList.PublicRead);
+            transferManager.upload(objRequest).waitForCompletion();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to upload the file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Upload of the file was interrupted", e);
+        } finally {
+            deleteQuietly(spooled);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The S3 client is a bean of its own and outlives this store
+        transferManager.shutdownNow(false);
+    }
+}
@@ -0,0 +1,207 @@
+package foodprint.backend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.model.ReservationCount;
+import foodprint.backend.model.ReservationRepo;
+
+/**
+ * In-memory index of how many reservations are held per restaurant and slot.
+ * Each restaurant keeps one array of counts per day, indexed by the slot ordinal
+ * within that day. Days are loaded lazily from the database the first time they
+ * are requested, and reloaded once they are older than the refresh interval so
+ * that bookings made on other nodes are eventually picked up.
+ */
+@Component
+public class SlotOccupancyIndex {
+
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(5);
+
+    private final ReservationRepo reservationRepo;
+
+    private final Map<Long, Occupancy> occupancies = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SlotOccupancyIndex(ReservationRepo reservationRepo) {
+        this.reservationRepo = reservationRepo;
+    }
+
+    /**
+     * Gets the ordinal of the slot within its day that a given time falls into
+     * @param dateTime
+     * @return
+     */
+    public static int slotOfDay(LocalDateTime dateTime) {
+        return (dateTime.getHour() * 60 + dateTime.getMinute()) / SLOT_MINUTES;
+    }
+
+    /**
+     * Gets the start time of a slot given its date and ordinal within the day
+     * @param date
+     * @param slot
+     * @return
+     */
+    public static LocalDateTime slotStart(LocalDate date, int slot) {
+        return date.atStartOfDay().plusMinutes((long) slot * SLOT_MINUTES);
+    }
+
+    /**
+     * Gets a copy of the slot counts for every day in [from, to). The returned array
+     * is indexed by day offset from {@code from}, then by slot ordinal.
+     * @param restaurantId
+     * @param from
+     * @param to
+     * @return
+     */
+    public int[][] getCounts(Long restaurantId, LocalDate from, LocalDate to) {
+        return occupancy(restaurantId).counts(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * Gets the number of reservations held in the slot that a given time falls into
+     * @param restaurantId
+     * @param dateTime
+     * @return
+     */
+    public int getCount(Long restaurantId, LocalDateTime dateTime) {
+        long day = dateTime.toLocalDate().toEpochDay();
+        return occupancy(restaurantId).counts(day, day + 1)[0][slotOfDay(dateTime)];
+    }
+
+    /**
+     * Records a new reservation held at the given time
+     * @param restaurantId
+     * @param dateTime
+     */
+    public void increment(Long restaurantId, LocalDateTime dateTime) {
+        move(restaurantId, null, dateTime);
+    }
+
+    /**
+     * Releases a reservation previously held at the given time
+     * @param restaurantId
+     * @param dateTime
+     */
+    public void decrement(Long restaurantId, LocalDateTime dateTime) {
+        move(restaurantId, dateTime, null);
+    }
+
+    /**
+     * Moves a held reservation from one time to another. Either side may be null when
+     * the reservation was not, or is no longer, holding a slot.
+     * @param restaurantId
+     * @param from
+     * @param to
+     */
+    public void move(Long restaurantId, LocalDateTime from, LocalDateTime to) {
+        if (restaurantId == null) {
+            return;
+        }
+        Occupancy occupancy = occupancies.get(restaurantId);
+        if (occupancy == null) {
+            // Nothing cached yet, the next read will load the change from the database
+            return;
+        }
+        occupancy.move(from, to);
+    }
+
+    /**
+     * Drops everything cached for a restaurant, e.g. when it is deleted
+     * @param restaurantId
+     */
+    public void evict(Long restaurantId) {
+        occupancies.remove(restaurantId);
+    }
+
+    private Occupancy occupancy(Long restaurantId) {
+        return occupancies.computeIfAbsent(restaurantId, Occupancy::new);
+    }
+
+    private class Occupancy {
+
+        private final Long restaurantId;
+
+        private final Map<Long, int[]> days = new HashMap<>();
+
+        private final Map<Long, Instant> loadedAt = new HashMap<>();
+
+        Occupancy(Long restaurantId) {
+            this.restaurantId = restaurantId;
+        }
+
+        synchronized int[][] counts(long fromDay, long toDay) {
+            ensureLoaded(fromDay, toDay);
+            int[][] result = new int[(int) (toDay - fromDay)][];
+            for (long day = fromDay; day < toDay; day++) {
+                result[(int) (day - fromDay)] = days.get(day).clone();
+            }
+            return result;
+        }
+
+        synchronized void move(LocalDateTime from, LocalDateTime to) {
+            adjust(from, -1);
+            adjust(to, 1);
+        }
+
+        private void adjust(LocalDateTime dateTime, int delta) {
+            if (dateTime == null) {
+                return;
+            }
+            int[] slots = days.get(dateTime.toLocalDate().toEpochDay());
+            if (slots != null) {
+                int slot = slotOfDay(dateTime);
+                slots[slot] = Math.max(0, slots[slot] + delta);
+            }
+        }
+
+        private void ensureLoaded(long fromDay, long toDay) {
+            // Past days can never be booked again, so stop holding on to them
+            long today = LocalDate.now().toEpochDay();
+            days.keySet().removeIf(day -> day < today);
+            loadedAt.keySet().removeIf(day -> day < today);
+
+            Instant staleBefore = Instant.now().minus(REFRESH_INTERVAL);
+            long firstMissing = -1;
+            long lastMissing = -1;
+            for (long day = fromDay; day < toDay; day++) {
+                Instant loaded = loadedAt.get(day);
+                if (loaded == null || loaded.isBefore(staleBefore)) {
+                    if (firstMissing < 0) {
+                        firstMissing = day;
+                    }
+                    lastMissing = day;
+                }
+            }
+            if (firstMissing < 0) {
+                return;
+            }
+
+            // Load the whole missing span in a single query
+            LocalDateTime after = LocalDate.ofEpochDay(firstMissing).atStartOfDay();
+            LocalDateTime before = LocalDate.ofEpochDay(lastMissing + 1).atStartOfDay();
+            Instant now = Instant.now();
+            for (long day = firstMissing; day <= lastMissing; day++) {
+                days.put(day, new int[SLOTS_PER_DAY]);
+                loadedAt.put(day, now);
+            }
+            List<ReservationCount> heldCounts = reservationRepo.countHeldByDateBetween(restaurantId, after, before, ReservationStatus.CANCELLED);
+            for (ReservationCount heldCount : heldCounts) {
+                adjust(heldCount.getDate(), heldCount.getReservations().intValue());
+            }
+        }
+    }
+}
@@ -3,8 +3,10 @@ package foodprint.backend.service;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
+import com.stripe.model.Refund;
 
 import com.stripe.param.ChargeCreateParams;
+import com.stripe.param.RefundCreateParams;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -34,4 +36,9 @@ public class StripeService {
         return Charge.create(params);
 
     }
+
+    public Refund refund(Charge charge) throws StripeException {
+        RefundCreateParams params = RefundCreateParams.builder().setCharge(charge.getId()).build();
+        return Refund.create(params);
+    }
 }
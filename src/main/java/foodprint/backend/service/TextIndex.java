@@ -0,0 +1,330 @@
+package foodprint.backend.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over short documents made of weighted text fields,
+ * ranked with BM25.
+ *
+ * Each query term is matched against the dictionary in three ways: exactly, as a
+ * prefix of longer terms so that partly typed words still match, and when neither
+ * finds anything, by the trigrams it shares with dictionary terms so that small
+ * typos still match. Prefix and trigram matches score less than exact ones. A
+ * search only visits the postings of the terms it matched, so its cost follows
+ * the number of matching documents rather than the size of the index.
+ */
+public class TextIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final double PREFIX_WEIGHT = 0.6;
+    private static final double FUZZY_WEIGHT = 0.4;
+    private static final double MIN_SIMILARITY = 0.4;
+    private static final int MAX_EXPANSIONS = 20;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Term to the weighted frequency of the term in each document containing it
+    private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+
+    private final Map<String, Set<String>> termsByTrigram = new HashMap<>();
+
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    private double totalLength;
+
+    /**
+     * Splits text into lower case terms without accents
+     * @param text
+     * @return
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Fields of one document, each weighted by how much a match in it should count
+     */
+    public static class Document {
+
+        private final Map<String, Float> frequencies = new HashMap<>();
+
+        private float length;
+
+        public Document add(String text, float weight) {
+            for (String term : tokenize(text)) {
+                frequencies.merge(term, weight, Float::sum);
+                length += weight;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * One page of ranked results together with the number of documents that matched
+     */
+    public static class Hits {
+
+        private final int total;
+
+        private final List<Long> ids;
+
+        Hits(int total, List<Long> ids) {
+            this.total = total;
+            this.ids = ids;
+        }
+
+        public int getTotal() {
+            return this.total;
+        }
+
+        public List<Long> getIds() {
+            return this.ids;
+        }
+    }
+
+    /**
+     * Adds a document, replacing any previous version of it
+     * @param id
+     * @param document
+     */
+    public void put(Long id, Document document) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+            if (document.frequencies.isEmpty()) {
+                return;
+            }
+            documents.put(id, document);
+            totalLength += document.length;
+            for (Map.Entry<String, Float> entry : document.frequencies.entrySet()) {
+                Map<Long, Float> docs = postings.get(entry.getKey());
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    postings.put(entry.getKey(), docs);
+                    for (String trigram : trigrams(entry.getKey())) {
+                        termsByTrigram.computeIfAbsent(trigram, key -> new HashSet<>()).add(entry.getKey());
+                    }
+                }
+                docs.put(id, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a document
+     * @param id
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every document
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByTrigram.clear();
+            documents.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of documents in the index
+     * @return
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets one page of the documents matching a query, best match first
+     * @param query
+     * @param offset
+     * @param limit
+     * @return
+     */
+    public Hits search(String query, int offset, int limit) {
+        Map<Long, Double> scores = score(query);
+        int wanted = offset + limit;
+        Comparator<Map.Entry<Long, Double>> best = Map.Entry.<Long, Double>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+        // Keep only the best offset + limit documents instead of sorting every match
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Math.max(1, wanted), best.reversed());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.add(entry);
+            if (top.size() > wanted) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(best);
+        List<Long> ids = new ArrayList<>();
+        for (int i = offset; i < ranked.size(); i++) {
+            ids.add(ranked.get(i).getKey());
+        }
+        return new Hits(scores.size(), ids);
+    }
+
+    private Map<Long, Double> score(String query) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        Map<Long, Double> scores = new HashMap<>();
+        if (queryTerms.isEmpty()) {
+            return scores;
+        }
+        Map<Long, Integer> matchedTerms = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return scores;
+            }
+            int documentCount = documents.size();
+            double averageLength = totalLength / documentCount;
+            for (String queryTerm : queryTerms) {
+                // A query term counts once per document, through its best matching dictionary term
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map.Entry<String, Double> expansion : expand(queryTerm).entrySet()) {
+                    Map<Long, Float> docs = postings.get(expansion.getKey());
+                    double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+                    for (Map.Entry<Long, Float> doc : docs.entrySet()) {
+                        double frequency = doc.getValue();
+                        double norm = 1 - B + B * documents.get(doc.getKey()).length / averageLength;
+                        double score = expansion.getValue() * idf * frequency * (K1 + 1) / (frequency + K1 * norm);
+                        termScores.merge(doc.getKey(), score, Math::max);
+                    }
+                }
+                for (Map.Entry<Long, Double> termScore : termScores.entrySet()) {
+                    scores.merge(termScore.getKey(), termScore.getValue(), Double::sum);
+                    matchedTerms.merge(termScore.getKey(), 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Documents matching more of the query rank above those matching a single term very well
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            entry.setValue(entry.getValue() * matchedTerms.get(entry.getKey()) / queryTerms.size());
+        }
+        return scores;
+    }
+
+    /**
+     * Finds the dictionary terms a query term matches and how much each match counts
+     */
+    private Map<String, Double> expand(String queryTerm) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            expansions.put(queryTerm, 1.0);
+        }
+        if (queryTerm.length() >= MIN_PREFIX_LENGTH) {
+            for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                expansions.put(term, PREFIX_WEIGHT);
+            }
+        }
+        if (!expansions.isEmpty()) {
+            return expansions;
+        }
+
+        Set<String> queryTrigrams = trigrams(queryTerm);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String term : termsByTrigram.getOrDefault(trigram, Collections.emptySet())) {
+                shared.merge(term, 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Double>> similar = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            int union = queryTrigrams.size() + trigrams(entry.getKey()).size() - entry.getValue();
+            double similarity = (double) entry.getValue() / union;
+            if (similarity >= MIN_SIMILARITY) {
+                similar.add(Map.entry(entry.getKey(), FUZZY_WEIGHT * similarity));
+            }
+        }
+        similar.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        for (Map.Entry<String, Double> entry : similar.subList(0, Math.min(MAX_EXPANSIONS, similar.size()))) {
+            expansions.put(entry.getKey(), entry.getValue());
+        }
+        return expansions;
+    }
+
+    private void unlink(Long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        totalLength -= previous.length;
+        for (String term : previous.frequencies.keySet()) {
+            Map<Long, Float> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+                for (String trigram : trigrams(term)) {
+                    Set<String> terms = termsByTrigram.get(trigram);
+                    terms.remove(term);
+                    if (terms.isEmpty()) {
+                        termsByTrigram.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> trigrams(String term) {
+        String padded = "$" + term + "$";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
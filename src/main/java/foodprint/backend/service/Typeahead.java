@@ -0,0 +1,269 @@
+package foodprint.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import foodprint.backend.dto.SuggestionDTO;
+import foodprint.backend.model.Food;
+import foodprint.backend.model.FoodRepo;
+import foodprint.backend.model.FoodText;
+import foodprint.backend.model.Popularity;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.model.RestaurantText;
+import foodprint.backend.model.Reservation.ReservationStatus;
+
+/**
+ * Suggests restaurant names, dish names and categories as a search is typed.
+ *
+ * Suggestions are ranked by popularity: restaurants by how many reservations they
+ * have, dishes by how many have been ordered, and categories by how many
+ * restaurants they have and how popular those are. The trie is loaded on first
+ * use and kept up to date as restaurants and foods change, while popularity is
+ * recounted from the reservations every few minutes.
+ */
+@Component
+public class Typeahead {
+
+    private static final String RESTAURANT_KEY = "R:";
+    private static final String FOOD_KEY = "F:";
+    private static final String CATEGORY_KEY = "C:";
+
+    private final RestaurantRepo restaurantRepo;
+
+    private final FoodRepo foodRepo;
+
+    private final ReservationRepo reservationRepo;
+
+    private volatile PrefixTrie trie = new PrefixTrie();
+
+    private volatile boolean loaded;
+
+    // Only touched while holding the lock on this component
+    private Map<Long, Long> restaurantPopularity = new HashMap<>();
+    private Map<Long, Long> foodPopularity = new HashMap<>();
+    private final Map<Long, String> restaurantNames = new HashMap<>();
+    private final Map<Long, List<String>> restaurantCategories = new HashMap<>();
+    private final Map<Long, String> foodNames = new HashMap<>();
+    private final Map<String, Long> categoryScores = new HashMap<>();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public Typeahead(RestaurantRepo restaurantRepo, FoodRepo foodRepo, ReservationRepo reservationRepo) {
+        this.restaurantRepo = restaurantRepo;
+        this.foodRepo = foodRepo;
+        this.reservationRepo = reservationRepo;
+    }
+
+    /**
+     * Gets the most popular restaurants, dishes and categories with a word starting
+     * with what has been typed so far
+     * @param prefix
+     * @param limit
+     * @return
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        ensureLoaded();
+        List<SuggestionDTO> suggestions = new ArrayList<>();
+        for (PrefixTrie.Entry entry : trie.complete(prefix, Math.min(limit, PrefixTrie.MAX_SUGGESTIONS))) {
+            suggestions.add(toSuggestion(entry));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Adds or updates the suggestions of a restaurant that was created or updated
+     * @param restaurant
+     */
+    public synchronized void putRestaurant(Restaurant restaurant) {
+        Long restaurantId = restaurant.getRestaurantId();
+        if (!loaded || restaurantId == null) {
+            return;
+        }
+        unlinkCategories(restaurantId);
+        restaurantNames.put(restaurantId, restaurant.getRestaurantName());
+        trie.put(restaurantEntry(restaurantId));
+        List<String> categories = restaurant.getRestaurantCategory() == null
+            ? new ArrayList<>() : new ArrayList<>(restaurant.getRestaurantCategory());
+        restaurantCategories.put(restaurantId, categories);
+        linkCategories(restaurantId);
+    }
+
+    /**
+     * Drops the suggestions of a deleted restaurant
+     * @param restaurantId
+     */
+    public synchronized void removeRestaurant(Long restaurantId) {
+        if (!loaded || restaurantId == null) {
+            return;
+        }
+        unlinkCategories(restaurantId);
+        restaurantCategories.remove(restaurantId);
+        restaurantNames.remove(restaurantId);
+        trie.remove(RESTAURANT_KEY + restaurantId);
+    }
+
+    /**
+     * Adds or updates the suggestion of a food that was created or updated
+     * @param food
+     */
+    public synchronized void putFood(Food food) {
+        if (!loaded || food.getFoodId() == null) {
+            return;
+        }
+        foodNames.put(food.getFoodId(), food.getFoodName());
+        trie.put(foodEntry(food.getFoodId()));
+    }
+
+    /**
+     * Drops the suggestion of a deleted food
+     * @param foodId
+     */
+    public synchronized void removeFood(Long foodId) {
+        if (!loaded || foodId == null) {
+            return;
+        }
+        foodNames.remove(foodId);
+        trie.remove(FOOD_KEY + foodId);
+    }
+
+    /**
+     * Recounts popularity from the reservations and ranks every suggestion again
+     */
+    @Scheduled(fixedDelayString = "${foodprint.typeahead.refresh-ms:600000}")
+    public synchronized void refreshPopularity() {
+        if (loaded) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        loadPopularity();
+        categoryScores.clear();
+        for (Long restaurantId : restaurantCategories.keySet()) {
+            addToCategories(restaurantId, 1);
+        }
+        // Build the new trie aside so that suggestions keep being served meanwhile
+        PrefixTrie rebuilt = new PrefixTrie();
+        for (Long restaurantId : restaurantNames.keySet()) {
+            rebuilt.put(restaurantEntry(restaurantId));
+        }
+        for (Long foodId : foodNames.keySet()) {
+            rebuilt.put(foodEntry(foodId));
+        }
+        for (String category : categoryScores.keySet()) {
+            rebuilt.put(categoryEntry(category));
+        }
+        trie = rebuilt;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (RestaurantText row : restaurantRepo.findAllText()) {
+                restaurantNames.put(row.getRestaurantId(), row.getRestaurantName());
+                restaurantCategories.put(row.getRestaurantId(), new ArrayList<>());
+            }
+            for (RestaurantCategory row : restaurantRepo.findAllCategories()) {
+                restaurantCategories.computeIfAbsent(row.getRestaurantId(), key -> new ArrayList<>()).add(row.getCategory());
+            }
+            for (FoodText row : foodRepo.findAllText()) {
+                foodNames.put(row.getFoodId(), row.getFoodName());
+            }
+            rebuild();
+            loaded = true;
+            log.info("Loaded {} suggestions for typeahead", trie.size());
+        }
+    }
+
+    private void loadPopularity() {
+        Map<Long, Long> restaurants = new HashMap<>();
+        for (Popularity row : reservationRepo.countByRestaurant(ReservationStatus.CANCELLED)) {
+            restaurants.put(row.getItemId(), row.getScore());
+        }
+        Map<Long, Long> foods = new HashMap<>();
+        for (Popularity row : reservationRepo.sumQuantityByFood(ReservationStatus.CANCELLED)) {
+            foods.put(row.getItemId(), row.getScore());
+        }
+        restaurantPopularity = restaurants;
+        foodPopularity = foods;
+    }
+
+    private void linkCategories(Long restaurantId) {
+        addToCategories(restaurantId, 1);
+        for (String category : restaurantCategories.get(restaurantId)) {
+            trie.put(categoryEntry(category));
+        }
+    }
+
+    private void unlinkCategories(Long restaurantId) {
+        List<String> categories = restaurantCategories.get(restaurantId);
+        if (categories == null) {
+            return;
+        }
+        addToCategories(restaurantId, -1);
+        for (String category : categories) {
+            if (categoryScores.containsKey(category)) {
+                trie.put(categoryEntry(category));
+            } else {
+                trie.remove(CATEGORY_KEY + category);
+            }
+        }
+    }
+
+    /**
+     * Adds or takes away what a restaurant contributes to the score of its categories
+     */
+    private void addToCategories(Long restaurantId, int sign) {
+        long contribution = 1 + restaurantPopularity.getOrDefault(restaurantId, 0L);
+        for (String category : restaurantCategories.getOrDefault(restaurantId, Collections.emptyList())) {
+            long score = categoryScores.getOrDefault(category, 0L) + sign * contribution;
+            if (score > 0) {
+                categoryScores.put(category, score);
+            } else {
+                categoryScores.remove(category);
+            }
+        }
+    }
+
+    private PrefixTrie.Entry restaurantEntry(Long restaurantId) {
+        return new PrefixTrie.Entry(RESTAURANT_KEY + restaurantId, restaurantNames.get(restaurantId),
+            restaurantPopularity.getOrDefault(restaurantId, 0L));
+    }
+
+    private PrefixTrie.Entry foodEntry(Long foodId) {
+        return new PrefixTrie.Entry(FOOD_KEY + foodId, foodNames.get(foodId), foodPopularity.getOrDefault(foodId, 0L));
+    }
+
+    private PrefixTrie.Entry categoryEntry(String category) {
+        return new PrefixTrie.Entry(CATEGORY_KEY + category, category, categoryScores.getOrDefault(category, 0L));
+    }
+
+    private static SuggestionDTO toSuggestion(PrefixTrie.Entry entry) {
+        String key = entry.getKey();
+        if (key.startsWith(RESTAURANT_KEY)) {
+            return new SuggestionDTO(SuggestionDTO.RESTAURANT, Long.valueOf(key.substring(RESTAURANT_KEY.length())), entry.getText());
+        }
+        if (key.startsWith(FOOD_KEY)) {
+            return new SuggestionDTO(SuggestionDTO.FOOD, Long.valueOf(key.substring(FOOD_KEY.length())), entry.getText());
+        }
+        return new SuggestionDTO(SuggestionDTO.CATEGORY, null, entry.getText());
+    }
+}
@@ -0,0 +1,96 @@
+package foodprint.backend.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import foodprint.backend.model.EntityVersion;
+
+/**
+ * Builds a strong entity tag from the IDs and versions of the entities a response
+ * is made from, so that a request can be answered with 304 Not Modified without
+ * building or serializing the response.
+ *
+ * The parts are hashed in the order they are added, so they must be added in the
+ * same order every time. Missing parts, such as a restaurant without a discount,
+ * should still be added with {@link #addMissing()} so that they shift the rest.
+ */
+public class VersionVector {
+
+    private static final long MISSING = -1;
+
+    private static final int TAG_BYTES = 16;
+
+    private final MessageDigest digest;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    /**
+     * @param kind what the tag is for, so that different responses never share a tag
+     */
+    public VersionVector(String kind) {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(kind.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds an entity
+     * @param id
+     * @param version
+     * @return
+     */
+    public VersionVector add(Long id, long version) {
+        return add(id == null ? MISSING : id).add(version);
+    }
+
+    /**
+     * Adds entities, in the order given
+     * @param versions
+     * @return
+     */
+    public VersionVector addAll(Iterable<EntityVersion> versions) {
+        long count = 0;
+        for (EntityVersion version : versions) {
+            add(version.getId(), version.getVersion() == null ? 0 : version.getVersion());
+            count++;
+        }
+        // Keeps a list from running into whatever is added after it
+        return add(count);
+    }
+
+    /**
+     * Adds an entity that is not there
+     * @return
+     */
+    public VersionVector addMissing() {
+        return add(MISSING).add(MISSING);
+    }
+
+    /**
+     * Adds a number
+     * @param value
+     * @return
+     */
+    public VersionVector add(long value) {
+        buffer.clear();
+        buffer.putLong(value);
+        digest.update(buffer.array());
+        return this;
+    }
+
+    /**
+     * Gets the quoted entity tag of everything added so far
+     * @return
+     */
+    public String toETag() {
+        byte[] hash = Arrays.copyOf(digest.digest(), TAG_BYTES);
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+    }
+}
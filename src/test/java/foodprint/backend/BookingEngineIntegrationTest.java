@@ -0,0 +1,133 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import foodprint.backend.model.ReservationSlotRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.service.BookingEngine;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class BookingEngineIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int CAPACITY = 15;
+
+    @Autowired
+    private BookingEngine bookingEngine;
+
+    @Autowired
+    private RestaurantRepo restaurantRepo;
+
+    @Autowired
+    private ReservationSlotRepo reservationSlotRepo;
+
+    private List<Restaurant> restaurants;
+    private List<LocalDateTime> slots;
+
+    @BeforeEach
+    void init() {
+        List<String> restaurantCategories = new ArrayList<>();
+        restaurantCategories.add("Japanese");
+        restaurants = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Restaurant restaurant = new Restaurant("Sushi Tei " + i, "Desc", "Serangoon", CAPACITY, 9, 0, 22, 0, 9, 0, 22, 0, restaurantCategories);
+            restaurants.add(restaurantRepo.saveAndFlush(restaurant));
+        }
+        LocalDate day = LocalDate.now().plusDays(10);
+        slots = List.of(day.atTime(12, 0), day.atTime(12, 30), day.atTime(19, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationSlotRepo.deleteAll();
+        restaurantRepo.deleteAll();
+    }
+
+    @Test
+    void claim_ConcurrentBurst_NeverOverbooks() throws Exception {
+        AtomicInteger[][] successes = new AtomicInteger[restaurants.size()][slots.size()];
+        for (int r = 0; r < restaurants.size(); r++) {
+            for (int s = 0; s < slots.size(); s++) {
+                successes[r][s] = new AtomicInteger();
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    int attempt = thread * ATTEMPTS_PER_THREAD + i;
+                    int r = attempt % restaurants.size();
+                    int s = (attempt / restaurants.size()) % slots.size();
+                    if (bookingEngine.claim(restaurants.get(r), slots.get(s))) {
+                        successes[r][s].incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        executor.shutdown();
+
+        for (int r = 0; r < restaurants.size(); r++) {
+            for (int s = 0; s < slots.size(); s++) {
+                Long restaurantId = restaurants.get(r).getRestaurantId();
+                int claimed = reservationSlotRepo.findByRestaurantIdAndSlotStart(restaurantId, slots.get(s))
+                    .orElseThrow().getClaimed();
+                assertEquals(CAPACITY, successes[r][s].get());
+                assertEquals(CAPACITY, claimed);
+            }
+        }
+        assertTrue(elapsedMillis < TimeUnit.SECONDS.toMillis(30), "Took " + elapsedMillis + "ms for " + THREADS * ATTEMPTS_PER_THREAD + " claims");
+    }
+
+    @Test
+    void release_AfterFull_SlotCanBeClaimedAgain() {
+        Restaurant restaurant = restaurants.get(0);
+        LocalDateTime slot = slots.get(0);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(bookingEngine.claim(restaurant, slot));
+        }
+        assertEquals(false, bookingEngine.claim(restaurant, slot));
+
+        bookingEngine.release(restaurant.getRestaurantId(), slot);
+
+        assertTrue(bookingEngine.claim(restaurant, slot));
+        assertEquals(false, bookingEngine.claim(restaurant, slot.plusMinutes(10)));
+    }
+}
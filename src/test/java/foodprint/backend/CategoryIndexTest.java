@@ -0,0 +1,91 @@
+package foodprint.backend;
+
+import static foodprint.backend.TestRestaurants.restaurant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.service.CategoryIndex;
+
+@ExtendWith(MockitoExtension.class)
+public class CategoryIndexTest {
+
+    @Mock
+    private RestaurantRepo restaurantRepo;
+
+    @InjectMocks
+    private CategoryIndex categoryIndex;
+
+    @BeforeEach
+    void init() {
+        when(restaurantRepo.findAllCategories()).thenReturn(List.of(
+            category(2L, "Rice"), category(1L, "Japanese"), category(2L, "Japanese")));
+    }
+
+    @Test
+    void getCategories_Loaded_SortedAndDistinct() {
+        assertEquals(List.of("Japanese", "Rice"), categoryIndex.getCategories());
+        assertEquals(List.of(1L, 2L), categoryIndex.getRestaurantIds("Japanese"));
+        assertTrue(categoryIndex.getRestaurantIds("Korean").isEmpty());
+
+        categoryIndex.getCategories();
+        verify(restaurantRepo, times(1)).findAllCategories();
+    }
+
+    @Test
+    void put_CategoriesChanged_IndexUpdated() {
+        categoryIndex.getCategories();
+
+        categoryIndex.put(restaurant(2L, "Korean"));
+
+        assertEquals(List.of("Japanese", "Korean"), categoryIndex.getCategories());
+        assertEquals(List.of(1L), categoryIndex.getRestaurantIds("Japanese"));
+        assertEquals(List.of(2L), categoryIndex.getRestaurantIds("Korean"));
+    }
+
+    @Test
+    void remove_LastRestaurantInCategory_CategoryDropped() {
+        categoryIndex.getCategories();
+
+        categoryIndex.remove(2L);
+
+        assertEquals(List.of("Japanese"), categoryIndex.getCategories());
+        assertTrue(categoryIndex.getRestaurantIds("Rice").isEmpty());
+    }
+
+    @Test
+    void getTag_CategoriesChanged_TagChangedWithoutQuery() {
+        String loaded = categoryIndex.getTag();
+        assertEquals(loaded, categoryIndex.getTag());
+
+        categoryIndex.put(restaurant(3L, "Korean"));
+        assertNotEquals(loaded, categoryIndex.getTag());
+        verify(restaurantRepo, times(1)).findAllCategories();
+    }
+
+    private RestaurantCategory category(Long restaurantId, String category) {
+        return new RestaurantCategory() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public String getCategory() {
+                return category;
+            }
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import foodprint.backend.dto.DemandDriftDTO;
+import foodprint.backend.model.DailyFoodDemand;
+import foodprint.backend.model.DailyFoodDemandRepo;
+import foodprint.backend.model.DailyIngredientDemandRepo;
+import foodprint.backend.model.Food;
+import foodprint.backend.model.FoodDemand;
+import foodprint.backend.model.FoodIngredientQuantity;
+import foodprint.backend.model.FoodIngredientQuantityRepo;
+import foodprint.backend.model.Ingredient;
+import foodprint.backend.model.LineItem;
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.service.DemandLedger;
+
+@ExtendWith(MockitoExtension.class)
+public class DemandLedgerTest {
+
+    @Mock
+    private DailyFoodDemandRepo dailyFoodDemandRepo;
+
+    @Mock
+    private DailyIngredientDemandRepo dailyIngredientDemandRepo;
+
+    @Mock
+    private ReservationRepo reservationRepo;
+
+    @Mock
+    private FoodIngredientQuantityRepo foodIngredientQuantityRepo;
+
+    @Mock
+    private RestaurantRepo restaurantRepo;
+
+    @InjectMocks
+    private DemandLedger demandLedger;
+
+    private Long restaurantId;
+    private Food food;
+    private Ingredient ingredient;
+    private Reservation reservation;
+    private LocalDate day;
+
+    @BeforeEach
+    void init() {
+        restaurantId = 1L;
+        Restaurant restaurant = new Restaurant("Sushi Tei", "Serangoon");
+        ReflectionTestUtils.setField(restaurant, "restaurantId", restaurantId);
+        food = new Food("sashimi", 10.0, 0.0);
+        ReflectionTestUtils.setField(food, "foodId", 2L);
+        ingredient = new Ingredient("Salmon");
+        ReflectionTestUtils.setField(ingredient, "ingredientId", 3L);
+
+        day = LocalDate.now().plusDays(10);
+        reservation = new Reservation(null, day.atTime(12, 0), 2, true, LocalDateTime.now(), ReservationStatus.UNPAID, restaurant);
+        List<LineItem> lineItems = new ArrayList<>();
+        lineItems.add(new LineItem(food, reservation, 3));
+        reservation.setLineItems(lineItems);
+    }
+
+    @Test
+    void snapshot_LineItems_ScalesRecipe() {
+        when(foodIngredientQuantityRepo.findByIdFoodIdIn(anyCollection()))
+            .thenReturn(List.of(new FoodIngredientQuantity(food, ingredient, 4)));
+
+        DemandLedger.Snapshot snapshot = demandLedger.snapshot(reservation);
+
+        assertEquals(day, snapshot.getDate());
+        assertEquals(3L, snapshot.getFoods().get(2L));
+        assertEquals(12L, snapshot.getIngredients().get(3L));
+    }
+
+    @Test
+    void snapshot_Cancelled_NeedsNothing() {
+        reservation.setStatus(ReservationStatus.CANCELLED);
+
+        assertEquals(DemandLedger.Snapshot.NONE, demandLedger.snapshot(reservation));
+        verify(foodIngredientQuantityRepo, never()).findByIdFoodIdIn(anyCollection());
+    }
+
+    @Test
+    void apply_NewReservation_InsertsMissingRows() {
+        when(foodIngredientQuantityRepo.findByIdFoodIdIn(anyCollection()))
+            .thenReturn(List.of(new FoodIngredientQuantity(food, ingredient, 4)));
+        when(dailyFoodDemandRepo.add(restaurantId, day, 2L, 3L)).thenReturn(0);
+        when(dailyIngredientDemandRepo.add(restaurantId, day, 3L, 12L)).thenReturn(1);
+
+        demandLedger.apply(restaurantId, DemandLedger.Snapshot.NONE, demandLedger.snapshot(reservation));
+
+        verify(dailyFoodDemandRepo).saveAndFlush(any(DailyFoodDemand.class));
+        verify(dailyIngredientDemandRepo, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void apply_SameDemand_WritesNothing() {
+        when(foodIngredientQuantityRepo.findByIdFoodIdIn(anyCollection()))
+            .thenReturn(List.of(new FoodIngredientQuantity(food, ingredient, 4)));
+        DemandLedger.Snapshot snapshot = demandLedger.snapshot(reservation);
+
+        demandLedger.apply(restaurantId, snapshot, snapshot);
+
+        verify(dailyFoodDemandRepo, never()).add(any(), any(), any(), any());
+        verify(dailyIngredientDemandRepo, never()).add(any(), any(), any(), any());
+    }
+
+    @Test
+    void verify_RowDrifted_ReportedAndAdjusted() {
+        FoodDemand expected = new FoodDemand() {
+            public LocalDateTime getDate() {
+                return day.atTime(12, 0);
+            }
+
+            public Long getFoodId() {
+                return 2L;
+            }
+
+            public Long getQuantity() {
+                return 5L;
+            }
+        };
+        when(reservationRepo.sumFoodDemandByDate(restaurantId, ReservationStatus.CANCELLED)).thenReturn(List.of(expected));
+        when(dailyFoodDemandRepo.findByRestaurantId(restaurantId)).thenReturn(List.of(new DailyFoodDemand(restaurantId, day, 2L, 3L)));
+        when(dailyFoodDemandRepo.add(restaurantId, day, 2L, 2L)).thenReturn(1);
+
+        DemandDriftDTO report = demandLedger.verify(restaurantId, true);
+
+        assertEquals(1, report.getRowsChecked());
+        assertEquals(1, report.getDrift().size());
+        assertEquals(5L, report.getDrift().get(0).getExpected());
+        assertEquals(3L, report.getDrift().get(0).getActual());
+        verify(dailyFoodDemandRepo).add(restaurantId, day, 2L, 2L);
+    }
+
+    @Test
+    void verify_NoDrift_NothingWritten() {
+        DemandDriftDTO report = demandLedger.verify(restaurantId, true);
+
+        assertTrue(report.getDrift().isEmpty());
+        verify(dailyFoodDemandRepo, never()).add(any(), any(), any(), any());
+    }
+
+    @Test
+    void applyRecipeChange_QuantitiesChanged_IngredientRowsMoved() {
+        when(dailyFoodDemandRepo.findByRestaurantIdAndFoodId(restaurantId, 2L)).thenReturn(List.of(
+            new DailyFoodDemand(restaurantId, day, 2L, 3L), new DailyFoodDemand(restaurantId, day.plusDays(1), 2L, 0L)));
+        when(dailyIngredientDemandRepo.add(restaurantId, day, 3L, 6L)).thenReturn(1);
+        when(dailyIngredientDemandRepo.add(restaurantId, day, 4L, -3L)).thenReturn(1);
+
+        demandLedger.applyRecipeChange(restaurantId, 2L, Map.of(3L, 4L, 4L, 1L), Map.of(3L, 6L));
+
+        verify(dailyIngredientDemandRepo).add(restaurantId, day, 3L, 6L);
+        verify(dailyIngredientDemandRepo).add(restaurantId, day, 4L, -3L);
+        verify(dailyIngredientDemandRepo, never()).add(any(), eq(day.plusDays(1)), any(), any());
+        verify(reservationRepo, never()).sumIngredientDemandByDate(any(), any());
+    }
+
+    @Test
+    void applyRecipeChange_SameRecipe_NothingRead() {
+        demandLedger.applyRecipeChange(restaurantId, 2L, Map.of(3L, 4L), Map.of(3L, 4L));
+
+        verify(dailyFoodDemandRepo, never()).findByRestaurantIdAndFoodId(any(), any());
+    }
+}
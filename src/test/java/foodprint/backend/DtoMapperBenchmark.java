@@ -0,0 +1,90 @@
+package foodprint.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import foodprint.backend.dto.RestaurantDTO;
+import foodprint.backend.dto.RestaurantMapper;
+import foodprint.backend.model.Discount;
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Compares converting a page of 100 restaurants to DTOs with a new ModelMapper per
+ * restaurant (as the controllers used to), a shared ModelMapper and RestaurantMapper.
+ *
+ * Not run by the build, start it from main after test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMapperBenchmark {
+
+    private final List<Restaurant> restaurants = new ArrayList<>();
+
+    private final ModelMapper sharedMapper = new ModelMapper();
+
+    @Setup
+    public void setup() {
+        for (long i = 1; i <= 100; i++) {
+            Restaurant restaurant = new Restaurant("Restaurant " + i, "Desc", "Serangoon", 15, 10, 0, 22, 0, 10, 0, 22, 0,
+                new ArrayList<>(List.of("Japanese", "Rice")));
+            restaurant.setRestaurantId(i);
+            restaurant.setPicture(new Picture("Storefront", "Front", "/images", "front.jpg", "https://example.com/front.jpg"));
+            Discount discount = new Discount("Opening special", 10);
+            discount.restaurant(restaurant);
+            restaurant.setDiscount(discount);
+            restaurants.add(restaurant);
+        }
+    }
+
+    @Benchmark
+    public List<RestaurantDTO> modelMapperPerCall() {
+        List<RestaurantDTO> dtos = new ArrayList<>(restaurants.size());
+        for (Restaurant restaurant : restaurants) {
+            dtos.add(new ModelMapper().map(restaurant, RestaurantDTO.class));
+        }
+        return dtos;
+    }
+
+    @Benchmark
+    public List<RestaurantDTO> modelMapperShared() {
+        List<RestaurantDTO> dtos = new ArrayList<>(restaurants.size());
+        for (Restaurant restaurant : restaurants) {
+            dtos.add(sharedMapper.map(restaurant, RestaurantDTO.class));
+        }
+        return dtos;
+    }
+
+    @Benchmark
+    public List<RestaurantDTO> handWritten() {
+        List<RestaurantDTO> dtos = new ArrayList<>(restaurants.size());
+        for (Restaurant restaurant : restaurants) {
+            dtos.add(RestaurantMapper.toDTO(restaurant));
+        }
+        return dtos;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DtoMapperBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,161 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import foodprint.backend.dto.AdminUserDTO;
+import foodprint.backend.dto.NamedLineItemDTO;
+import foodprint.backend.dto.ReservationDTO;
+import foodprint.backend.dto.ReservationMapper;
+import foodprint.backend.dto.RestaurantDTO;
+import foodprint.backend.dto.RestaurantMapper;
+import foodprint.backend.dto.UserMapper;
+import foodprint.backend.model.Discount;
+import foodprint.backend.model.Food;
+import foodprint.backend.model.LineItem;
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.User;
+
+/**
+ * Checks that the hand-written mappers produce the same DTOs as ModelMapper did
+ */
+public class DtoMapperTest {
+
+    private ModelMapper modelMapper;
+
+    private Restaurant restaurant;
+
+    private Reservation reservation;
+
+    @BeforeEach
+    void init() {
+        modelMapper = new ModelMapper();
+
+        restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 30, 22, 0, 11, 0, 23, 30, new ArrayList<>(List.of("Japanese", "Rice")));
+        restaurant.setRestaurantId(1L);
+        restaurant.setRestaurantPriceRange(3);
+        restaurant.setRestaurantLatitude(1.3496);
+        restaurant.setRestaurantLongitude(103.8736);
+        restaurant.setPicture(new Picture("Storefront", "Front of the restaurant", "/images", "front.jpg", "https://example.com/front.jpg"));
+        Discount discount = new Discount("Opening special", 10);
+        discount.restaurant(restaurant);
+        restaurant.setDiscount(discount);
+
+        User user = new User("bobby@gmail.com", "SuperSecurePassw0rd", "bobby");
+        user.setFirstName("Bobby");
+        user.setLastName("Tan");
+
+        Food food = new Food("Salmon Sashimi", "Fresh", 12.5, 0.0);
+        food.setFoodId(3L);
+        food.setPicture(new Picture("Sashimi", "Plated", "/images", "sashimi.jpg", "https://example.com/sashimi.jpg"));
+        reservation = new Reservation(user, LocalDateTime.of(2021, 11, 3, 12, 30), 4, true, LocalDateTime.of(2021, 10, 20, 9, 0),
+            ReservationStatus.PAID, restaurant);
+        ReflectionTestUtils.setField(reservation, "reservationId", 7L);
+        List<LineItem> lineItems = new ArrayList<>();
+        lineItems.add(new LineItem(food, reservation, 2));
+        reservation.setLineItems(lineItems);
+    }
+
+    @Test
+    void restaurantToDTO_SameAsModelMapper() {
+        RestaurantDTO expected = modelMapper.map(restaurant, RestaurantDTO.class);
+
+        RestaurantDTO actual = RestaurantMapper.toDTO(restaurant);
+
+        assertEquals(expected.getRestaurantId(), actual.getRestaurantId());
+        assertEquals(expected.getRestaurantName(), actual.getRestaurantName());
+        assertEquals(expected.getRestaurantLocation(), actual.getRestaurantLocation());
+        assertEquals(expected.getRestaurantDesc(), actual.getRestaurantDesc());
+        assertEquals(expected.getRestaurantPriceRange(), actual.getRestaurantPriceRange());
+        assertEquals(expected.getRestaurantTableCapacity(), actual.getRestaurantTableCapacity());
+        assertEquals(expected.getRestaurantWeekdayOpeningHour(), actual.getRestaurantWeekdayOpeningHour());
+        assertEquals(expected.getRestaurantWeekdayOpeningMinutes(), actual.getRestaurantWeekdayOpeningMinutes());
+        assertEquals(expected.getRestaurantWeekdayClosingHour(), actual.getRestaurantWeekdayClosingHour());
+        assertEquals(expected.getRestaurantWeekdayClosingMinutes(), actual.getRestaurantWeekdayClosingMinutes());
+        assertEquals(expected.getRestaurantWeekendOpeningHour(), actual.getRestaurantWeekendOpeningHour());
+        assertEquals(expected.getRestaurantWeekendOpeningMinutes(), actual.getRestaurantWeekendOpeningMinutes());
+        assertEquals(expected.getRestaurantWeekendClosingHour(), actual.getRestaurantWeekendClosingHour());
+        assertEquals(expected.getRestaurantWeekendClosingMinutes(), actual.getRestaurantWeekendClosingMinutes());
+        assertEquals(expected.getRestaurantLatitude(), actual.getRestaurantLatitude());
+        assertEquals(expected.getRestaurantLongitude(), actual.getRestaurantLongitude());
+        assertEquals(expected.getRestaurantCategory(), actual.getRestaurantCategory());
+        assertEquals(expected.getPicture().getUrl(), actual.getPicture().getUrl());
+        assertEquals(expected.getPicture().getTitle(), actual.getPicture().getTitle());
+        assertEquals(expected.getPicture().getUrls(), actual.getPicture().getUrls());
+        assertEquals(expected.getDiscount().getRestaurantId(), actual.getDiscount().getRestaurantId());
+        assertEquals(expected.getDiscount().getDiscountPercentage(), actual.getDiscount().getDiscountPercentage());
+        assertEquals(expected.getDiscount().getDiscountDescription(), actual.getDiscount().getDiscountDescription());
+    }
+
+    @Test
+    void restaurantToDTO_NoPictureOrDiscount_LeftEmpty() {
+        restaurant.setPicture(null);
+        restaurant.setDiscount(null);
+
+        RestaurantDTO actual = RestaurantMapper.toDTO(restaurant);
+
+        assertNull(actual.getPicture());
+        assertNull(actual.getDiscount());
+    }
+
+    @Test
+    void reservationToDTO_SameAsModelMapper() {
+        ReservationDTO expected = modelMapper.map(reservation, ReservationDTO.class);
+
+        ReservationDTO actual = ReservationMapper.toDTO(reservation);
+
+        assertEquals(expected.getReservationId(), actual.getReservationId());
+        assertEquals(expected.getRestaurantId(), actual.getRestaurantId());
+        assertEquals(expected.getRestaurantName(), actual.getRestaurantName());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getPax(), actual.getPax());
+        assertEquals(expected.getIsVaccinated(), actual.getIsVaccinated());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getUserFirstName(), actual.getUserFirstName());
+        assertEquals(expected.getUserLastName(), actual.getUserLastName());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals("https://example.com/front.jpg", actual.getImageUrl());
+    }
+
+    @Test
+    void lineItemToDTO_SameAsModelMapper() {
+        LineItem lineItem = reservation.getLineItems().get(0);
+        NamedLineItemDTO expected = modelMapper.map(lineItem, NamedLineItemDTO.class);
+
+        NamedLineItemDTO actual = ReservationMapper.toDTO(lineItem);
+
+        assertEquals(expected.getFoodId(), actual.getFoodId());
+        assertEquals(expected.getFoodName(), actual.getFoodName());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(lineItem.getFood().getPicture(), actual.getPicture());
+    }
+
+    @Test
+    void adminUserToEntity_SameAsModelMapper() {
+        AdminUserDTO dto = new AdminUserDTO("Bobby", "Tan", "bobby@gmail.com", "SuperSecurePassw0rd", "FP_USER",
+            LocalDateTime.of(2021, 10, 20, 9, 0), LocalDateTime.of(2021, 9, 1, 8, 0));
+        User expected = modelMapper.map(dto, User.class);
+
+        User actual = UserMapper.toEntity(dto);
+
+        assertEquals(expected.getFirstName(), actual.getFirstName());
+        assertEquals(expected.getLastName(), actual.getLastName());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getRoles(), actual.getRoles());
+        assertEquals(expected.getLastLogin(), actual.getLastLogin());
+        assertEquals(expected.getRegisteredOn(), actual.getRegisteredOn());
+    }
+}
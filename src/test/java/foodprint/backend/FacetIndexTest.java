@@ -0,0 +1,225 @@
+package foodprint.backend;
+
+import static foodprint.backend.TestRestaurants.restaurant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantFacet;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.service.FacetIndex;
+import foodprint.backend.service.ReservationService;
+
+@ExtendWith(MockitoExtension.class)
+public class FacetIndexTest {
+
+    // A Monday
+    private static final LocalDateTime NOON = LocalDateTime.of(2021, 11, 1, 12, 0);
+
+    @Mock
+    private RestaurantRepo restaurantRepo;
+
+    @Mock
+    private ObjectProvider<ReservationService> reservationServiceProvider;
+
+    @Mock
+    private ReservationService reservationService;
+
+    private FacetIndex facetIndex;
+
+    @BeforeEach
+    void init() {
+        facetIndex = new FacetIndex(restaurantRepo, reservationServiceProvider);
+        when(restaurantRepo.findAllFacets()).thenReturn(List.of(
+            facet(1L, 2, 10, 22, 11L),
+            facet(2L, 3, 18, 23, null),
+            facet(3L, 2, 10, 22, null),
+            facet(4L, 4, 10, 22, null)));
+        when(restaurantRepo.findAllCategories()).thenReturn(List.of(
+            category(1L, "Japanese"), category(2L, "Japanese"), category(2L, "Rice"), category(3L, "Rice"), category(4L, "Western")));
+        when(reservationServiceProvider.getObject()).thenReturn(reservationService);
+        when(reservationService.getUpcomingSlots(anyCollection(), any(), any())).thenReturn(Map.of(
+            1L, List.of(NOON.plusDays(7)),
+            2L, List.of(NOON.plusDays(8)),
+            3L, Collections.emptyList(),
+            4L, Collections.emptyList()));
+        facetIndex.refreshAvailability();
+    }
+
+    @Test
+    void query_NoFilter_AllInIdOrder() {
+        FacetIndex.Result result = facetIndex.query(filter(null, null, false, false, false), NOON, 0, 10);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), result.getRestaurantIds());
+        assertEquals(4, result.getTotal());
+        assertEquals(Map.of("Japanese", 2, "Rice", 2, "Western", 1), result.getCategoryCounts());
+        assertEquals(Map.of(2, 2, 3, 1, 4, 1), result.getPriceRangeCounts());
+        assertEquals(3, result.getOpenNowCount());
+        assertEquals(1, result.getDiscountedCount());
+        assertEquals(2, result.getAvailableCount());
+    }
+
+    @Test
+    void query_Categories_OrWithinFacetAndAcrossFacets() {
+        FacetIndex.Result result = facetIndex.query(filter(List.of("Japanese", "Rice"), List.of(2), false, false, false), NOON, 0, 10);
+
+        assertEquals(List.of(1L, 3L), result.getRestaurantIds());
+        // Counts of a facet ignore its own filter but apply every other one
+        assertEquals(Map.of("Japanese", 1, "Rice", 1, "Western", 0), result.getCategoryCounts());
+        assertEquals(Map.of(2, 2, 3, 1, 4, 0), result.getPriceRangeCounts());
+        assertEquals(1, result.getDiscountedCount());
+    }
+
+    @Test
+    void query_OpenNowAndAvailable_Applied() {
+        assertEquals(List.of(1L, 3L, 4L), facetIndex.query(filter(null, null, true, false, false), NOON, 0, 10).getRestaurantIds());
+        assertEquals(List.of(2L), facetIndex.query(filter(null, null, true, false, false), NOON.withHour(22), 0, 10).getRestaurantIds());
+        assertEquals(List.of(1L, 2L), facetIndex.query(filter(null, null, false, false, true), NOON, 0, 10).getRestaurantIds());
+        assertEquals(List.of(1L), facetIndex.query(filter(null, null, true, true, true), NOON, 0, 10).getRestaurantIds());
+    }
+
+    @Test
+    void query_Paged_TotalCountsEveryMatch() {
+        FacetIndex.Result result = facetIndex.query(filter(null, null, false, false, false), NOON, 1, 2);
+
+        assertEquals(List.of(2L, 3L), result.getRestaurantIds());
+        assertEquals(4, result.getTotal());
+        assertEquals(List.of(), facetIndex.query(filter(null, null, false, false, false), NOON, 4, 2).getRestaurantIds());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshAvailability_ManyRestaurants_AskedInBatches() {
+        List<RestaurantFacet> facets = new ArrayList<>();
+        for (long restaurantId = 1; restaurantId <= 120; restaurantId++) {
+            facets.add(facet(restaurantId, 2, 10, 22, null));
+        }
+        when(restaurantRepo.findAllFacets()).thenReturn(facets);
+        FacetIndex many = new FacetIndex(restaurantRepo, reservationServiceProvider);
+        clearInvocations(reservationService);
+
+        many.refreshAvailability();
+
+        ArgumentCaptor<Collection<Long>> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(reservationService, times(3)).getUpcomingSlots(batches.capture(), any(), any());
+        assertEquals(List.of(50, 50, 20), batches.getAllValues().stream().map(Collection::size).collect(Collectors.toList()));
+        assertEquals(List.of(1L, 2L), many.query(filter(null, null, false, false, true), NOON, 0, 10).getRestaurantIds());
+    }
+
+    @Test
+    void put_Changed_IndexUpdated() {
+        facetIndex.query(filter(null, null, false, false, false), NOON, 0, 10);
+
+        Restaurant japanese = restaurant(3L, "Japanese");
+        japanese.setRestaurantPriceRange(4);
+        Restaurant rice = restaurant(5L, "Rice");
+        rice.setRestaurantPriceRange(2);
+        facetIndex.put(japanese);
+        facetIndex.put(rice);
+        facetIndex.setDiscounted(4L, true);
+
+        assertEquals(List.of(1L, 2L, 3L), facetIndex.query(filter(List.of("Japanese"), null, false, false, false), NOON, 0, 10)
+            .getRestaurantIds());
+        assertEquals(List.of(1L, 5L), facetIndex.query(filter(null, List.of(2), false, false, false), NOON, 0, 10).getRestaurantIds());
+        assertEquals(List.of(1L, 4L), facetIndex.query(filter(null, null, false, true, false), NOON, 0, 10).getRestaurantIds());
+    }
+
+    @Test
+    void remove_Restaurant_NoLongerMatched() {
+        facetIndex.query(filter(null, null, false, false, false), NOON, 0, 10);
+
+        facetIndex.remove(2L);
+
+        FacetIndex.Result result = facetIndex.query(filter(List.of("Japanese"), null, false, false, false), NOON, 0, 10);
+        assertEquals(List.of(1L), result.getRestaurantIds());
+        assertEquals(Map.of("Japanese", 1, "Rice", 1, "Western", 1), result.getCategoryCounts());
+        assertEquals(List.of(1L, 3L, 4L), facetIndex.getOpenRestaurantIds(NOON));
+    }
+
+    private FacetIndex.Filter filter(List<String> categories, List<Integer> priceRanges, boolean openNow, boolean discounted,
+            boolean available) {
+        return new FacetIndex.Filter(categories, priceRanges, openNow, discounted, available);
+    }
+
+    private RestaurantFacet facet(Long restaurantId, Integer priceRange, int openingHour, int closingHour, Long discountId) {
+        return new RestaurantFacet() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public Integer getRestaurantPriceRange() {
+                return priceRange;
+            }
+
+            public Long getDiscountId() {
+                return discountId;
+            }
+
+            public Integer getRestaurantWeekdayOpeningHour() {
+                return openingHour;
+            }
+
+            public Integer getRestaurantWeekdayOpeningMinutes() {
+                return 0;
+            }
+
+            public Integer getRestaurantWeekdayClosingHour() {
+                return closingHour;
+            }
+
+            public Integer getRestaurantWeekdayClosingMinutes() {
+                return 0;
+            }
+
+            public Integer getRestaurantWeekendOpeningHour() {
+                return openingHour;
+            }
+
+            public Integer getRestaurantWeekendOpeningMinutes() {
+                return 0;
+            }
+
+            public Integer getRestaurantWeekendClosingHour() {
+                return closingHour;
+            }
+
+            public Integer getRestaurantWeekendClosingMinutes() {
+                return 0;
+            }
+        };
+    }
+
+    private RestaurantCategory category(Long restaurantId, String category) {
+        return new RestaurantCategory() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public String getCategory() {
+                return category;
+            }
+        };
+    }
+}
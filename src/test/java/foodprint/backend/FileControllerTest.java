@@ -0,0 +1,150 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import foodprint.backend.controller.FileController;
+import foodprint.backend.exceptions.NotFoundException;
+import foodprint.backend.exceptions.ServiceUnavailableException;
+import foodprint.backend.service.LocalFileStore;
+
+public class FileControllerTest {
+
+    private static final String FILE_URL = "/api/v1/files/bucket/uuid/sushi.png";
+
+    @TempDir
+    Path root;
+
+    private LocalFileStore fileStore;
+    private FileController fileController;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void init() throws IOException {
+        fileStore = new LocalFileStore(root.toString(), "/api/v1/files");
+        fileController = new FileController(fileStore, 4);
+        response = new MockHttpServletResponse();
+        Files.createDirectories(root.resolve("bucket/uuid"));
+        Files.writeString(root.resolve("bucket/uuid/sushi.png"), "0123456789");
+    }
+
+    @Test
+    void getFile_WholeFile_SentWithValidators() throws IOException {
+        fileController.getFile(new MockHttpServletRequest("GET", FILE_URL), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("image/png", response.getContentType());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(eTag(), response.getHeader(HttpHeaders.ETAG));
+        assertEquals("max-age=31536000, public", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+    }
+
+    @Test
+    void getFile_Range_PartSent() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FILE_URL);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        fileController.getFile(request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void getFile_SuffixRange_EndSent() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FILE_URL);
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+
+        fileController.getFile(request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    void getFile_RangePastEnd_NotSatisfiable() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FILE_URL);
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+
+        fileController.getFile(request, response);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void getFile_IfRangeChanged_WholeFileSent() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FILE_URL);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"changed\"");
+
+        fileController.getFile(request, response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void getFile_ETagMatches_NotModified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FILE_URL);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag());
+
+        fileController.getFile(request, response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void getFile_Head_NoBody() throws IOException {
+        fileController.getFile(new MockHttpServletRequest("HEAD", FILE_URL), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void getFile_FileMissing_ReturnException() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/files/bucket/uuid/missing.png");
+
+        assertThrows(NotFoundException.class, () -> fileController.getFile(request, response));
+    }
+
+    @Test
+    void getFile_NotAnImage_ReturnException() throws IOException {
+        Files.writeString(root.resolve("bucket/uuid/page.html"), "<script></script>");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/files/bucket/uuid/page.html");
+
+        assertThrows(NotFoundException.class, () -> fileController.getFile(request, response));
+    }
+
+    @Test
+    void getFile_TooManyTransfers_ReturnException() {
+        FileController busy = new FileController(fileStore, 0);
+
+        assertThrows(ServiceUnavailableException.class,
+            () -> busy.getFile(new MockHttpServletRequest("GET", FILE_URL), response));
+    }
+
+    private String eTag() throws IOException {
+        Path file = root.resolve("bucket/uuid/sushi.png");
+        return String.format("\"%x-%x\"", Files.getLastModifiedTime(file).toMillis(), Files.size(file));
+    }
+}
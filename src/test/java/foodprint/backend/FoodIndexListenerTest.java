@@ -0,0 +1,95 @@
+package foodprint.backend;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import foodprint.backend.model.Food;
+import foodprint.backend.service.CatalogSearch;
+import foodprint.backend.service.FoodIndexListener;
+import foodprint.backend.service.Typeahead;
+
+@ExtendWith(MockitoExtension.class)
+public class FoodIndexListenerTest {
+
+    @Mock
+    private ObjectProvider<CatalogSearch> catalogSearchProvider;
+
+    @Mock
+    private ObjectProvider<Typeahead> typeaheadProvider;
+
+    @Mock
+    private CatalogSearch catalogSearch;
+
+    @Mock
+    private Typeahead typeahead;
+
+    private FoodIndexListener foodIndexListener;
+    private Food food;
+
+    @BeforeEach
+    void init() {
+        foodIndexListener = new FoodIndexListener(catalogSearchProvider, typeaheadProvider);
+        food = new Food("sashimi", 10.0, 0.0);
+        ReflectionTestUtils.setField(food, "foodId", 2L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void saved_NoTransaction_AppliedNow() {
+        when(catalogSearchProvider.getObject()).thenReturn(catalogSearch);
+        when(typeaheadProvider.getObject()).thenReturn(typeahead);
+
+        foodIndexListener.saved(food);
+
+        verify(catalogSearch).putFood(food);
+        verify(typeahead).putFood(food);
+    }
+
+    @Test
+    void saved_InTransaction_AppliedOnCommit() {
+        when(catalogSearchProvider.getObject()).thenReturn(catalogSearch);
+        when(typeaheadProvider.getObject()).thenReturn(typeahead);
+        TransactionSynchronizationManager.initSynchronization();
+
+        foodIndexListener.saved(food);
+
+        verify(catalogSearch, never()).putFood(any());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(catalogSearch).putFood(food);
+        verify(typeahead).putFood(food);
+    }
+
+    @Test
+    void removed_RolledBack_NothingApplied() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        foodIndexListener.removed(food);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        verify(catalogSearch, never()).removeFood(any());
+        verify(typeahead, never()).removeFood(any());
+    }
+}
@@ -0,0 +1,166 @@
+package foodprint.backend;
+
+import static foodprint.backend.TestRestaurants.restaurant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantCategory;
+import foodprint.backend.model.RestaurantPlace;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.service.GeoIndex;
+
+@ExtendWith(MockitoExtension.class)
+public class GeoIndexTest {
+
+    // Around Serangoon, about 1.1 km apart going east
+    private static final double LATITUDE = 1.3500;
+    private static final double LONGITUDE = 103.8700;
+
+    @Mock
+    private RestaurantRepo restaurantRepo;
+
+    @InjectMocks
+    private GeoIndex geoIndex;
+
+    private void loadSample() {
+        when(restaurantRepo.findAllPlaces()).thenReturn(List.of(
+            place(1L, LATITUDE, LONGITUDE + 0.01, 2),
+            place(2L, LATITUDE, LONGITUDE + 0.03, 4),
+            place(3L, LATITUDE + 0.002, LONGITUDE, 1),
+            place(4L, LATITUDE, LONGITUDE + 0.3, 3)));
+        when(restaurantRepo.findAllCategories()).thenReturn(List.of(
+            category(1L, "Japanese"), category(2L, "Japanese"), category(3L, "Rice")));
+    }
+
+    @Test
+    void nearest_WithinRadius_NearestFirst() {
+        loadSample();
+        List<GeoIndex.Nearby> nearby = geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, null);
+
+        assertEquals(List.of(3L, 1L, 2L), ids(nearby));
+        assertEquals(0.22, nearby.get(0).getDistanceKm(), 0.01);
+        assertEquals(1.11, nearby.get(1).getDistanceKm(), 0.01);
+    }
+
+    @Test
+    void nearest_Limit_KeepsNearest() {
+        loadSample();
+        assertEquals(List.of(3L, 1L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 50, 2, null, null, null)));
+    }
+
+    @Test
+    void nearest_Filters_Applied() {
+        loadSample();
+        assertEquals(List.of(1L, 2L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, "Japanese", null, null)));
+        assertEquals(List.of(2L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, 3, null)));
+        assertEquals(List.of(3L, 1L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, 2)));
+    }
+
+    @Test
+    void nearest_MatchesBruteForce() {
+        List<RestaurantPlace> places = new ArrayList<>();
+        for (long i = 0; i < 500; i++) {
+            places.add(place(i, LATITUDE + (i * 7919 % 1000) / 10000.0, LONGITUDE + (i * 104729 % 1000) / 10000.0, 1));
+        }
+        when(restaurantRepo.findAllPlaces()).thenReturn(places);
+        when(restaurantRepo.findAllCategories()).thenReturn(List.of());
+        double latitude = LATITUDE + 0.05;
+        double longitude = LONGITUDE + 0.05;
+
+        List<GeoIndex.Nearby> nearby = geoIndex.nearest(latitude, longitude, 3, 15, null, null, null);
+
+        List<Double> expected = new ArrayList<>();
+        for (RestaurantPlace place : places) {
+            double distance = GeoIndex.distanceKm(latitude, longitude, place.getRestaurantLatitude(), place.getRestaurantLongitude());
+            if (distance <= 3) {
+                expected.add(distance);
+            }
+        }
+        expected.sort(null);
+        assertEquals(15, nearby.size());
+        for (int i = 0; i < nearby.size(); i++) {
+            assertEquals(expected.get(i), nearby.get(i).getDistanceKm(), 1e-9);
+        }
+    }
+
+    @Test
+    void put_Moved_IndexUpdated() {
+        loadSample();
+        geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, null);
+
+        geoIndex.put(located(2L, LATITUDE + 0.001, LONGITUDE));
+        geoIndex.put(located(3L, null, null));
+
+        assertEquals(List.of(2L, 1L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, null)));
+    }
+
+    @Test
+    void remove_Restaurant_NoLongerFound() {
+        loadSample();
+        geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, null);
+
+        geoIndex.remove(3L);
+
+        assertEquals(List.of(1L, 2L), ids(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, null, null, null)));
+        assertTrue(geoIndex.nearest(LATITUDE, LONGITUDE, 5, 10, "Rice", null, null).isEmpty());
+    }
+
+    private List<Long> ids(List<GeoIndex.Nearby> nearby) {
+        List<Long> ids = new ArrayList<>();
+        for (GeoIndex.Nearby place : nearby) {
+            ids.add(place.getRestaurantId());
+        }
+        return ids;
+    }
+
+    private Restaurant located(Long restaurantId, Double latitude, Double longitude) {
+        Restaurant restaurant = restaurant(restaurantId, "Japanese");
+        restaurant.setRestaurantLatitude(latitude);
+        restaurant.setRestaurantLongitude(longitude);
+        restaurant.setRestaurantPriceRange(3);
+        return restaurant;
+    }
+
+    private RestaurantPlace place(Long restaurantId, double latitude, double longitude, Integer priceRange) {
+        return new RestaurantPlace() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public Double getRestaurantLatitude() {
+                return latitude;
+            }
+
+            public Double getRestaurantLongitude() {
+                return longitude;
+            }
+
+            public Integer getRestaurantPriceRange() {
+                return priceRange;
+            }
+        };
+    }
+
+    private RestaurantCategory category(Long restaurantId, String category) {
+        return new RestaurantCategory() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public String getCategory() {
+                return category;
+            }
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.ReservationHold;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.service.BookingEngine;
+import foodprint.backend.service.DemandLedger;
+import foodprint.backend.service.HoldExpiryWheel;
+import foodprint.backend.service.SlotOccupancyIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class HoldExpiryWheelTest {
+
+    private static final long HOLD_MINUTES = 15;
+
+    private static final long PAYMENT_MINUTES = 5;
+
+    @Mock
+    private ReservationRepo reservationRepo;
+
+    @Mock
+    private BookingEngine bookingEngine;
+
+    @Mock
+    private SlotOccupancyIndex slotOccupancyIndex;
+
+    @Mock
+    private DemandLedger demandLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HoldExpiryWheel holdExpiryWheel;
+    private Reservation reservation;
+    private Long reservationId;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        holdExpiryWheel = new HoldExpiryWheel(reservationRepo, bookingEngine, slotOccupancyIndex, demandLedger, transactionManager, meterRegistry, HOLD_MINUTES,
+            PAYMENT_MINUTES);
+
+        Restaurant restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 0, 22, 0, 10, 0, 22, 0, new ArrayList<>());
+        ReflectionTestUtils.setField(restaurant, "restaurantId", 1L);
+        reservation = new Reservation(null, LocalDateTime.now().plusDays(10), 2, true, LocalDateTime.now(), ReservationStatus.UNPAID, restaurant);
+        reservationId = 5L;
+        reservation.changeReservationId(reservationId);
+    }
+
+    @Test
+    void advanceTo_HoldExpired_ReservationCancelled() {
+        LocalDateTime reservedOn = LocalDateTime.now();
+        Instant deadline = deadlineOf(reservedOn);
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(List.of(reservation));
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.advanceTo(deadline.minusSeconds(1));
+
+        verify(reservationRepo, never()).findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class));
+        assertEquals(1, holdExpiryWheel.getPendingCount());
+
+        holdExpiryWheel.advanceTo(deadline.plusSeconds(1));
+
+        verify(reservationRepo).findByReservationIdInAndStatus(List.of(reservationId), ReservationStatus.UNPAID);
+        verify(reservationRepo).updateStatus(List.of(reservationId), ReservationStatus.CANCELLED);
+        verify(bookingEngine).release(1L, reservation.getDate());
+        verify(slotOccupancyIndex).decrement(1L, reservation.getDate());
+        verify(demandLedger).apply(1L, null, DemandLedger.Snapshot.NONE);
+        assertEquals(0, holdExpiryWheel.getPendingCount());
+        assertEquals(1.0, meterRegistry.get("foodprint.reservation.holds.expired").counter().count());
+        assertEquals(1, meterRegistry.get("foodprint.reservation.holds.expiry.lag").timer().count());
+    }
+
+    @Test
+    void advanceTo_HoldCancelled_NothingExpired() {
+        LocalDateTime reservedOn = LocalDateTime.now();
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.cancel(reservationId);
+        holdExpiryWheel.advanceTo(deadlineOf(reservedOn).plusSeconds(60));
+
+        verify(reservationRepo, never()).findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class));
+        assertEquals(0, holdExpiryWheel.getPendingCount());
+    }
+
+    @Test
+    void advanceTo_HoldInUpperLevel_ExpiresOnDeadline() {
+        // Far enough out to start in an upper level of the wheel and cascade down
+        LocalDateTime reservedOn = LocalDateTime.now().plusHours(3);
+        Instant deadline = deadlineOf(reservedOn);
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(List.of(reservation));
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.advanceTo(deadline.minusSeconds(1));
+
+        verify(reservationRepo, never()).findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class));
+
+        holdExpiryWheel.advanceTo(deadline.plusSeconds(1));
+
+        verify(reservationRepo).updateStatus(List.of(reservationId), ReservationStatus.CANCELLED);
+    }
+
+    @Test
+    void rebuild_HoldAlreadyExpired_CancelledOnNextTick() {
+        LocalDateTime reservedOn = LocalDateTime.now().minusHours(1);
+        when(reservationRepo.findHoldsByStatusAndDateAfter(eq(ReservationStatus.UNPAID), any(LocalDateTime.class)))
+            .thenReturn(List.of(hold(reservationId, reservedOn)));
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(List.of(reservation));
+
+        holdExpiryWheel.rebuild();
+        assertEquals(1, holdExpiryWheel.getPendingCount());
+        holdExpiryWheel.advanceTo(Instant.now().plusSeconds(2));
+
+        verify(reservationRepo).updateStatus(List.of(reservationId), ReservationStatus.CANCELLED);
+        assertEquals(0, holdExpiryWheel.getPendingCount());
+    }
+
+    @Test
+    void rebuild_OnlyFutureReservationsScheduled() {
+        LocalDateTime before = LocalDateTime.now();
+        when(reservationRepo.findHoldsByStatusAndDateAfter(eq(ReservationStatus.UNPAID), any(LocalDateTime.class)))
+            .thenReturn(new ArrayList<>());
+
+        holdExpiryWheel.rebuild();
+
+        ArgumentCaptor<LocalDateTime> after = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(reservationRepo).findHoldsByStatusAndDateAfter(eq(ReservationStatus.UNPAID), after.capture());
+        assertFalse(after.getValue().isBefore(before));
+    }
+
+    @Test
+    void extendForPayment_HoldAboutToExpire_KeptForPaymentWindow() {
+        // Reserved long enough ago that the hold runs out in a minute
+        LocalDateTime reservedOn = LocalDateTime.now().minusMinutes(HOLD_MINUTES - 1);
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(List.of(reservation));
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.extendForPayment(reservationId);
+        holdExpiryWheel.advanceTo(deadlineOf(reservedOn).plusSeconds(1));
+
+        verify(reservationRepo, never()).findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class));
+        assertEquals(1, holdExpiryWheel.getPendingCount());
+
+        holdExpiryWheel.advanceTo(Instant.now().plusSeconds(PAYMENT_MINUTES * 60 + 1));
+
+        verify(reservationRepo).updateStatus(List.of(reservationId), ReservationStatus.CANCELLED);
+    }
+
+    @Test
+    void extendForPayment_HoldLongerThanWindow_Unchanged() {
+        LocalDateTime reservedOn = LocalDateTime.now();
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(List.of(reservation));
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.extendForPayment(reservationId);
+        holdExpiryWheel.advanceTo(deadlineOf(reservedOn).plusSeconds(1));
+
+        verify(reservationRepo).updateStatus(List.of(reservationId), ReservationStatus.CANCELLED);
+    }
+
+    @Test
+    void advanceTo_ReservationAlreadyPaid_NotCancelled() {
+        LocalDateTime reservedOn = LocalDateTime.now();
+        when(reservationRepo.findByReservationIdInAndStatus(anyCollection(), any(ReservationStatus.class))).thenReturn(new ArrayList<>());
+
+        holdExpiryWheel.schedule(reservationId, reservedOn);
+        holdExpiryWheel.advanceTo(deadlineOf(reservedOn).plusSeconds(1));
+
+        verify(reservationRepo, never()).updateStatus(anyCollection(), any(ReservationStatus.class));
+        verify(bookingEngine, never()).release(any(Long.class), any(LocalDateTime.class));
+    }
+
+    private Instant deadlineOf(LocalDateTime reservedOn) {
+        return reservedOn.plusMinutes(HOLD_MINUTES).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private ReservationHold hold(Long reservationId, LocalDateTime reservedOn) {
+        return new ReservationHold() {
+            public Long getReservationId() {
+                return reservationId;
+            }
+
+            public LocalDateTime getReservedOn() {
+                return reservedOn;
+            }
+        };
+    }
+}
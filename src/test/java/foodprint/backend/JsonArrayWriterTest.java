@@ -0,0 +1,115 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import foodprint.backend.dto.RestaurantDTO;
+import foodprint.backend.service.JsonArrayWriter;
+
+@ExtendWith(MockitoExtension.class)
+public class JsonArrayWriterTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ObjectMapper objectMapper;
+
+    private JsonArrayWriter jsonArrayWriter;
+
+    @BeforeEach
+    void init() {
+        objectMapper = new ObjectMapper();
+        jsonArrayWriter = new JsonArrayWriter(objectMapper, entityManager);
+    }
+
+    @Test
+    void write_Rows_SameAsList() throws Exception {
+        List<RestaurantDTO> restaurants = IntStream.range(0, 3).mapToObj(this::restaurant).collect(Collectors.toList());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = jsonArrayWriter.write(out, restaurants.stream(), Function.identity());
+
+        assertEquals(3, written);
+        assertEquals(objectMapper.writeValueAsString(restaurants), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_NoRows_EmptyArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = jsonArrayWriter.write(out, Stream.empty(), Function.identity());
+
+        assertEquals(0, written);
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+        verify(entityManager, never()).clear();
+    }
+
+    @Test
+    void write_NullView_RowLeftOut() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = jsonArrayWriter.write(out, Stream.of(1, 2, 3, 4), row -> row % 2 == 0 ? row : null);
+
+        assertEquals(2, written);
+        assertEquals("[2,4]", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_ManyRows_ClearsEveryBatch() {
+        int rows = JsonArrayWriter.BATCH_SIZE * 2 + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Rows left out still count, since they were read into the persistence context all the same
+        jsonArrayWriter.write(out, IntStream.range(0, rows).boxed(), row -> row % 2 == 0 ? row : null);
+
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void write_Finished_ClosesRowsButNotOutput() {
+        AtomicBoolean rowsClosed = new AtomicBoolean();
+        AtomicBoolean outputClosed = new AtomicBoolean();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                outputClosed.set(true);
+            }
+        };
+
+        jsonArrayWriter.write(out, Stream.of(1).onClose(() -> rowsClosed.set(true)), Function.identity());
+
+        assertTrue(rowsClosed.get());
+        assertFalse(outputClosed.get());
+    }
+
+    private RestaurantDTO restaurant(int i) {
+        RestaurantDTO restaurant = new RestaurantDTO();
+        restaurant.setRestaurantId((long) i);
+        restaurant.setRestaurantName("Restaurant " + i);
+        restaurant.setRestaurantCategory(List.of("Japanese"));
+        return restaurant;
+    }
+}
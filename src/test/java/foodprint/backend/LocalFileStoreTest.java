@@ -0,0 +1,105 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import foodprint.backend.service.LocalFileStore;
+
+public class LocalFileStoreTest {
+
+    @TempDir
+    Path root;
+
+    private LocalFileStore fileStore;
+
+    @BeforeEach
+    void init() {
+        fileStore = new LocalFileStore(root.toString(), "/api/v1/files");
+    }
+
+    @Test
+    void upload_NewFile_WrittenUnderPath() throws IOException {
+        fileStore.upload("bucket/uuid", "thumb/sushi.jpg", Optional.empty(),
+            new ByteArrayInputStream("content".getBytes()), "image/jpeg", 7);
+
+        Path stored = root.resolve("bucket/uuid/thumb/sushi.jpg");
+        assertEquals("content", Files.readString(stored));
+        assertEquals(stored, fileStore.find("bucket/uuid/thumb/sushi.jpg").orElseThrow());
+    }
+
+    @Test
+    void upload_ExistingFile_Replaced() throws IOException {
+        fileStore.upload("bucket/uuid", "sushi.png", Optional.empty(),
+            new ByteArrayInputStream("old content".getBytes()), "image/png", 11);
+
+        fileStore.upload("bucket/uuid", "sushi.png", Optional.empty(),
+            new ByteArrayInputStream("new".getBytes()), "image/png", 3);
+
+        assertEquals("new", Files.readString(root.resolve("bucket/uuid/sushi.png")));
+    }
+
+    @Test
+    void upload_LengthMismatch_ReturnExceptionAndNothingLeft() throws IOException {
+        assertThrows(IllegalStateException.class, () -> fileStore.upload("bucket/uuid", "sushi.png", Optional.empty(),
+            new ByteArrayInputStream("content".getBytes()), "image/png", 100));
+
+        assertFalse(Files.exists(root.resolve("bucket/uuid/sushi.png")));
+        try (Stream<Path> left = Files.list(root.resolve("bucket/uuid"))) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void upload_PathOutsideRoot_ReturnException() {
+        assertThrows(IllegalStateException.class, () -> fileStore.upload("../elsewhere", "sushi.png", Optional.empty(),
+            new ByteArrayInputStream("content".getBytes()), "image/png", 7));
+    }
+
+    @Test
+    void upload_FileNameOutsidePath_ReturnException() {
+        assertThrows(IllegalStateException.class, () -> fileStore.upload("bucket/uuid", "../other/sushi.png", Optional.empty(),
+            new ByteArrayInputStream("content".getBytes()), "image/png", 7));
+
+        assertFalse(Files.exists(root.resolve("bucket/other/sushi.png")));
+    }
+
+    @Test
+    void delete_StoredFile_Removed() {
+        fileStore.upload("bucket/uuid", "sushi.png", Optional.empty(),
+            new ByteArrayInputStream("content".getBytes()), "image/png", 7);
+
+        fileStore.delete("bucket/uuid", "sushi.png");
+
+        assertFalse(Files.exists(root.resolve("bucket/uuid/sushi.png")));
+    }
+
+    @Test
+    void urlOf_SpacesInName_Encoded() {
+        assertEquals("/api/v1/files/bucket/uuid/thumb/sushi%20platter.jpg",
+            fileStore.urlOf("bucket/uuid", "thumb/sushi platter.jpg"));
+    }
+
+    @Test
+    void find_OutsideRootOrDirectory_NotFound() throws IOException {
+        LocalFileStore nested = new LocalFileStore(root.resolve("files").toString(), "/api/v1/files");
+        Files.createDirectories(root.resolve("files/bucket"));
+        Files.writeString(root.resolve("secret.txt"), "secret");
+
+        assertTrue(nested.find("../secret.txt").isEmpty());
+        assertTrue(nested.find("bucket").isEmpty());
+        assertTrue(nested.find("missing.png").isEmpty());
+    }
+}
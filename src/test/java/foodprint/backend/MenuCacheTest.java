@@ -0,0 +1,146 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import foodprint.backend.model.EntityVersion;
+import foodprint.backend.model.Food;
+import foodprint.backend.model.FoodRepo;
+import foodprint.backend.service.JsonArrayWriter;
+import foodprint.backend.service.MenuCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class MenuCacheTest {
+
+    @Mock
+    private FoodRepo foodRepo;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ObjectMapper objectMapper;
+
+    private MenuCache menuCache;
+
+    @BeforeEach
+    void init() {
+        objectMapper = new ObjectMapper();
+        JsonArrayWriter jsonArrayWriter = new JsonArrayWriter(objectMapper, entityManager);
+        menuCache = new MenuCache(foodRepo, jsonArrayWriter, transactionManager, new SimpleMeterRegistry(), 2, true);
+        when(foodRepo.findVersionsByRestaurantId(1L)).thenReturn(List.of(version(10L, 0L)));
+        when(foodRepo.findPictureVersionsByRestaurantId(1L)).thenReturn(Collections.emptyList());
+        when(foodRepo.findIngredientVersionsByRestaurantId(1L)).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        menuCache.shutdown();
+    }
+
+    @Test
+    void get_Twice_BuiltOnce() throws Exception {
+        Food food = new Food("Sashimi", "Salmon slices", 10.0, 0.0);
+        when(foodRepo.streamByRestaurantRestaurantId(1L)).thenAnswer(invocation -> Stream.of(food));
+
+        MenuCache.Menu first = menuCache.get(1L);
+        MenuCache.Menu second = menuCache.get(1L);
+
+        assertSame(first, second);
+        assertEquals(objectMapper.writeValueAsString(List.of(food)), new String(first.getJson(), StandardCharsets.UTF_8));
+        verify(foodRepo, times(1)).streamByRestaurantRestaurantId(1L);
+    }
+
+    @Test
+    void get_Gzipped_SameJson() throws Exception {
+        when(foodRepo.streamByRestaurantRestaurantId(1L)).thenAnswer(invocation -> Stream.of(new Food("Sashimi", 10.0, 0.0)));
+
+        MenuCache.Menu menu = menuCache.get(1L);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(menu.getGzipped()))) {
+            assertEquals(new String(menu.getJson(), StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void get_GzipOff_NoGzippedCopy() {
+        menuCache = new MenuCache(foodRepo, new JsonArrayWriter(objectMapper, entityManager), transactionManager,
+            new SimpleMeterRegistry(), 2, false);
+        when(foodRepo.streamByRestaurantRestaurantId(1L)).thenAnswer(invocation -> Stream.empty());
+
+        assertNull(menuCache.get(1L).getGzipped());
+    }
+
+    @Test
+    void invalidate_FoodChanged_RebuiltInBackground() throws Exception {
+        when(foodRepo.streamByRestaurantRestaurantId(1L)).thenAnswer(invocation -> Stream.of(new Food("Sashimi", 10.0, 0.0)));
+        MenuCache.Menu before = menuCache.get(1L);
+        when(foodRepo.findVersionsByRestaurantId(1L)).thenReturn(List.of(version(10L, 1L)));
+
+        menuCache.invalidate(1L);
+
+        verify(foodRepo, timeout(1000).times(2)).streamByRestaurantRestaurantId(1L);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (menuCache.bytes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        MenuCache.Menu after = menuCache.get(1L);
+        assertNotEquals(before.getETag(), after.getETag());
+        verify(foodRepo, times(2)).streamByRestaurantRestaurantId(1L);
+    }
+
+    @Test
+    void remove_RestaurantDeleted_NotRebuilt() {
+        when(foodRepo.streamByRestaurantRestaurantId(1L)).thenAnswer(invocation -> Stream.empty());
+        menuCache.get(1L);
+
+        menuCache.remove(1L);
+
+        assertEquals(0, menuCache.bytes());
+        assertTrue(menuCache.get(1L).getJson().length > 0);
+        verify(foodRepo, times(2)).streamByRestaurantRestaurantId(1L);
+    }
+
+    private EntityVersion version(Long id, Long version) {
+        return new EntityVersion() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
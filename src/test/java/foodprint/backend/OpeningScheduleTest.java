@@ -0,0 +1,86 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.service.OpeningSchedule;
+
+public class OpeningScheduleTest {
+
+    private Restaurant restaurant;
+    private LocalDate monday;
+    private LocalDate saturday;
+
+    @BeforeEach
+    void init() {
+        // Weekdays 10:10 to 22:45, weekends 09:30 to 14:00
+        restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 10, 22, 45, 9, 30, 14, 0, new ArrayList<>());
+        monday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+        saturday = monday.with(TemporalAdjusters.next(DayOfWeek.SATURDAY));
+    }
+
+    @Test
+    void slots_OpeningOffHalfHour_RoundedUpToNextSlot() {
+        OpeningSchedule schedule = OpeningSchedule.of(restaurant);
+
+        // 10:30 up to and including 22:30
+        assertEquals(21, schedule.firstSlot(monday));
+        assertEquals(46, schedule.endSlot(monday));
+        // 09:30 up to and including 13:30
+        assertEquals(19, schedule.firstSlot(saturday));
+        assertEquals(28, schedule.endSlot(saturday));
+    }
+
+    @Test
+    void isOpen_WeekdayAndWeekendHours_UsesHoursOfThatDay() {
+        OpeningSchedule schedule = OpeningSchedule.of(restaurant);
+
+        assertFalse(schedule.isOpen(monday.atTime(10, 9)));
+        assertTrue(schedule.isOpen(monday.atTime(10, 10)));
+        assertTrue(schedule.isOpen(monday.atTime(22, 44)));
+        assertFalse(schedule.isOpen(monday.atTime(22, 45)));
+        assertTrue(schedule.isOpen(saturday.atTime(9, 30)));
+        assertFalse(schedule.isOpen(saturday.atTime(15, 0)));
+    }
+
+    @Test
+    void nextOpening_Closed_ReturnsNextOpeningTime() {
+        OpeningSchedule schedule = OpeningSchedule.of(restaurant);
+
+        assertEquals(monday.atTime(12, 0), schedule.nextOpening(monday.atTime(12, 0)));
+        assertEquals(monday.atTime(10, 10), schedule.nextOpening(monday.atTime(8, 0)));
+        assertEquals(monday.plusDays(1).atTime(10, 10), schedule.nextOpening(monday.atTime(23, 0)));
+        assertEquals(saturday.atTime(9, 30), schedule.nextOpening(saturday.minusDays(1).atTime(23, 0)));
+    }
+
+    @Test
+    void nextOpening_NeverOpen_ReturnNull() {
+        Restaurant closed = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 0, 10, 0, 10, 0, 10, 0, new ArrayList<>());
+        OpeningSchedule schedule = OpeningSchedule.of(closed);
+
+        assertFalse(schedule.isOpen(monday.atTime(10, 0)));
+        assertEquals(schedule.firstSlot(monday), schedule.endSlot(monday));
+        assertNull(schedule.nextOpening(monday.atTime(9, 0)));
+    }
+
+    @Test
+    void matches_HoursChanged_ReturnFalse() {
+        OpeningSchedule schedule = OpeningSchedule.of(restaurant);
+        assertTrue(schedule.matches(restaurant));
+
+        restaurant.setRestaurantWeekendClosingHour(15);
+
+        assertFalse(schedule.matches(restaurant));
+    }
+}
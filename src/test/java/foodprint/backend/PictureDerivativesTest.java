@@ -0,0 +1,182 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import foodprint.backend.model.Picture;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
+import foodprint.backend.service.FileStore;
+import foodprint.backend.service.PictureDerivatives;
+import foodprint.backend.service.PictureDerivatives.Rendition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class PictureDerivativesTest {
+
+    @Mock
+    private FileStore fileStore;
+
+    private PictureDerivatives pictureDerivatives;
+
+    @BeforeEach
+    void init() {
+        pictureDerivatives = new PictureDerivatives(fileStore, new SimpleMeterRegistry(), 1, 4, 10_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pictureDerivatives.shutdown();
+    }
+
+    @Test
+    void render_LargePhoto_EverySizeScaledDown() throws IOException {
+        byte[] photo = encode(image(2400, 1200, BufferedImage.TYPE_INT_RGB), "jpg");
+
+        Map<PictureSize, Rendition> renditions = pictureDerivatives.render(new ByteArrayInputStream(photo));
+
+        assertEquals(3, renditions.size());
+        assertSize(renditions.get(PictureSize.FULL), 1600, 800);
+        assertSize(renditions.get(PictureSize.CARD), 480, 240);
+        assertSize(renditions.get(PictureSize.THUMB), 160, 80);
+        assertEquals("image/jpeg", renditions.get(PictureSize.THUMB).getContentType());
+    }
+
+    @Test
+    void render_SmallPhoto_NotScaledUp() throws IOException {
+        byte[] photo = encode(image(300, 400, BufferedImage.TYPE_INT_RGB), "png");
+
+        Map<PictureSize, Rendition> renditions = pictureDerivatives.render(new ByteArrayInputStream(photo));
+
+        assertSize(renditions.get(PictureSize.FULL), 300, 400);
+        assertSize(renditions.get(PictureSize.CARD), 300, 400);
+        assertSize(renditions.get(PictureSize.THUMB), 120, 160);
+    }
+
+    @Test
+    void render_TransparentImage_KeptAsPng() throws IOException {
+        byte[] logo = encode(image(800, 800, BufferedImage.TYPE_INT_ARGB), "png");
+
+        Map<PictureSize, Rendition> renditions = pictureDerivatives.render(new ByteArrayInputStream(logo));
+
+        assertEquals("image/png", renditions.get(PictureSize.CARD).getContentType());
+        BufferedImage card = ImageIO.read(new ByteArrayInputStream(renditions.get(PictureSize.CARD).getBytes()));
+        assertTrue(card.getColorModel().hasAlpha());
+    }
+
+    @Test
+    void render_NotAnImage_NoSizes() {
+        Map<PictureSize, Rendition> renditions = pictureDerivatives.render(new ByteArrayInputStream("content".getBytes()));
+
+        assertTrue(renditions.isEmpty());
+    }
+
+    @Test
+    void render_TooManyPixels_NoSizes() throws IOException {
+        PictureDerivatives strict = new PictureDerivatives(fileStore, new SimpleMeterRegistry(), 1, 4, 1000);
+        byte[] photo = encode(image(100, 100, BufferedImage.TYPE_INT_RGB), "png");
+
+        try {
+            assertTrue(strict.render(new ByteArrayInputStream(photo)).isEmpty());
+        } finally {
+            strict.shutdown();
+        }
+    }
+
+    @Test
+    void store_EverySizeUploadedNextToImage() throws IOException {
+        byte[] photo = encode(image(2400, 1200, BufferedImage.TYPE_INT_RGB), "jpg");
+        when(fileStore.urlOf(eq("foodprint-amazon-storage/uuid"), anyString()))
+            .thenAnswer(invocation -> "https://files/uuid/" + invocation.getArgument(1));
+
+        Map<PictureSize, String> urls = pictureDerivatives.store("uuid", "sushi platter.png", new ByteArrayInputStream(photo));
+
+        assertEquals("https://files/uuid/thumb/sushi platter.jpg", urls.get(PictureSize.THUMB));
+        assertEquals(3, urls.size());
+        verify(fileStore).upload(eq("foodprint-amazon-storage/uuid"), eq("thumb/sushi platter.jpg"), any(), any(),
+            eq("image/jpeg"), anyLong());
+        verify(fileStore).upload(eq("foodprint-amazon-storage/uuid"), eq("card/sushi platter.jpg"), any(), any(),
+            eq("image/jpeg"), anyLong());
+        verify(fileStore).upload(eq("foodprint-amazon-storage/uuid"), eq("full/sushi platter.jpg"), any(), any(),
+            eq("image/jpeg"), anyLong());
+    }
+
+    @Test
+    void store_NotAnImage_NothingUploaded() {
+        Map<PictureSize, String> urls = pictureDerivatives.store("uuid", "notes.png", new ByteArrayInputStream("content".getBytes()));
+
+        assertTrue(urls.isEmpty());
+        verify(fileStore, never()).upload(any(), any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void delete_StoredSizesOnly() {
+        Picture picture = new Picture("Sushi", "Platter", "uuid", "sushi platter.png", "url");
+        picture.setThumbUrl("https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/uuid/thumb/sushi+platter.png");
+        picture.setFullUrl("https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/uuid/full/sushi+platter.png");
+
+        pictureDerivatives.delete(picture);
+
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "thumb/sushi platter.png");
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "full/sushi platter.png");
+        verify(fileStore, never()).delete("foodprint-amazon-storage/uuid", "card/sushi platter.png");
+    }
+
+    @Test
+    void delete_PendingPicture_EveryFormatDeleted() {
+        Picture picture = new Picture("Sushi", "Platter", "uuid", "sushi platter.png", "url");
+        picture.setStatus(PictureStatus.PENDING);
+
+        pictureDerivatives.delete(picture);
+
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "thumb/sushi platter.jpg");
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "thumb/sushi platter.png");
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "full/sushi platter.jpg");
+        verify(fileStore).delete("foodprint-amazon-storage/uuid", "full/sushi platter.png");
+    }
+
+    private static void assertSize(Rendition rendition, int width, int height) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(rendition.getBytes()));
+        assertEquals(width, decoded.getWidth());
+        assertEquals(height, decoded.getHeight());
+    }
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(200, 80, 40, 160));
+        graphics.fillOval(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -1,18 +1,31 @@
 package foodprint.backend;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -23,11 +36,18 @@ import foodprint.backend.exceptions.DeleteFailedException;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.model.Picture;
 import foodprint.backend.model.PictureRepo;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
 import foodprint.backend.service.FileStore;
+import foodprint.backend.service.PictureDerivatives;
 import foodprint.backend.service.PictureService;
+import foodprint.backend.service.PictureUploader;
 
 @ExtendWith(MockitoExtension.class)
 public class PictureServiceTest {
+
+    // SHA-256 of "content"
+    private static final String CONTENT_HASH = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
     
     @Mock
     PictureRepo pictureRepo;
@@ -35,6 +55,12 @@ public class PictureServiceTest {
     @Mock
     FileStore fileStore;
 
+    @Mock
+    PictureUploader pictureUploader;
+
+    @Mock
+    PictureDerivatives pictureDerivatives;
+
     @InjectMocks
     PictureService pictureService;
 
@@ -82,6 +108,7 @@ public class PictureServiceTest {
         ReflectionTestUtils.setField(picture, "pictureId", pictureId);
 
         when(pictureRepo.findById(any(Long.class))).thenReturn(Optional.of(picture));
+        when(fileStore.urlOf("foodprint-amazon-storage/Path", "file")).thenReturn(pictureURL);
 
         String pictureUrl = pictureService.getPictureById(pictureId);
         assertEquals(pictureURL, pictureUrl);
@@ -226,4 +253,239 @@ public class PictureServiceTest {
         verify(pictureRepo).saveAndFlush(any(Picture.class));
     }
 
+    @Test
+    void savePicture_SizesStored_UrlsSet() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+        when(pictureDerivatives.storeRendered(anyString(), eq("newPicture.png"), any()))
+            .thenReturn(Map.of(PictureSize.THUMB, "thumb-url", PictureSize.CARD, "card-url", PictureSize.FULL, "full-url"));
+
+        Picture saved = pictureService.savePicture("title", "description", file);
+
+        assertEquals("thumb-url", saved.getUrl(PictureSize.THUMB));
+        assertEquals("card-url", saved.getUrl(PictureSize.CARD));
+        assertEquals("full-url", saved.getUrl(PictureSize.FULL));
+        verify(pictureRepo).saveAndFlush(saved);
+    }
+
+    @Test
+    void savePicture_NewContent_HashRecorded() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+
+        Picture saved = pictureService.savePicture("title", "description", file);
+
+        assertEquals(CONTENT_HASH, saved.getContentHash());
+        verify(pictureRepo).findFirstByContentHashAndStatus(CONTENT_HASH, PictureStatus.READY);
+        verify(fileStore).upload(anyString(), eq("newPicture.png"), any(), any(), eq("image/png"), eq(7L));
+    }
+
+    @Test
+    void savePicture_NameWithPathAndOtherType_StoredUnderCleanName() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "../other-uuid/page.html", "image/png", "content".getBytes());
+
+        Picture saved = pictureService.savePicture("title", "description", file);
+
+        assertEquals("page.png", saved.getImageFileName());
+        verify(fileStore).upload(eq("foodprint-amazon-storage/" + saved.getImagePath()), eq("page.png"), any(), any(),
+            eq("image/png"), eq(7L));
+    }
+
+    @Test
+    void savePicture_SameContentStored_SharedWithoutUpload() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+        picture.setThumbUrl("thumb-url");
+        picture.setContentHash(CONTENT_HASH);
+        when(pictureRepo.findFirstByContentHashAndStatus(CONTENT_HASH, PictureStatus.READY)).thenReturn(Optional.of(picture));
+
+        Picture saved = pictureService.savePicture("title", "description", file);
+
+        assertEquals("title", saved.getTitle());
+        assertEquals("Path", saved.getImagePath());
+        assertEquals("file", saved.getImageFileName());
+        assertEquals("thumb-url", saved.getUrl(PictureSize.THUMB));
+        assertEquals(CONTENT_HASH, saved.getContentHash());
+        verify(pictureRepo).saveAndFlush(saved);
+        verify(fileStore, never()).upload(any(), any(), any(), any(), any(), anyLong());
+        verify(pictureDerivatives, never()).storeRendered(any(), any(), any());
+    }
+
+    @Test
+    void acceptPicture_SameContentStored_AttachedWithoutUpload() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+        picture.setContentHash(CONTENT_HASH);
+        when(pictureRepo.findFirstByContentHashAndStatus(CONTENT_HASH, PictureStatus.READY)).thenReturn(Optional.of(picture));
+        Path spooled = Paths.get("spooled");
+        spool(file, spooled);
+        List<Picture> attached = new ArrayList<>();
+
+        Picture accepted = pictureService.acceptPicture("title", "description", file, attached::add, id -> { });
+
+        assertEquals(PictureStatus.READY, accepted.getStatus());
+        assertEquals(List.of(accepted), attached);
+        verify(pictureUploader).abandon(spooled);
+        verify(pictureUploader, never()).start(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deletePicture_OtherReferencesLeft_StoredImageKept() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        picture.setContentHash(CONTENT_HASH);
+        when(pictureRepo.findById(any(Long.class))).thenReturn(Optional.of(picture)).thenReturn(Optional.empty());
+        when(pictureRepo.countByImagePath("Path")).thenReturn(1L);
+
+        pictureService.deletePicture(pictureId);
+
+        verify(pictureRepo).delete(picture);
+        verify(fileStore, never()).delete(any(), any());
+        verify(pictureDerivatives, never()).delete(any());
+    }
+
+    @Test
+    void deletePicture_LastReference_StoredImageDeleted() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        picture.setContentHash(CONTENT_HASH);
+        when(pictureRepo.findById(any(Long.class))).thenReturn(Optional.of(picture)).thenReturn(Optional.empty());
+        when(pictureRepo.countByImagePath("Path")).thenReturn(0L);
+
+        pictureService.deletePicture(pictureId);
+
+        verify(pictureRepo).delete(picture);
+        verify(fileStore).delete("foodprint-amazon-storage/Path", "file");
+        verify(pictureDerivatives).delete(picture);
+    }
+
+    @Test
+    void deletePicture_StillUploading_UploadCancelledAndLeftToDeleteStored() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        picture.setContentHash(CONTENT_HASH);
+        picture.setStatus(PictureStatus.PENDING);
+        when(pictureRepo.findById(any(Long.class))).thenReturn(Optional.of(picture)).thenReturn(Optional.empty());
+        when(pictureUploader.cancel(pictureId)).thenReturn(true);
+
+        pictureService.deletePicture(pictureId);
+
+        verify(pictureRepo).delete(picture);
+        verify(fileStore, never()).delete(any(), any());
+        verify(pictureDerivatives, never()).delete(any());
+    }
+
+    @Test
+    void deletePicture_UploadFinishedMeanwhile_StoredImageDeleted() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        picture.setContentHash(CONTENT_HASH);
+        picture.setStatus(PictureStatus.PENDING);
+        when(pictureRepo.findById(any(Long.class))).thenReturn(Optional.of(picture)).thenReturn(Optional.empty());
+        when(pictureUploader.cancel(pictureId)).thenReturn(false);
+        when(pictureRepo.countByImagePath("Path")).thenReturn(0L);
+
+        pictureService.deletePicture(pictureId);
+
+        verify(pictureRepo).delete(picture);
+        verify(fileStore).delete("foodprint-amazon-storage/Path", "file");
+        verify(pictureDerivatives).delete(picture);
+    }
+
+    @Test
+    void getUrl_SizesNotStored_UploadedImageUrl() {
+        assertEquals("www.file.com", picture.getUrl(PictureSize.THUMB));
+        assertEquals(Map.of(PictureSize.THUMB, "www.file.com", PictureSize.CARD, "www.file.com", PictureSize.FULL, "www.file.com"),
+            picture.getUrls());
+    }
+
+    @Test
+    void acceptPicture_FileValid_SavedPendingThenUploadStarted() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+        Path spooled = Paths.get("spooled");
+        spool(file, spooled);
+        List<Picture> attached = new ArrayList<>();
+        List<Long> finished = new ArrayList<>();
+        when(pictureRepo.saveAndFlush(any(Picture.class))).thenAnswer(invocation -> {
+            ReflectionTestUtils.setField(invocation.getArgument(0), "pictureId", pictureId);
+            return invocation.getArgument(0);
+        });
+
+        Picture accepted = pictureService.acceptPicture("title", "description", file, attached::add, finished::add);
+
+        assertEquals(PictureStatus.PENDING, accepted.getStatus());
+        assertEquals(CONTENT_HASH, accepted.getContentHash());
+        assertEquals(List.of(accepted), attached);
+        ArgumentCaptor<Runnable> onFinished = ArgumentCaptor.forClass(Runnable.class);
+        verify(pictureUploader).start(eq(pictureId), eq(spooled), eq("foodprint-amazon-storage/" + accepted.getImagePath()),
+            eq("newPicture.png"), eq("image/png"), onFinished.capture());
+        onFinished.getValue().run();
+        assertEquals(List.of(pictureId), finished);
+    }
+
+    @Test
+    void acceptPicture_AttachFails_SpooledFileAbandoned() {
+        MockMultipartFile file = new MockMultipartFile("newPicture", "newPicture.png", "image/png", "content".getBytes());
+        Path spooled = Paths.get("spooled");
+        spool(file, spooled);
+        IllegalStateException failure = new IllegalStateException("Restaurant is gone");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+            pictureService.acceptPicture("title", "description", file, p -> { throw failure; }, id -> { }));
+
+        assertSame(failure, thrown);
+        verify(pictureUploader).abandon(spooled);
+        verify(pictureUploader, never()).start(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void resumeUploads_SpooledFileKept_UploadRestarted() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        Path spooled = Paths.get("Path");
+        when(pictureRepo.findByStatus(PictureStatus.PENDING)).thenReturn(List.of(picture));
+        when(pictureUploader.spooled("Path")).thenReturn(Optional.of(spooled));
+
+        pictureService.resumeUploads(id -> { });
+
+        verify(pictureUploader).reclaim();
+        verify(pictureUploader).start(eq(pictureId), eq(spooled), eq("foodprint-amazon-storage/Path"), eq("file"),
+            eq("application/octet-stream"), any(Runnable.class));
+        verify(pictureRepo, never()).updateStatus(any(), any());
+    }
+
+    @Test
+    void resumeUploads_SpooledFileLost_MarkedFailed() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        when(pictureRepo.findByStatus(PictureStatus.PENDING)).thenReturn(List.of(picture));
+        when(pictureUploader.spooled("Path")).thenReturn(Optional.empty());
+        List<Long> finished = new ArrayList<>();
+
+        pictureService.resumeUploads(finished::add);
+
+        verify(pictureRepo).updateStatus(pictureId, PictureStatus.FAILED);
+        verify(pictureUploader, never()).start(any(), any(), any(), any(), any(), any());
+        assertEquals(List.of(pictureId), finished);
+    }
+
+    @Test
+    void discardPicture_LastReference_StoredImageDeleted() {
+        ReflectionTestUtils.setField(picture, "pictureId", pictureId);
+        picture.setContentHash(CONTENT_HASH);
+        when(pictureRepo.findById(pictureId)).thenReturn(Optional.of(picture));
+        when(pictureRepo.countByImagePath("Path")).thenReturn(0L);
+
+        pictureService.discardPicture(pictureId);
+
+        verify(pictureRepo).delete(picture);
+        verify(fileStore).delete("foodprint-amazon-storage/Path", "file");
+        verify(pictureDerivatives).delete(picture);
+    }
+
+    @Test
+    void discardPicture_PictureNotFound_NothingDeleted() {
+        when(pictureRepo.findById(pictureId)).thenReturn(Optional.empty());
+
+        pictureService.discardPicture(pictureId);
+
+        verify(pictureRepo, never()).delete(any());
+    }
+
+    private void spool(MockMultipartFile file, Path spooled) {
+        when(pictureUploader.accept(anyString(), eq(file), any())).thenAnswer(invocation -> {
+            invocation.<MessageDigest>getArgument(2).update(file.getBytes());
+            return spooled;
+        });
+    }
 }
@@ -0,0 +1,216 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import foodprint.backend.exceptions.ServiceUnavailableException;
+import foodprint.backend.model.Picture.PictureSize;
+import foodprint.backend.model.Picture.PictureStatus;
+import foodprint.backend.model.PictureRepo;
+import foodprint.backend.service.FileStore;
+import foodprint.backend.service.PictureDerivatives;
+import foodprint.backend.service.PictureUploader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class PictureUploaderTest {
+
+    private static final int CAPACITY = 2;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    // SHA-256 of "content"
+    private static final String CONTENT_HASH = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+
+    @Mock
+    private FileStore fileStore;
+
+    @Mock
+    private PictureDerivatives pictureDerivatives;
+
+    @Mock
+    private PictureRepo pictureRepo;
+
+    @TempDir
+    Path spoolDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PictureUploader pictureUploader;
+    private MockMultipartFile file;
+    private MessageDigest digest;
+
+    @BeforeEach
+    void init() throws NoSuchAlgorithmException {
+        meterRegistry = new SimpleMeterRegistry();
+        pictureUploader = new PictureUploader(fileStore, pictureDerivatives, pictureRepo, meterRegistry, spoolDirectory.toString(), 2,
+            CAPACITY, MAX_ATTEMPTS, 1);
+        file = new MockMultipartFile("file", "sushi.png", "image/png", "content".getBytes());
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pictureUploader.shutdown();
+    }
+
+    @Test
+    void accept_FileSpooled_QueueDepthCounted() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+
+        assertEquals(spoolDirectory.resolve("uuid"), spooled);
+        assertEquals("content", Files.readString(spooled));
+        assertEquals(CONTENT_HASH, String.format("%064x", new BigInteger(1, digest.digest())));
+        assertEquals(1, pictureUploader.outstanding());
+        assertEquals(1.0, meterRegistry.get("foodprint.picture.upload.queue").gauge().value());
+    }
+
+    @Test
+    void accept_QueueFull_ReturnException() {
+        pictureUploader.accept("first", file, digest);
+        pictureUploader.accept("second", file, digest);
+
+        assertThrows(ServiceUnavailableException.class, () -> pictureUploader.accept("third", file, digest));
+        assertEquals(CAPACITY, pictureUploader.outstanding());
+        assertFalse(Files.exists(spoolDirectory.resolve("third")));
+    }
+
+    @Test
+    void abandon_SpooledFile_DeletedAndPlaceReleased() {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+
+        pictureUploader.abandon(spooled);
+
+        assertFalse(Files.exists(spooled));
+        assertEquals(0, pictureUploader.outstanding());
+    }
+
+    @Test
+    void start_UploadSucceeds_MarkedReady() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+        when(pictureDerivatives.store(eq("uuid"), eq("sushi.png"), any()))
+            .thenReturn(Map.of(PictureSize.THUMB, "thumb-url", PictureSize.CARD, "card-url", PictureSize.FULL, "full-url"));
+        when(pictureRepo.updateStatusAndSizes(1L, PictureStatus.READY, "thumb-url", "card-url", "full-url")).thenReturn(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pictureUploader.start(1L, spooled, "bucket/uuid", "sushi.png", "image/png", finished::countDown);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(fileStore).upload(eq("bucket/uuid"), eq("sushi.png"), any(), any(), eq("image/png"), eq(7L));
+        verify(pictureRepo).updateStatusAndSizes(1L, PictureStatus.READY, "thumb-url", "card-url", "full-url");
+        assertFalse(Files.exists(spooled));
+        assertEquals(0, pictureUploader.outstanding());
+        assertEquals(1, meterRegistry.get("foodprint.picture.upload.latency").tag("result", "ready").timer().count());
+    }
+
+    @Test
+    void start_UploadFailsOnce_RetriedAndMarkedReady() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+        doThrow(new IllegalStateException("Failed to upload the file"))
+            .doNothing()
+            .when(fileStore).upload(any(), any(), any(), any(), any(), anyLong());
+        when(pictureRepo.updateStatusAndSizes(1L, PictureStatus.READY, null, null, null)).thenReturn(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pictureUploader.start(1L, spooled, "bucket/uuid", "sushi.png", "image/png", finished::countDown);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(fileStore, times(2)).upload(any(), any(), any(), any(), any(), anyLong());
+        verify(pictureRepo).updateStatusAndSizes(1L, PictureStatus.READY, null, null, null);
+        assertEquals(1.0, meterRegistry.get("foodprint.picture.upload.retries").counter().count());
+    }
+
+    @Test
+    void start_EveryAttemptFails_MarkedFailed() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+        doThrow(new IllegalStateException("Failed to upload the file"))
+            .when(fileStore).upload(any(), any(), any(), any(), any(), anyLong());
+        when(pictureRepo.updateStatusAndSizes(1L, PictureStatus.FAILED, null, null, null)).thenReturn(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pictureUploader.start(1L, spooled, "bucket/uuid", "sushi.png", "image/png", finished::countDown);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(fileStore, times(MAX_ATTEMPTS)).upload(any(), any(), any(), any(), any(), anyLong());
+        verify(pictureRepo).updateStatusAndSizes(1L, PictureStatus.FAILED, null, null, null);
+        verify(pictureRepo, never()).updateStatusAndSizes(eq(1L), eq(PictureStatus.READY), any(), any(), any());
+        assertFalse(Files.exists(spooled));
+        assertEquals(0, pictureUploader.outstanding());
+    }
+
+    @Test
+    void cancel_WhileUploading_StoredFilesDeletedInsteadOfMarked() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+        Map<PictureSize, String> sizes = Map.of(PictureSize.THUMB, "https://files/uuid/thumb/sushi.png");
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(pictureDerivatives.store(eq("uuid"), eq("sushi.png"), any())).thenAnswer(invocation -> {
+            storing.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            return sizes;
+        });
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pictureUploader.start(1L, spooled, "bucket/uuid", "sushi.png", "image/png", finished::countDown);
+        assertTrue(storing.await(5, TimeUnit.SECONDS));
+        assertTrue(pictureUploader.cancel(1L));
+        cancelled.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(pictureRepo, never()).updateStatusAndSizes(any(), any(), any(), any(), any());
+        verify(fileStore).delete("bucket/uuid", "sushi.png");
+        verify(pictureDerivatives).delete("uuid", "sushi.png", sizes);
+        assertFalse(Files.exists(spooled));
+        assertEquals(0, pictureUploader.outstanding());
+        assertFalse(pictureUploader.cancel(1L));
+    }
+
+    @Test
+    void start_PictureDeletedMeanwhile_StoredFilesDeleted() throws Exception {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+        when(pictureRepo.updateStatusAndSizes(1L, PictureStatus.READY, null, null, null)).thenReturn(0);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        pictureUploader.start(1L, spooled, "bucket/uuid", "sushi.png", "image/png", finished::countDown);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(fileStore).delete("bucket/uuid", "sushi.png");
+        verify(pictureDerivatives).delete("uuid", "sushi.png", Map.of());
+        assertFalse(Files.exists(spooled));
+    }
+
+    @Test
+    void spooled_FileLeftBehind_Found() {
+        Path spooled = pictureUploader.accept("uuid", file, digest);
+
+        assertEquals(spooled, pictureUploader.spooled("uuid").orElseThrow());
+        assertTrue(pictureUploader.spooled("missing").isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import foodprint.backend.service.PrefixTrie;
+
+public class PrefixTrieTest {
+
+    private PrefixTrie trie;
+
+    @BeforeEach
+    void init() {
+        trie = new PrefixTrie();
+        trie.put(new PrefixTrie.Entry("R:1", "Sushi Tei", 40));
+        trie.put(new PrefixTrie.Entry("R:2", "Sushi Express", 90));
+        trie.put(new PrefixTrie.Entry("F:3", "Salmon Sashimi", 10));
+        trie.put(new PrefixTrie.Entry("C:Japanese", "Japanese", 130));
+    }
+
+    @Test
+    void complete_Prefix_MostPopularFirst() {
+        assertEquals(List.of("R:2", "R:1"), keys(trie.complete("sus", 10)));
+        assertEquals(List.of("R:2", "R:1", "F:3"), keys(trie.complete("S", 10)));
+    }
+
+    @Test
+    void complete_LaterWord_Matches() {
+        assertEquals(List.of("R:1"), keys(trie.complete("tei", 10)));
+        assertEquals(List.of("F:3"), keys(trie.complete("sashi", 10)));
+    }
+
+    @Test
+    void complete_Limit_Respected() {
+        assertEquals(List.of("R:2"), keys(trie.complete("sushi", 1)));
+    }
+
+    @Test
+    void put_SameKey_ReplacesEntry() {
+        trie.put(new PrefixTrie.Entry("R:1", "Tei Sushi Bar", 100));
+
+        assertEquals(List.of("R:1", "R:2"), keys(trie.complete("sushi", 10)));
+        assertEquals(List.of("R:1"), keys(trie.complete("bar", 10)));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void remove_Entry_NoLongerSuggested() {
+        trie.remove("R:2");
+
+        assertEquals(List.of("R:1"), keys(trie.complete("sushi", 10)));
+        assertTrue(trie.complete("express", 10).isEmpty());
+    }
+
+    @Test
+    void complete_MoreThanCached_KeepsBest() {
+        for (int i = 0; i < 30; i++) {
+            trie.put(new PrefixTrie.Entry("F:" + (100 + i), "Salad " + i, i));
+        }
+
+        List<PrefixTrie.Entry> suggestions = trie.complete("sal", PrefixTrie.MAX_SUGGESTIONS);
+
+        assertEquals(PrefixTrie.MAX_SUGGESTIONS, suggestions.size());
+        assertEquals(29, suggestions.get(0).getScore());
+        trie.remove("F:129");
+        assertEquals(28, trie.complete("sal", 1).get(0).getScore());
+    }
+
+    private List<String> keys(List<PrefixTrie.Entry> entries) {
+        List<String> keys = new ArrayList<>();
+        for (PrefixTrie.Entry entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,129 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import foodprint.backend.model.Reservation;
+import foodprint.backend.model.ReservationCount;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.model.Reservation.ReservationStatus;
+
+/*
+Compares loading reservation entities against the grouped count projection for the
+same availability question, in entities hydrated and bytes allocated per call
+*/
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ReservationCountQueryIntegrationTest {
+
+    private static final int RESERVATIONS = 500;
+    private static final int ROUNDS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ReservationRepo reservationRepo;
+
+    @Autowired
+    private RestaurantRepo restaurantRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Restaurant restaurant;
+    private LocalDateTime after;
+    private LocalDateTime before;
+    private Statistics statistics;
+
+    @BeforeEach
+    void init() {
+        List<String> restaurantCategories = new ArrayList<>();
+        restaurantCategories.add("Japanese");
+        restaurant = restaurantRepo.saveAndFlush(new Restaurant("Sushi Tei", "Desc", "Serangoon", 1000, 9, 0, 22, 0, 9, 0, 22, 0, restaurantCategories));
+
+        LocalDate firstDay = LocalDate.now().plusDays(7);
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < RESERVATIONS; i++) {
+            LocalDateTime date = firstDay.plusDays(i % 23).atTime(9 + (i % 13), (i % 2) * 30);
+            reservations.add(new Reservation(null, date, 2, true, LocalDateTime.now(), ReservationStatus.PAID, restaurant));
+        }
+        reservationRepo.saveAll(reservations);
+        reservationRepo.flush();
+
+        after = firstDay.atStartOfDay();
+        before = firstDay.plusDays(23).atStartOfDay();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        reservationRepo.deleteAll();
+        restaurantRepo.deleteAll();
+    }
+
+    @Test
+    void countHeldByDateBetween_ComparedToEntityLoading_HydratesNothing() {
+        // Warm up both paths so that class loading and query plan caching are not measured
+        reservationRepo.findByRestaurantAndDateBetween(restaurant, after, before);
+        reservationRepo.countHeldByDateBetween(restaurant.getRestaurantId(), after, before, ReservationStatus.CANCELLED);
+
+        statistics.clear();
+        long entityBytes = allocatedBytes();
+        long entityTotal = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            entityTotal += reservationRepo.findByRestaurantAndDateBetween(restaurant, after, before).size();
+        }
+        entityBytes = (allocatedBytes() - entityBytes) / ROUNDS;
+        long entitiesLoaded = statistics.getEntityLoadCount() / ROUNDS;
+
+        statistics.clear();
+        long countBytes = allocatedBytes();
+        long countTotal = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            for (ReservationCount count : reservationRepo.countHeldByDateBetween(restaurant.getRestaurantId(), after, before, ReservationStatus.CANCELLED)) {
+                countTotal += count.getReservations();
+            }
+        }
+        countBytes = (allocatedBytes() - countBytes) / ROUNDS;
+        long countEntitiesLoaded = statistics.getEntityLoadCount() / ROUNDS;
+
+        log.info("Entity loading: {} entities and {} bytes per call", entitiesLoaded, entityBytes);
+        log.info("Grouped counts: {} entities and {} bytes per call", countEntitiesLoaded, countBytes);
+
+        assertEquals(entityTotal, countTotal);
+        assertTrue(entitiesLoaded >= RESERVATIONS);
+        assertEquals(0, countEntitiesLoaded);
+        assertTrue(countBytes < entityBytes);
+    }
+
+    private long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -1,15 +1,23 @@
 package foodprint.backend;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -17,19 +25,32 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import foodprint.backend.exceptions.BadRequestException;
 import foodprint.backend.exceptions.NotFoundException;
 import foodprint.backend.model.Food;
 import foodprint.backend.model.LineItem;
 import foodprint.backend.model.Reservation;
 import foodprint.backend.model.ReservationRepo;
 import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantReservationCount;
 import foodprint.backend.model.User;
 import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.service.DemandLedger;
+import foodprint.backend.service.HoldExpiryWheel;
+import foodprint.backend.service.OpeningSchedules;
+import foodprint.backend.service.ReservationCursor;
 import foodprint.backend.service.ReservationService;
+import foodprint.backend.service.BookingEngine;
 import foodprint.backend.service.RestaurantService;
+import foodprint.backend.service.SlotOccupancyIndex;
 
 @ExtendWith(MockitoExtension.class)
 public class ReservationServiceTest {
@@ -40,6 +61,21 @@ public class ReservationServiceTest {
     @Mock
     private RestaurantService restaurantService;
 
+    @Mock
+    private SlotOccupancyIndex slotOccupancyIndex;
+
+    @Mock
+    private BookingEngine bookingEngine;
+
+    @Spy
+    private OpeningSchedules openingSchedules = new OpeningSchedules();
+
+    @Mock
+    private HoldExpiryWheel holdExpiryWheel;
+
+    @Mock
+    private DemandLedger demandLedger;
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -72,29 +108,27 @@ public class ReservationServiceTest {
         endTime = startTime.plusHours(1);
         reservationList = new ArrayList<>();
         reservationId = 1L;
+        ReflectionTestUtils.setField(restaurant, "restaurantId", 1L);
     }
 
     @Test
     void viewSlotAvailability_SlotAvailable_ReturnTrue() {
-        when(reservations.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(reservationList);
+        when(reservations.countHeldBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class))).thenReturn(0L);
 
         Boolean result = reservationService.slotAvailable(restaurant, reservation.getDate());
 
         assertEquals(true, result);
-        verify(reservations).findByRestaurantAndDateBetween(restaurant, startTime, endTime);
+        verify(reservations).countHeldBetween(1L, startTime, endTime, ReservationStatus.CANCELLED);
     }
 
     @Test
     void viewSlotAvailability_SlotNotAvailable_ReturnFalse() {
-        for (int i = 0; i < 15; i++) {
-            reservationList.add(reservation);
-        }
-        when(reservations.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(reservationList);
+        when(reservations.countHeldBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class))).thenReturn(15L);
 
         Boolean result = reservationService.slotAvailable(restaurant, reservation.getDate());
 
         assertEquals(false, result);
-        verify(reservations).findByRestaurantAndDateBetween(restaurant, startTime, endTime);
+        verify(reservations).countHeldBetween(1L, startTime, endTime, ReservationStatus.CANCELLED);
     }
 
     @Test
@@ -182,28 +216,81 @@ public class ReservationServiceTest {
     }
 
     @Test
-    void updateReservation_SlotAvailable_ReturnReservation() {
-        Reservation updatedReservation = new Reservation(user, LocalDateTime.now(), 3, true, LocalDateTime.now(), ReservationStatus.UNPAID, lineItems, restaurant);
+    void getAllReservationByUserPaged_WithCursor_ContinuesAfterCursor() {
         reservationList.add(reservation);
-        when(reservations.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(reservationList);
+        Slice<Reservation> page = new SliceImpl<>(reservationList);
+        LocalDateTime cursorDate = LocalDateTime.of(2021, 12, 25, 17, 30);
+        String cursor = new ReservationCursor(cursorDate, 42L).encode();
+        when(reservations.findByUserBeforeKey(any(User.class), any(LocalDateTime.class), any(Long.class), any(Pageable.class))).thenReturn(page);
+
+        Slice<Reservation> result = reservationService.getAllReservationByUser(user, cursor, 10);
+
+        assertEquals(page, result);
+        verify(reservations).findByUserBeforeKey(user, cursorDate, 42L, PageRequest.of(0, 10));
+    }
+
+    @Test
+    void getUserUpcomingReservationsPaged_NoCursor_StartsAfterNow() {
+        Slice<Reservation> page = new SliceImpl<>(reservationList);
+        when(reservations.findByUserAfterKey(any(User.class), any(LocalDateTime.class), any(Long.class), any(Pageable.class))).thenReturn(page);
+
+        Slice<Reservation> result = reservationService.getUserUpcomingReservations(user, null, 10);
+
+        assertEquals(page, result);
+        verify(reservations).findByUserAfterKey(any(User.class), any(LocalDateTime.class), eq(Long.MAX_VALUE), any(Pageable.class));
+    }
+
+    @Test
+    void getUserPastReservationsPaged_InvalidCursor_ReturnException() {
+        String errorMsg = "";
+        try {
+            reservationService.getUserPastReservations(user, "not a cursor", 10);
+        } catch (BadRequestException e) {
+            errorMsg = e.getMessage();
+        }
+
+        assertEquals("Invalid cursor", errorMsg);
+    }
+
+    @Test
+    void updateReservation_SameSlot_ReturnReservation() {
+        Reservation updatedReservation = new Reservation(user, reservation.getDate(), 3, true, LocalDateTime.now(), ReservationStatus.UNPAID, lineItems, restaurant);
         when(reservations.getById(any(Long.class))).thenReturn(reservation);
         when(reservations.saveAndFlush(any(Reservation.class))).thenReturn(reservation);
 
         Reservation result = reservationService.update(reservationId, updatedReservation);
 
         assertEquals(reservation, result);
-        verify(reservations).findByRestaurantAndDateBetween(restaurant, startTime.truncatedTo(ChronoUnit.HOURS), endTime.truncatedTo(ChronoUnit.HOURS));
         verify(reservations).getById(reservationId);
         verify(reservations).saveAndFlush(reservation);
+        // Staying in the slot it already holds needs no capacity, however full the slot is
+        verify(bookingEngine, never()).claim(any(Restaurant.class), any(LocalDateTime.class));
+        verify(reservations, never()).countHeldBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class));
+    }
+
+    @Test
+    void updateReservation_MovedToHalfHourSlotWithRoom_ReturnReservation() {
+        LocalDateTime heldDate = LocalDate.now().plusDays(8).atTime(12, 0);
+        LocalDateTime newDate = heldDate.plusMinutes(30);
+        reservation.setDate(heldDate);
+        Reservation updatedReservation = new Reservation(user, newDate, 3, true, LocalDateTime.now(), ReservationStatus.UNPAID, lineItems, restaurant);
+        when(reservations.getById(any(Long.class))).thenReturn(reservation);
+        when(reservations.saveAndFlush(any(Reservation.class))).thenReturn(reservation);
+        when(bookingEngine.claim(restaurant, newDate)).thenReturn(true);
+
+        reservationService.update(reservationId, updatedReservation);
+
+        verify(bookingEngine).claim(restaurant, newDate);
+        verify(bookingEngine).release(1L, heldDate);
+        verify(slotOccupancyIndex).move(1L, heldDate, newDate);
     }
 
     @Test
     void updateReservation_SlotNotAvailable_ReturnException() {
-        Reservation updatedReservation = new Reservation(user, LocalDateTime.now(), 3, true, LocalDateTime.now(), ReservationStatus.UNPAID, lineItems, restaurant);
-        for (int i = 0; i < 15; i++) {
-            reservationList.add(reservation);
-        }
-        when(reservations.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(reservationList);
+        LocalDateTime newDate = reservation.getDate().plusHours(2);
+        Reservation updatedReservation = new Reservation(user, newDate, 3, true, LocalDateTime.now(), ReservationStatus.UNPAID, lineItems, restaurant);
+        when(reservations.getById(any(Long.class))).thenReturn(reservation);
+        when(bookingEngine.claim(any(Restaurant.class), any(LocalDateTime.class))).thenReturn(false);
 
         String exceptionMsg = "";
         try {
@@ -213,7 +300,64 @@ public class ReservationServiceTest {
         }
 
         assertEquals("Slot not found", exceptionMsg);
-        verify(reservations).findByRestaurantAndDateBetween(restaurant, startTime.truncatedTo(ChronoUnit.HOURS), endTime.truncatedTo(ChronoUnit.HOURS));
+        verify(reservations, never()).saveAndFlush(any(Reservation.class));
+    }
+
+    @Test
+    void updateReservation_Cancelled_ReleasesSlot() {
+        Reservation cancellation = new Reservation();
+        cancellation.setStatus(ReservationStatus.CANCELLED);
+        LocalDateTime heldDate = reservation.getDate();
+        when(reservations.getById(any(Long.class))).thenReturn(reservation);
+        when(reservations.saveAndFlush(any(Reservation.class))).thenReturn(reservation);
+
+        Reservation result = reservationService.update(reservationId, cancellation);
+
+        assertEquals(ReservationStatus.CANCELLED, result.getStatus());
+        verify(bookingEngine).release(1L, heldDate);
+        verify(slotOccupancyIndex).move(1L, heldDate, null);
+        verify(demandLedger).apply(1L, null, null);
+    }
+
+    @Test
+    void getUpcomingSlots_SlotFull_SlotExcluded() {
+        LocalDate firstDay = LocalDate.now().plusDays(7);
+        LocalDate weekday = firstDay;
+        while (weekday.getDayOfWeek() == DayOfWeek.SATURDAY || weekday.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            weekday = weekday.plusDays(1);
+        }
+        int[][] occupancy = new int[23][SlotOccupancyIndex.SLOTS_PER_DAY];
+        occupancy[(int) ChronoUnit.DAYS.between(firstDay, weekday)][SlotOccupancyIndex.slotOfDay(weekday.atTime(11, 0))] = 15;
+        when(restaurantService.getCached(any(Long.class))).thenReturn(restaurant);
+        when(slotOccupancyIndex.getCounts(any(Long.class), any(LocalDate.class), any(LocalDate.class))).thenReturn(occupancy);
+
+        List<LocalDateTime> result = reservationService.getUpcomingSlots(1L);
+
+        assertFalse(result.contains(weekday.atTime(11, 0)));
+        assertTrue(result.contains(weekday.atTime(10, 30)));
+        verify(slotOccupancyIndex).getCounts(1L, firstDay, LocalDate.now().plusDays(30));
+    }
+
+    @Test
+    void getUpcomingSlotsForRestaurants_SlotFull_SlotExcludedForThatRestaurantOnly() {
+        LocalDate weekday = LocalDate.now().plusDays(7);
+        while (weekday.getDayOfWeek() == DayOfWeek.SATURDAY || weekday.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            weekday = weekday.plusDays(1);
+        }
+        LocalDateTime fullSlot = weekday.atTime(11, 0);
+        Restaurant otherRestaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 0, 22, 0, 10, 0, 22, 0, new ArrayList<>());
+        otherRestaurant.setRestaurantId(2L);
+        when(restaurantService.getRestaurants(any())).thenReturn(List.of(restaurant, otherRestaurant));
+        when(reservations.countHeldByRestaurantsAndDateBetween(any(), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class)))
+            .thenReturn(List.of(restaurantReservationCount(1L, fullSlot, 15L)));
+
+        Map<Long, List<LocalDateTime>> result = reservationService.getUpcomingSlots(List.of(1L, 2L), weekday, weekday);
+
+        assertEquals(2, result.size());
+        assertFalse(result.get(1L).contains(fullSlot));
+        assertTrue(result.get(1L).contains(weekday.atTime(10, 30)));
+        assertTrue(result.get(2L).contains(fullSlot));
+        verify(reservations).countHeldByRestaurantsAndDateBetween(any(), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class));
     }
 
     @Test
@@ -243,10 +387,28 @@ public class ReservationServiceTest {
         verify(reservations).deleteById(reservationId);
     }
 
+    @Test
+    void checkPayable_Unpaid_HoldExtended() {
+        when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
+
+        reservationService.checkPayable(reservationId, 2L);
+
+        verify(holdExpiryWheel).extendForPayment(reservationId);
+    }
+
+    @Test
+    void checkPayable_HoldExpired_ReturnError() {
+        reservation.setStatus(ReservationStatus.CANCELLED);
+        when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
+
+        assertThrows(BadRequestException.class, () -> reservationService.checkPayable(reservationId, 2L));
+        verify(holdExpiryWheel, never()).extendForPayment(any(Long.class));
+    }
+
     @Test
     void setPaid_ReservationFound_Success() {
         when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
-        when(reservations.saveAndFlush(any(Reservation.class))).thenReturn(reservation);
+        when(reservations.updateStatusIfCurrent(reservationId, ReservationStatus.UNPAID, ReservationStatus.PAID)).thenReturn(1);
 
         Long userId = 2L;
         ReflectionTestUtils.setField(user, "id", userId);
@@ -259,7 +421,48 @@ public class ReservationServiceTest {
 
         assertEquals("", errorMsg);
         verify(reservations).findByReservationIdAndUserId(reservationId, userId);
-        verify(reservations).saveAndFlush(reservation);
+        verify(reservations, never()).saveAndFlush(any(Reservation.class));
+        verify(holdExpiryWheel).cancel(reservationId);
+    }
+
+    @Test
+    void setPaid_HoldExpired_ReturnError() {
+        reservation.setStatus(ReservationStatus.CANCELLED);
+        when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
+        when(reservations.findStatusById(reservationId)).thenReturn(Optional.of(ReservationStatus.CANCELLED));
+
+        Long userId = 2L;
+        String errorMsg = "";
+        try {
+            reservationService.setPaid(reservationId, userId);
+        } catch (BadRequestException e) {
+            errorMsg = e.getMessage();
+        }
+
+        assertEquals("Reservation has been cancelled or its hold has expired", errorMsg);
+        verify(holdExpiryWheel, never()).cancel(any(Long.class));
+    }
+
+    @Test
+    void setPaid_HoldExpiresBeforeUpdate_ReturnError() {
+        // Read as unpaid, but the expiry cancels it before the payment's update takes the row
+        when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
+        when(reservations.updateStatusIfCurrent(reservationId, ReservationStatus.UNPAID, ReservationStatus.PAID)).thenReturn(0);
+        when(reservations.findStatusById(reservationId)).thenReturn(Optional.of(ReservationStatus.CANCELLED));
+
+        assertThrows(BadRequestException.class, () -> reservationService.setPaid(reservationId, 2L));
+        verify(holdExpiryWheel, never()).cancel(any(Long.class));
+    }
+
+    @Test
+    void setPaid_AlreadyPaid_NoUpdate() {
+        reservation.setStatus(ReservationStatus.PAID);
+        when(reservations.findByReservationIdAndUserId(any(Long.class), any(Long.class))).thenReturn(Optional.of(reservation));
+
+        reservationService.setPaid(reservationId, 2L);
+
+        verify(reservations, never()).updateStatusIfCurrent(any(Long.class), any(ReservationStatus.class), any(ReservationStatus.class));
+        verify(holdExpiryWheel).cancel(reservationId);
     }
 
     @Test
@@ -278,4 +481,20 @@ public class ReservationServiceTest {
         assertEquals("Reservation not found", errorMsg);
         verify(reservations).findByReservationIdAndUserId(reservationId, userId);
     }
+
+    private RestaurantReservationCount restaurantReservationCount(Long restaurantId, LocalDateTime date, Long reservations) {
+        return new RestaurantReservationCount() {
+            public Long getRestaurantId() {
+                return restaurantId;
+            }
+
+            public LocalDateTime getDate() {
+                return date;
+            }
+
+            public Long getReservations() {
+                return reservations;
+            }
+        };
+    }
 }
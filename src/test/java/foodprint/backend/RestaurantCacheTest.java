@@ -0,0 +1,118 @@
+package foodprint.backend;
+
+import static foodprint.backend.TestRestaurants.restaurant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import foodprint.backend.model.Restaurant;
+import foodprint.backend.model.RestaurantRepo;
+import foodprint.backend.service.RestaurantCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class RestaurantCacheTest {
+
+    @Mock
+    private RestaurantRepo restaurantRepo;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RestaurantCache restaurantCache;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        restaurantCache = new RestaurantCache(restaurantRepo, meterRegistry, 2, 300);
+    }
+
+    @Test
+    void get_Twice_LoadedOnce() {
+        Restaurant restaurant = restaurant(1L, "Japanese");
+        when(restaurantRepo.findById(1L)).thenReturn(Optional.of(restaurant));
+
+        Restaurant first = restaurantCache.get(1L).get();
+        Restaurant second = restaurantCache.get(1L).get();
+
+        assertSame(first, second);
+        assertNotSame(restaurant, first);
+        assertEquals(List.of("Japanese"), first.getRestaurantCategory());
+        verify(restaurantRepo, times(1)).findById(1L);
+        assertEquals(1, requests("hit"));
+        assertEquals(1, requests("miss"));
+    }
+
+    @Test
+    void get_DoesNotExist_NotCached() {
+        when(restaurantRepo.findById(1L)).thenReturn(Optional.empty());
+
+        assertTrue(restaurantCache.get(1L).isEmpty());
+        assertTrue(restaurantCache.get(1L).isEmpty());
+
+        verify(restaurantRepo, times(2)).findById(1L);
+        assertEquals(0, restaurantCache.size());
+    }
+
+    @Test
+    void invalidate_Cached_Reloaded() {
+        when(restaurantRepo.findById(1L)).thenReturn(Optional.of(restaurant(1L, "Japanese")));
+        restaurantCache.get(1L);
+
+        restaurantCache.invalidate(1L);
+        restaurantCache.get(1L);
+
+        verify(restaurantRepo, times(2)).findById(1L);
+    }
+
+    @Test
+    void get_OverMaxSize_LeastRecentlyUsedEvicted() {
+        when(restaurantRepo.findById(1L)).thenReturn(Optional.of(restaurant(1L, "Japanese")));
+        when(restaurantRepo.findById(2L)).thenReturn(Optional.of(restaurant(2L, "Japanese")));
+        when(restaurantRepo.findById(3L)).thenReturn(Optional.of(restaurant(3L, "Japanese")));
+        restaurantCache.get(1L);
+        restaurantCache.get(2L);
+        restaurantCache.get(1L);
+
+        restaurantCache.get(3L);
+        restaurantCache.get(1L);
+        restaurantCache.get(2L);
+
+        assertEquals(2, restaurantCache.size());
+        verify(restaurantRepo, times(1)).findById(1L);
+        verify(restaurantRepo, times(2)).findById(2L);
+        assertEquals(2, evictions("size"));
+    }
+
+    @Test
+    void get_Expired_Reloaded() {
+        restaurantCache = new RestaurantCache(restaurantRepo, meterRegistry, 2, 0);
+        when(restaurantRepo.findById(1L)).thenReturn(Optional.of(restaurant(1L, "Japanese")));
+
+        restaurantCache.get(1L);
+        restaurantCache.get(1L);
+
+        verify(restaurantRepo, times(2)).findById(1L);
+        assertEquals(1, evictions("expired"));
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("foodprint.restaurant.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double evictions(String cause) {
+        return meterRegistry.get("foodprint.restaurant.cache.evictions").tag("cause", cause).counter().count();
+    }
+}
@@ -208,10 +208,78 @@ public class RestaurantIntegrationTest {
         ResponseEntity<RestaurantDTO> responseEntity = testRestTemplate.getForEntity(
                 createURLWithPort("/api/v1/restaurant/345"), 
                 RestaurantDTO.class);
-        
+
         assertEquals(404, responseEntity.getStatusCode().value());
     }
 
+    @Test
+    public void getRestaurant_MatchingETag_NotModified() {
+        List<String> restaurantCategories = new ArrayList<>();
+        restaurantCategories.add("Japanese");
+        Restaurant restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 10, 11, 11, 10, 10, 10, 10, restaurantCategories);
+        var savedRestaurant = restaurants.saveAndFlush(restaurant);
+
+        ResponseEntity<RestaurantDTO> first = testRestTemplate.getForEntity(
+                createURLWithPort("/api/v1/restaurant/{restaurantId}"),
+                RestaurantDTO.class,
+                savedRestaurant.getRestaurantId());
+        String eTag = first.getHeaders().getETag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        ResponseEntity<RestaurantDTO> second = testRestTemplate.exchange(
+                createURLWithPort("/api/v1/restaurant/{restaurantId}"),
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                RestaurantDTO.class,
+                savedRestaurant.getRestaurantId());
+
+        assertEquals(304, second.getStatusCode().value());
+        assertEquals(eTag, second.getHeaders().getETag());
+        assertEquals("max-age=60, public", second.getHeaders().getCacheControl());
+    }
+
+    @Test
+    public void getRestaurant_UpdatedSinceETag_Success() {
+        AuthRequestDTO loginRequest = new AuthRequestDTO();
+        loginRequest.setEmail("bobby@gmail.com");
+        loginRequest.setPassword("SuperSecurePassw0rd");
+        AuthResponseDTO loginResponse = testRestTemplate.postForObject(createURLWithPort("/api/v1/auth/login"), loginRequest, AuthResponseDTO.class);
+
+        List<String> restaurantCategories = new ArrayList<>();
+        restaurantCategories.add("Japanese");
+        Restaurant restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 10, 11, 11, 10, 10, 10, 10, restaurantCategories);
+        var savedRestaurant = restaurants.saveAndFlush(restaurant);
+        String eTag = testRestTemplate.getForEntity(
+                createURLWithPort("/api/v1/restaurant/{restaurantId}"),
+                RestaurantDTO.class,
+                savedRestaurant.getRestaurantId()).getHeaders().getETag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Authorization", "Bearer " + loginResponse.getToken());
+        headers.add("Content-Type", "application/json");
+        RestaurantDTO update = new RestaurantDTO();
+        update.setRestaurantName("Sushi Tei Express");
+        testRestTemplate.exchange(
+                createURLWithPort("/api/v1/restaurant/{restaurantId}"),
+                HttpMethod.PATCH,
+                new HttpEntity<>(update, headers),
+                Restaurant.class,
+                savedRestaurant.getRestaurantId());
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(eTag);
+        ResponseEntity<RestaurantDTO> responseEntity = testRestTemplate.exchange(
+                createURLWithPort("/api/v1/restaurant/{restaurantId}"),
+                HttpMethod.GET,
+                new HttpEntity<>(conditional),
+                RestaurantDTO.class,
+                savedRestaurant.getRestaurantId());
+
+        assertEquals(200, responseEntity.getStatusCode().value());
+        assertEquals("Sushi Tei Express", responseEntity.getBody().getRestaurantName());
+    }
+
     @Test
     public void updateRestaurant_RestaurantFound_Success() throws Exception {
         AuthRequestDTO loginRequest = new AuthRequestDTO();
@@ -11,6 +11,8 @@ import foodprint.backend.model.Discount;
 import foodprint.backend.model.DiscountRepo;
 import foodprint.backend.model.Food;
 import foodprint.backend.model.FoodIngredientQuantity;
+import foodprint.backend.model.FoodIngredientQuantityKey;
+import foodprint.backend.model.FoodIngredientQuantityRepo;
 import foodprint.backend.model.FoodRepo;
 import foodprint.backend.model.Ingredient;
 import foodprint.backend.model.IngredientRepo;
@@ -21,24 +23,39 @@ import foodprint.backend.model.ReservationRepo;
 import foodprint.backend.model.Restaurant;
 import foodprint.backend.model.RestaurantRepo;
 import foodprint.backend.model.User;
+import foodprint.backend.service.CatalogSearch;
+import foodprint.backend.service.CategoryIndex;
+import foodprint.backend.service.DemandLedger;
+import foodprint.backend.service.FacetIndex;
+import foodprint.backend.service.OpeningSchedules;
 import foodprint.backend.service.PictureService;
+import foodprint.backend.service.MenuCache;
+import foodprint.backend.service.RestaurantCache;
+import foodprint.backend.service.RestaurantIndexListener;
 import foodprint.backend.service.RestaurantService;
+import foodprint.backend.service.SlotOccupancyIndex;
+import foodprint.backend.service.TextIndex;
 import foodprint.backend.model.Reservation.ReservationStatus;
 import foodprint.backend.model.LineItem;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
 import java.util.Map;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -48,8 +65,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
@@ -73,6 +96,36 @@ public class RestaurantServiceTest {
     @Mock
     private ReservationRepo reservationRepo;
 
+    @Spy
+    private OpeningSchedules openingSchedules = new OpeningSchedules();
+
+    @Mock
+    private DemandLedger demandLedger;
+
+    @Mock
+    private FoodIngredientQuantityRepo foodIngredientQuantityRepo;
+
+    @Mock
+    private CategoryIndex categoryIndex;
+
+    @Mock
+    private CatalogSearch catalogSearch;
+
+    @Mock
+    private RestaurantIndexListener restaurantIndexListener;
+
+    @Mock
+    private RestaurantCache restaurantCache;
+
+    @Mock
+    private MenuCache menuCache;
+
+    @Mock
+    private FacetIndex facetIndex;
+
+    @Mock
+    private SlotOccupancyIndex slotOccupancyIndex;
+
     @InjectMocks
     private RestaurantService restaurantService;
 
@@ -201,6 +254,21 @@ public class RestaurantServiceTest {
         verify(repo).saveAndFlush(restaurant);
     }
 
+    @Test
+    void updateRestaurant_HoursChanged_ScheduleRecompiled() {
+        restaurant.setRestaurantId(restaurantId);
+        Restaurant updatedHours = new Restaurant(null, null, null, null, null, null, 22, 0, null, null, null, null, null);
+        LocalDateTime mondayEvening = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY)).atTime(21, 0);
+        when(repo.findById(any(Long.class))).thenReturn(Optional.of(restaurant));
+        when(repo.saveAndFlush(any(Restaurant.class))).thenReturn(restaurant);
+        assertFalse(openingSchedules.isOpen(restaurant, mondayEvening));
+
+        restaurantService.update(restaurantId, updatedHours);
+
+        assertTrue(openingSchedules.isOpen(restaurant, mondayEvening));
+        verify(openingSchedules).refresh(restaurant);
+    }
+
     @Test
     void updateRestaurant_RestaurantNotFound_ReturnException() {
         when(repo.findById(any(Long.class))).thenReturn(Optional.empty());
@@ -230,6 +298,7 @@ public class RestaurantServiceTest {
         assertEquals("", exceptionMsg);
         verify(repo, times(2)).findById(restaurantId);
         verify(repo).delete(restaurant);
+        verify(slotOccupancyIndex).evict(restaurantId);
     }
 
     @Test
@@ -377,6 +446,26 @@ public class RestaurantServiceTest {
         verify(foodRepo).saveAndFlush(food);
     }
 
+    @Test
+    void updateFood_RecipeChanged_DemandMovedByDifference() {
+        FoodIngredientQuantityDTO foodIngredientQuantityDTO = new FoodIngredientQuantityDTO();
+        foodIngredientQuantityDTO.setIngredientId(ingredientId);
+        foodIngredientQuantityDTO.setQuantity(3);
+        editFoodDTO.setFoodIngredientQuantity(Set.of(foodIngredientQuantityDTO));
+        FoodIngredientQuantity updated = new FoodIngredientQuantity(food, ingredient, 3);
+        when(foodRepo.findById(any(Long.class))).thenReturn(Optional.of(food));
+        when(foodRepo.saveAndFlush(any(Food.class))).thenReturn(food);
+        when(foodIngredientQuantityRepo.findById(any(FoodIngredientQuantityKey.class))).thenReturn(Optional.of(foodIngredientQuantity));
+        when(foodIngredientQuantityRepo.findByIdFoodIdIn(Set.of(foodId)))
+            .thenReturn(List.of(foodIngredientQuantity))
+            .thenReturn(List.of(updated));
+
+        restaurantService.editFood(restaurantId, foodId, editFoodDTO);
+
+        verify(demandLedger).applyRecipeChange(restaurantId, foodId, Map.of(ingredientId, 1L), Map.of(ingredientId, 3L));
+        verify(demandLedger, never()).verify(any(Long.class), any(Boolean.class));
+    }
+
     @Test
     void updateFood_FoodDoesNotExist_ReturnException() {
         EditFoodDTO anotherEditedFood = new EditFoodDTO();
@@ -492,15 +581,94 @@ public class RestaurantServiceTest {
         verify(foodRepo).findById(foodId);
     }
 
+    @Test
+    void getFoods_AllFoodsInRestaurant_ReturnFoodsById() {
+        when(foodRepo.findAllById(any())).thenReturn(List.of(food));
+
+        Map<Long, Food> foods = restaurantService.getFoods(restaurantId, List.of(foodId, foodId));
+
+        assertEquals(food, foods.get(foodId));
+        verify(foodRepo).findAllById(List.of(foodId, foodId));
+    }
+
+    @Test
+    void getFoods_FoodMissing_ReturnException() {
+        when(foodRepo.findAllById(any())).thenReturn(List.of(food));
+
+        String exceptionMsg = "";
+        try {
+            restaurantService.getFoods(restaurantId, List.of(foodId, 2L));
+        } catch (NotFoundException e) {
+            exceptionMsg = e.getMessage();
+        }
+
+        assertEquals("Food not found", exceptionMsg);
+    }
+
+    @Test
+    void search_Unsorted_ReturnsRankedPage() {
+        Restaurant other = new Restaurant("Sushi Express", "Bugis");
+        ReflectionTestUtils.setField(other, "restaurantId", 2L);
+        TextIndex index = new TextIndex();
+        index.put(2L, new TextIndex.Document().add("Sushi Express", 3f));
+        index.put(restaurantId, new TextIndex.Document().add("Sushi Tei sushi", 3f));
+        when(catalogSearch.searchRestaurants("sushi", 0, 16)).thenReturn(index.search("sushi", 0, 16));
+        when(repo.findAllById(any())).thenReturn(List.of(other, restaurant));
+
+        Page<Restaurant> result = restaurantService.search(PageRequest.of(0, 16), "sushi");
+
+        assertEquals(2, result.getTotalElements());
+        assertEquals(List.of(restaurant, other), result.getContent());
+        verify(repo, times(0)).findByRestaurantNameContainsIgnoreCase(any(Pageable.class), any(String.class));
+    }
+
+    @Test
+    void search_Sorted_DatabaseSortsBestMatchesOnly() {
+        TextIndex index = new TextIndex();
+        index.put(2L, new TextIndex.Document().add("Sushi Express", 3f));
+        index.put(restaurantId, new TextIndex.Document().add("Sushi Tei sushi", 3f));
+        when(catalogSearch.searchRestaurants("sushi", 0, 500)).thenReturn(index.search("sushi", 0, 500));
+        PageRequest page = PageRequest.of(0, 16, Sort.by("restaurantName"));
+        when(repo.findByRestaurantIdIn(List.of(restaurantId, 2L), page)).thenReturn(new PageImpl<>(List.of(restaurant), page, 2));
+
+        Page<Restaurant> result = restaurantService.search(page, "sushi");
+
+        assertEquals(List.of(restaurant), result.getContent());
+        verify(catalogSearch, never()).searchRestaurants("sushi", 0, 16);
+    }
+
+    @Test
+    void getRestaurantsRelatedToCategory_Indexed_LoadsById() {
+        when(categoryIndex.getRestaurantIds("Japanese")).thenReturn(List.of(restaurantId));
+        when(repo.findAllById(any())).thenReturn(List.of(restaurant));
+
+        List<Restaurant> result = restaurantService.getRestaurantsRelatedToCategory("Japanese");
+
+        assertEquals(List.of(restaurant), result);
+        verify(repo).findAllById(List.of(restaurantId));
+        verify(repo, times(0)).findAll();
+    }
+
+    @Test
+    void getRestaurantsRelatedToCategory_UnknownCategory_NoQuery() {
+        when(categoryIndex.getRestaurantIds("Korean")).thenReturn(new ArrayList<>());
+
+        List<Restaurant> result = restaurantService.getRestaurantsRelatedToCategory("Korean");
+
+        assertTrue(result.isEmpty());
+        verify(repo, times(0)).findAllById(any());
+    }
+
     @Test
     void calculateFoodNeededBetween_Success_ReturnMap() {
-        when(reservationRepo.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class),
-                any(LocalDateTime.class))).thenReturn(reservationList);
+        when(demandLedger.getFoodDemandBetween(any(Long.class), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(Map.of(foodId, 3L));
+        when(foodRepo.findAllById(any())).thenReturn(List.of(food));
 
         Map<String, Integer> foodMap = restaurantService.calculateFoodNeededBetween(restaurant, startDate, endDate);
 
-        assertTrue(foodMap.size() > 0);
-        verify(reservationRepo).findByRestaurantAndDateBetween(restaurant, start, end);
+        assertEquals(3, foodMap.get("sashimi"));
+        verify(demandLedger).getFoodDemandBetween(restaurantId, start.toLocalDate(), endDate);
     }
 
     // ---------Discount-related Testing---------
@@ -542,6 +710,7 @@ public class RestaurantServiceTest {
         assertEquals(discount, updatedDiscount);
         verify(repo).findByRestaurantId(restaurantId);
         verify(discountRepo).saveAndFlush(discount);
+        verify(restaurantCache).invalidate(restaurantId);
     }
 
     @Test
@@ -604,17 +773,19 @@ public class RestaurantServiceTest {
     // --------Ingredient-related testing--------
     @Test
     void getAllRestaurantIngredients_RestaurantExistAndIngredientsExist_ReturnIngredients() {
-        when(repo.findById(any(Long.class))).thenReturn(Optional.of(restaurant));
+        when(restaurantCache.get(any(Long.class))).thenReturn(Optional.of(restaurant));
+        when(ingredientRepo.findByRestaurantRestaurantId(any(Long.class))).thenReturn(ingredients);
 
         List<Ingredient> getIngredients = restaurantService.getAllRestaurantIngredients(restaurantId);
 
         assertEquals(ingredients, getIngredients);
-        verify(repo).findById(restaurantId);
+        verify(restaurantCache).get(restaurantId);
+        verify(ingredientRepo).findByRestaurantRestaurantId(restaurantId);
     }
 
     @Test
     void getAllRestaurantIngredients_RestaurantDoesNotExist_ReturnException() {
-        when(repo.findById(any(Long.class))).thenReturn(Optional.empty());
+        when(restaurantCache.get(any(Long.class))).thenReturn(Optional.empty());
 
         String exceptionMsg = "";
         try {
@@ -624,7 +795,7 @@ public class RestaurantServiceTest {
         }
 
         assertEquals("Restaurant not found", exceptionMsg);
-        verify(repo).findById(restaurantId);
+        verify(restaurantCache).get(restaurantId);
     }
 
     @Test
@@ -764,14 +935,27 @@ public class RestaurantServiceTest {
 
     @Test
     void calculateIngredientsNeededBetween_Success_ReturnMap() {
-        when(reservationRepo.findByRestaurantAndDateBetween(any(Restaurant.class), any(LocalDateTime.class),
-                any(LocalDateTime.class))).thenReturn(reservationList);
+        when(demandLedger.getIngredientDemandBetween(any(Long.class), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(Map.of(ingredientId, 12L));
+        when(ingredientRepo.findAllById(any())).thenReturn(ingredients);
+
+        Map<Ingredient, Integer> ingredientMap = restaurantService.calculateIngredientsNeededBetween(restaurant,
+                startDate, endDate);
+
+        assertEquals(12, ingredientMap.get(ingredient));
+        verify(demandLedger).getIngredientDemandBetween(restaurantId, start.toLocalDate(), endDate);
+    }
+
+    @Test
+    void calculateIngredientsNeededBetween_NoReservations_ReturnEmptyMap() {
+        when(demandLedger.getIngredientDemandBetween(any(Long.class), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(new HashMap<>());
 
         Map<Ingredient, Integer> ingredientMap = restaurantService.calculateIngredientsNeededBetween(restaurant,
                 startDate, endDate);
 
-        assertTrue(ingredientMap.size() > 0);
-        verify(reservationRepo).findByRestaurantAndDateBetween(restaurant, start, end);
+        assertTrue(ingredientMap.isEmpty());
+        verify(ingredientRepo, times(0)).findAllById(any());
     }
 
 }
@@ -0,0 +1,189 @@
+package foodprint.backend;
+
+import static org.junit.Assert.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import foodprint.backend.config.AmazonConfig;
+import foodprint.backend.service.S3FileStore;
+
+@ExtendWith(MockitoExtension.class)
+public class S3FileStoreTest {
+
+    private static final long MULTIPART_THRESHOLD = 4096;
+
+    private static final long PART_SIZE = 1024;
+
+    @Mock
+    AmazonS3 amazonS3;
+
+    S3FileStore fileStore;
+
+    @BeforeEach
+    void init() {
+        fileStore = new S3FileStore(amazonS3, MULTIPART_THRESHOLD, PART_SIZE, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileStore.shutdown();
+    }
+
+    @Test
+    void upload_Success() {
+
+        when(amazonS3.putObject(any(PutObjectRequest.class))).thenReturn(null);
+        var optMetadata = Optional.of(Map.of("", ""));
+        InputStream anyInputStream = new ByteArrayInputStream("test data".getBytes());
+
+
+        assertDoesNotThrow(() -> {
+            fileStore.upload("fakePath", "fakeFilename", optMetadata, anyInputStream, "image/png", 9);
+        });
+
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(amazonS3).putObject(request.capture());
+        assertEquals(9, request.getValue().getMetadata().getContentLength());
+        assertEquals("image/png", request.getValue().getMetadata().getContentType());
+    }
+
+    @Test
+    void upload_Failure_ReturnException() {
+
+        when(amazonS3.putObject(any(PutObjectRequest.class))).thenThrow(AmazonServiceException.class);
+        var optMetadata = Optional.of(Map.of("", ""));
+        InputStream anyInputStream = new ByteArrayInputStream("".getBytes());
+
+
+        assertThrows(IllegalStateException.class, () -> {
+            fileStore.upload("fakePath", "fakeFilename", optMetadata, anyInputStream, "image/png", 0);
+        });
+
+        verify(amazonS3).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    void upload_EmptyMap_Success() {
+
+        when(amazonS3.putObject(any(PutObjectRequest.class))).thenReturn(null);
+        var optMetadata = Optional.of((Map<String, String>) new HashMap<String, String>());
+        InputStream anyInputStream = new ByteArrayInputStream("".getBytes());
+
+        assertDoesNotThrow(() -> {
+            fileStore.upload("fakePath", "fakeFilename", optMetadata, anyInputStream, "image/png", 0);
+        });
+
+        verify(amazonS3).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    void delete_Success() {
+        fileStore.delete("fakePath", "fakeFilename");
+
+        verify(amazonS3).deleteObject("fakePath", "fakeFilename");
+    }
+
+    @Test
+    void delete_Failure_ReturnException() {
+        doThrow(AmazonServiceException.class).when(amazonS3).deleteObject("fakePath", "fakeFilename");
+
+        assertThrows(IllegalStateException.class, () -> fileStore.delete("fakePath", "fakeFilename"));
+    }
+
+    @Test
+    void urlOf_BucketInPath_UrlFromClient() throws Exception {
+        when(amazonS3.getUrl("foodprint-amazon-storage", "uuid/thumb/sushi platter.jpg"))
+            .thenReturn(new URL("https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/uuid/thumb/sushi%20platter.jpg"));
+
+        assertEquals("https://foodprint-amazon-storage.s3.ap-southeast-1.amazonaws.com/uuid/thumb/sushi%20platter.jpg",
+            fileStore.urlOf("foodprint-amazon-storage/uuid", "thumb/sushi platter.jpg"));
+    }
+
+    @Test
+    void urlOf_EndpointSet_UrlOnEndpoint() throws Exception {
+        try (S3StandIn standIn = new S3StandIn()) {
+            S3FileStore store = new S3FileStore(standInClient(standIn), MULTIPART_THRESHOLD, PART_SIZE, 2);
+
+            assertEquals(standIn.endpoint() + "/bucket/uuid/thumb/sushi%20platter.jpg",
+                store.urlOf("bucket/uuid", "thumb/sushi platter.jpg"));
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void upload_BelowThreshold_SinglePutToStandIn() throws Exception {
+        try (S3StandIn standIn = new S3StandIn()) {
+            S3FileStore store = new S3FileStore(standInClient(standIn), MULTIPART_THRESHOLD, PART_SIZE, 2);
+            byte[] photo = randomBytes(1000);
+
+            store.upload("bucket", "small.jpg", Optional.empty(), new ByteArrayInputStream(photo), "image/jpeg", photo.length);
+            store.shutdown();
+
+            assertArrayEquals(photo, standIn.get("bucket", "small.jpg"));
+            assertEquals(1, standIn.singlePuts());
+            assertEquals(0, standIn.partPuts());
+        }
+    }
+
+    @Test
+    void upload_AboveThreshold_MultipartToStandIn() throws Exception {
+        try (S3StandIn standIn = new S3StandIn()) {
+            S3FileStore store = new S3FileStore(standInClient(standIn), MULTIPART_THRESHOLD, PART_SIZE, 2);
+            byte[] photo = randomBytes(10_000);
+
+            store.upload("bucket", "large.jpg", Optional.of(Map.of("title", "Sashimi")), new ByteArrayInputStream(photo),
+                "image/jpeg", photo.length);
+            store.shutdown();
+
+            assertArrayEquals(photo, standIn.get("bucket", "large.jpg"));
+            assertEquals(0, standIn.singlePuts());
+            assertTrue(standIn.partPuts() >= 10);
+        }
+    }
+
+    private AmazonS3 standInClient(S3StandIn standIn) {
+        AmazonConfig config = new AmazonConfig();
+        ReflectionTestUtils.setField(config, "awsAccessKey", "test");
+        ReflectionTestUtils.setField(config, "awsSecretKey", "test");
+        ReflectionTestUtils.setField(config, "endpoint", standIn.endpoint());
+        ReflectionTestUtils.setField(config, "maxConnections", 4);
+        ReflectionTestUtils.setField(config, "maxRetries", 0);
+        ReflectionTestUtils.setField(config, "connectionTimeoutMillis", 1000);
+        ReflectionTestUtils.setField(config, "socketTimeoutMillis", 5000);
+        return config.s3();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,189 @@
+package foodprint.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Just enough of the S3 REST API, served on a local port, for uploads through the
+ * AWS client: single PUTs and multipart uploads with path-style addressing.
+ * Requests are not authenticated.
+ */
+class S3StandIn implements AutoCloseable {
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final AtomicInteger uploadIds = new AtomicInteger();
+
+    private final AtomicInteger singlePuts = new AtomicInteger();
+
+    private final AtomicInteger partPuts = new AtomicInteger();
+
+    S3StandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Gets a stored object by bucket and key
+     * @param bucket
+     * @param key
+     * @return null if nothing was stored there
+     */
+    byte[] get(String bucket, String key) {
+        return objects.get("/" + bucket + "/" + key);
+    }
+
+    int singlePuts() {
+        return singlePuts.get();
+    }
+
+    int partPuts() {
+        return partPuts.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String contentHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+            if (contentHash != null && contentHash.startsWith("STREAMING-")) {
+                body = decodeChunks(body);
+            }
+
+            String method = exchange.getRequestMethod();
+            if ("PUT".equals(method) && query.containsKey("uploadId")) {
+                uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+                partPuts.incrementAndGet();
+                sendETag(exchange, md5(body));
+            } else if ("PUT".equals(method)) {
+                objects.put(path, body);
+                singlePuts.incrementAndGet();
+                sendETag(exchange, md5(body));
+            } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                String uploadId = String.valueOf(uploadIds.incrementAndGet());
+                uploads.put(uploadId, new ConcurrentSkipListMap<>());
+                sendXml(exchange, "<InitiateMultipartUploadResult>" + location(path)
+                    + "<UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                SortedMap<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+                ByteArrayOutputStream object = new ByteArrayOutputStream();
+                for (byte[] part : parts.values()) {
+                    object.write(part);
+                }
+                objects.put(path, object.toByteArray());
+                sendXml(exchange, "<CompleteMultipartUploadResult>" + location(path)
+                    + "<ETag>\"" + md5(object.toByteArray()) + "-" + parts.size() + "\"</ETag></CompleteMultipartUploadResult>");
+            } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(400, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String location(String path) {
+        int slash = path.indexOf('/', 1);
+        return "<Bucket>" + path.substring(1, slash) + "</Bucket><Key>" + path.substring(slash + 1) + "</Key>";
+    }
+
+    private static void sendETag(HttpExchange exchange, String eTag) throws IOException {
+        exchange.getResponseHeaders().add("ETag", "\"" + eTag + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private static void sendXml(HttpExchange exchange, String xml) throws IOException {
+        byte[] bytes = (XML_HEADER + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            query.put(equals < 0 ? pair : pair.substring(0, equals), equals < 0 ? "" : pair.substring(equals + 1));
+        }
+        return query;
+    }
+
+    /**
+     * Strips the signed chunk framing the client puts around payloads sent over plain HTTP
+     */
+    private static byte[] decodeChunks(byte[] body) {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(body.length);
+        int position = 0;
+        while (position < body.length) {
+            int lineEnd = position;
+            while (body[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0], 16);
+            if (size == 0) {
+                break;
+            }
+            decoded.write(body, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static String md5(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import foodprint.backend.model.ReservationCount;
+import foodprint.backend.model.ReservationRepo;
+import foodprint.backend.model.Reservation.ReservationStatus;
+import foodprint.backend.service.SlotOccupancyIndex;
+
+@ExtendWith(MockitoExtension.class)
+public class SlotOccupancyIndexTest {
+
+    @Mock
+    private ReservationRepo reservationRepo;
+
+    @InjectMocks
+    private SlotOccupancyIndex slotOccupancyIndex;
+
+    private LocalDate day;
+    private LocalDateTime slot;
+    private List<ReservationCount> heldCounts;
+
+    @BeforeEach
+    void init() {
+        day = LocalDate.now().plusDays(10);
+        slot = day.atTime(12, 30);
+        heldCounts = new ArrayList<>();
+        heldCounts.add(reservationCount(slot, 2L));
+        heldCounts.add(reservationCount(slot.plusMinutes(15), 1L));
+    }
+
+    @Test
+    void getCounts_ColdStart_LoadsOnceFromRepo() {
+        when(reservationRepo.countHeldByDateBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class))).thenReturn(heldCounts);
+
+        int[][] counts = slotOccupancyIndex.getCounts(1L, day, day.plusDays(1));
+        int count = slotOccupancyIndex.getCount(1L, slot);
+
+        assertEquals(3, counts[0][SlotOccupancyIndex.slotOfDay(slot)]);
+        assertEquals(3, count);
+        verify(reservationRepo, times(1)).countHeldByDateBetween(1L, day.atStartOfDay(), day.plusDays(1).atStartOfDay(), ReservationStatus.CANCELLED);
+    }
+
+    @Test
+    void move_IndexLoaded_CountsUpdated() {
+        when(reservationRepo.countHeldByDateBetween(any(Long.class), any(LocalDateTime.class), any(LocalDateTime.class), any(ReservationStatus.class))).thenReturn(heldCounts);
+        slotOccupancyIndex.getCounts(1L, day, day.plusDays(1));
+
+        slotOccupancyIndex.increment(1L, slot);
+        slotOccupancyIndex.move(1L, slot, slot.plusHours(1));
+        slotOccupancyIndex.decrement(1L, slot);
+
+        assertEquals(2, slotOccupancyIndex.getCount(1L, slot));
+        assertEquals(1, slotOccupancyIndex.getCount(1L, slot.plusHours(1)));
+    }
+
+    private ReservationCount reservationCount(LocalDateTime date, Long reservations) {
+        return new ReservationCount() {
+            @Override
+            public LocalDateTime getDate() {
+                return date;
+            }
+
+            @Override
+            public Long getReservations() {
+                return reservations;
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package foodprint.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import foodprint.backend.model.Restaurant;
+
+/**
+ * Restaurants for the tests of the in-memory indexes and caches, open from 10:10
+ * to 22:00 every day
+ */
+final class TestRestaurants {
+
+    private TestRestaurants() {
+    }
+
+    /**
+     * Makes a restaurant with an ID, as if it had been saved
+     * @param restaurantId
+     * @param categories
+     * @return
+     */
+    static Restaurant restaurant(Long restaurantId, String... categories) {
+        Restaurant restaurant = new Restaurant("Sushi Tei", "Desc", "Serangoon", 15, 10, 10, 22, 0, 10, 10, 22, 0,
+            new ArrayList<>(List.of(categories)));
+        restaurant.setRestaurantId(restaurantId);
+        return restaurant;
+    }
+}
@@ -0,0 +1,78 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import foodprint.backend.service.TextIndex;
+
+public class TextIndexTest {
+
+    private TextIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new TextIndex();
+        index.put(1L, new TextIndex.Document().add("Sushi Tei", 3f).add("Japanese", 2f).add("Serangoon", 1.5f));
+        index.put(2L, new TextIndex.Document().add("Crêpe Café", 3f).add("French", 2f).add("Bugis", 1.5f));
+        index.put(3L, new TextIndex.Document().add("Ramen Keisuke", 3f).add("Japanese", 2f).add("Sushi and noodles", 1f));
+    }
+
+    @Test
+    void tokenize_AccentsAndPunctuation_Folded() {
+        assertEquals(List.of("crepe", "cafe", "s", "best"), TextIndex.tokenize("Crêpe-Café's BEST!"));
+    }
+
+    @Test
+    void search_NameMatch_RanksAboveDescriptionMatch() {
+        TextIndex.Hits hits = index.search("sushi", 0, 10);
+
+        assertEquals(2, hits.getTotal());
+        assertEquals(List.of(1L, 3L), hits.getIds());
+    }
+
+    @Test
+    void search_MoreTermsMatched_RanksFirst() {
+        TextIndex.Hits hits = index.search("japanese ramen", 0, 10);
+
+        assertEquals(List.of(3L, 1L), hits.getIds());
+    }
+
+    @Test
+    void search_Prefix_Matches() {
+        assertEquals(List.of(3L), index.search("kei", 0, 10).getIds());
+    }
+
+    @Test
+    void search_Typo_MatchesByTrigrams() {
+        assertEquals(List.of(3L), index.search("keisuki", 0, 10).getIds());
+    }
+
+    @Test
+    void search_Offset_ReturnsLaterPage() {
+        TextIndex.Hits hits = index.search("japanese", 1, 1);
+
+        assertEquals(2, hits.getTotal());
+        assertEquals(1, hits.getIds().size());
+    }
+
+    @Test
+    void put_ExistingDocument_Replaced() {
+        index.put(1L, new TextIndex.Document().add("Burger King", 3f));
+
+        assertEquals(List.of(3L), index.search("sushi tei", 0, 10).getIds());
+        assertEquals(List.of(1L), index.search("burger", 0, 10).getIds());
+    }
+
+    @Test
+    void remove_Document_NoLongerMatches() {
+        index.remove(2L);
+
+        assertTrue(index.search("crepe", 0, 10).getIds().isEmpty());
+        assertEquals(2, index.size());
+    }
+}
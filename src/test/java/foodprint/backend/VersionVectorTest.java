@@ -0,0 +1,73 @@
+package foodprint.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import foodprint.backend.model.EntityVersion;
+import foodprint.backend.service.VersionVector;
+
+public class VersionVectorTest {
+
+    @Test
+    void toETag_SameVersions_SameTag() {
+        String first = new VersionVector("food").add(1L, 3).addAll(List.of(version(7L, 1L))).toETag();
+        String second = new VersionVector("food").add(1L, 3).addAll(List.of(version(7L, 1L))).toETag();
+
+        assertEquals(first, second);
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+    }
+
+    @Test
+    void toETag_VersionChanged_DifferentTag() {
+        String before = new VersionVector("restaurant").add(1L, 3).toETag();
+        String after = new VersionVector("restaurant").add(1L, 4).toETag();
+
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void toETag_DifferentKind_DifferentTag() {
+        assertNotEquals(new VersionVector("restaurant").add(1L, 0).toETag(), new VersionVector("food").add(1L, 0).toETag());
+    }
+
+    @Test
+    void toETag_EntityMovedBetweenLists_DifferentTag() {
+        String first = new VersionVector("food")
+            .addAll(List.of(version(1L, 0L), version(2L, 0L)))
+            .addAll(List.of())
+            .toETag();
+        String second = new VersionVector("food")
+            .addAll(List.of(version(1L, 0L)))
+            .addAll(List.of(version(2L, 0L)))
+            .toETag();
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void toETag_MissingPart_DifferentTag() {
+        String withDiscount = new VersionVector("restaurant").add(1L, 0).add(5L, 0).toETag();
+        String withoutDiscount = new VersionVector("restaurant").add(1L, 0).addMissing().toETag();
+
+        assertNotEquals(withDiscount, withoutDiscount);
+    }
+
+    private EntityVersion version(Long id, Long version) {
+        return new EntityVersion() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}